@@ -3,17 +3,26 @@ package org.opengis.cite.kml22;
 import java.util.Collections;
 import java.util.Map;
 
-import javax.xml.xpath.XPathExpressionException;
-
+import org.opengis.cite.kml22.util.BoundedErrorHandler;
+import org.opengis.cite.kml22.util.CoordinateStore;
+import org.opengis.cite.kml22.util.KmlElementIndex;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
+import org.opengis.cite.kml22.util.ReferentCache;
 import org.opengis.cite.kml22.util.XMLUtils;
-import org.opengis.cite.validation.ErrorLocator;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.ValidationErrorHandler;
+import org.testng.ISuite;
 import org.testng.ITestContext;
+import org.testng.SkipException;
 import org.testng.annotations.BeforeClass;
+import org.testng.xml.XmlTest;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.om.VirtualNode;
+import net.sf.saxon.s9api.XdmNode;
 
 /**
  * A supporting base class that provides some common configuration methods. The
@@ -29,10 +38,45 @@ public class BaseFixture {
 	/** A DOM Document representing the main KML document */
 	protected Document testSubject;
 
+	/** An index of the elements in the test subject */
+	protected KmlElementIndex elementIndex;
+
+	/** The parsed content of the kml:coordinates elements in the test subject */
+	protected CoordinateStore coordinateStore;
+
+	/** The outcome of dereferencing URI references, shared by all tests in a run */
+	protected ReferentCache referentCache;
+
+	/** The maximum number of threads a test method may use */
+	protected int parallelism = 1;
+
+	/** The maximum number of errors reported in detail by a test method */
+	protected int maxErrors = BoundedErrorHandler.DEFAULT_MAX_ERRORS;
+
+	/** The test subject wrapped as an XDM node (obtained lazily) */
+	private XdmNode xdmTestSubject;
+
 	/**
 	 * Obtains the test subject from the ISuite test context. The suite attribute
 	 * {@link org.opengis.cite.kml22.SuiteAttribute#TEST_SUBJECT} should evaluate to a DOM
-	 * Document node.
+	 * Document node. The accompanying element index
+	 * ({@link org.opengis.cite.kml22.SuiteAttribute#ELEMENT_INDEX}) is also obtained; it
+	 * is built here if not available. The same goes for the shared coordinate store
+	 * ({@link org.opengis.cite.kml22.SuiteAttribute#COORDINATE_STORE}) and the cache of
+	 * link referents ({@link org.opengis.cite.kml22.SuiteAttribute#REFERENT_CACHE}). The
+	 * {@link org.opengis.cite.kml22.SuiteAttribute#PARALLELISM parallelism} and
+	 * {@link org.opengis.cite.kml22.SuiteAttribute#MAX_ERRORS maxErrors} settings are
+	 * obtained as well.
+	 * <p>
+	 * If test classes are run in parallel, they all share the test subject, so it must be
+	 * a read-only view of an immutable tree (see
+	 * {@link org.opengis.cite.kml22.util.XMLUtils#isImmutable(org.w3c.dom.Node)}); a DOM
+	 * document is not thread-safe, even if it is only read. The tests are skipped
+	 * otherwise.
+	 * </p>
+	 * <p>
+	 * In streaming mode there is no test subject, so all tests are skipped.
+	 * </p>
 	 * @param testContext The test (group) context.
 	 */
 	@BeforeClass(alwaysRun = true)
@@ -40,15 +84,111 @@ public class BaseFixture {
 		Object obj = testContext.getSuite().getAttribute(SuiteAttribute.TEST_SUBJECT.getName());
 		if ((null != obj) && Document.class.isAssignableFrom(obj.getClass())) {
 			this.testSubject = Document.class.cast(obj);
+			XmlTest xmlTest = testContext.getCurrentXmlTest();
+			boolean parallel = null != xmlTest && null != xmlTest.getParallel() && xmlTest.getParallel().isParallel();
+			if (parallel && !XMLUtils.isImmutable(this.testSubject)) {
+				throw new SkipException("A DOM test subject cannot be shared by test classes run in parallel.");
+			}
+		}
+		else if (null != testContext.getSuite().getAttribute(SuiteAttribute.STREAM_VALIDATOR.getName())) {
+			throw new SkipException("Test subject not available in streaming mode.");
+		}
+		Object index = testContext.getSuite().getAttribute(SuiteAttribute.ELEMENT_INDEX.getName());
+		if ((null != index) && KmlElementIndex.class.isInstance(index)
+				&& ((KmlElementIndex) index).getDocument() == this.testSubject) {
+			this.elementIndex = KmlElementIndex.class.cast(index);
 		}
+		else if (null != this.testSubject) {
+			this.elementIndex = new KmlElementIndex(this.testSubject);
+		}
+		Object coordStore = testContext.getSuite().getAttribute(SuiteAttribute.COORDINATE_STORE.getName());
+		if ((null != coordStore) && CoordinateStore.class.isInstance(coordStore)
+				&& ((CoordinateStore) coordStore).getDocument() == this.testSubject) {
+			this.coordinateStore = CoordinateStore.class.cast(coordStore);
+		}
+		else if (null != this.testSubject) {
+			this.coordinateStore = new CoordinateStore(this.testSubject);
+		}
+		Object referents = testContext.getSuite().getAttribute(SuiteAttribute.REFERENT_CACHE.getName());
+		if (ReferentCache.class.isInstance(referents)) {
+			this.referentCache = ReferentCache.class.cast(referents);
+		}
+		else {
+			this.referentCache = new ReferentCache();
+		}
+		Object threads = testContext.getSuite().getAttribute(SuiteAttribute.PARALLELISM.getName());
+		if (Integer.class.isInstance(threads)) {
+			this.parallelism = Math.max(1, Integer.class.cast(threads));
+		}
+		Object errorLimit = testContext.getSuite().getAttribute(SuiteAttribute.MAX_ERRORS.getName());
+		if (Integer.class.isInstance(errorLimit)) {
+			this.maxErrors = Integer.class.cast(errorLimit);
+		}
+		Object xdmNode = testContext.getSuite().getAttribute(SuiteAttribute.XDM_TEST_SUBJECT.getName());
+		if ((null != xdmNode) && XdmNode.class.isInstance(xdmNode)) {
+			NodeInfo nodeInfo = XdmNode.class.cast(xdmNode).getUnderlyingNode();
+			if (((nodeInfo instanceof VirtualNode) && ((VirtualNode) nodeInfo).getUnderlyingNode() == this.testSubject)
+					|| nodeInfo.equals(XMLUtils.getNodeKey(this.testSubject))) {
+				this.xdmTestSubject = XdmNode.class.cast(xdmNode);
+			}
+		}
+	}
+
+	/**
+	 * Determines whether the test subject is the document obtained from the suite, rather
+	 * than one set for unit testing.
+	 * @param suite The test suite.
+	 * @return {@code true} if the test subject is the suite document; {@code false}
+	 * otherwise.
+	 */
+	protected boolean isSuiteTestSubject(ISuite suite) {
+		return null != this.testSubject
+				&& suite.getAttribute(SuiteAttribute.TEST_SUBJECT.getName()) == this.testSubject;
 	}
 
 	/**
-	 * Sets the test subject (intended only to facilitate unit testing).
+	 * Sets the test subject (intended only to facilitate unit testing). An index of its
+	 * elements, a coordinate store, and a referent cache are created as well.
 	 * @param testSubject A Document node representing the test subject.
 	 */
 	public void setTestSubject(Document testSubject) {
 		this.testSubject = testSubject;
+		this.elementIndex = (null != testSubject) ? new KmlElementIndex(testSubject) : null;
+		this.coordinateStore = (null != testSubject) ? new CoordinateStore(testSubject) : null;
+		this.referentCache = new ReferentCache();
+		this.xdmTestSubject = null;
+	}
+
+	/**
+	 * Sets the maximum number of threads a test method may use (intended only to
+	 * facilitate unit testing).
+	 * @param parallelism A positive integer (values less than 1 are treated as 1).
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Creates an error handler for a test method. It retains only the first
+	 * {@link #maxErrors} errors; any others are summarized in the report.
+	 * @return A new ValidationErrorHandler.
+	 */
+	protected ValidationErrorHandler createErrorHandler() {
+		return new BoundedErrorHandler(this.maxErrors);
+	}
+
+	/**
+	 * Returns the test subject as a node in the XDM data model, suitable for evaluating
+	 * XPath 2.0 expressions with
+	 * {@link XMLUtils#evaluateXPath2(net.sf.saxon.s9api.XdmItem, String, Map)}. The DOM
+	 * document is wrapped only once.
+	 * @return An XdmNode that wraps the test subject.
+	 */
+	protected XdmNode getXdmTestSubject() {
+		if (null == this.xdmTestSubject) {
+			this.xdmTestSubject = XMLUtils.wrapNode(this.testSubject);
+		}
+		return this.xdmTestSubject;
 	}
 
 	/**
@@ -61,22 +201,27 @@ public class BaseFixture {
 	 * violations.
 	 */
 	protected void verifyElementNotEmpty(String localName, ValidationErrorHandler errHandler) {
-		String xpath = String.format("//kml:%s[not(ancestor::kml:Update)]", localName);
-		NodeList nodeList = null;
-		try {
-			nodeList = XMLUtils.evaluateXPath(this.testSubject, xpath, NS_MAP);
-			for (int i = 0; i < nodeList.getLength(); i++) {
-				Node node = nodeList.item(i);
-				NodeList kmlChildren = XMLUtils.evaluateXPath(node, "kml:*", NS_MAP);
-				if (kmlChildren.getLength() == 0) {
-					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.Empty", localName),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(node)));
-				}
+		for (Element elem : this.elementIndex.getElementsNotInUpdate(localName)) {
+			if (!hasKmlChildElement(elem)) {
+				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.Empty", localName),
+						new NodeErrorLocator(elem));
 			}
 		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
+	}
+
+	/**
+	 * Determines whether or not the given element has at least one child element in the
+	 * KML namespace (i.e. whether the expression <code>kml:*</code> selects anything).
+	 * @param elem An Element node.
+	 * @return {@code true} if a KML child element is present; {@code false} otherwise.
+	 */
+	protected static boolean hasKmlChildElement(Element elem) {
+		for (Node child = elem.getFirstChild(); null != child; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE && Namespaces.KML22.equals(child.getNamespaceURI())) {
+				return true;
+			}
 		}
+		return false;
 	}
 
 }
@@ -0,0 +1,544 @@
+package org.opengis.cite.kml22;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
+
+import org.opengis.cite.kml22.util.ClientUtils;
+import org.opengis.cite.kml22.util.TestSuiteLogger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Runs the test suite against many instance documents in a single JVM. All test runs
+ * share one {@link TestNGController}, so the KML schema is compiled only once; compiled
+ * Schematron schemas and the pooled HTTP client are likewise reused by every run. The
+ * instance documents are checked concurrently by a fixed pool of worker threads.
+ *
+ * <p>
+ * For each instance document the TestNG results are written to a separate subdirectory of
+ * <code>{outputDir}/testng</code>, and a row is added to the file {@value #RESULTS_FILE}
+ * in the output directory as soon as the run is completed (so the rows are not in any
+ * particular order). The overall totals are written to the file {@value #SUMMARY_FILE}
+ * when all runs have finished.
+ * </p>
+ */
+public class BatchTestRunner {
+
+	/** The name of the file listing the result of each test run (CSV format). */
+	public static final String RESULTS_FILE = "batch-results.csv";
+
+	/** The name of the file containing the aggregated results (XML properties). */
+	public static final String SUMMARY_FILE = "batch-summary.xml";
+
+	/** The name of the TestNG results file written for each test run. */
+	static final String TESTNG_RESULTS_FILE = "testng-results.xml";
+
+	/**
+	 * The test run argument that selects the format of the results returned by the test
+	 * executor; it is not passed on, since the totals are read from the TestNG results.
+	 */
+	private static final String ACCEPT_MEDIA_TYPE = "acceptMediaType";
+
+	/** The extensions of the files selected when a directory is searched. */
+	private static final String[] KML_EXTENSIONS = { ".kml", ".kmz", ".kml.gz" };
+
+	/** The number of batches in progress in this JVM. */
+	private static final AtomicInteger ACTIVE_BATCHES = new AtomicInteger();
+
+	private final TestNGController controller;
+
+	private final File outputDir;
+
+	private final Properties testRunArgs;
+
+	private final int threadCount;
+
+	/**
+	 * Runs the test suite against a batch of instance documents. The results are written
+	 * to the current directory unless another one is specified.
+	 *
+	 * <pre>
+	 * BatchTestRunner [-o outputDir] [-t threads] [-a test-run-props.xml] source...
+	 * </pre>
+	 *
+	 * A source is a directory (all KML and KMZ files in it are checked, including those
+	 * in subdirectories), a glob pattern such as <code>tiles/**&#47;*.kmz</code>, the
+	 * name of a manifest file prefixed with '@', or a single file or URI. The optional
+	 * properties file supplies the other test run arguments (e.g. "ics"); any "iut" or
+	 * "acceptMediaType" entry is ignored. The exit status is 0 only if a result was
+	 * recorded for every instance document and all of them passed.
+	 * @param args The command line arguments.
+	 * @throws java.lang.Exception If the batch cannot be run.
+	 */
+	public static void main(String[] args) throws Exception {
+		File outputDir = new File(System.getProperty("user.dir"));
+		int threads = Runtime.getRuntime().availableProcessors();
+		Properties testRunArgs = new Properties();
+		List<URI> testSubjects = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "-o":
+					outputDir = new File(requireValue(args, ++i));
+					break;
+				case "-t":
+					threads = Integer.parseInt(requireValue(args, ++i));
+					break;
+				case "-a":
+					try (InputStream input = new FileInputStream(requireValue(args, ++i))) {
+						testRunArgs.loadFromXML(input);
+					}
+					break;
+				default:
+					testSubjects.addAll(findTestSubjects(args[i]));
+			}
+		}
+		if (testSubjects.isEmpty()) {
+			throw new IllegalArgumentException("No instance documents found. Usage: "
+					+ BatchTestRunner.class.getSimpleName() + " [-o outputDir] [-t threads] [-a props.xml] source...");
+		}
+		BatchTestRunner runner = new BatchTestRunner(outputDir, testRunArgs, threads);
+		Summary summary = runner.run(testSubjects);
+		System.out.println(summary);
+		System.out.println("Batch results: " + new File(outputDir, RESULTS_FILE).getAbsolutePath());
+		boolean allPassed = summary.getCount() == testSubjects.size() && summary.getPassed() == testSubjects.size();
+		System.exit(allPassed ? 0 : 1);
+	}
+
+	private static String requireValue(String[] args, int index) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException("Missing value for option " + args[index - 1]);
+		}
+		return args[index];
+	}
+
+	/**
+	 * Creates a runner that writes results to the given directory.
+	 * @param outputDir The directory in which results are written; it is created if it
+	 * does not exist.
+	 * @param testRunArgs The test run arguments that apply to every instance document
+	 * (may be empty); the {@link TestRunArg#IUT iut} argument is set for each run.
+	 * @param threadCount The number of instance documents that are checked concurrently.
+	 */
+	public BatchTestRunner(File outputDir, Properties testRunArgs, int threadCount) {
+		if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+			throw new IllegalArgumentException("Cannot create output directory at " + outputDir);
+		}
+		this.outputDir = outputDir;
+		this.testRunArgs = testRunArgs;
+		this.threadCount = Math.max(1, threadCount);
+		this.controller = new TestNGController(outputDir.toURI().toString());
+	}
+
+	/**
+	 * Runs the test suite against each of the given instance documents. A failure to
+	 * complete one test run does not affect the others; it is recorded as an error.
+	 * @param testSubjects A list of URIs referring to instance documents.
+	 * @return A summary of the results.
+	 * @throws IOException If the results cannot be written.
+	 * @throws InterruptedException If interrupted while waiting for the runs to finish.
+	 */
+	public Summary run(List<URI> testSubjects) throws IOException, InterruptedException {
+		Summary summary = new Summary();
+		ExecutorService workers = Executors.newFixedThreadPool(this.threadCount);
+		ACTIVE_BATCHES.incrementAndGet();
+		// keep the shared client (and its connections) open between test runs
+		ClientUtils.acquireSharedClient();
+		try (Writer results = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(new File(outputDir, RESULTS_FILE)), StandardCharsets.UTF_8))) {
+			results.write("iut,verdict,total,passed,failed,skipped,results\n");
+			for (URI iut : testSubjects) {
+				workers.execute(() -> {
+					Result result = runTests(iut);
+					summary.add(result);
+					synchronized (results) {
+						try {
+							results.write(result.toCSV());
+							results.flush();
+						}
+						catch (IOException iox) {
+							TestSuiteLogger.log(Level.WARNING, "Failed to write result for " + iut, iox);
+						}
+					}
+				});
+			}
+			workers.shutdown();
+			while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+				TestSuiteLogger.log(Level.INFO, summary.toString());
+			}
+		}
+		finally {
+			workers.shutdownNow();
+			ClientUtils.releaseSharedClient();
+			ACTIVE_BATCHES.decrementAndGet();
+		}
+		if (summary.getCount() != testSubjects.size()) {
+			TestSuiteLogger.log(Level.SEVERE,
+					String.format("Only %d of %d test runs were recorded.", summary.getCount(), testSubjects.size()));
+		}
+		try (OutputStream out = new FileOutputStream(new File(outputDir, SUMMARY_FILE))) {
+			summary.toProperties().storeToXML(out, "Batch test run summary");
+		}
+		TestSuiteLogger.log(Level.INFO, summary.toString());
+		return summary;
+	}
+
+	/**
+	 * Indicates whether or not a batch is being run in this JVM, in which case several
+	 * test runs may be in progress at the same time.
+	 * @return {@code true} if a batch is in progress; {@code false} otherwise.
+	 */
+	static boolean isBatchInProgress() {
+		return ACTIVE_BATCHES.get() > 0;
+	}
+
+	/**
+	 * Runs the test suite against a single instance document.
+	 * @param iut A URI referring to the instance document.
+	 * @return The result of the test run.
+	 */
+	Result runTests(URI iut) {
+		Result result = new Result(iut);
+		try {
+			Source source = controller.doTestRun(buildTestRunArgs(iut));
+			if (source instanceof SAXSource) {
+				// the executor leaves the results file open
+				Reader reader = ((SAXSource) source).getInputSource().getCharacterStream();
+				if (null != reader) {
+					reader.close();
+				}
+			}
+			// the TestNG results are written to the same directory as the returned report
+			File runDir = new File(URI.create(source.getSystemId())).getParentFile();
+			result.resultsFile = new File(runDir, TESTNG_RESULTS_FILE);
+			readTotals(result);
+			if (result.total == 0) {
+				result.error = "No tests were run (see " + result.resultsFile + ")";
+			}
+		}
+		catch (Throwable e) { // including errors such as OutOfMemoryError
+			TestSuiteLogger.log(Level.WARNING, "Test run failed for " + iut, e);
+			result.error = (null != e.getMessage()) ? e.getMessage() : e.getClass().getName();
+		}
+		return result;
+	}
+
+	/**
+	 * Builds a set of test run arguments for the given instance document. Any
+	 * "acceptMediaType" argument is dropped, so the test results are always returned in
+	 * the TestNG format.
+	 * @param iut A URI referring to the instance document.
+	 * @return A DOM Document containing a set of XML properties.
+	 * @throws ParserConfigurationException If a DOM Document cannot be created.
+	 */
+	Document buildTestRunArgs(URI iut) throws ParserConfigurationException {
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		Element properties = doc.createElement("properties");
+		doc.appendChild(properties);
+		for (String key : testRunArgs.stringPropertyNames()) {
+			if (!key.equals(TestRunArg.IUT.toString()) && !key.equals(ACCEPT_MEDIA_TYPE)) {
+				appendEntry(properties, key, testRunArgs.getProperty(key));
+			}
+		}
+		appendEntry(properties, TestRunArg.IUT.toString(), iut.toString());
+		return doc;
+	}
+
+	private static void appendEntry(Element properties, String key, String value) {
+		Element entry = properties.getOwnerDocument().createElement("entry");
+		entry.setAttribute("key", key);
+		entry.setTextContent(value);
+		properties.appendChild(entry);
+	}
+
+	/**
+	 * Reads the test totals from the attributes of the document element in the TestNG
+	 * results file (the rest of the file is not read).
+	 * @param result The result of a test run.
+	 * @throws IOException If the file cannot be read.
+	 * @throws XMLStreamException If the file is not well-formed.
+	 */
+	private static void readTotals(Result result) throws IOException, XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		try (InputStream input = new FileInputStream(result.resultsFile)) {
+			XMLStreamReader reader = factory.createXMLStreamReader(input);
+			try {
+				while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+				}
+				result.total = parseCount(reader.getAttributeValue(null, "total"));
+				result.passed = parseCount(reader.getAttributeValue(null, "passed"));
+				result.failed = parseCount(reader.getAttributeValue(null, "failed"));
+				result.skipped = parseCount(reader.getAttributeValue(null, "skipped"));
+			}
+			finally {
+				reader.close();
+			}
+		}
+	}
+
+	private static int parseCount(String value) {
+		return (null != value) ? Integer.parseInt(value.trim()) : 0;
+	}
+
+	/**
+	 * Finds the instance documents denoted by a command line argument. This is one of the
+	 * following:
+	 * <ul>
+	 * <li>a directory: all files in it (or in any subdirectory) having one of the
+	 * extensions .kml, .kmz or .kml.gz are selected;</li>
+	 * <li>a glob pattern (containing '*', '?', '[' or '{') that matches file paths;</li>
+	 * <li>a manifest file, prefixed with '@', that lists one file path or absolute URI
+	 * per line (relative paths are resolved against the location of the manifest; blank
+	 * lines and lines starting with '#' are ignored);</li>
+	 * <li>the path of a single file, or an absolute URI.</li>
+	 * </ul>
+	 * @param source A directory, glob pattern, manifest or single resource.
+	 * @return A list of URIs referring to instance documents; files found by searching
+	 * are listed in lexical order.
+	 * @throws IOException If a directory or manifest cannot be read.
+	 */
+	public static List<URI> findTestSubjects(String source) throws IOException {
+		if (source.startsWith("@")) {
+			Path manifest = Paths.get(source.substring(1)).toAbsolutePath();
+			List<URI> testSubjects = new ArrayList<>();
+			for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#")) {
+					testSubjects.add(toURI(manifest.getParent(), line));
+				}
+			}
+			return testSubjects;
+		}
+		if (source.matches(".*[*?\\[{].*")) {
+			return findFiles(source);
+		}
+		Path path = Paths.get(source);
+		if (Files.isDirectory(path)) {
+			try (Stream<Path> files = Files.walk(path)) {
+				return files.filter(p -> Files.isRegularFile(p) && hasKMLExtension(p))
+					.sorted()
+					.map(p -> p.toAbsolutePath().toUri())
+					.collect(Collectors.toList());
+			}
+		}
+		return List.of(toURI(Paths.get("").toAbsolutePath(), source));
+	}
+
+	/**
+	 * Finds the files that match a glob pattern. The search starts in the deepest
+	 * directory named in the pattern before the first wildcard.
+	 * @param glob A glob pattern (see {@link java.nio.file.FileSystem#getPathMatcher}).
+	 * @return A list of file URIs in lexical order.
+	 * @throws IOException If a directory cannot be read.
+	 */
+	private static List<URI> findFiles(String glob) throws IOException {
+		String pattern = Paths.get("").toAbsolutePath().resolve(glob).toString();
+		String prefix = pattern.split("[*?\\[{]", 2)[0];
+		Path baseDir = Paths.get(prefix.substring(0, prefix.lastIndexOf(File.separatorChar) + 1));
+		if (!Files.isDirectory(baseDir)) {
+			return List.of();
+		}
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		try (Stream<Path> files = Files.walk(baseDir)) {
+			return files.filter(p -> Files.isRegularFile(p) && matcher.matches(p))
+				.sorted()
+				.map(Path::toUri)
+				.collect(Collectors.toList());
+		}
+	}
+
+	private static boolean hasKMLExtension(Path path) {
+		String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+		for (String ext : KML_EXTENSIONS) {
+			if (name.endsWith(ext)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static URI toURI(Path baseDir, String ref) {
+		if (ref.matches("[a-zA-Z][a-zA-Z0-9+.-]+:.*")) {
+			return URI.create(ref);
+		}
+		return baseDir.resolve(ref).normalize().toUri();
+	}
+
+	/**
+	 * The result of running the test suite against one instance document.
+	 */
+	static class Result {
+
+		final URI iut;
+
+		File resultsFile;
+
+		int total;
+
+		int passed;
+
+		int failed;
+
+		int skipped;
+
+		/** A description of the error that prevented the test run from completing. */
+		String error;
+
+		Result(URI iut) {
+			this.iut = iut;
+		}
+
+		/**
+		 * Returns the verdict for the instance document: PASS if no tests failed, FAIL if
+		 * any did, or ERROR if the test run could not be completed.
+		 * @return A verdict.
+		 */
+		String getVerdict() {
+			if (null != error) {
+				return "ERROR";
+			}
+			return (failed > 0) ? "FAIL" : "PASS";
+		}
+
+		String toCSV() {
+			StringBuilder row = new StringBuilder(quote(iut.toString()));
+			row.append(',').append(getVerdict());
+			row.append(',').append(total).append(',').append(passed);
+			row.append(',').append(failed).append(',').append(skipped).append(',');
+			row.append(quote((null != error) ? error : resultsFile.getAbsolutePath()));
+			return row.append('\n').toString();
+		}
+
+		private static String quote(String value) {
+			if (value.matches("[^,\"\\r\\n]*")) {
+				return value;
+			}
+			return '"' + value.replace("\"", "\"\"") + '"';
+		}
+
+	}
+
+	/**
+	 * Aggregated results for a batch of instance documents. An instance is thread-safe.
+	 */
+	public static class Summary {
+
+		private int passed;
+
+		private int failed;
+
+		private int errors;
+
+		private long testsRun;
+
+		private long testsFailed;
+
+		private long testsSkipped;
+
+		synchronized void add(Result result) {
+			switch (result.getVerdict()) {
+				case "PASS":
+					passed++;
+					break;
+				case "FAIL":
+					failed++;
+					break;
+				default:
+					errors++;
+			}
+			testsRun += result.total;
+			testsFailed += result.failed;
+			testsSkipped += result.skipped;
+		}
+
+		/**
+		 * Returns the number of instance documents checked (including those for which the
+		 * test run could not be completed).
+		 * @return The number of instance documents.
+		 */
+		public synchronized int getCount() {
+			return passed + failed + errors;
+		}
+
+		/**
+		 * Returns the number of instance documents for which no test failed.
+		 * @return The number of passing instance documents.
+		 */
+		public synchronized int getPassed() {
+			return passed;
+		}
+
+		/**
+		 * Returns the number of instance documents for which one or more tests failed.
+		 * @return The number of failing instance documents.
+		 */
+		public synchronized int getFailed() {
+			return failed;
+		}
+
+		/**
+		 * Returns the number of instance documents for which the test run could not be
+		 * completed.
+		 * @return The number of errors.
+		 */
+		public synchronized int getErrors() {
+			return errors;
+		}
+
+		synchronized Properties toProperties() {
+			Properties props = new Properties();
+			props.setProperty("count", Integer.toString(getCount()));
+			props.setProperty("passed", Integer.toString(passed));
+			props.setProperty("failed", Integer.toString(failed));
+			props.setProperty("errors", Integer.toString(errors));
+			props.setProperty("testsRun", Long.toString(testsRun));
+			props.setProperty("testsFailed", Long.toString(testsFailed));
+			props.setProperty("testsSkipped", Long.toString(testsSkipped));
+			return props;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return String.format(
+					"Checked %d instance documents: %d passed, %d failed, %d errors (%d tests run, %d failed, %d skipped)",
+					getCount(), passed, failed, errors, testsRun, testsFailed, testsSkipped);
+		}
+
+	}
+
+}
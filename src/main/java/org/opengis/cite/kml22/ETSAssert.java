@@ -1,7 +1,5 @@
 package org.opengis.cite.kml22;
 
-import java.io.File;
-import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
 import java.util.Map;
@@ -10,15 +8,16 @@ import java.util.logging.Level;
 import javax.xml.namespace.QName;
 import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMResult;
-import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Validator;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
+import org.opengis.cite.kml22.util.BoundedErrorHandler;
 import org.opengis.cite.kml22.util.KMLUtils;
-import org.opengis.cite.kml22.util.NamespaceBindings;
+import org.opengis.cite.kml22.util.ReferentCache;
+import org.opengis.cite.kml22.util.ReferentCache.Entry;
+import org.opengis.cite.kml22.util.SchematronValidatorPool;
 import org.opengis.cite.kml22.util.TestSuiteLogger;
 import org.opengis.cite.kml22.util.URIUtils;
 import org.opengis.cite.kml22.util.XMLUtils;
@@ -29,14 +28,8 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import jakarta.ws.rs.client.Client;
-import jakarta.ws.rs.client.ClientBuilder;
-import jakarta.ws.rs.client.Invocation;
-import jakarta.ws.rs.client.Invocation.Builder;
-import jakarta.ws.rs.client.WebTarget;
-import jakarta.ws.rs.core.Response;
 import net.sf.saxon.s9api.SaxonApiException;
 import net.sf.saxon.s9api.XdmValue;
 
@@ -78,13 +71,9 @@ public class ETSAssert {
 		if (null == context) {
 			throw new NullPointerException("Context node is null.");
 		}
-		NamespaceBindings bindings = NamespaceBindings.withStandardBindings();
-		bindings.addAllBindings(namespaceBindings);
-		XPath xpath = XPathFactory.newInstance().newXPath();
-		xpath.setNamespaceContext(bindings);
 		Boolean result;
 		try {
-			result = (Boolean) xpath.evaluate(expr, context, XPathConstants.BOOLEAN);
+			result = (Boolean) XMLUtils.evaluateXPath(context, expr, namespaceBindings, XPathConstants.BOOLEAN);
 		}
 		catch (XPathExpressionException xpe) {
 			String msg = ErrorMessage.format(ErrorMessageKeys.XPATH_ERROR, expr);
@@ -116,12 +105,26 @@ public class ETSAssert {
 	}
 
 	/**
-	 * Asserts that an XML resource is schema-valid.
+	 * Asserts that an XML resource is schema-valid. At most
+	 * {@value org.opengis.cite.kml22.util.BoundedErrorHandler#DEFAULT_MAX_ERRORS} errors
+	 * are reported in detail.
 	 * @param validator The Validator to use.
 	 * @param source The XML Source to be validated.
 	 */
 	public static void assertSchemaValid(Validator validator, Source source) {
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		assertSchemaValid(validator, source, BoundedErrorHandler.DEFAULT_MAX_ERRORS);
+	}
+
+	/**
+	 * Asserts that an XML resource is schema-valid. Only the given number of errors are
+	 * reported in detail; any others are just counted.
+	 * @param validator The Validator to use.
+	 * @param source The XML Source to be validated.
+	 * @param maxErrors The maximum number of errors reported in detail (if less than 1
+	 * there is no limit).
+	 */
+	public static void assertSchemaValid(Validator validator, Source source, int maxErrors) {
+		ValidationErrorHandler errHandler = new BoundedErrorHandler(maxErrors);
 		validator.setErrorHandler(errHandler);
 		try {
 			validator.validate(source);
@@ -129,6 +132,15 @@ public class ETSAssert {
 		catch (Exception e) {
 			throw new AssertionError(ErrorMessage.format(ErrorMessageKeys.XML_ERROR, e.getMessage()));
 		}
+		assertSchemaValid(errHandler);
+	}
+
+	/**
+	 * Asserts that no schema validation errors were reported (for example, while an XML
+	 * resource was being parsed).
+	 * @param errHandler The error handler that received the results of schema validation.
+	 */
+	public static void assertSchemaValid(ValidationErrorHandler errHandler) {
 		Assert.assertFalse(errHandler.errorsDetected(), ErrorMessage.format(ErrorMessageKeys.NOT_SCHEMA_VALID,
 				errHandler.getErrorCount(), errHandler.toString()));
 	}
@@ -141,9 +153,9 @@ public class ETSAssert {
 	 * @param xmlSource The XML Source to be validated.
 	 */
 	public static void assertSchematronValid(URL schemaRef, Source xmlSource) {
-		SchematronValidator validator;
+		SchematronValidatorPool.Lease lease;
 		try {
-			validator = new SchematronValidator(new StreamSource(schemaRef.toString()), "#ALL");
+			lease = SchematronValidatorPool.acquire(schemaRef.toString(), "#ALL");
 		}
 		catch (Exception e) {
 			StringBuilder msg = new StringBuilder("Failed to process Schematron schema at ");
@@ -151,9 +163,16 @@ public class ETSAssert {
 			msg.append(e.getMessage());
 			throw new AssertionError(msg);
 		}
-		DOMResult result = (DOMResult) validator.validate(xmlSource);
-		Assert.assertFalse(validator.ruleViolationsDetected(), ErrorMessage.format(ErrorMessageKeys.NOT_SCHEMA_VALID,
-				validator.getRuleViolationCount(), XMLUtils.writeNodeToString(result.getNode())));
+		try {
+			SchematronValidator validator = lease.getValidator();
+			DOMResult result = (DOMResult) validator.validate(xmlSource);
+			Assert.assertFalse(validator.ruleViolationsDetected(),
+					ErrorMessage.format(ErrorMessageKeys.NOT_SCHEMA_VALID, validator.getRuleViolationCount(),
+							XMLUtils.writeNodeToString(result.getNode())));
+		}
+		finally {
+			lease.close();
+		}
 	}
 
 	/**
@@ -179,6 +198,22 @@ public class ETSAssert {
 	 * media type(s) of the target resource.
 	 */
 	public static void assertReferentExists(String xpath, Node linkNode, Client httpClient, String... mediaTypes) {
+		assertReferentExists(xpath, linkNode, new ReferentCache(httpClient), mediaTypes);
+	}
+
+	/**
+	 * Asserts that the resource identified by the given link element exists. The outcome
+	 * of the check is cached.
+	 * @param xpath An XPath expression that is evaluated against the given linkNode to
+	 * yield a URI reference.
+	 * @param linkNode A DOM node containing a URI reference (e.g. kml:Link, kml:Icon).
+	 * @param referentCache The cache that records the referents checked during the test
+	 * run.
+	 * @param mediaTypes An array or sequence of String values that describe the expected
+	 * media type(s) of the target resource.
+	 */
+	public static void assertReferentExists(String xpath, Node linkNode, ReferentCache referentCache,
+			String... mediaTypes) {
 		URI uriRef = null;
 		try {
 			String href = (String) XMLUtils.evaluateXPath(linkNode, xpath, BaseFixture.NS_MAP, XPathConstants.STRING);
@@ -190,7 +225,7 @@ public class ETSAssert {
 		if (uriRef.toString().isEmpty()) {
 			throw new AssertionError("URI reference not found in " + linkNode.getNodeName() + xpath);
 		}
-		assertReferentExists(uriRef, linkNode.getOwnerDocument().getBaseURI(), httpClient, mediaTypes);
+		assertReferentExists(uriRef, linkNode.getOwnerDocument().getBaseURI(), referentCache, mediaTypes);
 	}
 
 	/**
@@ -200,42 +235,36 @@ public class ETSAssert {
 	 * @param httpClient An HTTP client component. If {@code null}, one will be created.
 	 * @param mediaTypes An array or sequence of String values that describe the expected
 	 * media type(s) of the target resource.
+	 * @see #assertReferentExists(URI, String, ReferentCache, String...)
 	 */
 	public static void assertReferentExists(URI uriRef, String baseURI, Client httpClient, String... mediaTypes) {
-		if (null == httpClient) {
-			httpClient = ClientBuilder.newClient();
-		}
-		if (uriRef.isAbsolute() && !uriRef.getScheme().equals("file")) {
-			WebTarget target = httpClient.target(uriRef);
-			Builder reqBuilder = target.request();
-			reqBuilder.accept(mediaTypes);
-			Invocation req = reqBuilder.buildGet();
-			Response rsp = req.invoke();
-			if (rsp.getStatusInfo().getFamily() == Response.Status.Family.REDIRECTION) {
-				// client won't automatically redirect from HTTP to HTTPS
-				URI newURI = rsp.getLocation();
-				target = httpClient.target(newURI);
-				reqBuilder = target.request();
-				reqBuilder.accept(mediaTypes);
-				req = reqBuilder.buildGet();
-				rsp = req.invoke();
-			}
-			if ((rsp.getStatus() != Response.Status.OK.getStatusCode())) {
-				throw new AssertionError("No acceptable resource available at " + uriRef);
-			}
-		}
-		else {
-			URI uri = URIUtils.resolveRelativeURI(baseURI, uriRef.toString());
-			File fileRef = null;
-			try {
-				fileRef = URIUtils.dereferenceURI(uri);
-			}
-			catch (IOException iox) {
-				throw new AssertionError("Unable to access resource at " + uri);
-			}
-			if (fileRef.length() == 0) {
+		assertReferentExists(uriRef, baseURI, new ReferentCache(httpClient), mediaTypes);
+	}
+
+	/**
+	 * Asserts that the resource identified by the given URI reference exists. The
+	 * existence of an HTTP resource is checked without retrieving its content: a HEAD
+	 * request is submitted first; if the server does not support the HEAD method (status
+	 * 405 or 501), a GET request for the first byte only (<code>Range: bytes=0-0</code>)
+	 * is submitted instead. A full GET request is submitted only if the range cannot be
+	 * satisfied (status 416). The outcome is cached, so a resource that is referenced
+	 * many times is checked only once.
+	 * @param uriRef A URI reference.
+	 * @param baseURI A base URI for resolving a relative URI reference.
+	 * @param referentCache The cache that records the referents checked during the test
+	 * run.
+	 * @param mediaTypes An array or sequence of String values that describe the expected
+	 * media type(s) of the target resource.
+	 */
+	public static void assertReferentExists(URI uriRef, String baseURI, ReferentCache referentCache,
+			String... mediaTypes) {
+		URI uri = uriRef.isAbsolute() ? uriRef : URIUtils.resolveRelativeURI(baseURI, uriRef.toString());
+		Entry referent = referentCache.getReferent(uri, mediaTypes);
+		if (!referent.exists()) {
+			if (uri.getScheme().equalsIgnoreCase("file") || KMLUtils.isArchiveEntryURI(uri)) {
 				throw new AssertionError("No content found at " + uri);
 			}
+			throw new AssertionError("No acceptable resource available at " + uriRef);
 		}
 	}
 
@@ -258,16 +287,8 @@ public class ETSAssert {
 			targetHref = URIUtils.resolveRelativeURI(docURI, targetHref.toString());
 		}
 		Document kmlData;
-		File kmlFile = null;
 		try {
-			try {
-				kmlFile = URIUtils.dereferenceURI(targetHref);
-				kmlData = URIUtils.parseURI(kmlFile.toURI());
-			}
-			catch (SAXException e) {
-				// perhaps it's a KMZ file (ZIP archive)
-				kmlData = KMLUtils.extractKMLFromArchive(kmlFile);
-			}
+			kmlData = KMLUtils.parseKML(targetHref);
 		}
 		catch (Exception e) {
 			throw new AssertionError("Failed to parse KML resource from " + targetHref);
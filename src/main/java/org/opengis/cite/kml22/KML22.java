@@ -41,4 +41,7 @@ public class KML22 {
 	 */
 	public static final String UPDATE = "Update";
 
+	/** Head of the substitution group for all KML objects. */
+	public static final String ABSTRACT_OBJECT_GROUP = "AbstractObjectGroup";
+
 }
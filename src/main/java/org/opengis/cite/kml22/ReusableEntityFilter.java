@@ -1,8 +1,20 @@
 package org.opengis.cite.kml22;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.Cleaner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
+import org.glassfish.jersey.client.ClientLifecycleListener;
 import org.glassfish.jersey.client.ClientResponse;
+import org.opengis.cite.kml22.util.TestSuiteLogger;
 
 import jakarta.ws.rs.client.ClientRequestContext;
 import jakarta.ws.rs.client.ClientResponseContext;
@@ -12,17 +24,297 @@ import jakarta.ws.rs.client.ClientResponseFilter;
  * Buffers the (response) entity so it can be read multiple times.
  *
  * <p>
+ * Only entities that do not exceed a size threshold are buffered in memory. A larger
+ * entity (e.g. a KMZ archive or a texture image) is written to a temporary file instead,
+ * and the entity stream is replaced by one that reads the file; the file is deleted when
+ * that stream is closed. If a response is never closed, its file is deleted when the
+ * stream is garbage collected or when the client is closed, whichever comes first. The
+ * threshold can be set using the system property {@value #BUFFER_THRESHOLD_PROPERTY}
+ * (default: {@value #DEFAULT_BUFFER_THRESHOLD} bytes). An entity is left alone if the
+ * request property {@value #READ_ONCE_PROPERTY} is set, since copying it is wasted effort
+ * when the caller reads it only once.
+ * </p>
+ *
+ * <p>
  * <strong>WARNING:</strong> The entity InputStream must be reset after each read attempt.
+ * A spooled entity can be read again only until the stream is closed (which happens when
+ * the entity is read using {@link jakarta.ws.rs.core.Response#readEntity(Class)
+ * readEntity}).
  * </p>
  */
-public class ReusableEntityFilter implements ClientResponseFilter {
+public class ReusableEntityFilter implements ClientResponseFilter, ClientLifecycleListener {
+
+	/** The system property that sets the maximum size of an entity buffered in memory. */
+	public static final String BUFFER_THRESHOLD_PROPERTY = "kml22.http.bufferThreshold";
+
+	/** The default maximum size (bytes) of an entity buffered in memory. */
+	public static final int DEFAULT_BUFFER_THRESHOLD = 1024 * 1024;
+
+	/**
+	 * The request property that marks an entity as read once only, as a stream (e.g. into
+	 * the download cache) or not at all; if its value is {@code true} the entity is
+	 * neither buffered nor spooled.
+	 */
+	public static final String READ_ONCE_PROPERTY = "org.opengis.cite.kml22.readOnce";
+
+	/**
+	 * Deletes the spool files of streams that were not closed before becoming
+	 * unreachable.
+	 */
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	private final int threshold;
+
+	/** The spool files that are still in use. */
+	private final Set<SpoolFile> spoolFiles = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Creates a filter that buffers entities up to the size given by the system property
+	 * {@value #BUFFER_THRESHOLD_PROPERTY}.
+	 */
+	public ReusableEntityFilter() {
+		this(Integer.getInteger(BUFFER_THRESHOLD_PROPERTY, DEFAULT_BUFFER_THRESHOLD));
+	}
+
+	/**
+	 * Creates a filter that buffers entities up to the given size.
+	 * @param threshold The maximum number of bytes buffered in memory; larger entities
+	 * are written to a temporary file.
+	 */
+	public ReusableEntityFilter(int threshold) {
+		this.threshold = Math.max(0, threshold);
+	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
-		if (responseContext instanceof ClientResponse) {
-			((ClientResponse) responseContext).bufferEntity();
+		if (!(responseContext instanceof ClientResponse) || !responseContext.hasEntity()
+				|| Boolean.TRUE.equals(requestContext.getProperty(READ_ONCE_PROPERTY))) {
+			return;
+		}
+		ClientResponse response = (ClientResponse) responseContext;
+		int length = response.getLength();
+		if (length >= 0 && length <= this.threshold) {
+			response.bufferEntity();
+			return;
+		}
+		// length unknown or too large: read no more than the threshold into memory
+		InputStream entity = response.getEntityStream();
+		byte[] head = entity.readNBytes((int) Math.min(Integer.MAX_VALUE, this.threshold + 1L));
+		if (head.length <= this.threshold) {
+			entity.close();
+			response.setEntityStream(new ByteArrayInputStream(head));
+			response.bufferEntity();
+			return;
+		}
+		File spoolFile = File.createTempFile("entity-", null);
+		try (OutputStream out = new FileOutputStream(spoolFile)) {
+			out.write(head);
+			entity.transferTo(out);
+		}
+		catch (IOException iox) {
+			spoolFile.delete();
+			throw iox;
+		}
+		finally {
+			entity.close();
+		}
+		if (TestSuiteLogger.isLoggable(Level.FINE)) {
+			TestSuiteLogger.log(Level.FINE, String.format("Wrote %d bytes from %s to file at %s", spoolFile.length(),
+					requestContext.getUri(), spoolFile.getAbsolutePath()));
+		}
+		response.setEntityStream(new SpooledEntityStream(spoolFile, this.spoolFiles));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void onInit() {
+	}
+
+	/**
+	 * Deletes the spool files of responses that were not closed before the client was
+	 * closed.
+	 */
+	@Override
+	public void onClose() {
+		for (SpoolFile spoolFile : this.spoolFiles) {
+			spoolFile.run();
+		}
+	}
+
+	/**
+	 * Reads an entity that was written to a temporary file. The stream can be reset (to
+	 * the beginning, or to the last mark) any number of times until it is closed; the
+	 * file is then deleted.
+	 */
+	static class SpooledEntityStream extends InputStream {
+
+		private final File file;
+
+		private final RandomAccessFile input;
+
+		private final Cleaner.Cleanable cleanable;
+
+		private final byte[] buffer = new byte[8 * 1024];
+
+		/** The file offset of the first byte in the buffer. */
+		private long bufferStart;
+
+		private int bufferPos;
+
+		private int bufferLength;
+
+		private long mark;
+
+		private boolean closed;
+
+		SpooledEntityStream(File file, Set<SpoolFile> spoolFiles) throws IOException {
+			this.file = file;
+			this.input = new RandomAccessFile(file, "r");
+			SpoolFile spoolFile = new SpoolFile(file, this.input, spoolFiles);
+			spoolFiles.add(spoolFile);
+			this.cleanable = CLEANER.register(this, spoolFile);
+		}
+
+		File getFile() {
+			return file;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (bufferPos == bufferLength && !fill()) {
+				return -1;
+			}
+			return buffer[bufferPos++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (bufferPos == bufferLength && !fill()) {
+				return -1;
+			}
+			int n = Math.min(len, bufferLength - bufferPos);
+			System.arraycopy(buffer, bufferPos, b, off, n);
+			bufferPos += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long position = getPosition();
+			long newPosition = Math.min(position + Math.max(0, n), input.length());
+			seek(newPosition);
+			return newPosition - position;
+		}
+
+		@Override
+		public int available() throws IOException {
+			ensureOpen();
+			return (int) Math.min(Integer.MAX_VALUE, input.length() - getPosition());
+		}
+
+		@Override
+		public boolean markSupported() {
+			return true;
+		}
+
+		@Override
+		public synchronized void mark(int readlimit) {
+			mark = getPosition();
 		}
+
+		@Override
+		public synchronized void reset() throws IOException {
+			seek(mark);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				cleanable.clean();
+			}
+		}
+
+		private long getPosition() {
+			return bufferStart + bufferPos;
+		}
+
+		private void seek(long position) throws IOException {
+			ensureOpen();
+			if (position >= bufferStart && position <= bufferStart + bufferLength) {
+				bufferPos = (int) (position - bufferStart);
+				return;
+			}
+			input.seek(position);
+			bufferStart = position;
+			bufferPos = 0;
+			bufferLength = 0;
+		}
+
+		private boolean fill() throws IOException {
+			ensureOpen();
+			bufferStart += bufferLength;
+			bufferPos = 0;
+			bufferLength = 0;
+			input.seek(bufferStart);
+			int n = input.read(buffer);
+			if (n <= 0) {
+				return false;
+			}
+			bufferLength = n;
+			return true;
+		}
+
+		private void ensureOpen() throws IOException {
+			if (closed) {
+				throw new IOException("Stream closed");
+			}
+		}
+
+	}
+
+	/**
+	 * Closes and deletes a spool file. This must not refer to the stream that reads the
+	 * file, or the stream would never become unreachable.
+	 */
+	static final class SpoolFile implements Runnable {
+
+		private final File file;
+
+		private final RandomAccessFile input;
+
+		private final Set<SpoolFile> spoolFiles;
+
+		private boolean deleted;
+
+		SpoolFile(File file, RandomAccessFile input, Set<SpoolFile> spoolFiles) {
+			this.file = file;
+			this.input = input;
+			this.spoolFiles = spoolFiles;
+		}
+
+		@Override
+		public synchronized void run() {
+			if (deleted) {
+				return;
+			}
+			deleted = true;
+			spoolFiles.remove(this);
+			try {
+				input.close();
+			}
+			catch (IOException iox) {
+				TestSuiteLogger.log(Level.FINE, "Failed to close spool file at " + file, iox);
+			}
+			if (!file.delete() && file.exists()) {
+				TestSuiteLogger.log(Level.WARNING, "Failed to delete spool file at " + file);
+			}
+		}
+
 	}
 
 }
@@ -2,8 +2,16 @@ package org.opengis.cite.kml22;
 
 import javax.xml.validation.Schema;
 
+import org.opengis.cite.kml22.util.CoordinateStore;
+import org.opengis.cite.kml22.util.DownloadCache;
+import org.opengis.cite.kml22.util.KmlElementIndex;
+import org.opengis.cite.kml22.util.KmlStreamValidator;
+import org.opengis.cite.kml22.util.ReferentCache;
+import org.opengis.cite.validation.ValidationErrorHandler;
 import org.w3c.dom.Document;
 
+import net.sf.saxon.s9api.XdmNode;
+
 /**
  * An enumerated type defining ISuite attributes that may be set to constitute a shared
  * test fixture.
@@ -19,11 +27,55 @@ public enum SuiteAttribute {
 	 * A DOM Document representation of the test subject or metadata about it.
 	 */
 	TEST_SUBJECT("testSubject", Document.class),
+	/**
+	 * The schema validation errors detected while parsing the test subject (set only if
+	 * it was validated against the KML schema as it was being parsed).
+	 */
+	SCHEMA_ERRORS("schemaErrors", ValidationErrorHandler.class),
+	/**
+	 * An index of the elements in the test subject, grouped by name and listed in
+	 * document order.
+	 */
+	ELEMENT_INDEX("kmlElementIndex", KmlElementIndex.class),
+	/**
+	 * The parsed content of the kml:coordinates elements in the test subject, shared by
+	 * all tests that inspect coordinate tuples.
+	 */
+	COORDINATE_STORE("coordinateStore", CoordinateStore.class),
+	/**
+	 * The outcome of dereferencing the URI references in the test subject, shared by all
+	 * tests that check link referents.
+	 */
+	REFERENT_CACHE("referentCache", ReferentCache.class),
+	/**
+	 * The retrieved content of the test subject (set only if it was retrieved from an
+	 * HTTP endpoint); it is kept in the download cache until the test run ends.
+	 */
+	TEST_SUBJECT_DOWNLOAD("testSubjectDownload", DownloadCache.Download.class),
+	/**
+	 * The test subject wrapped as a node in the XDM data model, for evaluating XPath 2.0
+	 * expressions.
+	 */
+	XDM_TEST_SUBJECT("xdmTestSubject", XdmNode.class),
+	/**
+	 * The results of checking the test subject in streaming mode (set only if this mode
+	 * was selected).
+	 */
+	STREAM_VALIDATOR("streamValidator", KmlStreamValidator.class),
 	/**
 	 * An integer denoting the conformance level to check. A given conformance level
 	 * includes all lower levels.
 	 */
-	LEVEL("level", Integer.class);
+	LEVEL("level", Integer.class),
+	/**
+	 * The maximum number of threads that may be used by a test method (at least 1).
+	 */
+	PARALLELISM("parallelism", Integer.class),
+	/**
+	 * The maximum number of errors reported in detail by a test method (not positive if
+	 * there is no limit).
+	 */
+	MAX_ERRORS("maxErrors", Integer.class);
 
 	private final Class attrType;
 
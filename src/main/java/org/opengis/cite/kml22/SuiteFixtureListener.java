@@ -1,23 +1,44 @@
 package org.opengis.cite.kml22;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.logging.Level;
 
 import javax.xml.validation.Schema;
 
+import org.opengis.cite.kml22.level1.StreamingTests;
+import org.opengis.cite.kml22.util.BoundedErrorHandler;
+import org.opengis.cite.kml22.util.ClientUtils;
+import org.opengis.cite.kml22.util.CoordinateStore;
+import org.opengis.cite.kml22.util.DownloadCache;
 import org.opengis.cite.kml22.util.KMLUtils;
+import org.opengis.cite.kml22.util.KmlElementIndex;
+import org.opengis.cite.kml22.util.KmlStreamValidator;
+import org.opengis.cite.kml22.util.ReferentCache;
 import org.opengis.cite.kml22.util.TestSuiteLogger;
 import org.opengis.cite.kml22.util.URIUtils;
 import org.opengis.cite.kml22.util.ValidationUtils;
 import org.opengis.cite.kml22.util.XMLUtils;
+import org.opengis.cite.validation.ValidationErrorHandler;
+import org.testng.IAlterSuiteListener;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
 import org.testng.ISuite;
 import org.testng.ISuiteListener;
+import org.testng.ITestContext;
 import org.testng.Reporter;
+import org.testng.xml.XmlSuite;
 import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
+
+import net.sf.saxon.s9api.XdmNode;
 
 /**
  * A listener that performs various tasks before and after a test suite is run, usually
@@ -32,33 +53,159 @@ import org.xml.sax.SAXException;
  *
  * @see org.testng.ISuite ISuite interface
  */
-public class SuiteFixtureListener implements ISuiteListener {
+public class SuiteFixtureListener implements ISuiteListener, IMethodInterceptor, IAlterSuiteListener {
 
-	/** {@inheritDoc} */
+	/**
+	 * The name of the file in the suite output directory to which the test suite
+	 * parameters are written.
+	 */
+	public static final String PARAMETERS_FILE = "test-suite-parameters.xml";
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>
+	 * If the {@link TestRunArg#PARALLEL parallel} argument has the value
+	 * {@value org.opengis.cite.kml22.TestRunArg#PARALLEL_CLASSES}, the suite is set to
+	 * run test classes in parallel, using one thread per available processor (but at
+	 * least two, since much of the time may be spent waiting for linked resources). The
+	 * test run arguments are already suite parameters at this point, since the test
+	 * executor registers its own suite alteration listener before the listeners declared
+	 * in the suite definition are loaded.
+	 * </p>
+	 */
+	@Override
+	public void alter(List<XmlSuite> suites) {
+		for (XmlSuite xmlSuite : suites) {
+			if (TestRunArg.PARALLEL_CLASSES.equalsIgnoreCase(xmlSuite.getParameter(TestRunArg.PARALLEL.toString()))) {
+				xmlSuite.setParallel(XmlSuite.ParallelMode.CLASSES);
+				xmlSuite.setThreadCount(Math.max(2, Runtime.getRuntime().availableProcessors()));
+				TestSuiteLogger.log(Level.CONFIG,
+						String.format("Running test classes in parallel (%d threads)", xmlSuite.getThreadCount()));
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>
+	 * The TestNG reporter output is cleared unless a batch is in progress (see
+	 * {@link BatchTestRunner}), since it is shared by all test runs in the JVM.
+	 * </p>
+	 */
 	@Override
 	public void onStart(ISuite suite) {
-		Reporter.clear(); // clear output from previous test runs
-		Schema kmlSchema = ValidationUtils.createKMLSchema();
+		if (!BatchTestRunner.isBatchInProgress()) {
+			Reporter.clear(); // clear output from previous test runs
+		}
+		ClientUtils.acquireSharedClient();
+		Schema kmlSchema = ValidationUtils.getKMLSchema();
 		if (null != kmlSchema) {
 			suite.setAttribute(SuiteAttribute.KML_SCHEMA.getName(), kmlSchema);
 		}
 		processSuiteParameters(suite);
 	}
 
-	/** {@inheritDoc} */
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>
+	 * The test suite parameters are added to the TestNG reporter output (unless a batch
+	 * is in progress) and are also written to the file {@value #PARAMETERS_FILE} in the
+	 * suite output directory. The cached link referents are discarded, the retrieved test
+	 * subject is released from the download cache, and the shared HTTP client is released
+	 * (it is closed if no other test run is using it).
+	 * </p>
+	 */
 	@Override
 	public void onFinish(ISuite suite) {
-		Reporter.log("Test suite parameters:");
-		Reporter.log(suite.getXmlSuite().getAllParameters().toString());
+		if (!BatchTestRunner.isBatchInProgress()) {
+			Reporter.log("Test suite parameters:");
+			Reporter.log(suite.getXmlSuite().getAllParameters().toString());
+		}
+		writeSuiteParameters(suite);
+		Object referentCache = suite.getAttribute(SuiteAttribute.REFERENT_CACHE.getName());
+		if (ReferentCache.class.isInstance(referentCache)) {
+			ReferentCache.class.cast(referentCache).clear();
+		}
+		Object download = suite.getAttribute(SuiteAttribute.TEST_SUBJECT_DOWNLOAD.getName());
+		if (DownloadCache.Download.class.isInstance(download)) {
+			DownloadCache.Download.class.cast(download).release();
+		}
+		ClientUtils.releaseSharedClient();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>
+	 * The methods of {@link StreamingTests} are removed unless streaming mode was
+	 * selected, so that they are not reported as skipped in every other test run.
+	 * </p>
+	 */
+	@Override
+	public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+		String mode = context.getSuite().getParameter(TestRunArg.MODE.toString());
+		if (TestRunArg.STREAMING_MODE.equalsIgnoreCase(mode)) {
+			return methods;
+		}
+		List<IMethodInstance> selected = new ArrayList<>(methods.size());
+		for (IMethodInstance method : methods) {
+			if (!StreamingTests.class.equals(method.getMethod().getRealClass())) {
+				selected.add(method);
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Writes the test suite parameters to a file in the suite output directory.
+	 * @param suite An ISuite object representing a TestNG test suite.
+	 */
+	void writeSuiteParameters(ISuite suite) {
+		Map<String, String> params = suite.getXmlSuite().getAllParameters();
+		TestSuiteLogger.log(Level.CONFIG, "Test suite parameters: " + params);
+		if (null == suite.getOutputDirectory()) {
+			return;
+		}
+		File paramsFile = new File(suite.getOutputDirectory(), PARAMETERS_FILE);
+		paramsFile.getParentFile().mkdirs();
+		Properties props = new Properties();
+		props.putAll(params);
+		try (OutputStream out = new FileOutputStream(paramsFile)) {
+			props.storeToXML(out, "Test suite parameters");
+		}
+		catch (IOException iox) {
+			TestSuiteLogger.log(Level.WARNING, "Failed to write test suite parameters to " + paramsFile, iox);
+		}
 	}
 
 	/**
 	 * Processes test suite arguments and sets suite attributes accordingly. The entity
 	 * referenced by the {@link TestRunArg#IUT iut} argument is parsed and the resulting
-	 * Document is set as the value of the "testSubject" attribute.
+	 * Document is set as the value of the "testSubject" attribute; an index of its
+	 * elements is set as the value of the "kmlElementIndex" attribute, and an empty cache
+	 * of link referents as the value of the "referentCache" attribute. The document is
+	 * validated against the KML schema as it is parsed, and any schema errors are
+	 * collected in the "schemaErrors" attribute.
 	 * <p>
 	 * The {@link TestRunArg#ICS ics} argument value is set as the value of the "level"
-	 * attribute; if not specified the lowest conformance level will be checked.
+	 * attribute; if not specified the lowest conformance level will be checked. Likewise,
+	 * the {@link TestRunArg#PARALLELISM parallelism} argument value is set as the value
+	 * of the "parallelism" attribute (default: 1), and the {@link TestRunArg#MAXERRORS
+	 * maxerrors} argument value is set as the value of the "maxErrors" attribute. If the
+	 * {@link TestRunArg#PARALLEL parallel} argument has the value
+	 * {@value org.opengis.cite.kml22.TestRunArg#PARALLEL_CLASSES}, test classes are run
+	 * in parallel (see {@link #alter(List)}). The test subject is then loaded as in
+	 * {@value org.opengis.cite.kml22.TestRunArg#COMPACT_MODE} mode, since all test
+	 * classes share it (a DOM document is not thread-safe, even if it is only read).
+	 * </p>
+	 * <p>
+	 * If the {@link TestRunArg#MODE mode} argument has the value
+	 * {@value org.opengis.cite.kml22.TestRunArg#STREAMING_MODE}, the entity is not
+	 * parsed; instead it is checked in a single pass by a {@link KmlStreamValidator} that
+	 * is set as the value of the "streamValidator" attribute.
 	 * </p>
 	 * @param suite An ISuite object representing a TestNG test suite.
 	 */
@@ -74,6 +221,25 @@ public class SuiteFixtureListener implements ISuiteListener {
 			}
 		}
 		suite.setAttribute(SuiteAttribute.LEVEL.getName(), level);
+		Integer parallelism = 1;
+		if (null != params.get(TestRunArg.PARALLELISM.toString())) {
+			try {
+				parallelism = Math.max(1, Integer.parseInt(params.get(TestRunArg.PARALLELISM.toString()).trim()));
+			}
+			catch (NumberFormatException nfe) { // use default value instead
+			}
+		}
+		suite.setAttribute(SuiteAttribute.PARALLELISM.getName(), parallelism);
+		Integer maxErrors = BoundedErrorHandler.DEFAULT_MAX_ERRORS;
+		if (null != params.get(TestRunArg.MAXERRORS.toString())) {
+			try {
+				maxErrors = Integer.valueOf(params.get(TestRunArg.MAXERRORS.toString()).trim());
+			}
+			catch (NumberFormatException nfe) { // use default value instead
+			}
+		}
+		suite.setAttribute(SuiteAttribute.MAX_ERRORS.getName(), maxErrors);
+		boolean parallel = TestRunArg.PARALLEL_CLASSES.equalsIgnoreCase(params.get(TestRunArg.PARALLEL.toString()));
 		String iutParam = params.get(TestRunArg.IUT.toString());
 		if ((null == iutParam) || iutParam.isEmpty()) {
 			throw new IllegalArgumentException("Required test run parameter not found: " + TestRunArg.IUT.toString());
@@ -81,26 +247,65 @@ public class SuiteFixtureListener implements ISuiteListener {
 		URI iutRef = URI.create(iutParam.trim());
 		File entityFile = null;
 		try {
-			entityFile = URIUtils.dereferenceURI(iutRef);
+			if (iutRef.getScheme().equalsIgnoreCase("http") || iutRef.getScheme().equalsIgnoreCase("https")) {
+				// keep the file in the download cache until the test run ends
+				DownloadCache.Download download = DownloadCache.getSharedCache().fetch(iutRef);
+				suite.setAttribute(SuiteAttribute.TEST_SUBJECT_DOWNLOAD.getName(), download);
+				entityFile = download.getFile();
+				if (null == entityFile) {
+					throw new FileNotFoundException(
+							String.format("Failed to retrieve %s (status %d)", iutRef, download.getStatus()));
+				}
+			}
+			else {
+				entityFile = URIUtils.dereferenceURI(iutRef);
+			}
 		}
 		catch (IOException iox) {
 			// push exception up through ISuiteListener interface
 			throw new RuntimeException("Unable to access resource located at " + iutRef, iox);
 		}
+		if (TestRunArg.STREAMING_MODE.equalsIgnoreCase(params.get(TestRunArg.MODE.toString()))) {
+			KmlStreamValidator streamValidator = new KmlStreamValidator(maxErrors);
+			try {
+				streamValidator.validate(entityFile);
+			}
+			catch (Exception e) {
+				throw new RuntimeException("Failed to read KML document from file at " + entityFile.toURI(), e);
+			}
+			suite.setAttribute(SuiteAttribute.STREAM_VALIDATOR.getName(), streamValidator);
+			TestSuiteLogger.log(Level.FINE, String.format("Read %d elements from resource retrieved from %s",
+					streamValidator.getElementCount(), iutRef));
+			return;
+		}
+		// validate against the KML schema while parsing
+		Schema kmlSchema = (Schema) suite.getAttribute(SuiteAttribute.KML_SCHEMA.getName());
+		ValidationErrorHandler schemaErrors = new BoundedErrorHandler(maxErrors);
 		Document kmlDoc = null;
+		XdmNode xdmDoc = null;
 		try {
-			try {
-				kmlDoc = URIUtils.parseURI(entityFile.toURI());
+			if (parallel || TestRunArg.COMPACT_MODE.equalsIgnoreCase(params.get(TestRunArg.MODE.toString()))) {
+				xdmDoc = KMLUtils.buildKML(entityFile, kmlSchema, schemaErrors);
+				kmlDoc = (null != xdmDoc) ? XMLUtils.asDocument(xdmDoc) : null;
 			}
-			catch (SAXException e) {
-				// perhaps it's a KMZ file (ZIP archive)
-				kmlDoc = KMLUtils.extractKMLFromArchive(entityFile);
+			else {
+				kmlDoc = KMLUtils.parseKML(entityFile, kmlSchema, schemaErrors);
 			}
 		}
 		catch (Exception e) {
 			throw new RuntimeException("Failed to read KML document from file at " + entityFile.toURI(), e);
 		}
 		suite.setAttribute(SuiteAttribute.TEST_SUBJECT.getName(), kmlDoc);
+		if (null != kmlDoc && null != kmlSchema) {
+			suite.setAttribute(SuiteAttribute.SCHEMA_ERRORS.getName(), schemaErrors);
+		}
+		if (null != kmlDoc) {
+			suite.setAttribute(SuiteAttribute.ELEMENT_INDEX.getName(), new KmlElementIndex(kmlDoc));
+			suite.setAttribute(SuiteAttribute.COORDINATE_STORE.getName(), new CoordinateStore(kmlDoc));
+			suite.setAttribute(SuiteAttribute.REFERENT_CACHE.getName(), new ReferentCache());
+			suite.setAttribute(SuiteAttribute.XDM_TEST_SUBJECT.getName(),
+					(null != xdmDoc) ? xdmDoc : XMLUtils.wrapNode(kmlDoc));
+		}
 		if (TestSuiteLogger.isLoggable(Level.FINE)) {
 			StringBuilder logMsg = new StringBuilder("Parsed resource retrieved from ");
 			logMsg.append(iutRef).append("\n");
@@ -17,6 +17,7 @@ import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathFactory;
 
 import org.opengis.cite.kml22.util.TestSuiteLogger;
+import org.opengis.cite.kml22.util.ValidationUtils;
 import org.w3c.dom.Document;
 
 import com.occamlab.te.spi.executors.TestRunExecutor;
@@ -87,6 +88,7 @@ public class TestNGController implements TestSuiteController {
 		TestSuiteLogger.log(Level.CONFIG, "Using outputDir: " + resultsDir.getAbsolutePath());
 		// NOTE: setting third argument to 'true' enables the default listeners
 		this.executor = new TestNGExecutor(tngSuite.toString(), resultsDir.getAbsolutePath(), false);
+		ValidationUtils.warmUpKMLSchema();
 	}
 
 	/** {@inheritDoc} */
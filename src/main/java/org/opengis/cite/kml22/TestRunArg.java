@@ -14,7 +14,48 @@ public enum TestRunArg {
 	 * An integer value denoting the conformance level to check. A given conformance level
 	 * includes all lower levels.
 	 */
-	ICS;
+	ICS,
+	/**
+	 * The processing mode. By default the test subject is loaded into memory as a DOM
+	 * document. If the value is {@value #COMPACT_MODE} it is loaded into a Saxon TinyTree
+	 * that requires much less memory (the tests see a read-only DOM view of it). If the
+	 * value is {@value #STREAMING_MODE} it is instead read in a single forward-only pass,
+	 * and only those conformance level 1 constraints that can be checked this way are
+	 * evaluated.
+	 */
+	MODE,
+	/**
+	 * A positive integer denoting the maximum number of threads that may be used by tests
+	 * that check independent elements concurrently (default: 1). Results are always
+	 * reported in document order.
+	 */
+	PARALLELISM,
+	/**
+	 * The maximum number of errors reported in detail by each test (default:
+	 * {@value org.opengis.cite.kml22.util.BoundedErrorHandler#DEFAULT_MAX_ERRORS}); any
+	 * further errors are only counted. If the value is not positive all errors are
+	 * reported.
+	 */
+	MAXERRORS,
+	/**
+	 * The TestNG parallel mode. If the value is {@value #PARALLEL_CLASSES} the test
+	 * classes in each conformance level are run concurrently; they share a read-only test
+	 * subject, which is loaded as in {@value #COMPACT_MODE} mode. Otherwise they are run
+	 * one after another.
+	 */
+	PARALLEL;
+
+	/** The {@link #MODE mode} value that selects streaming validation. */
+	public static final String STREAMING_MODE = "streaming";
+
+	/**
+	 * The {@link #MODE mode} value that loads the test subject into a compact, read-only
+	 * tree instead of a DOM document.
+	 */
+	public static final String COMPACT_MODE = "compact";
+
+	/** The {@link #PARALLEL parallel} value that runs test classes concurrently. */
+	public static final String PARALLEL_CLASSES = "classes";
 
 	/** {@inheritDoc} */
 	@Override
@@ -1,11 +1,8 @@
 package org.opengis.cite.kml22.level1;
 
-import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.xpath.XPathExpressionException;
-
 import org.apache.jena.iri.IRI;
 import org.apache.jena.iri.IRIException;
 import org.apache.jena.iri.IRIFactory;
@@ -13,16 +10,13 @@ import org.opengis.cite.kml22.BaseFixture;
 import org.opengis.cite.kml22.ETSAssert;
 import org.opengis.cite.kml22.ErrorMessage;
 import org.opengis.cite.kml22.Namespaces;
-import org.opengis.cite.kml22.util.TestSuiteLogger;
-import org.opengis.cite.kml22.util.XMLUtils;
-import org.opengis.cite.validation.ErrorLocator;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.ValidationErrorHandler;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
  * Contains test methods that verify constraints applicable to KML features, including:
@@ -56,21 +50,19 @@ public class FeatureTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 19")
 	public void verifyViewVolumeContent() {
-		NodeList viewVolNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "ViewVolume");
 		String[] requiredElems = { "leftFov", "rightFov", "bottomFov", "topFov", "near" };
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < viewVolNodes.getLength(); i++) {
-			Element viewVolume = (Element) viewVolNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element viewVolume : this.elementIndex.getElements("ViewVolume")) {
 			for (String elemName : requiredElems) {
 				if (viewVolume.getElementsByTagNameNS(Namespaces.KML22, elemName).getLength() == 0) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.ViewVolume.err1", elemName),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(viewVolume)));
+							new NodeErrorLocator(viewVolume));
 				}
 			}
 			if (Double.valueOf(
 					viewVolume.getElementsByTagNameNS(Namespaces.KML22, "near").item(0).getTextContent().trim()) < 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.ViewVolume.err3"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(viewVolume)));
+						new NodeErrorLocator(viewVolume));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -86,17 +78,15 @@ public class FeatureTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 24")
 	public void verifyPhoneNumberSyntax() {
-		NodeList phoneNums = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "phoneNumber");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < phoneNums.getLength(); i++) {
-			Node phoneNumber = phoneNums.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element phoneNumber : this.elementIndex.getElements("phoneNumber")) {
 			String phoneNumberTxt = phoneNumber.getTextContent();
 			Pattern phoneNumberPattern = Pattern
 				.compile("tel:(\\+)?(\\d*([-.()])?)+(\\d{3}?[-.()])?(\\d{3}[-.()])?(\\d{4,10})?([;].*)?");
 			Matcher matcher = phoneNumberPattern.matcher(phoneNumberTxt);
 			if (!matcher.matches()) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.PhoneNumber.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(phoneNumber)));
+						new NodeErrorLocator(phoneNumber));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -125,10 +115,8 @@ public class FeatureTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 30")
 	public void verifyAtomAuthor() {
-		NodeList authorNodes = this.testSubject.getElementsByTagNameNS(Namespaces.ATOM, "author");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < authorNodes.getLength(); i++) {
-			Element author = (Element) authorNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element author : this.elementIndex.getElementsNS(Namespaces.ATOM, "author")) {
 			Node uri = author.getElementsByTagNameNS(Namespaces.ATOM, "uri").item(0);
 			try {
 				if (null != uri) {
@@ -137,7 +125,7 @@ public class FeatureTests extends BaseFixture {
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.AtomAuthor.err1", e.getMessage()),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(author)));
+						new NodeErrorLocator(author));
 			}
 			Node email = author.getElementsByTagNameNS(Namespaces.ATOM, "email").item(0);
 			try {
@@ -147,7 +135,7 @@ public class FeatureTests extends BaseFixture {
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.AtomAuthor.err2", e.getMessage()),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(author)));
+						new NodeErrorLocator(author));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -163,14 +151,12 @@ public class FeatureTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 31")
 	public void verifyAtomLink() {
-		NodeList linkNodes = this.testSubject.getElementsByTagNameNS(Namespaces.ATOM, "link");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < linkNodes.getLength(); i++) {
-			Element link = (Element) linkNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element link : this.elementIndex.getElementsNS(Namespaces.ATOM, "link")) {
 			String rel = link.getAttribute("rel");
 			if (!rel.equals("related")) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.AtomLink.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(link)));
+						new NodeErrorLocator(link));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -184,23 +170,14 @@ public class FeatureTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 33")
 	public void verifyAltitudeInGroundOverlay() {
-		NodeList grndOverlayAltModeNodes = null;
-		try {
-			grndOverlayAltModeNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:GroundOverlay/kml:altitudeMode",
-					NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < grndOverlayAltModeNodes.getLength(); i++) {
-			Node altitudeMode = grndOverlayAltModeNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element altitudeMode : this.elementIndex.getChildElements("GroundOverlay", "altitudeMode")) {
 			// previous sibling is kml:altitude if present
 			Node prevSibling = altitudeMode.getPreviousSibling();
 			if (altitudeMode.getTextContent().trim().equals("absolute")
 					&& !prevSibling.getLocalName().equals("altitude")) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.GroundOverlay.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(altitudeMode.getParentNode())));
+						new NodeErrorLocator(altitudeMode.getParentNode()));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -215,23 +192,14 @@ public class FeatureTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 35")
 	public void verifyPhotoOverlay() {
-		NodeList photoOverlays = null;
-		try {
-			photoOverlays = XMLUtils.evaluateXPath(this.testSubject, "//kml:PhotoOverlay[not(ancestor::kml:Update)]",
-					NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		ValidationErrorHandler errHandler = createErrorHandler();
 		String[] requiredElems = { "Icon", "ViewVolume", "Point", "Camera" };
-		for (int i = 0; i < photoOverlays.getLength(); i++) {
-			Element photoOverlay = (Element) photoOverlays.item(i);
+		for (Element photoOverlay : this.elementIndex.getElementsNotInUpdate("PhotoOverlay")) {
 			for (String elemName : requiredElems) {
 				if (photoOverlay.getElementsByTagNameNS(Namespaces.KML22, elemName).getLength() == 0) {
 					errHandler.addError(ErrorSeverity.ERROR,
 							ErrorMessage.format("level1.PhotoOverlayMinimal.err", elemName),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(photoOverlay)));
+							new NodeErrorLocator(photoOverlay));
 				}
 			}
 		}
@@ -246,22 +214,14 @@ public class FeatureTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 41")
 	public void verifyRegion() {
-		NodeList regionNodes = null;
-		try {
-			regionNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Region[not(ancestor::kml:Update)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < regionNodes.getLength(); i++) {
-			Node region = regionNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element region : this.elementIndex.getElementsNotInUpdate("Region")) {
 			try {
 				ETSAssert.assertXPath("kml:LatLonAltBox and kml:Lod", region, NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.Region.err", e.getMessage()),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(region)));
+						new NodeErrorLocator(region));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -282,20 +242,12 @@ public class FeatureTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 39")
 	public void verifyRegionLod() {
-		NodeList lodNodes = null;
-		try {
-			lodNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Lod[not(ancestor::kml:Update)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < lodNodes.getLength(); i++) {
-			Element lod = (Element) lodNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element lod : this.elementIndex.getElementsNotInUpdate("Lod")) {
 			Node minLodPixelsNode = lod.getElementsByTagNameNS(Namespaces.KML22, "minLodPixels").item(0);
 			if (null == minLodPixelsNode) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.Lod.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(lod)));
+						new NodeErrorLocator(lod));
 				continue;
 			}
 			double minLodPixels = Double.parseDouble(minLodPixelsNode.getTextContent());
@@ -307,7 +259,7 @@ public class FeatureTests extends BaseFixture {
 			}
 			if (minLodPixels >= maxLodPixels) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.Lod.err3"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(lod)));
+						new NodeErrorLocator(lod));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -1,32 +1,30 @@
 package org.opengis.cite.kml22.level1;
 
-import java.util.logging.Level;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
+import javax.xml.namespace.QName;
 import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.Validator;
-import javax.xml.xpath.XPathExpressionException;
 
-import org.apache.xerces.xs.XSElementDeclaration;
-import org.apache.xerces.xs.XSModel;
 import org.opengis.cite.kml22.BaseFixture;
 import org.opengis.cite.kml22.ETSAssert;
 import org.opengis.cite.kml22.ErrorMessage;
 import org.opengis.cite.kml22.KML22;
 import org.opengis.cite.kml22.Namespaces;
 import org.opengis.cite.kml22.SuiteAttribute;
-import org.opengis.cite.kml22.util.TestSuiteLogger;
-import org.opengis.cite.kml22.util.XMLUtils;
-import org.opengis.cite.validation.ErrorLocator;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
+import org.opengis.cite.kml22.util.ValidationUtils;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.ValidationErrorHandler;
-import org.opengis.cite.validation.XSModelBuilder;
 import org.testng.Assert;
+import org.testng.ISuite;
 import org.testng.ITestContext;
 import org.testng.annotations.Test;
 import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
 /**
  * Contains fundamental test methods that apply to any KML document as a whole.
@@ -52,6 +50,9 @@ public class KmlDocumentTests extends BaseFixture {
 
 	/**
 	 * [{@code Test}] Verifies that the document satisfies all KML 2.2 schema constraints.
+	 * If the test subject was validated while it was being parsed, the errors reported at
+	 * that time (suite attribute {@link SuiteAttribute#SCHEMA_ERRORS}) are used;
+	 * otherwise the document is validated now.
 	 * @param testContext The test context containing the SuiteAttribute.KML_SCHEMA
 	 * attribute required to perform schema validation.
 	 * @see "OGC 07-134r2, ATC 2: XML Schema constraints"
@@ -60,10 +61,16 @@ public class KmlDocumentTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 2")
 	public void verifyXmlSchemaConstraints(ITestContext testContext) {
-		Schema kmlSchema = (Schema) testContext.getSuite().getAttribute(SuiteAttribute.KML_SCHEMA.getName());
+		ISuite suite = testContext.getSuite();
+		Object schemaErrors = suite.getAttribute(SuiteAttribute.SCHEMA_ERRORS.getName());
+		if (ValidationErrorHandler.class.isInstance(schemaErrors) && isSuiteTestSubject(suite)) {
+			ETSAssert.assertSchemaValid(ValidationErrorHandler.class.cast(schemaErrors));
+			return;
+		}
+		Schema kmlSchema = (Schema) suite.getAttribute(SuiteAttribute.KML_SCHEMA.getName());
 		Validator validator = kmlSchema.newValidator();
 		Source source = new DOMSource(this.testSubject);
-		ETSAssert.assertSchemaValid(validator, source);
+		ETSAssert.assertSchemaValid(validator, source, this.maxErrors);
 	}
 
 	/**
@@ -78,42 +85,19 @@ public class KmlDocumentTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 21")
 	public void verifyEmptyObjectHasId(ITestContext testContext) {
-		NodeList kmlElemsNotInUpdate = null;
-		try {
-			kmlElemsNotInUpdate = XMLUtils.evaluateXPath(this.testSubject, "//kml:*[not(ancestor::kml:Update)]",
-					NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
 		Schema kmlSchema = (Schema) testContext.getSuite().getAttribute(SuiteAttribute.KML_SCHEMA.getName());
-		XSModel xsdModel = XSModelBuilder.buildXMLSchemaModel(kmlSchema, Namespaces.KML22);
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < kmlElemsNotInUpdate.getLength(); i++) {
-			Element kmlElem = (Element) kmlElemsNotInUpdate.item(i);
-			XSElementDeclaration decl = xsdModel.getElementDeclaration(kmlElem.getLocalName(),
-					kmlElem.getNamespaceURI());
-			if (decl == null)
-				continue;
-			XSElementDeclaration subGroup = decl.getSubstitutionGroupAffiliation();
-			// Skip elements without a substitution group affiliation
-			if (subGroup == null)
-				continue;
-			// Find elements that can substitute for kml:AbstractObjectGroup
-			while (true) {
-				XSElementDeclaration subDecl = xsdModel.getElementDeclaration(subGroup.getName(),
-						subGroup.getNamespace());
-				XSElementDeclaration declSubGroup = subDecl.getSubstitutionGroupAffiliation();
-				if (declSubGroup == null) {
-					break;
-				}
-				else {
-					subGroup = declSubGroup;
-				}
+		Set<QName> kmlObjectNames = ValidationUtils.getAbstractObjectSubstitutes(kmlSchema);
+		List<String> localNames = new ArrayList<>();
+		for (QName elemName : this.elementIndex.getElementNames()) {
+			if (kmlObjectNames.contains(elemName) && Namespaces.KML22.equals(elemName.getNamespaceURI())) {
+				localNames.add(elemName.getLocalPart());
+			}
+		}
+		ValidationErrorHandler errHandler = createErrorHandler();
+		if (!localNames.isEmpty()) {
+			for (Element kmlElem : this.elementIndex.getElementsNotInUpdate(localNames.toArray(new String[0]))) {
+				checkEmptyElementHasIdAttribute(kmlElem, errHandler);
 			}
-			if (subGroup == null || !subGroup.getName().equals("AbstractObjectGroup"))
-				continue;
-			checkEmptyElementHasIdAttribute(kmlElem, errHandler);
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 	}
@@ -128,7 +112,7 @@ public class KmlDocumentTests extends BaseFixture {
 		if (kmlElem.getChildNodes().getLength() == 0 && kmlElem.getAttribute("id").isEmpty()) {
 			errHandler.addError(ErrorSeverity.ERROR,
 					ErrorMessage.format("level1.EmptyObjects.err", kmlElem.getNamespaceURI(), kmlElem.getLocalName()),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(kmlElem)));
+					new NodeErrorLocator(kmlElem));
 		}
 	}
 
@@ -4,10 +4,11 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 
 import javax.imageio.ImageIO;
-import javax.xml.xpath.XPathExpressionException;
 
 import org.glassfish.jersey.client.ClientResponse;
 import org.opengis.cite.kml22.BaseFixture;
@@ -16,10 +17,14 @@ import org.opengis.cite.kml22.ErrorMessage;
 import org.opengis.cite.kml22.KML22;
 import org.opengis.cite.kml22.Namespaces;
 import org.opengis.cite.kml22.util.ClientUtils;
+import org.opengis.cite.kml22.util.LinkVerifier;
+import org.opengis.cite.kml22.util.LinkVerifier.Referent;
+import org.opengis.cite.kml22.util.LinkVerifier.ReferentCheck;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
+import org.opengis.cite.kml22.util.ReferentCache;
+import org.opengis.cite.kml22.util.ReferentCache.Entry;
 import org.opengis.cite.kml22.util.TestSuiteLogger;
 import org.opengis.cite.kml22.util.URIUtils;
-import org.opengis.cite.kml22.util.XMLUtils;
-import org.opengis.cite.validation.ErrorLocator;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.ValidationErrorHandler;
 import org.testng.Assert;
@@ -46,14 +51,19 @@ public class LinkTests extends BaseFixture {
 
 	private Client client;
 
+	private LinkVerifier linkVerifier;
+
 	/**
-	 * Initializes the HTTP client component. It is configured to follow redirects (status
-	 * code 3nn) and log the request/response messages to the test suite logger (at INFO
-	 * level).
+	 * Obtains the shared HTTP client component (see
+	 * {@link ClientUtils#getSharedClient()}). It is configured to follow redirects
+	 * (status code 3nn), keep connections alive, and log the request/response messages to
+	 * the test suite logger (at INFO level). The referents of link elements are checked
+	 * concurrently by a {@link LinkVerifier}.
 	 */
 	@BeforeClass
 	public void initHttpClient() {
-		this.client = ClientUtils.buildClient();
+		this.client = ClientUtils.getSharedClient();
+		this.linkVerifier = new LinkVerifier();
 	}
 
 	/**
@@ -65,28 +75,20 @@ public class LinkTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 9")
 	public void verifyLinkRefreshInterval() {
-		NodeList linkNodes = null;
-		try {
-			linkNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Link | //kml:Icon", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < linkNodes.getLength(); i++) {
-			Element link = (Element) linkNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element link : this.elementIndex.getElements("Link", "Icon")) {
 			NodeList refreshIntervalNodes = link.getElementsByTagNameNS(Namespaces.KML22, "refreshInterval");
 			boolean refreshIntervalExists = (refreshIntervalNodes.getLength() > 0) ? true : false;
 			if (refreshIntervalExists) {
 				Double refreshInterval = Double.valueOf(refreshIntervalNodes.item(0).getTextContent());
 				if (refreshInterval == null) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinkElements.err1"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(link)));
+							new NodeErrorLocator(link));
 					continue;
 				}
 				if (refreshInterval <= 0) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinkElements.err2"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(link)));
+							new NodeErrorLocator(link));
 				}
 			}
 		}
@@ -102,16 +104,8 @@ public class LinkTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 9")
 	public void verifyLinkViewRefreshTime() {
-		NodeList linkNodes = null;
-		try {
-			linkNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Link | //kml:Icon", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < linkNodes.getLength(); i++) {
-			Element link = (Element) linkNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element link : this.elementIndex.getElements("Link", "Icon")) {
 			NodeList viewRefreshTimeNodes = ((Element) link).getElementsByTagNameNS(Namespaces.KML22,
 					"viewRefreshTime");
 			boolean viewRefreshTimeExists = (viewRefreshTimeNodes.getLength() > 0) ? true : false;
@@ -119,12 +113,12 @@ public class LinkTests extends BaseFixture {
 				Double viewRefreshTime = Double.valueOf(viewRefreshTimeNodes.item(0).getTextContent());
 				if (viewRefreshTime == null) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinkElements.err3"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(link)));
+							new NodeErrorLocator(link));
 					continue;
 				}
 				if (viewRefreshTime <= 0) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinkElements.err4"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(link)));
+							new NodeErrorLocator(link));
 				}
 			}
 		}
@@ -140,28 +134,20 @@ public class LinkTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 9")
 	public void verifyLinkViewBoundScale() {
-		NodeList linkNodes = null;
-		try {
-			linkNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Link | //kml:Icon", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < linkNodes.getLength(); i++) {
-			Element link = (Element) linkNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element link : this.elementIndex.getElements("Link", "Icon")) {
 			NodeList viewBoundScaleNodes = ((Element) link).getElementsByTagNameNS(Namespaces.KML22, "viewBoundScale");
 			boolean viewBoundScaleExists = (viewBoundScaleNodes.getLength() > 0) ? true : false;
 			if (viewBoundScaleExists) {
 				Double viewBoundScale = Double.valueOf(viewBoundScaleNodes.item(0).getTextContent());
 				if (viewBoundScale == null) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinkElements.err5"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(link)));
+							new NodeErrorLocator(link));
 					continue;
 				}
 				if (viewBoundScale <= 0) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinkElements.err6"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(link)));
+							new NodeErrorLocator(link));
 				}
 			}
 		}
@@ -183,31 +169,27 @@ public class LinkTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 10")
 	public void verifyLinkReferent() {
-		NodeList linkNodes = null;
-		try {
-			linkNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Link | //kml:Icon", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < linkNodes.getLength(); i++) {
-			Element linkNode = (Element) linkNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		List<Element> linkNodes = new ArrayList<>();
+		List<Referent> referents = new ArrayList<>();
+		for (Element linkNode : this.elementIndex.getElements("Link", "Icon")) {
 			Element parent = (Element) linkNode.getParentNode();
 			String hrefUrl = getLinkHref(linkNode, errHandler);
 			if (hrefUrl == null || hrefUrl.equals(""))
 				continue;
 			URI hrefUri = URI.create(hrefUrl.trim());
+			String baseURI = linkNode.getOwnerDocument().getBaseURI();
+			ReferentCheck check = null;
 			// Validate link based on its parent element
 			if (parent.getNamespaceURI().equals(Namespaces.KML22) && parent.getLocalName().equals("NetworkLink")) {
-				checkNetworkLinkReferent(linkNode, hrefUri, errHandler);
+				check = target -> assertNetworkLinkReferent(target, baseURI);
 			}
 			else if (parent.getNamespaceURI().equals(Namespaces.KML22) && parent.getLocalName().equals("Model")) {
-				checkModelReferent(linkNode, hrefUri, errHandler);
+				check = target -> assertModelReferent(target, baseURI);
 			}
 			else if (parent.getNamespaceURI().equals(Namespaces.KML22) && (parent.getLocalName().equals("GroundOverlay")
 					|| parent.getLocalName().equals("ScreenOverlay") || parent.getLocalName().equals("PhotoOverlay"))) {
-				checkOverlayIconReferent(linkNode, hrefUrl, errHandler);
+				check = target -> assertOverlayIconReferent(target, baseURI);
 			}
 			else {
 				if (TestSuiteLogger.isLoggable(Level.FINER)) {
@@ -215,7 +197,12 @@ public class LinkTests extends BaseFixture {
 							+ parent.getNamespaceURI() + ":" + parent.getLocalName());
 				}
 			}
+			if (null != check) {
+				linkNodes.add(linkNode);
+				referents.add(new Referent(hrefUri, check));
+			}
 		}
+		addHrefErrors(linkNodes, getLinkVerifier().verify(referents), errHandler);
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 	}
 
@@ -230,21 +217,21 @@ public class LinkTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 18")
 	public void verifyIconReferent() {
-		NodeList iconNodes = null;
-		try {
-			iconNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Icon[@href]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < iconNodes.getLength(); i++) {
-			Element iconNode = (Element) iconNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		List<Element> iconNodes = new ArrayList<>();
+		List<Referent> referents = new ArrayList<>();
+		for (Element iconNode : this.elementIndex.getElements("Icon")) {
+			if (!iconNode.hasAttribute("href")) {
+				continue;
+			}
 			String hrefUrl = getLinkHref(iconNode, errHandler);
 			if (hrefUrl == null || hrefUrl.isEmpty())
 				continue;
-			checkOverlayIconReferent(iconNode, hrefUrl, errHandler);
+			String baseURI = iconNode.getOwnerDocument().getBaseURI();
+			iconNodes.add(iconNode);
+			referents.add(new Referent(URI.create(hrefUrl), target -> assertOverlayIconReferent(target, baseURI)));
 		}
+		addHrefErrors(iconNodes, getLinkVerifier().verify(referents), errHandler);
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 	}
 
@@ -256,20 +243,11 @@ public class LinkTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 20")
 	public void verifyNetworkLinkControlRefresh() {
-		NodeList minRefreshNodes = null;
-		try {
-			minRefreshNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:NetworkLinkControl/kml:minRefreshPeriod",
-					NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < minRefreshNodes.getLength(); i++) {
-			Node minRefresh = minRefreshNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element minRefresh : this.elementIndex.getChildElements("NetworkLinkControl", "minRefreshPeriod")) {
 			if (Double.valueOf(minRefresh.getTextContent().trim()) < 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.NetworkLinkControl.err2"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(minRefresh.getParentNode())));
+						new NodeErrorLocator(minRefresh.getParentNode()));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -303,24 +281,32 @@ public class LinkTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 22")
 	public void verifyUpdateTargetExists() {
-		NodeList updateTargets = null;
-		try {
-			updateTargets = XMLUtils.evaluateXPath(this.testSubject, "//kml:Update/kml:targetHref", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < updateTargets.getLength(); i++) {
-			Node updateTarget = updateTargets.item(i);
-			try {
-				ETSAssert.assertReferentExists("text()", updateTarget, this.client, MediaType.APPLICATION_XML,
-						KML22.KML_MEDIA_TYPE, KML22.KMZ_MEDIA_TYPE);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		List<Element> updateTargets = this.elementIndex.getChildElements("Update", "targetHref");
+		List<Referent> referents = new ArrayList<>(updateTargets.size());
+		for (Element updateTarget : updateTargets) {
+			String href = updateTarget.getTextContent().trim();
+			String nodeName = updateTarget.getNodeName();
+			String baseURI = updateTarget.getOwnerDocument().getBaseURI();
+			URI targetHref = URI.create(href);
+			if (!href.isEmpty() && !targetHref.isAbsolute() && null != baseURI) {
+				// the verifier limits concurrent checks by host
+				targetHref = URIUtils.resolveRelativeURI(baseURI, href);
 			}
-			catch (AssertionError e) {
-				addHrefError(updateTarget, e.getMessage(), errHandler);
+			referents.add(new Referent(targetHref, target -> {
+				if (target.toString().isEmpty()) {
+					throw new AssertionError("URI reference not found in " + nodeName + "text()");
+				}
+				ETSAssert.assertReferentExists(target, baseURI, getReferentCache(), MediaType.APPLICATION_XML,
+						KML22.KML_MEDIA_TYPE, KML22.KMZ_MEDIA_TYPE);
+			}));
+		}
+		List<String> failures = getLinkVerifier().verify(referents);
+		for (int i = 0; i < updateTargets.size(); i++) {
+			if (null != failures.get(i)) {
+				addHrefError(updateTargets.get(i), failures.get(i), errHandler);
 			}
-			ETSAssert.assertValidUpdate(updateTarget.getParentNode());
+			ETSAssert.assertValidUpdate(updateTargets.get(i).getParentNode());
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 	}
@@ -333,20 +319,11 @@ public class LinkTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 40")
 	public void verifyLinkHasHref() {
-		NodeList linkNodes = null;
-		try {
-			linkNodes = XMLUtils.evaluateXPath(this.testSubject,
-					"//kml:Link[not(ancestor::kml:Update)] | //kml:Icon[not(ancestor::kml:Update)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < linkNodes.getLength(); i++) {
-			Element link = (Element) linkNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element link : this.elementIndex.getElementsNotInUpdate("Link", "Icon")) {
 			if (link.getElementsByTagNameNS(Namespaces.KML22, "href").getLength() == 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.Link.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(link)));
+						new NodeErrorLocator(link));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -366,23 +343,35 @@ public class LinkTests extends BaseFixture {
 	 * @param errHandler The error handler that receives any errors that were detected.
 	 */
 	void checkOverlayIconReferent(Node linkNode, String href, ValidationErrorHandler errHandler) {
-		URI uriRef = URI.create(href);
 		try {
-			ETSAssert.assertReferentExists(uriRef, linkNode.getOwnerDocument().getBaseURI(), this.client, "image/*");
+			assertOverlayIconReferent(URI.create(href), linkNode.getOwnerDocument().getBaseURI());
 		}
 		catch (AssertionError e) {
 			addHrefError(linkNode, e.getMessage(), errHandler);
-			return;
 		}
-		BufferedImage image = null;
+	}
+
+	/**
+	 * Asserts that an overlay icon refers to an image resource (see
+	 * {@link #checkOverlayIconReferent(Node, String, ValidationErrorHandler)}). The image
+	 * is retrieved and read only once per test run, however often it is referenced. The
+	 * DOM is not accessed, so this method may be invoked concurrently.
+	 * @param uriRef A URI reference to an image resource.
+	 * @param baseURI The base URI of the document containing the link.
+	 */
+	void assertOverlayIconReferent(URI uriRef, String baseURI) {
+		URI uri = uriRef.isAbsolute() ? uriRef : URIUtils.resolveRelativeURI(baseURI, uriRef.toString());
+		Entry image = getReferentCache().getContent(uri, "image/*");
+		if (!image.exists()) {
+			throw new AssertionError("No acceptable resource available at " + uriRef);
+		}
 		try {
-			image = readImageDataFromURI(uriRef);
+			if (!image.isImage()) {
+				throw new AssertionError("Failed to read image data from " + uriRef);
+			}
 		}
 		catch (IOException iox) {
-			addHrefError(linkNode, iox.getMessage(), errHandler);
-		}
-		if (null == image) {
-			addHrefError(linkNode, "Failed to read image data from " + uriRef, errHandler);
+			throw new AssertionError(iox.getMessage());
 		}
 	}
 
@@ -424,14 +413,24 @@ public class LinkTests extends BaseFixture {
 	 */
 	void checkModelReferent(Element linkNode, URI uriRef, ValidationErrorHandler errHandler) {
 		try {
-			ETSAssert.assertReferentExists(".//kml:href", linkNode, this.client, "model/*",
-					MediaType.APPLICATION_OCTET_STREAM);
+			assertModelReferent(uriRef, linkNode.getOwnerDocument().getBaseURI());
 		}
 		catch (AssertionError e) {
 			addHrefError(linkNode, e.getMessage(), errHandler);
 		}
 	}
 
+	/**
+	 * Asserts that a model link refers to a (3D) graphics resource. The DOM is not
+	 * accessed, so this method may be invoked concurrently.
+	 * @param uriRef A URI reference.
+	 * @param baseURI The base URI of the document containing the link.
+	 */
+	void assertModelReferent(URI uriRef, String baseURI) {
+		ETSAssert.assertReferentExists(uriRef, baseURI, getReferentCache(), "model/*",
+				MediaType.APPLICATION_OCTET_STREAM);
+	}
+
 	/**
 	 * Checks that the network link referent exists. If not, an error is added to the
 	 * handler.
@@ -441,14 +440,24 @@ public class LinkTests extends BaseFixture {
 	 */
 	void checkNetworkLinkReferent(Node linkNode, URI uriRef, ValidationErrorHandler errHandler) {
 		try {
-			ETSAssert.assertReferentExists(".//kml:href", linkNode, this.client, MediaType.APPLICATION_XML,
-					KML22.KML_MEDIA_TYPE, KML22.KMZ_MEDIA_TYPE);
+			assertNetworkLinkReferent(uriRef, linkNode.getOwnerDocument().getBaseURI());
 		}
 		catch (AssertionError e) {
 			addHrefError(linkNode, e.getMessage(), errHandler);
 		}
 	}
 
+	/**
+	 * Asserts that a network link refers to a KML or KMZ resource. The DOM is not
+	 * accessed, so this method may be invoked concurrently.
+	 * @param uriRef A URI reference.
+	 * @param baseURI The base URI of the document containing the link.
+	 */
+	void assertNetworkLinkReferent(URI uriRef, String baseURI) {
+		ETSAssert.assertReferentExists(uriRef, baseURI, getReferentCache(), MediaType.APPLICATION_XML,
+				KML22.KML_MEDIA_TYPE, KML22.KMZ_MEDIA_TYPE);
+	}
+
 	/**
 	 * Gets the value of the child kml:href element in a Link element. If the value is a
 	 * relative URI it is resolved against the base URI of the associated Document node.
@@ -468,7 +477,7 @@ public class LinkTests extends BaseFixture {
 		NodeList hrefNodes = linkElem.getElementsByTagNameNS(Namespaces.KML22, "href");
 		if (hrefNodes.getLength() == 0) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinkReferents.err5"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(linkElem)));
+					new NodeErrorLocator(linkElem));
 			return null;
 		}
 		String href = hrefNodes.item(0).getTextContent().trim();
@@ -485,7 +494,7 @@ public class LinkTests extends BaseFixture {
 		}
 		catch (URISyntaxException e) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinkReferents.err6"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(linkElem)));
+					new NodeErrorLocator(linkElem));
 			return null;
 		}
 		return href;
@@ -498,7 +507,35 @@ public class LinkTests extends BaseFixture {
 	 */
 	void addHrefError(Node linkNode, String details, ValidationErrorHandler errHandler) {
 		errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinkReferents.err1", details),
-				new ErrorLocator(-1, -1, XMLUtils.getXPointer(linkNode.getParentNode())));
+				new NodeErrorLocator(linkNode.getParentNode()));
+	}
+
+	/**
+	 * Reports the failed referent checks, in document order.
+	 * @param linkNodes The link nodes whose referents were checked.
+	 * @param failures The outcome of each check ({@code null} if it succeeded).
+	 * @param errHandler The error handler that receives the errors.
+	 */
+	void addHrefErrors(List<? extends Node> linkNodes, List<String> failures, ValidationErrorHandler errHandler) {
+		for (int i = 0; i < linkNodes.size(); i++) {
+			if (null != failures.get(i)) {
+				addHrefError(linkNodes.get(i), failures.get(i), errHandler);
+			}
+		}
+	}
+
+	private synchronized ReferentCache getReferentCache() {
+		if (null == this.referentCache) {
+			this.referentCache = new ReferentCache(this.client);
+		}
+		return this.referentCache;
+	}
+
+	private LinkVerifier getLinkVerifier() {
+		if (null == this.linkVerifier) {
+			this.linkVerifier = new LinkVerifier();
+		}
+		return this.linkVerifier;
 	}
 
 }
@@ -1,30 +1,39 @@
 package org.opengis.cite.kml22.level1;
 
-import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
 
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LinearRing;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
 import org.opengis.cite.kml22.BaseFixture;
 import org.opengis.cite.kml22.ETSAssert;
 import org.opengis.cite.kml22.ErrorMessage;
 import org.opengis.cite.kml22.Namespaces;
 import org.opengis.cite.kml22.util.KmlGeometryUnmarshaller;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
+import org.opengis.cite.kml22.util.PackedCoordinates;
+import org.opengis.cite.kml22.util.ReferentCache.Entry;
 import org.opengis.cite.kml22.util.TestSuiteLogger;
 import org.opengis.cite.kml22.util.URIUtils;
 import org.opengis.cite.kml22.util.ValidationUtils;
 import org.opengis.cite.kml22.util.XMLUtils;
-import org.opengis.cite.validation.ErrorLocator;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.ValidationErrorHandler;
 import org.testng.Assert;
@@ -68,11 +77,10 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 3")
 	public void verifyGeometryCoordinates() {
-		NodeList coordinatesNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "coordinates");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < coordinatesNodes.getLength(); i++) {
-			Node coordinates = coordinatesNodes.item(i);
-			ValidationUtils.validateCoordinateTuples(coordinates, 2, errHandler);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element coordinates : this.elementIndex.getElements("coordinates")) {
+			ValidationUtils.validateCoordinateTuples(coordinates, this.coordinateStore.getCoordinates(coordinates), 2,
+					errHandler);
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 	}
@@ -97,10 +105,8 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 8")
 	public void verifyLatLonAltBox() {
-		NodeList latLonAltBoxNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "LatLonAltBox");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < latLonAltBoxNodes.getLength(); i++) {
-			Element latLonAltBox = (Element) latLonAltBoxNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element latLonAltBox : this.elementIndex.getElements("LatLonAltBox")) {
 			checkLonValues(latLonAltBox, errHandler);
 			checkLatValues(latLonAltBox, errHandler);
 			checkAltValues(latLonAltBox, errHandler);
@@ -126,16 +132,14 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 11")
 	public void verifyLatLonBox() {
-		NodeList boxNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "LatLonBox");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < boxNodes.getLength(); i++) {
-			Element box = (Element) boxNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element box : this.elementIndex.getElements("LatLonBox")) {
 			try {
 				ETSAssert.assertXPath("kml:north and kml:south and kml:east and kml:west", box, NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LatLonBox.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(box)));
+						new NodeErrorLocator(box));
 				continue;
 			}
 			checkLonValues(box, errHandler);
@@ -154,16 +158,14 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 12")
 	public void verifyGeometryExtrude() {
-		NodeList extrudeNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "extrude");
 		Set<Node> allExtrudedGeometries = new LinkedHashSet<Node>();
-		for (int i = 0; i < extrudeNodes.getLength(); i++) {
-			Node extrude = extrudeNodes.item(i);
+		for (Element extrude : this.elementIndex.getElements("extrude")) {
 			String value = extrude.getTextContent().trim();
 			if (value.equals("true") || value.equals("1")) {
 				allExtrudedGeometries.add(extrude.getParentNode());
 			}
 		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		ValidationErrorHandler errHandler = createErrorHandler();
 		for (Node extrudeGeometry : allExtrudedGeometries) {
 			checkAltitudeModeNotClampToGround((Element) extrudeGeometry, errHandler);
 		}
@@ -182,16 +184,14 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 13")
 	public void verifyGeometryTesselate() {
-		NodeList tessellateNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "tessellate");
 		Set<Node> allTessellatedGeometries = new LinkedHashSet<Node>();
-		for (int i = 0; i < tessellateNodes.getLength(); i++) {
-			Node tessellate = tessellateNodes.item(i);
+		for (Element tessellate : this.elementIndex.getElements("tessellate")) {
 			String value = tessellate.getTextContent().trim();
 			if (value.equals("true") || value.equals("1")) {
 				allTessellatedGeometries.add(tessellate.getParentNode());
 			}
 		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		ValidationErrorHandler errHandler = createErrorHandler();
 		for (Node tessellatedGeom : allTessellatedGeometries) {
 			try {
 				ETSAssert.assertXPath("not(kml:altitudeMode) or (kml:altitudeMode = 'clampToGround')", tessellatedGeom,
@@ -199,7 +199,7 @@ public class SpatialTests extends BaseFixture {
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.GeometryTessellate.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(tessellatedGeom)));
+						new NodeErrorLocator(tessellatedGeom));
 				continue;
 			}
 		}
@@ -214,23 +214,11 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 14")
 	public void verifyPointCoordinates() {
-		NodeList pointCoords = null;
-		try {
-			pointCoords = XMLUtils.evaluateXPath(this.testSubject, "//kml:Point/kml:coordinates", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < pointCoords.getLength(); i++) {
-			Node pointCoordNode = pointCoords.item(i);
-			String coordinates = pointCoordNode.getTextContent();
-			// Split tuples on space (U+0020), carriage return (U+000D),
-			// line feed (U+000A), or tab (U+0009) characters
-			String[] tuples = coordinates.trim().split("[ \\t\\n\\r]{1,}");
-			if (tuples.length > 1) {
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element pointCoordNode : this.elementIndex.getChildElements("Point", "coordinates")) {
+			if (this.coordinateStore.getCoordinates(pointCoordNode).getTupleCount() > 1) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.Point.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(pointCoordNode.getParentNode())));
+						new NodeErrorLocator(pointCoordNode.getParentNode()));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -244,23 +232,11 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 15")
 	public void verifyLineStringCoordinates() {
-		NodeList lineCoords = null;
-		try {
-			lineCoords = XMLUtils.evaluateXPath(this.testSubject, "//kml:LineString/kml:coordinates", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < lineCoords.getLength(); i++) {
-			Node lineCoordNode = lineCoords.item(i);
-			String coordinates = lineCoordNode.getTextContent().trim();
-			// Split tuples on space (U+0020), carriage return (U+000D),
-			// line feed (U+000A), or tab (U+0009) characters
-			String[] tuples = coordinates.split("[ \\t\\n\\r]{1,}");
-			if (tuples.length < 2) {
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element lineCoordNode : this.elementIndex.getChildElements("LineString", "coordinates")) {
+			if (this.coordinateStore.getCoordinates(lineCoordNode).getTupleCount() < 2) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LineString.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(lineCoordNode.getParentNode())));
+						new NodeErrorLocator(lineCoordNode.getParentNode()));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -275,31 +251,18 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 16")
 	public void verifyLinearRingIsClosed() {
-		NodeList ringCoords = null;
-		try {
-			ringCoords = XMLUtils.evaluateXPath(this.testSubject, "//kml:LinearRing/kml:coordinates", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < ringCoords.getLength(); i++) {
-			Node ringCoordNode = ringCoords.item(i);
-			String coordinates = ringCoordNode.getTextContent().trim();
-			// Split tuples on space (U+0020), carriage return (U+000D),
-			// line feed (U+000A), or tab (U+0009) characters
-			String[] tuples = coordinates.split("[ \\t\\n\\r]{1,}");
-			if (tuples.length < 4) {
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element ringCoordNode : this.elementIndex.getChildElements("LinearRing", "coordinates")) {
+			PackedCoordinates tuples = this.coordinateStore.getCoordinates(ringCoordNode);
+			if (tuples.getTupleCount() < 4) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinearRingControlPoints.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(ringCoordNode.getParentNode())));
+						new NodeErrorLocator(ringCoordNode.getParentNode()));
 				continue;
 			}
-			String[] startPoint = tuples[0].split(",");
-			String[] endPoint = tuples[tuples.length - 1].split(",");
 			// WARNING: Should compare numeric values rather than strings
-			if (!Arrays.equals(startPoint, endPoint)) {
+			if (!tuples.isClosed()) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LinearRingControlPoints.err2"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(ringCoordNode.getParentNode())));
+						new NodeErrorLocator(ringCoordNode.getParentNode()));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -313,7 +276,9 @@ public class SpatialTests extends BaseFixture {
 	 * <li>if it is not a descendant of kml:Update, then the kml:Polygon has a child
 	 * kml:outerBoundaryIs element;</li>
 	 * <li>each interior boundary defines a hole in the Polygon (that is, each inner ring
-	 * lies within the exterior boundary).</li>
+	 * lies within the exterior boundary);</li>
+	 * <li>the interiors of any two interior boundaries do not intersect (they may touch
+	 * at a point).</li>
 	 * </ol>
 	 *
 	 * This test case reflects the essential definition of a polygon. No particular line
@@ -324,22 +289,26 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 17")
 	public void verifyPolygonBoundary() {
-		NodeList polygons = null;
-		try {
-			polygons = XMLUtils.evaluateXPath(this.testSubject, "//kml:Polygon[not(ancestor::kml:Update)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		List<Element> polygons = this.elementIndex.getElementsNotInUpdate("Polygon");
+		// the DOM is only accessed on this thread; the rings are checked concurrently
+		NodeList[] ringLists = new NodeList[polygons.size()];
+		PackedCoordinates[][] rings = new PackedCoordinates[polygons.size()][];
+		for (int i = 0; i < ringLists.length; i++) {
+			Element polygon = polygons.get(i);
+			if (polygon.getElementsByTagNameNS(Namespaces.KML22, "outerBoundaryIs").getLength() > 0) {
+				ringLists[i] = polygon.getElementsByTagNameNS(Namespaces.KML22, "LinearRing");
+				rings[i] = getRingCoordinates(ringLists[i]);
+			}
 		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < polygons.getLength(); i++) {
-			Element polygon = (Element) polygons.item(i);
-			if (polygon.getElementsByTagNameNS(Namespaces.KML22, "outerBoundaryIs").getLength() == 0) {
+		List<RingError>[] ringErrors = checkBoundaries(rings, this.parallelism);
+		for (int i = 0; i < ringLists.length; i++) {
+			if (null == ringLists[i]) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.PolygonBoundary.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(polygon)));
+						new NodeErrorLocator(polygons.get(i)));
 				continue;
 			}
-			checkInnerBoundaries(polygon, errHandler);
+			reportRingErrors(ringLists[i], ringErrors[i], errHandler);
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 	}
@@ -361,21 +330,18 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 29")
 	public void verifyTextureFileAliasInModel() {
-		NodeList aliasNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "Alias");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		ValidationErrorHandler errHandler = createErrorHandler();
 		Element resourceMap = null;
-		for (int i = 0; i < aliasNodes.getLength(); i++) {
-			Element alias = (Element) aliasNodes.item(i);
+		for (Element alias : this.elementIndex.getElements("Alias")) {
 			if (null == resourceMap) {
 				resourceMap = (Element) alias.getParentNode();
 			}
 			try {
-				ETSAssert.assertReferentExists("kml:targetHref", alias, null, "image/*");
+				ETSAssert.assertReferentExists("kml:targetHref", alias, this.referentCache, "image/*");
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR,
-						ErrorMessage.format("level1.LinkReferents.err1", e.getMessage()),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(alias)));
+						ErrorMessage.format("level1.LinkReferents.err1", e.getMessage()), new NodeErrorLocator(alias));
 				continue;
 			}
 		}
@@ -394,19 +360,13 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 32")
 	public void verifyModelOrientationNotEmpty() {
-		NodeList nodeList = null;
-		try {
-			nodeList = XMLUtils.evaluateXPath(this.testSubject,
-					"//kml:Orientation[not(ancestor::kml:Update) and not(kml:*)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < nodeList.getLength(); i++) {
-			Node emptyOrientation = nodeList.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element orientation : this.elementIndex.getElementsNotInUpdate("Orientation")) {
+			if (hasKmlChildElement(orientation)) {
+				continue;
+			}
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.OrientationMinimal.err"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(emptyOrientation)));
+					new NodeErrorLocator(orientation));
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 	}
@@ -432,22 +392,14 @@ public class SpatialTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 34")
 	public void verifyModelContent() {
-		NodeList modelNodes = null;
-		try {
-			modelNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Model[not(ancestor::kml:Update)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < modelNodes.getLength(); i++) {
-			Element model = (Element) modelNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element model : this.elementIndex.getElementsNotInUpdate("Model")) {
 			try {
 				ETSAssert.assertXPath("kml:Link and kml:Location", model, NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.Model.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(model)));
+						new NodeErrorLocator(model));
 			}
 			NodeList resourceMaps = model.getElementsByTagNameNS(Namespaces.KML22, "ResourceMap");
 			if (resourceMaps.getLength() > 0) {
@@ -482,23 +434,26 @@ public class SpatialTests extends BaseFixture {
 	 * violations.
 	 */
 	void checkModelResourceMap(Element resourceMap, ValidationErrorHandler errHandler) {
-		File sourceModel = null;
+		Entry sourceModel = null;
 		try {
 			Node modelHref = (Node) XMLUtils.evaluateXPath(resourceMap, "../kml:Link/kml:href", NS_MAP,
 					XPathConstants.NODE);
 			URI modelUri = URI.create(modelHref.getTextContent().trim());
 			if (!modelUri.isAbsolute()) {
 				String base = resourceMap.getOwnerDocument().getDocumentURI();
-				modelUri = URI.create(base).resolve(modelUri);
+				modelUri = URIUtils.resolveRelativeURI(base, modelUri.toString());
+			}
+			Entry model = this.referentCache.getContent(modelUri);
+			if (model.exists()) {
+				sourceModel = model;
 			}
-			sourceModel = URIUtils.dereferenceURI(modelUri);
 		}
 		catch (Exception e) {
 			TestSuiteLogger.log(Level.WARNING, "Unable to locate Model referent. ", e);
 		}
 		if (null == sourceModel) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.Alias.err4"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(resourceMap.getParentNode())));
+					new NodeErrorLocator(resourceMap.getParentNode()));
 			return;
 		}
 		NodeList aliases = resourceMap.getElementsByTagNameNS(Namespaces.KML22, "Alias");
@@ -513,7 +468,11 @@ public class SpatialTests extends BaseFixture {
 			boolean foundFileName = false;
 			Scanner scanner = null;
 			try {
-				scanner = new Scanner(sourceModel);
+				InputStream input = sourceModel.openStream();
+				if (null == input) {
+					throw new FileNotFoundException(sourceModel.getURI().toString());
+				}
+				scanner = new Scanner(input);
 				while (scanner.hasNextLine()) {
 					if (scanner.nextLine().indexOf(sourceFileName) > -1) {
 						foundFileName = true;
@@ -521,7 +480,7 @@ public class SpatialTests extends BaseFixture {
 					}
 				}
 			}
-			catch (FileNotFoundException e) {
+			catch (IOException e) {
 				TestSuiteLogger.log(Level.FINE, "Model not found.", e);
 			}
 			finally {
@@ -531,35 +490,119 @@ public class SpatialTests extends BaseFixture {
 			}
 			if (!foundFileName) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.Alias.err5", sourceFileName),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(alias)));
+						new NodeErrorLocator(alias));
 			}
 		}
 	}
 
 	/**
 	 * An error is reported if any inner boundary of a polygon is not within the outer
-	 * boundary.
+	 * boundary, or if the interiors of two inner boundaries intersect.
 	 * @param polygonElem A DOM Element representing a kml:Polygon element.
 	 * @param errHandler The error handler that receives any errors that were detected.
 	 */
 	void checkInnerBoundaries(Element polygonElem, ValidationErrorHandler errHandler) {
 		NodeList ringNodes = polygonElem.getElementsByTagNameNS(Namespaces.KML22, "LinearRing");
-		// rings are in document order, so outer ring is first.
-		if (ringNodes.getLength() > 1) {
-			Element outerRingElem = (Element) ringNodes.item(0);
-			KmlGeometryUnmarshaller unmarshaller = new KmlGeometryUnmarshaller();
-			LinearRing outerRing = (LinearRing) unmarshaller.unmarshalKmlGeometry(outerRingElem);
-			GeometryFactory geoFactory = new GeometryFactory();
-			Polygon polygon = geoFactory.createPolygon(outerRing, null);
-			for (int i = 1; i < ringNodes.getLength(); i++) {
-				Element ringElem = (Element) ringNodes.item(i);
-				LinearRing innerRing = (LinearRing) unmarshaller.unmarshalKmlGeometry(ringElem);
-				if (!innerRing.within(polygon)) {
-					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.PolygonBoundary.err2"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(ringNodes.item(i))));
+		PackedCoordinates[] rings = getRingCoordinates(ringNodes);
+		reportRingErrors(ringNodes, findRingErrors(rings, new KmlGeometryUnmarshaller()), errHandler);
+	}
+
+	/**
+	 * Obtains the coordinate tuples of the given kml:LinearRing elements from the
+	 * coordinate store.
+	 * @param ringNodes A list of kml:LinearRing elements.
+	 * @return An array containing the coordinates of each ring.
+	 */
+	PackedCoordinates[] getRingCoordinates(NodeList ringNodes) {
+		PackedCoordinates[] rings = new PackedCoordinates[ringNodes.getLength()];
+		for (int i = 0; i < rings.length; i++) {
+			Node coords = ((Element) ringNodes.item(i)).getElementsByTagNameNS(Namespaces.KML22, "coordinates").item(0);
+			rings[i] = (null != coords) ? this.coordinateStore.getCoordinates(coords) : PackedCoordinates.parse("");
+		}
+		return rings;
+	}
+
+	/**
+	 * Checks the boundaries of several polygons, using up to the given number of threads.
+	 * The polygons are checked independently on a ForkJoinPool.
+	 * @param rings The coordinates of the rings of each polygon (outer ring first); an
+	 * entry is ignored if it is null.
+	 * @param parallelism The maximum number of threads to use.
+	 * @return An array containing the errors found in each polygon.
+	 */
+	static List<RingError>[] checkBoundaries(PackedCoordinates[][] rings, int parallelism) {
+		@SuppressWarnings("unchecked")
+		List<RingError>[] errors = new List[rings.length];
+		KmlGeometryUnmarshaller unmarshaller = new KmlGeometryUnmarshaller();
+		if (parallelism < 2 || rings.length < 2) {
+			new BoundaryCheck(rings, errors, unmarshaller, 0, rings.length).compute();
+			return errors;
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new BoundaryCheck(rings, errors, unmarshaller, 0, rings.length));
+		}
+		finally {
+			pool.shutdown();
+		}
+		return errors;
+	}
+
+	/**
+	 * Checks that each inner ring lies within the outer ring and that the interiors of
+	 * the inner rings do not intersect. The outer boundary is prepared only once, and
+	 * candidate pairs of overlapping holes are found using a spatial index of their
+	 * envelopes, so polygons with many holes can be checked efficiently. The DOM is not
+	 * accessed.
+	 * @param rings The coordinates of the rings of a polygon (outer ring first).
+	 * @param unmarshaller Creates JTS LinearRing objects.
+	 * @return A list of errors (empty if none were found).
+	 */
+	static List<RingError> findRingErrors(PackedCoordinates[] rings, KmlGeometryUnmarshaller unmarshaller) {
+		int nHoles = rings.length - 1;
+		if (nHoles < 1) {
+			return Collections.emptyList();
+		}
+		List<RingError> errors = new ArrayList<>();
+		GeometryFactory geoFactory = new GeometryFactory();
+		LinearRing outerRing = unmarshaller.createLinearRing(rings[0]);
+		PreparedGeometry polygon = PreparedGeometryFactory.prepare(geoFactory.createPolygon(outerRing));
+		Polygon[] holes = new Polygon[nHoles];
+		STRtree holeIndex = new STRtree();
+		for (int i = 0; i < nHoles; i++) {
+			LinearRing innerRing = unmarshaller.createLinearRing(rings[i + 1]);
+			if (!polygon.contains(innerRing)) {
+				errors.add(new RingError(i + 1, 0));
+			}
+			holes[i] = geoFactory.createPolygon(innerRing);
+			holeIndex.insert(innerRing.getEnvelopeInternal(), i);
+		}
+		for (int i = 0; i < nHoles; i++) {
+			for (Object candidate : holeIndex.query(holes[i].getEnvelopeInternal())) {
+				int j = (Integer) candidate;
+				// holes may touch, but their interiors must not intersect
+				if (j < i && holes[i].relate(holes[j], "T********")) {
+					errors.add(new RingError(i + 1, j + 1));
+					break;
 				}
 			}
 		}
+		return errors;
+	}
+
+	/**
+	 * Reports the errors found in the boundary of a polygon, in document order.
+	 * @param ringNodes The kml:LinearRing elements of the polygon.
+	 * @param errors The errors found in the rings.
+	 * @param errHandler The error handler that receives the errors.
+	 */
+	void reportRingErrors(NodeList ringNodes, List<RingError> errors, ValidationErrorHandler errHandler) {
+		errors.sort(null);
+		for (RingError error : errors) {
+			String msg = (error.otherRing == 0) ? ErrorMessage.format("level1.PolygonBoundary.err2")
+					: ErrorMessage.format("level1.PolygonBoundary.err3", error.otherRing);
+			errHandler.addError(ErrorSeverity.ERROR, msg, new NodeErrorLocator(ringNodes.item(error.ring)));
+		}
 	}
 
 	/**
@@ -573,13 +616,13 @@ public class SpatialTests extends BaseFixture {
 		// default mode is clampToGround
 		if (altitudeModeNodes.getLength() == 0) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.GeometryExtrude.err1"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(geometry)));
+					new NodeErrorLocator(geometry));
 			return;
 		}
 		String altitudeMode = altitudeModeNodes.item(0).getTextContent().trim();
 		if (altitudeMode.equals("clampToGround")) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.GeometryExtrude.err2"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(geometry)));
+					new NodeErrorLocator(geometry));
 		}
 	}
 
@@ -602,12 +645,12 @@ public class SpatialTests extends BaseFixture {
 		}
 		if (east == null || west == null) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LatLonAltBox.err1"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(box)));
+					new NodeErrorLocator(box));
 			return;
 		}
 		if (east <= west) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LatLonAltBox.err2"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(box)));
+					new NodeErrorLocator(box));
 		}
 	}
 
@@ -630,12 +673,12 @@ public class SpatialTests extends BaseFixture {
 		}
 		if (north == null || south == null) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LatLonAltBox.err3"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(box)));
+					new NodeErrorLocator(box));
 			return;
 		}
 		if (north <= south) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LatLonAltBox.err4"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(box)));
+					new NodeErrorLocator(box));
 		}
 	}
 
@@ -661,12 +704,12 @@ public class SpatialTests extends BaseFixture {
 		}
 		if (minAltitude == null || maxAltitude == null) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LatLonAltBox.err5"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(latLonAltBox)));
+					new NodeErrorLocator(latLonAltBox));
 			return;
 		}
 		if (minAltitude > maxAltitude) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LatLonAltBox.err6"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(latLonAltBox)));
+					new NodeErrorLocator(latLonAltBox));
 		}
 	}
 
@@ -682,16 +725,83 @@ public class SpatialTests extends BaseFixture {
 		boolean altitudeModeExists = (altitudeModeNodes.getLength() > 0) ? true : false;
 		if (!altitudeModeExists) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LatLonAltBox.err7"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(latLonAltBox)));
+					new NodeErrorLocator(latLonAltBox));
 			return;
 		}
 		if (altitudeModeExists) {
 			String altitudeModeStr = altitudeModeNodes.item(0).getTextContent();
 			if (altitudeModeStr.equals("clampToGround")) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LatLonAltBox.err8"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(latLonAltBox)));
+						new NodeErrorLocator(latLonAltBox));
+			}
+		}
+	}
+
+	/**
+	 * A constraint violation in the boundary of a polygon. The rings are identified by
+	 * position (the outer ring is 0).
+	 */
+	static final class RingError implements Comparable<RingError> {
+
+		/** The inner ring that is invalid */
+		final int ring;
+
+		/** The ring it overlaps, or 0 if it is not within the outer ring */
+		final int otherRing;
+
+		RingError(int ring, int otherRing) {
+			this.ring = ring;
+			this.otherRing = otherRing;
+		}
+
+		@Override
+		public int compareTo(RingError other) {
+			return (ring != other.ring) ? Integer.compare(ring, other.ring)
+					: Integer.compare(otherRing, other.otherRing);
+		}
+
+	}
+
+	/**
+	 * Checks a range of polygons, splitting the range until a single polygon remains.
+	 */
+	@SuppressWarnings("serial")
+	static final class BoundaryCheck extends RecursiveAction {
+
+		private final PackedCoordinates[][] rings;
+
+		private final List<RingError>[] errors;
+
+		private final KmlGeometryUnmarshaller unmarshaller;
+
+		private final int from;
+
+		private final int to;
+
+		BoundaryCheck(PackedCoordinates[][] rings, List<RingError>[] errors, KmlGeometryUnmarshaller unmarshaller,
+				int from, int to) {
+			this.rings = rings;
+			this.errors = errors;
+			this.unmarshaller = unmarshaller;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			// split only when running in a pool (never in the common pool)
+			if (to - from > 1 && getPool() != null) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new BoundaryCheck(rings, errors, unmarshaller, from, mid),
+						new BoundaryCheck(rings, errors, unmarshaller, mid, to));
+				return;
+			}
+			for (int i = from; i < to; i++) {
+				errors[i] = (null != rings[i]) ? findRingErrors(rings[i], unmarshaller)
+						: Collections.<RingError>emptyList();
 			}
 		}
+
 	}
 
 }
@@ -0,0 +1,231 @@
+package org.opengis.cite.kml22.level1;
+
+import javax.xml.namespace.QName;
+
+import org.opengis.cite.kml22.KML22;
+import org.opengis.cite.kml22.Namespaces;
+import org.opengis.cite.kml22.SuiteAttribute;
+import org.opengis.cite.kml22.TestRunArg;
+import org.opengis.cite.kml22.util.KmlStreamValidator;
+import org.opengis.cite.kml22.util.KmlStreamValidator.Check;
+import org.opengis.cite.validation.ValidationErrorHandler;
+import org.testng.Assert;
+import org.testng.ITestContext;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * <p>
+ * Reports the results of checking the test subject in streaming mode (see
+ * {@link TestRunArg#MODE}). The document was read in a single pass by a
+ * {@link KmlStreamValidator} before the test run started; each test method reports the
+ * violations of one constraint. The same constraints are checked by the corresponding
+ * methods in the other test classes if the document was loaded into memory.
+ * </p>
+ *
+ * <p>
+ * These tests are run only if streaming mode was selected; otherwise the test methods are
+ * removed by the {@link org.opengis.cite.kml22.SuiteFixtureListener}.
+ * </p>
+ */
+public class StreamingTests {
+
+	private KmlStreamValidator streamValidator;
+
+	/**
+	 * Obtains the results of the streaming pass from the ISuite test context (suite
+	 * attribute {@link SuiteAttribute#STREAM_VALIDATOR}).
+	 * @param testContext The test (group) context.
+	 */
+	@BeforeClass(alwaysRun = true)
+	public void obtainStreamingResults(ITestContext testContext) {
+		Object obj = testContext.getSuite().getAttribute(SuiteAttribute.STREAM_VALIDATOR.getName());
+		if (!KmlStreamValidator.class.isInstance(obj)) {
+			throw new SkipException("Streaming mode not selected.");
+		}
+		this.streamValidator = KmlStreamValidator.class.cast(obj);
+	}
+
+	/**
+	 * Sets the results of a streaming pass (intended only to facilitate unit testing).
+	 * @param streamValidator A KmlStreamValidator that has read some document.
+	 */
+	public void setStreamValidator(KmlStreamValidator streamValidator) {
+		this.streamValidator = streamValidator;
+	}
+
+	/**
+	 * [{@code Test}] Verify that the root element of the document has [local name] =
+	 * "kml" and [namespace name] = "http://www.opengis.net/kml/2.2".
+	 *
+	 * @see "OGC 07-134r2, ATC 1: Root element"
+	 */
+	@Test(description = "Implements ATC 1")
+	public void verifyDocumentElement() {
+		QName docElemName = this.streamValidator.getDocumentElementName();
+		Assert.assertEquals(docElemName.getLocalPart(), KML22.DOC_ELEMENT,
+				"Document element has unexpected [local name].");
+		Assert.assertEquals(docElemName.getNamespaceURI(), Namespaces.KML22,
+				"Document element has unexpected [namespace name].");
+	}
+
+	/**
+	 * [{@code Test}] Verifies that kml:coordinates elements contain 2D/3D tuples with
+	 * valid decimal values.
+	 *
+	 * @see "OGC 07-134r2, ATC 3: Geometry coordinates"
+	 */
+	@Test(description = "Implements ATC 3")
+	public void verifyGeometryCoordinates() {
+		assertNoErrors(Check.GEOMETRY_COORDINATES);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a kml:TimeSpan element has a kml:begin or kml:end
+	 * child and denotes a valid interval.
+	 *
+	 * @see "OGC 07-134r2, ATC 4: TimeSpan"
+	 */
+	@Test(description = "Implements ATC 4")
+	public void verifyTimeSpan() {
+		assertNoErrors(Check.TIME_SPAN);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a kml:TimeStamp element has a child kml:when element.
+	 *
+	 * @see "OGC 07-134r2, ATC 5: TimeStamp"
+	 */
+	@Test(description = "Implements ATC 5")
+	public void verifyTimeStamp() {
+		assertNoErrors(Check.TIME_STAMP);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that the content of a kml:LatLonAltBox element denotes a
+	 * valid region.
+	 *
+	 * @see "OGC 07-134r2, ATC 8: Region - LatLonAltBox"
+	 */
+	@Test(description = "Implements ATC 8")
+	public void verifyLatLonAltBox() {
+		assertNoErrors(Check.LAT_LON_ALT_BOX);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a link element has a positive kml:refreshInterval
+	 * value (if present).
+	 *
+	 * @see "OGC 07-134r2, ATC 9: Link elements"
+	 */
+	@Test(description = "Implements ATC 9")
+	public void verifyLinkRefreshInterval() {
+		assertNoErrors(Check.LINK_REFRESH_INTERVAL);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a link element has a positive kml:viewRefreshTime
+	 * value (if present).
+	 *
+	 * @see "OGC 07-134r2, ATC 9: Link elements"
+	 */
+	@Test(description = "Implements ATC 9")
+	public void verifyLinkViewRefreshTime() {
+		assertNoErrors(Check.LINK_VIEW_REFRESH_TIME);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a link element has a positive kml:viewBoundScale value
+	 * (if present).
+	 *
+	 * @see "OGC 07-134r2, ATC 9: Link elements"
+	 */
+	@Test(description = "Implements ATC 9")
+	public void verifyLinkViewBoundScale() {
+		assertNoErrors(Check.LINK_VIEW_BOUND_SCALE);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a kml:LatLonBox element has all required children and
+	 * denotes a valid extent.
+	 *
+	 * @see "OGC 07-134r2, ATC 11: LatLonBox"
+	 */
+	@Test(description = "Implements ATC 11")
+	public void verifyLatLonBox() {
+		assertNoErrors(Check.LAT_LON_BOX);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a kml:Point geometry contains exactly one coordinate
+	 * tuple.
+	 *
+	 * @see "OGC 07-134r2, ATC 14: Point"
+	 */
+	@Test(description = "Implements ATC 14")
+	public void verifyPointCoordinates() {
+		assertNoErrors(Check.POINT);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a kml:LineString geometry contains at least two
+	 * coordinate tuples.
+	 *
+	 * @see "OGC 07-134r2, ATC 15: LineString"
+	 */
+	@Test(description = "Implements ATC 15")
+	public void verifyLineStringCoordinates() {
+		assertNoErrors(Check.LINE_STRING);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a kml:LinearRing geometry contains at least 4
+	 * coordinate tuples and is closed.
+	 *
+	 * @see "OGC 07-134r2, ATC 16: LinearRing - control points"
+	 */
+	@Test(description = "Implements ATC 16")
+	public void verifyLinearRingIsClosed() {
+		assertNoErrors(Check.LINEAR_RING);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that the value of the kml:phoneNumber element is a 'tel'
+	 * URI that conforms to RFC 3966.
+	 *
+	 * @see "OGC 07-134r2, ATC 24: PhoneNumber"
+	 */
+	@Test(description = "Implements ATC 24")
+	public void verifyPhoneNumberSyntax() {
+		assertNoErrors(Check.PHONE_NUMBER);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a kml:LookAt element (not in kml:Update) has all
+	 * required children and valid values.
+	 *
+	 * @see "OGC 07-134r2, ATC 38: LookAt"
+	 */
+	@Test(description = "Implements ATC 38")
+	public void verifyLookAt() {
+		assertNoErrors(Check.LOOK_AT);
+	}
+
+	/**
+	 * [{@code Test}] Verifies that a kml:Lod element (not in kml:Update) has a
+	 * kml:minLodPixels child and valid pixel values.
+	 *
+	 * @see "OGC 07-134r2, ATC 39: Lod"
+	 */
+	@Test(description = "Implements ATC 39")
+	public void verifyRegionLod() {
+		assertNoErrors(Check.LOD);
+	}
+
+	void assertNoErrors(Check check) {
+		ValidationErrorHandler errHandler = this.streamValidator.getErrorHandler(check);
+		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
+	}
+
+}
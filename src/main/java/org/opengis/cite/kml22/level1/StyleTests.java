@@ -2,21 +2,23 @@ package org.opengis.cite.kml22.level1;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 
 import javax.xml.namespace.QName;
-import javax.xml.xpath.XPathExpressionException;
 
 import org.opengis.cite.kml22.BaseFixture;
 import org.opengis.cite.kml22.ETSAssert;
 import org.opengis.cite.kml22.ErrorMessage;
 import org.opengis.cite.kml22.Namespaces;
+import org.opengis.cite.kml22.util.KMLUtils;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
 import org.opengis.cite.kml22.util.TestSuiteLogger;
 import org.opengis.cite.kml22.util.URIUtils;
 import org.opengis.cite.kml22.util.XMLUtils;
-import org.opengis.cite.validation.ErrorLocator;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.ValidationErrorHandler;
 import org.testng.Assert;
@@ -24,7 +26,6 @@ import org.testng.annotations.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
  * Contains test methods that apply to style definitions.
@@ -57,13 +58,11 @@ public class StyleTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 6")
 	public void verifyStyleReference() {
-		NodeList allStyleUrlNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "styleUrl");
 		// use LinkedHashSet to preserve document order
 		Set<Node> relativeStyleUrls = new LinkedHashSet<Node>();
 		Set<Node> absoluteStyleUrls = new LinkedHashSet<Node>();
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < allStyleUrlNodes.getLength(); i++) {
-			Node styleUrl = allStyleUrlNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element styleUrl : this.elementIndex.getElements("styleUrl")) {
 			String url = styleUrl.getTextContent();
 			URI uri = null;
 			try {
@@ -71,7 +70,7 @@ public class StyleTests extends BaseFixture {
 			}
 			catch (URISyntaxException e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.StyleReference.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(styleUrl)));
+						new NodeErrorLocator(styleUrl));
 				continue;
 			}
 			if (uri.isAbsolute()) {
@@ -81,14 +80,15 @@ public class StyleTests extends BaseFixture {
 				relativeStyleUrls.add(styleUrl);
 			}
 		}
+		Map<String, Map<String, Element>> targets = new HashMap<String, Map<String, Element>>();
 		for (Node relativeStyleUrl : relativeStyleUrls) {
 			checkFragmentIdentifier(relativeStyleUrl, errHandler);
-			checkStyleTarget(relativeStyleUrl, errHandler);
+			checkStyleTarget(relativeStyleUrl, errHandler, targets);
 		}
 		for (Node absoluteStyleUrl : absoluteStyleUrls) {
 			checkFragmentIdentifier(absoluteStyleUrl, errHandler);
 			checkUriScheme(absoluteStyleUrl, errHandler);
-			checkStyleTarget(absoluteStyleUrl, errHandler);
+			checkStyleTarget(absoluteStyleUrl, errHandler, targets);
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 
@@ -105,17 +105,12 @@ public class StyleTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 7")
 	public void verifySharedStyleHasId() {
-		NodeList sharedStyles = null;
-		try {
-			sharedStyles = XMLUtils.evaluateXPath(this.testSubject,
-					"//kml:Document/kml:Style | //kml:Document/kml:StyleMap", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, this.getClass().getName(), xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < sharedStyles.getLength(); i++) {
-			Element style = (Element) sharedStyles.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element style : this.elementIndex.getElements("Style", "StyleMap")) {
+			Node parent = style.getParentNode();
+			if (!"Document".equals(parent.getLocalName()) || !Namespaces.KML22.equals(parent.getNamespaceURI())) {
+				continue;
+			}
 			if (style.getAttribute("id").isEmpty()) {
 				addError(style, "level1.SharedStyle.err3", errHandler);
 			}
@@ -133,22 +128,14 @@ public class StyleTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 36")
 	public void verifyStyleMap() {
-		NodeList styleMapPairs = null;
-		try {
-			styleMapPairs = XMLUtils.evaluateXPath(this.testSubject, "//kml:Pair[not(ancestor::kml:Update)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < styleMapPairs.getLength(); i++) {
-			Node pair = styleMapPairs.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element pair : this.elementIndex.getElementsNotInUpdate("Pair")) {
 			try {
 				ETSAssert.assertXPath("kml:key and (kml:styleUrl | kml:Style | kml:StyleMap)", pair, NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.Pair.err", e.getMessage()),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(pair)));
+						new NodeErrorLocator(pair));
 				continue;
 			}
 		}
@@ -164,19 +151,11 @@ public class StyleTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 37")
 	public void verifyItemIconURI() {
-		NodeList itemIcons = null;
-		try {
-			itemIcons = XMLUtils.evaluateXPath(this.testSubject, "//kml:ItemIcon[not(ancestor::kml:Update)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < itemIcons.getLength(); i++) {
-			Element itemIcon = (Element) itemIcons.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element itemIcon : this.elementIndex.getElementsNotInUpdate("ItemIcon")) {
 			if (itemIcon.getElementsByTagNameNS(Namespaces.KML22, "href").getLength() == 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.ItemIcon.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(itemIcon)));
+						new NodeErrorLocator(itemIcon));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -230,6 +209,19 @@ public class StyleTests extends BaseFixture {
 	 * @param errHandler The error handler that receives any errors that were detected.
 	 */
 	void checkStyleTarget(Node styleUrl, ValidationErrorHandler errHandler) {
+		checkStyleTarget(styleUrl, errHandler, new HashMap<String, Map<String, Element>>());
+	}
+
+	/**
+	 * An error is produced if a kml:styleUrl does not refer to a valid style element
+	 * (which substitutes for <em>kml:AbstractStyleSelectorGroup</em>). Each referenced
+	 * document is read and indexed only once.
+	 * @param styleUrl A kml:styleUrl element.
+	 * @param errHandler The error handler that receives any errors that were detected.
+	 * @param targets The elements in the documents referenced so far, by id and keyed by
+	 * document URI; a {@code null} value records a document that could not be read.
+	 */
+	void checkStyleTarget(Node styleUrl, ValidationErrorHandler errHandler, Map<String, Map<String, Element>> targets) {
 		URI uri;
 		try {
 			uri = new URI(styleUrl.getTextContent());
@@ -243,35 +235,41 @@ public class StyleTests extends BaseFixture {
 			addError(styleUrl, "level1.StyleReference.err4", errHandler);
 			return;
 		}
-		Document rspDoc = null;
-		if (uri.toString().startsWith("#")) {
-			// in same document
-			rspDoc = styleUrl.getOwnerDocument();
-		}
-		else if (!uri.isAbsolute()) { // Resolve relative URI
-			String uriRef = uri.toString().replaceAll("#" + fragment, "");
-			String docURI = styleUrl.getOwnerDocument().getDocumentURI();
-			uri = URIUtils.resolveRelativeURI(docURI, uriRef);
+		// the same document is keyed by the empty string, which is not a valid target URI
+		String docKey = "";
+		if (!uri.toString().startsWith("#")) {
+			if (!uri.isAbsolute()) { // Resolve relative URI
+				String uriRef = uri.toString().replaceAll("#" + fragment, "");
+				String docURI = styleUrl.getOwnerDocument().getDocumentURI();
+				uri = URIUtils.resolveRelativeURI(docURI, uriRef);
+			}
+			docKey = uri.toString().replaceAll("#" + fragment, "");
 		}
-		if (null == rspDoc) {
-			try {
-				rspDoc = URIUtils.parseURI(uri);
+		if (!targets.containsKey(docKey)) {
+			Document rspDoc = null;
+			if (docKey.isEmpty()) {
+				// in same document
+				rspDoc = styleUrl.getOwnerDocument();
 			}
-			catch (Exception e) {
-				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.StyleReference.err1", uri),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(styleUrl)));
+			else {
+				try {
+					// the referenced document may be a KMZ archive or gzip-compressed
+					rspDoc = KMLUtils.parseKML(uri);
+				}
+				catch (Exception e) {
+					TestSuiteLogger.log(Level.FINE, "Failed to read style document from " + uri, e);
+				}
 			}
+			targets.put(docKey, (null != rspDoc) ? XMLUtils.getElementsById(rspDoc) : null);
 		}
-		// Fetch referenced style element (where @id = fragment name)
-		String xpathExpr = "//*[@id='" + fragment + "']";
-		NodeList styleNodeList = null;
-		try {
-			styleNodeList = XMLUtils.evaluateXPath(rspDoc, xpathExpr, null);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, this.getClass().getName(), xpe);
+		Map<String, Element> elementsById = targets.get(docKey);
+		if (null == elementsById) {
+			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.StyleReference.err1", uri),
+					new NodeErrorLocator(styleUrl));
+			return;
 		}
-		Node styleNode = (styleNodeList.getLength() > 0) ? styleNodeList.item(0) : null;
+		// Fetch referenced style element (where @id = fragment name)
+		Node styleNode = elementsById.get(fragment);
 		if (null == styleNode) {
 			addError(styleUrl, "level1.StyleReference.err5", errHandler);
 			return;
@@ -290,8 +288,7 @@ public class StyleTests extends BaseFixture {
 	 * @param errHandler errHandler
 	 */
 	void addError(Node node, String msgKey, ValidationErrorHandler errHandler) {
-		errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format(msgKey),
-				new ErrorLocator(-1, -1, XMLUtils.getXPointer(node)));
+		errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format(msgKey), new NodeErrorLocator(node));
 	}
 
 }
@@ -9,8 +9,7 @@ import org.joda.time.format.ISODateTimeFormat;
 import org.opengis.cite.kml22.BaseFixture;
 import org.opengis.cite.kml22.ErrorMessage;
 import org.opengis.cite.kml22.Namespaces;
-import org.opengis.cite.kml22.util.XMLUtils;
-import org.opengis.cite.validation.ErrorLocator;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.ValidationErrorHandler;
 import org.testng.Assert;
@@ -40,12 +39,10 @@ public class TemporalElementTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 4")
 	public void verifyTimeSpan() {
-		NodeList allTimeSpanNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "TimeSpan");
 		// use LinkedHashSet to preserve document order
 		Set<Node> indefiniteTimeSpans = new LinkedHashSet<Node>();
 		Set<Node> definiteTimeSpans = new LinkedHashSet<Node>();
-		for (int i = 0; i < allTimeSpanNodes.getLength(); i++) {
-			Element timeSpan = (Element) allTimeSpanNodes.item(i);
+		for (Element timeSpan : this.elementIndex.getElements("TimeSpan")) {
 			NodeList beginNodes = timeSpan.getElementsByTagNameNS(Namespaces.KML22, "begin");
 			NodeList endNodes = timeSpan.getElementsByTagNameNS(Namespaces.KML22, "end");
 			if (beginNodes.getLength() > 0 && endNodes.getLength() > 0) {
@@ -55,7 +52,7 @@ public class TemporalElementTests extends BaseFixture {
 				indefiniteTimeSpans.add(timeSpan);
 			}
 		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		ValidationErrorHandler errHandler = createErrorHandler();
 		for (Node indefiniteTimeSpan : indefiniteTimeSpans) {
 			checkIndefiniteInterval((Element) indefiniteTimeSpan, errHandler);
 		}
@@ -72,14 +69,12 @@ public class TemporalElementTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 5")
 	public void verifyTimeStamp() {
-		NodeList timeStampNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "TimeStamp");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < timeStampNodes.getLength(); i++) {
-			Element timeStamp = (Element) timeStampNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element timeStamp : this.elementIndex.getElements("TimeStamp")) {
 			NodeList whenNodes = timeStamp.getElementsByTagNameNS(Namespaces.KML22, "when");
 			if (whenNodes.getLength() == 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.TimeStamp.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(timeStamp)));
+						new NodeErrorLocator(timeStamp));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toXml());
@@ -96,7 +91,7 @@ public class TemporalElementTests extends BaseFixture {
 		NodeList endNodes = timeSpan.getElementsByTagNameNS(Namespaces.KML22, "end");
 		if (beginNodes.getLength() == 0 && endNodes.getLength() == 0) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.TimeSpan.err1"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(timeSpan)));
+					new NodeErrorLocator(timeSpan));
 		}
 	}
 
@@ -115,12 +110,12 @@ public class TemporalElementTests extends BaseFixture {
 		DateTime endDate = parseDateTime(end);
 		if (beginDate == null || endDate == null) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.TimeSpan.err2"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(timeSpan)));
+					new NodeErrorLocator(timeSpan));
 			return;
 		}
 		if (beginDate.getMillis() >= endDate.getMillis()) {
 			errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.TimeSpan.err3"),
-					new ErrorLocator(-1, -1, XMLUtils.getXPointer(timeSpan)));
+					new NodeErrorLocator(timeSpan));
 		}
 	}
 
@@ -10,21 +10,18 @@ import java.util.Set;
 import java.util.logging.Level;
 
 import javax.xml.namespace.QName;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.xpath.XPathExpressionException;
 
 import org.opengis.cite.kml22.BaseFixture;
 import org.opengis.cite.kml22.ErrorMessage;
 import org.opengis.cite.kml22.Namespaces;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
 import org.opengis.cite.kml22.util.TestSuiteLogger;
 import org.opengis.cite.kml22.util.XMLUtils;
-import org.opengis.cite.validation.ErrorLocator;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.ValidationErrorHandler;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import net.sf.saxon.dom.ElementOverNodeInfo;
@@ -86,13 +83,11 @@ public class UserDefinedDataTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 25")
 	public void schemaHasIdAttribute() {
-		NodeList schemaNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "Schema");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < schemaNodes.getLength(); i++) {
-			Element schema = (Element) schemaNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element schema : this.elementIndex.getElements("Schema")) {
 			if (schema.getAttribute("id").isEmpty()) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.Schema.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(schema)));
+						new NodeErrorLocator(schema));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -122,19 +117,17 @@ public class UserDefinedDataTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 26")
 	public void verifySimpleField() {
-		NodeList simpleFieldNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "SimpleField");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < simpleFieldNodes.getLength(); i++) {
-			Element field = (Element) simpleFieldNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element field : this.elementIndex.getElements("SimpleField")) {
 			if (field.getAttribute("name").isEmpty()) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.SchemaSimpleField.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(field)));
+						new NodeErrorLocator(field));
 			}
 			QName fieldType = getFieldType(field);
 			if (!SIMPLE_FIELD_TYPES.contains(fieldType)) {
 				errHandler.addError(ErrorSeverity.ERROR,
 						ErrorMessage.format("level1.SchemaSimpleField.err2", field.getAttribute("name")),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(field)));
+						new NodeErrorLocator(field));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -156,42 +149,39 @@ public class UserDefinedDataTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 27")
 	public void verifySchemaData() {
-		NodeList schemaDataNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "SchemaData");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < schemaDataNodes.getLength(); i++) {
-			Element schemaData = (Element) schemaDataNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		// kml:Schema elements by id for each referenced document ("" for the subject)
+		Map<String, Map<String, Element>> schemasByDoc = new HashMap<String, Map<String, Element>>();
+		for (Element schemaData : this.elementIndex.getElements("SchemaData")) {
 			String schemaUrl = schemaData.getAttribute("schemaUrl");
 			if (schemaUrl.isEmpty()) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.ExtendedDataSchemaData.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(schemaData)));
+						new NodeErrorLocator(schemaData));
 				continue;
 			}
 			URI schemaURI = URI.create(schemaUrl);
-			String xpath = null;
-			if (null == schemaURI.getScheme()) { // relative URI
-				xpath = String.format("//kml:Schema[@id='%s']", schemaURI.getFragment());
-			}
-			else {
+			String docUri = "";
+			if (null != schemaURI.getScheme()) {
 				// strip fragment identifier before dereferencing absolute URI
 				int numSign = schemaURI.toString().indexOf('#');
-				xpath = String.format("doc('%s')//kml:Schema[@id='%s']", schemaURI.toString().substring(0, numSign),
-						schemaURI.getFragment());
+				docUri = (numSign < 0) ? schemaURI.toString() : schemaURI.toString().substring(0, numSign);
 			}
-			DOMSource src = new DOMSource(this.testSubject, this.testSubject.getBaseURI());
-			XdmValue result = null;
-			try {
-				result = XMLUtils.evaluateXPath2(src, xpath, NS_MAP);
+			if (!schemasByDoc.containsKey(docUri)) {
+				schemasByDoc.put(docUri, findSchemas(docUri));
 			}
-			catch (SaxonApiException sae) {
-				TestSuiteLogger.log(Level.WARNING, "Failed to evaluate XPath expression", sae);
-			}
-			if (null == result || result.size() == 0) {
+			Map<String, Element> schemas = schemasByDoc.get(docUri);
+			Element schema = (null != schemas) ? schemas.get(schemaURI.getFragment()) : null;
+			if (null == schema) {
+				String xpath = String.format("//kml:Schema[@id='%s']", schemaURI.getFragment());
+				if (!docUri.isEmpty()) {
+					xpath = String.format("doc('%s')", docUri) + xpath;
+				}
 				errHandler.addError(ErrorSeverity.ERROR,
 						ErrorMessage.format("level1.ExtendedDataSchemaData.err3", xpath),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(schemaData)));
+						new NodeErrorLocator(schemaData));
 				continue;
 			}
-			checkSimpleDataElements(schemaData, (XdmNode) result.itemAt(0), errHandler);
+			checkSimpleDataElements(schemaData, schema, errHandler);
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 	}
@@ -199,40 +189,71 @@ public class UserDefinedDataTests extends BaseFixture {
 	/**
 	 * [{@code Test}] Verifies that the value of the 'name' attribute on a kml:Data
 	 * element is unique within the context of the parent kml:ExtendedData element.
-	 * @throws javax.xml.xpath.XPathExpressionException If an error occurred while
-	 * evaluating an XPath expression.
 	 * @see "OGC 07-134r2, ATC 28: ExtendedData - Data"
 	 */
 	@Test(description = "Implements ATC 28")
-	public void verifyUntypedDataAreUnique() throws XPathExpressionException {
-		NodeList extData = XMLUtils.evaluateXPath(this.testSubject, "//kml:ExtendedData[kml:Data]", NS_MAP);
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+	public void verifyUntypedDataAreUnique() {
+		ValidationErrorHandler errHandler = createErrorHandler();
 		Set<String> nameSet = new HashSet<String>();
-		for (int i = 0; i < extData.getLength(); i++) {
+		for (Element extData : this.elementIndex.getElements("ExtendedData")) {
 			nameSet.clear();
-			NodeList names = XMLUtils.evaluateXPath(extData.item(i), "kml:Data/@name", NS_MAP);
-			for (int j = 0; j < names.getLength(); j++) {
-				Node nameAttr = names.item(j);
-				if (!nameSet.add(nameAttr.getTextContent())) {
-					errHandler.addError(ErrorSeverity.ERROR,
-							ErrorMessage.format("level1.ExtendedDataData.err", nameAttr.getTextContent()),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(extData.item(i))));
+			for (Element data : XMLUtils.getChildElements(extData, Namespaces.KML22, "Data")) {
+				if (!data.hasAttribute("name")) {
+					continue;
+				}
+				String name = data.getAttribute("name");
+				if (!nameSet.add(name)) {
+					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.ExtendedDataData.err", name),
+							new NodeErrorLocator(extData));
 				}
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 	}
 
+	/**
+	 * Finds the kml:Schema elements in a document and indexes them by id. If more than
+	 * one Schema has the same id, the first one in document order is kept.
+	 * @param docUri The absolute URI of an external document, or an empty string to
+	 * search the test subject.
+	 * @return A map of kml:Schema elements keyed by 'id' value, or {@code null} if the
+	 * document could not be read.
+	 */
+	Map<String, Element> findSchemas(String docUri) {
+		Map<String, Element> schemas = new HashMap<String, Element>();
+		if (docUri.isEmpty()) {
+			for (Element schema : this.elementIndex.getElements("Schema")) {
+				if (schema.hasAttribute("id")) {
+					schemas.putIfAbsent(schema.getAttribute("id"), schema);
+				}
+			}
+			return schemas;
+		}
+		XdmValue result;
+		try {
+			result = XMLUtils.evaluateXPath2(getXdmTestSubject(), String.format("doc('%s')//kml:Schema[@id]", docUri),
+					NS_MAP);
+		}
+		catch (SaxonApiException sae) {
+			TestSuiteLogger.log(Level.WARNING, "Failed to read schema document from " + docUri, sae);
+			return null;
+		}
+		for (int i = 0; i < result.size(); i++) {
+			Element schema = (Element) ElementOverNodeInfo.wrap(((XdmNode) result.itemAt(i)).getUnderlyingNode());
+			schemas.putIfAbsent(schema.getAttribute("id"), schema);
+		}
+		return schemas;
+	}
+
 	/**
 	 * Checks that the content of a kml:SchemaData element conforms to the declarations in
 	 * the referenced Schema.
 	 * @param schemaData A kml:SchemaData element (with parent kml:ExtendedData).
-	 * @param schemaNode An XdmNode representing the referenced kml:Schema element.
+	 * @param schema The referenced kml:Schema element.
 	 * @param errHandler An error handler that accepts reported constraint violations.
 	 */
-	void checkSimpleDataElements(Element schemaData, XdmNode schemaNode, ValidationErrorHandler errHandler) {
+	void checkSimpleDataElements(Element schemaData, Element schema, ValidationErrorHandler errHandler) {
 		NodeList simpleDataNodes = schemaData.getElementsByTagNameNS(Namespaces.KML22, "SimpleData");
-		Element schema = (Element) ElementOverNodeInfo.wrap(schemaNode.getUnderlyingNode());
 		// Collect all SimpleField declarations from kml:Schema
 		Map<String, QName> schemaMap = new HashMap<String, QName>();
 		NodeList simpleFieldNodes = schema.getElementsByTagNameNS(Namespaces.KML22, "SimpleField");
@@ -246,7 +267,7 @@ public class UserDefinedDataTests extends BaseFixture {
 			String name = simpleData.getAttribute("name");
 			if (!schemaMap.containsKey(name)) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.ExtendedDataSchemaData.err4"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(simpleData)));
+						new NodeErrorLocator(simpleData));
 				continue;
 			}
 			String value = simpleData.getTextContent().trim();
@@ -255,7 +276,7 @@ public class UserDefinedDataTests extends BaseFixture {
 				errHandler.addError(ErrorSeverity.ERROR,
 						ErrorMessage.format("level1.ExtendedDataSchemaData.err5",
 								String.format("Value '%s' does not conform to the type %s", value, dataType)),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(simpleData)));
+						new NodeErrorLocator(simpleData));
 			}
 		}
 	}
@@ -1,23 +1,16 @@
 package org.opengis.cite.kml22.level1;
 
-import java.util.logging.Level;
-
-import javax.xml.xpath.XPathExpressionException;
-
 import org.opengis.cite.kml22.BaseFixture;
 import org.opengis.cite.kml22.ETSAssert;
 import org.opengis.cite.kml22.ErrorMessage;
 import org.opengis.cite.kml22.Namespaces;
-import org.opengis.cite.kml22.util.TestSuiteLogger;
-import org.opengis.cite.kml22.util.XMLUtils;
-import org.opengis.cite.validation.ErrorLocator;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.ValidationErrorHandler;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
  * <p>
@@ -51,22 +44,14 @@ public class ViewTests extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 38")
 	public void verifyLookAt() {
-		NodeList lookAtNodes = null;
-		try {
-			lookAtNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:LookAt[not(ancestor::kml:Update)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < lookAtNodes.getLength(); i++) {
-			Element lookAt = (Element) lookAtNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element lookAt : this.elementIndex.getElementsNotInUpdate("LookAt")) {
 			try {
 				ETSAssert.assertXPath("kml:longitude and kml:latitude and kml:range", lookAt, NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LookAt.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(lookAt)));
+						new NodeErrorLocator(lookAt));
 			}
 			try {
 				ETSAssert.assertXPath("not(kml:altitudeMode) or (kml:altitudeMode = 'clampToGround') or kml:altitude",
@@ -74,7 +59,7 @@ public class ViewTests extends BaseFixture {
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LookAt.err4"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(lookAt)));
+						new NodeErrorLocator(lookAt));
 			}
 			checkTiltRange(lookAt, errHandler);
 		}
@@ -93,7 +78,7 @@ public class ViewTests extends BaseFixture {
 			double tilt = Double.parseDouble(tiltNode.getTextContent());
 			if (tilt < 0 || tilt > 90) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.LookAt.err3"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(lookAt)));
+						new NodeErrorLocator(lookAt));
 			}
 		}
 	}
@@ -2,8 +2,8 @@ package org.opengis.cite.kml22.level2;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,10 +14,9 @@ import org.opengis.cite.kml22.BaseFixture;
 import org.opengis.cite.kml22.ETSAssert;
 import org.opengis.cite.kml22.ErrorMessage;
 import org.opengis.cite.kml22.Namespaces;
-import org.opengis.cite.kml22.util.TestSuiteLogger;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
 import org.opengis.cite.kml22.util.ValidationUtils;
 import org.opengis.cite.kml22.util.XMLUtils;
-import org.opengis.cite.validation.ErrorLocator;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.ValidationErrorHandler;
 import org.testng.Assert;
@@ -62,16 +61,8 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 43")
 	public void verifyAltitudeIfNotClampToGround() {
-		NodeList nodeList = null;
-		try {
-			nodeList = XMLUtils.evaluateXPath(this.testSubject, "//kml:coordinates | //kml:Location", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			TestSuiteLogger.log(Level.WARNING, "Error evaluating XPath expression", xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < nodeList.getLength(); i++) {
-			Element elem = (Element) nodeList.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element elem : this.elementIndex.getElements("coordinates", "Location")) {
 			Node altModeNode = null;
 			try {
 				altModeNode = (Node) XMLUtils.evaluateXPath(elem, "../kml:altitudeMode", NS_MAP, XPathConstants.NODE);
@@ -85,12 +76,13 @@ public class Recommendations extends BaseFixture {
 			}
 			String localName = elem.getLocalName();
 			if (localName.equals("coordinates")) {
-				ValidationUtils.validateCoordinateTuples(elem, 3, errHandler);
+				ValidationUtils.validateCoordinateTuples(elem, this.coordinateStore.getCoordinates(elem), 3,
+						errHandler);
 			}
 			else { // kml:Location
 				if (elem.getElementsByTagNameNS(Namespaces.KML22, "altitude").getLength() == 0) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.CoordinatesAltitudeMode.err"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(elem)));
+							new NodeErrorLocator(elem));
 				}
 			}
 		}
@@ -106,22 +98,14 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 44")
 	public void verifyScale() {
-		NodeList scaleNodes = null;
-		try {
-			scaleNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Scale[not(ancestor::kml:Update)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < scaleNodes.getLength(); i++) {
-			Node scale = scaleNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element scale : this.elementIndex.getElementsNotInUpdate("Scale")) {
 			try {
 				ETSAssert.assertXPath("kml:x or kml:y or kml:z", scale, NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.ScaleMinimal.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(scale)));
+						new NodeErrorLocator(scale));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -152,13 +136,11 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 46")
 	public void verifyViewFormat() {
-		NodeList viewFormatNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "viewFormat");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < viewFormatNodes.getLength(); i++) {
-			Node viewFormat = viewFormatNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element viewFormat : this.elementIndex.getElements("viewFormat")) {
 			if (viewFormat.getTextContent().trim().isEmpty()) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.ViewFormat.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(viewFormat)));
+						new NodeErrorLocator(viewFormat));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -179,17 +161,15 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 47")
 	public void verifyHttpQuery() {
-		NodeList queryNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "httpQuery");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		ValidationErrorHandler errHandler = createErrorHandler();
 		Pattern paramsPattern = Pattern.compile("\\[[a-zA-Z]+\\]");
 		Set<String> paramSet = new HashSet<String>();
-		for (int i = 0; i < queryNodes.getLength(); i++) {
+		for (Element queryNode : this.elementIndex.getElements("httpQuery")) {
 			paramSet.clear();
-			Node queryNode = queryNodes.item(i);
 			String queryParams = queryNode.getTextContent().trim();
 			if (queryParams.isEmpty()) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.HttpQuery.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(queryNode)));
+						new NodeErrorLocator(queryNode));
 				continue;
 			}
 			Matcher paramMatcher = paramsPattern.matcher(queryParams);
@@ -200,7 +180,7 @@ public class Recommendations extends BaseFixture {
 			paramSet.retainAll(HTTP_QUERY_PARAMS);
 			if (paramSet.isEmpty()) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.HttpQuery.err2"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(queryNode)));
+						new NodeErrorLocator(queryNode));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -215,22 +195,16 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 48")
 	public void verifyLinearRing() {
-		NodeList ringNodes = null;
-		try {
-			ringNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:LinearRing[ancestor::kml:Polygon]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < ringNodes.getLength(); i++) {
-			Node ring = ringNodes.item(i);
-			try {
-				ETSAssert.assertXPath("not(kml:extrude or kml:tessellate or kml:altitudeMode)", ring, NS_MAP);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element ring : this.elementIndex.getElements("LinearRing")) {
+			if (!XMLUtils.hasAncestor(ring, Namespaces.KML22, "Polygon")) {
+				continue;
 			}
-			catch (AssertionError e) {
+			if (!XMLUtils.getChildElements(ring, Namespaces.KML22, "extrude").isEmpty()
+					|| !XMLUtils.getChildElements(ring, Namespaces.KML22, "tessellate").isEmpty()
+					|| !XMLUtils.getChildElements(ring, Namespaces.KML22, "altitudeMode").isEmpty()) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.LinearRingInPolygon.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(ring)));
+						new NodeErrorLocator(ring));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -244,14 +218,12 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 49")
 	public void verifyUntypedData() {
-		NodeList dataNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "Data");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < dataNodes.getLength(); i++) {
-			Element dataElem = (Element) dataNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element dataElem : this.elementIndex.getElements("Data")) {
 			NodeList valueNodes = dataElem.getElementsByTagNameNS(Namespaces.KML22, "value");
 			if (dataElem.getAttribute("name").isEmpty() || valueNodes.getLength() == 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.Data.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(dataElem)));
+						new NodeErrorLocator(dataElem));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -266,16 +238,14 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 50")
 	public void verifyResourceAliasIsUnique() {
-		NodeList resourceMaps = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "ResourceMap");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		ValidationErrorHandler errHandler = createErrorHandler();
 		Set<String> aliasSourceSet = new HashSet<String>();
-		for (int i = 0; i < resourceMaps.getLength(); i++) {
+		for (Element resourceMap : this.elementIndex.getElements("ResourceMap")) {
 			aliasSourceSet.clear();
-			Element resourceMap = (Element) resourceMaps.item(i);
 			NodeList aliasNodes = resourceMap.getElementsByTagNameNS(Namespaces.KML22, "Alias");
 			if (aliasNodes.getLength() == 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.ResourceMap.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(resourceMap)));
+						new NodeErrorLocator(resourceMap));
 				continue;
 			}
 			for (int j = 0; j < aliasNodes.getLength(); j++) {
@@ -284,7 +254,7 @@ public class Recommendations extends BaseFixture {
 				String href = sourceRef.getTextContent().trim();
 				if (!aliasSourceSet.add(href)) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.ResourceMap.err2", href),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(alias)));
+							new NodeErrorLocator(alias));
 				}
 			}
 		}
@@ -306,26 +276,18 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 51")
 	public void verifyLinkRefresh() {
-		NodeList linkNodes = null;
-		try {
-			linkNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Link | //kml:Icon", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < linkNodes.getLength(); i++) {
-			Node link = linkNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element link : this.elementIndex.getElements("Link", "Icon")) {
 			try {
 				if ((Boolean) XMLUtils.evaluateXPath(link, "kml:refreshInterval and kml:refreshMode != 'onInterval'",
 						NS_MAP, XPathConstants.BOOLEAN)) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.LinkRefresh.err1"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(link)));
+							new NodeErrorLocator(link));
 				}
 				if ((Boolean) XMLUtils.evaluateXPath(link, "kml:viewRefreshTime and kml:viewRefreshMode != 'onStop'",
 						NS_MAP, XPathConstants.BOOLEAN)) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.LinkRefresh.err2"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(link)));
+							new NodeErrorLocator(link));
 				}
 			}
 			catch (XPathExpressionException xpe) {
@@ -356,34 +318,27 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 52")
 	public void verifyImagePyramidInPhotoOverlay() {
-		NodeList overlayNodes = null;
-		try {
-			overlayNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:PhotoOverlay[kml:Icon or kml:ImagePyramid]",
-					NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < overlayNodes.getLength(); i++) {
-			Element photoOverlay = (Element) overlayNodes.item(i);
-			String href;
-			try {
-				href = (String) XMLUtils.evaluateXPath(photoOverlay, "kml:Icon/kml:href", NS_MAP,
-						XPathConstants.STRING);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element photoOverlay : this.elementIndex.getElements("PhotoOverlay")) {
+			List<Element> icons = XMLUtils.getChildElements(photoOverlay, Namespaces.KML22, "Icon");
+			List<Element> pyramids = XMLUtils.getChildElements(photoOverlay, Namespaces.KML22, "ImagePyramid");
+			if (icons.isEmpty() && pyramids.isEmpty()) {
+				continue;
 			}
-			catch (XPathExpressionException e) {
-				throw new RuntimeException(e);
+			String href = "";
+			if (!icons.isEmpty()) {
+				List<Element> hrefs = XMLUtils.getChildElements(icons.get(0), Namespaces.KML22, "href");
+				href = hrefs.isEmpty() ? "" : hrefs.get(0).getTextContent();
 			}
-			Element pyramid = (Element) photoOverlay.getElementsByTagNameNS(Namespaces.KML22, "ImagePyramid").item(0);
-			boolean hrefParams = (null != href && href.contains("[level]"));
+			Element pyramid = pyramids.isEmpty() ? null : pyramids.get(0);
+			boolean hrefParams = href.contains("[level]");
 			if ((null != pyramid) && !hrefParams) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.PhotoOverlay.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(photoOverlay)));
+						new NodeErrorLocator(photoOverlay));
 			}
 			if ((null == pyramid) && hrefParams) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.PhotoOverlay.err2"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(photoOverlay)));
+						new NodeErrorLocator(photoOverlay));
 			}
 
 		}
@@ -399,24 +354,15 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 53")
 	public void verifyGroundOverlayHasLatLonBox() {
-		NodeList overlayNodes = null;
-		try {
-			overlayNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:GroundOverlay[not(ancestor::kml:Update)]",
-					NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < overlayNodes.getLength(); i++) {
-			Node groundOverlay = overlayNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element groundOverlay : this.elementIndex.getElementsNotInUpdate("GroundOverlay")) {
 			try {
 				ETSAssert.assertXPath("kml:LatLonBox[kml:north and kml:south and kml:east and kml:west]", groundOverlay,
 						NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.GroundOverlayMinimal.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(groundOverlay)));
+						new NodeErrorLocator(groundOverlay));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -436,22 +382,14 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 54")
 	public void verifyCamera() {
-		NodeList cameraNodes = null;
-		try {
-			cameraNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Camera[not(ancestor::kml:Update)]", NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < cameraNodes.getLength(); i++) {
-			Element camera = (Element) cameraNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element camera : this.elementIndex.getElementsNotInUpdate("Camera")) {
 			try {
 				ETSAssert.assertXPath("kml:latitude and kml:longitude and kml:altitude", camera, NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.Camera.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(camera)));
+						new NodeErrorLocator(camera));
 			}
 			String altitudeMode = ALT_MODE_CLAMP;
 			Node altMode = camera.getElementsByTagNameNS(Namespaces.KML22, "altitudeMode").item(0);
@@ -460,7 +398,7 @@ public class Recommendations extends BaseFixture {
 			}
 			if (altitudeMode.equals("clampToGround")) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.Camera.err2"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(camera)));
+						new NodeErrorLocator(camera));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -480,16 +418,14 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 55")
 	public void verifyModelLocation() {
-		NodeList locationNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "Location");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < locationNodes.getLength(); i++) {
-			Element location = (Element) locationNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element location : this.elementIndex.getElements("Location")) {
 			try {
 				ETSAssert.assertXPath("kml:latitude and kml:longitude", location, NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.Location.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(location)));
+						new NodeErrorLocator(location));
 			}
 			String altitudeMode = ALT_MODE_CLAMP;
 			Node modelAltMode;
@@ -506,7 +442,7 @@ public class Recommendations extends BaseFixture {
 			if (!altitudeMode.equals("clampToGround")
 					&& location.getElementsByTagNameNS(Namespaces.KML22, "altitude").getLength() == 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.Location.err2"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(location)));
+						new NodeErrorLocator(location));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -521,21 +457,12 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 56")
 	public void verifyOverlayHasIcon() {
-		NodeList overlayNodes = null;
-		try {
-			overlayNodes = XMLUtils.evaluateXPath(this.testSubject,
-					"//kml:ScreenOverlay[not(ancestor::kml:Update)] | //kml:GroundOverlay[not(ancestor::kml:Update)] | //kml:PhotoOverlay[not(ancestor::kml:Update)]",
-					NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < overlayNodes.getLength(); i++) {
-			Element overlay = (Element) overlayNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element overlay : this.elementIndex.getElementsNotInUpdate("ScreenOverlay", "GroundOverlay",
+				"PhotoOverlay")) {
 			if (overlay.getElementsByTagNameNS(Namespaces.KML22, "Icon").getLength() == 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.Overlay.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(overlay)));
+						new NodeErrorLocator(overlay));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -549,20 +476,11 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 57")
 	public void verifyScreenOverlay() {
-		NodeList overlayNodes = null;
-		try {
-			overlayNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:ScreenOverlay[not(ancestor::kml:Update)]",
-					NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < overlayNodes.getLength(); i++) {
-			Element screenOverlay = (Element) overlayNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element screenOverlay : this.elementIndex.getElementsNotInUpdate("ScreenOverlay")) {
 			if (screenOverlay.getElementsByTagNameNS(Namespaces.KML22, "screenXY").getLength() == 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.ScreenOverlay.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(screenOverlay)));
+						new NodeErrorLocator(screenOverlay));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -575,13 +493,11 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 59")
 	public void verifyExtendedDataNotEmpty() {
-		NodeList extDataNodes = this.testSubject.getElementsByTagNameNS(Namespaces.KML22, "ExtendedData");
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < extDataNodes.getLength(); i++) {
-			Node extData = extDataNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element extData : this.elementIndex.getElements("ExtendedData")) {
 			if (extData.getChildNodes().getLength() == 0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.ExtendedData.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(extData)));
+						new NodeErrorLocator(extData));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -595,7 +511,7 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 60")
 	public void verifyFolderNotEmpty() {
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		ValidationErrorHandler errHandler = createErrorHandler();
 		verifyElementNotEmpty("Folder", errHandler);
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
 	}
@@ -613,23 +529,14 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 62")
 	public void verifyImagePyramid() {
-		NodeList imgPyramidNodes = null;
-		try {
-			imgPyramidNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:ImagePyramid[not(ancestor::kml:Update)]",
-					NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < imgPyramidNodes.getLength(); i++) {
-			Element imgPyramid = (Element) imgPyramidNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element imgPyramid : this.elementIndex.getElementsNotInUpdate("ImagePyramid")) {
 			try {
 				ETSAssert.assertXPath("kml:maxWidth and kml:maxHeight", imgPyramid, NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.ImagePyramid.err1"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(imgPyramid)));
+						new NodeErrorLocator(imgPyramid));
 			}
 			Node tileSizeNode = imgPyramid.getElementsByTagNameNS(Namespaces.KML22, "tileSize").item(0);
 			if (null != tileSizeNode) {
@@ -637,7 +544,7 @@ public class Recommendations extends BaseFixture {
 				// power of 2 has a single 1 in bit representation
 				if ((tileSize & (tileSize - 1)) != 0) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.ImagePyramid.err2"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(imgPyramid)));
+							new NodeErrorLocator(imgPyramid));
 				}
 			}
 		}
@@ -653,23 +560,14 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 66")
 	public void verifyMultiGeometry() {
-		NodeList multiGeomNodes = null;
-		try {
-			multiGeomNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:MultiGeometry[not(ancestor::kml:Update)]",
-					NS_MAP);
-		}
-		catch (XPathExpressionException xpe) {
-			throw new RuntimeException(xpe);
-		}
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
-		for (int i = 0; i < multiGeomNodes.getLength(); i++) {
-			Node multiGeom = multiGeomNodes.item(i);
+		ValidationErrorHandler errHandler = createErrorHandler();
+		for (Element multiGeom : this.elementIndex.getElementsNotInUpdate("MultiGeometry")) {
 			try {
 				ETSAssert.assertXPath("count(kml:*) > 1", multiGeom, NS_MAP);
 			}
 			catch (AssertionError e) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.MultiGeometry.err"),
-						new ErrorLocator(-1, -1, XMLUtils.getXPointer(multiGeom)));
+						new NodeErrorLocator(multiGeom));
 			}
 		}
 		Assert.assertFalse(errHandler.errorsDetected(), errHandler.toString());
@@ -685,19 +583,15 @@ public class Recommendations extends BaseFixture {
 	 */
 	@Test(description = "Implements ATC 67")
 	public void verifyPlacemarkHasGeometry() {
-		NodeList placemarkNodes = null;
-		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		ValidationErrorHandler errHandler = createErrorHandler();
 		try {
-			placemarkNodes = XMLUtils.evaluateXPath(this.testSubject, "//kml:Placemark[not(ancestor::kml:Update)]",
-					NS_MAP);
-			for (int i = 0; i < placemarkNodes.getLength(); i++) {
-				Node placemark = placemarkNodes.item(i);
+			for (Element placemark : this.elementIndex.getElementsNotInUpdate("Placemark")) {
 				NodeList geomList = XMLUtils.evaluateXPath(placemark,
 						"kml:Point | kml:LineString | kml:LinearRing | kml:Polygon | kml:Model | kml:MultiGeometry",
 						NS_MAP);
 				if (geomList.getLength() == 0) {
 					errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level2.Placemark.err"),
-							new ErrorLocator(-1, -1, XMLUtils.getXPointer(placemark)));
+							new NodeErrorLocator(placemark));
 				}
 			}
 		}
@@ -5,6 +5,7 @@ import javax.xml.transform.dom.DOMSource;
 
 import org.opengis.cite.kml22.BaseFixture;
 import org.opengis.cite.kml22.ErrorMessage;
+import org.opengis.cite.kml22.util.SchematronValidatorPool;
 import org.opengis.cite.kml22.util.ValidationUtils;
 import org.opengis.cite.kml22.util.XMLUtils;
 import org.opengis.cite.validation.SchematronValidator;
@@ -35,11 +36,14 @@ public class Options extends BaseFixture {
 	 */
 	@Test(description = "Implements ATCs 71,72,76,77")
 	public void deprecatedElements() {
-		SchematronValidator validator = ValidationUtils.buildSchematronValidator("kml-2.2.sch", "Deprecated");
-		DOMResult result = (DOMResult) validator
-			.validate(new DOMSource(this.testSubject, this.testSubject.getDocumentURI()));
-		Assert.assertFalse(validator.ruleViolationsDetected(), ErrorMessage.format("NotSchemaValid",
-				validator.getRuleViolationCount(), XMLUtils.writeNodeToString(result.getNode())));
+		try (SchematronValidatorPool.Lease lease = ValidationUtils.acquireSchematronValidator("kml-2.2.sch",
+				"Deprecated")) {
+			SchematronValidator validator = lease.getValidator();
+			DOMResult result = (DOMResult) validator
+				.validate(new DOMSource(this.testSubject, this.testSubject.getDocumentURI()));
+			Assert.assertFalse(validator.ruleViolationsDetected(), ErrorMessage.format("NotSchemaValid",
+					validator.getRuleViolationCount(), XMLUtils.writeNodeToString(result.getNode())));
+		}
 	}
 
 }
@@ -0,0 +1,155 @@
+package org.opengis.cite.kml22.util;
+
+import java.text.NumberFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+
+import org.opengis.cite.kml22.ErrorMessage;
+import org.opengis.cite.validation.ErrorLocator;
+import org.opengis.cite.validation.ErrorSeverity;
+import org.opengis.cite.validation.ValidationError;
+import org.opengis.cite.validation.ValidationErrorHandler;
+import org.w3c.dom.DOMError;
+import org.xml.sax.SAXParseException;
+
+/**
+ * A validation error handler that retains at most a given number of errors. Any further
+ * errors are only counted, and the report produced by {@link #toString()} ends with a
+ * summary of the omitted errors. The memory and time needed to report the violations in a
+ * badly broken document thus depend on the limit rather than on the number of errors.
+ *
+ * <p>
+ * {@link #getErrorCount()} returns the total number of errors, including those that were
+ * not retained.
+ * </p>
+ */
+public class BoundedErrorHandler extends ValidationErrorHandler {
+
+	/** The default maximum number of retained errors. */
+	public static final int DEFAULT_MAX_ERRORS = 500;
+
+	private final int maxErrors;
+
+	private int omittedErrors;
+
+	/**
+	 * Creates an error handler that retains at most {@value #DEFAULT_MAX_ERRORS} errors.
+	 */
+	public BoundedErrorHandler() {
+		this(DEFAULT_MAX_ERRORS);
+	}
+
+	/**
+	 * Creates an error handler that retains at most the given number of errors.
+	 * @param maxErrors The maximum number of retained errors; if less than 1 all errors
+	 * are retained.
+	 */
+	public BoundedErrorHandler(int maxErrors) {
+		this.maxErrors = (maxErrors < 1) ? Integer.MAX_VALUE : maxErrors;
+	}
+
+	/**
+	 * Returns the maximum number of errors retained by this handler.
+	 * @return A positive integer ({@link Integer#MAX_VALUE} if there is no limit).
+	 */
+	public int getMaxErrors() {
+		return maxErrors;
+	}
+
+	/**
+	 * Returns the number of errors that were counted but not retained.
+	 * @return The number of omitted errors.
+	 */
+	public int getOmittedErrorCount() {
+		return omittedErrors;
+	}
+
+	@Override
+	public int getErrorCount() {
+		return super.getErrorCount() + omittedErrors;
+	}
+
+	@Override
+	public void addError(ErrorSeverity severity, String message, ErrorLocator locator) {
+		if (accept()) {
+			super.addError(severity, message, locator);
+		}
+	}
+
+	@Override
+	public void addError(ErrorSeverity severity, String message, String diagnostics, ErrorLocator locator) {
+		if (accept()) {
+			super.addError(severity, message, diagnostics, locator);
+		}
+	}
+
+	@Override
+	public void addErrors(Collection<ValidationError> errors) {
+		for (ValidationError error : errors) {
+			if (accept()) {
+				super.addErrors(Collections.singletonList(error));
+			}
+		}
+	}
+
+	@Override
+	public void warning(SAXParseException spex) {
+		if (accept()) {
+			super.warning(spex);
+		}
+	}
+
+	@Override
+	public void error(SAXParseException spex) {
+		if (accept()) {
+			super.error(spex);
+		}
+	}
+
+	@Override
+	public void fatalError(SAXParseException spex) {
+		if (accept()) {
+			super.fatalError(spex);
+		}
+	}
+
+	@Override
+	public boolean handleError(DOMError domError) {
+		if (accept()) {
+			return super.handleError(domError);
+		}
+		return true;
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		omittedErrors = 0;
+	}
+
+	/**
+	 * Returns a summary of all retained errors, followed by the number of omitted errors
+	 * (if any).
+	 * @return A String describing the detected errors.
+	 */
+	@Override
+	public String toString() {
+		String report = super.toString();
+		if (omittedErrors == 0) {
+			return report;
+		}
+		NumberFormat numberFormat = NumberFormat.getIntegerInstance(Locale.ENGLISH);
+		return report + "\n" + ErrorMessage.format("ErrorsOmitted", numberFormat.format(omittedErrors),
+				numberFormat.format(maxErrors));
+	}
+
+	private boolean accept() {
+		if (super.getErrorCount() < maxErrors) {
+			return true;
+		}
+		omittedErrors++;
+		return false;
+	}
+
+}
@@ -11,6 +11,9 @@ import java.util.logging.Logger;
 import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
 import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
@@ -29,11 +32,69 @@ import jakarta.ws.rs.core.UriBuilder;
 
 /**
  * Provides various utility methods for creating and configuring HTTP client components.
+ *
+ * <p>
+ * A shared client (see {@link #getSharedClient()}) is used for all requests submitted
+ * during a test run, so that connections to a host are kept alive and reused rather than
+ * opened (and secured) for every referent. Its connection pool can be configured using
+ * the following system properties:
+ * </p>
+ * <ul>
+ * <li>{@value #MAX_CONNECTIONS_PROPERTY} - the maximum number of pooled connections
+ * (default: {@value #DEFAULT_MAX_CONNECTIONS});</li>
+ * <li>{@value #MAX_PER_ROUTE_PROPERTY} - the maximum number of pooled connections to a
+ * host (default: {@value #DEFAULT_MAX_PER_ROUTE});</li>
+ * <li>{@value #CONNECT_TIMEOUT_PROPERTY} - the connection timeout in milliseconds
+ * (default: {@value #DEFAULT_CONNECT_TIMEOUT});</li>
+ * <li>{@value #READ_TIMEOUT_PROPERTY} - the read (socket) timeout in milliseconds
+ * (default: {@value #DEFAULT_READ_TIMEOUT});</li>
+ * <li>{@value #CONNECTION_REQUEST_TIMEOUT_PROPERTY} - the time in milliseconds to wait
+ * for a connection from the pool when all connections to a host are in use (default:
+ * {@value #DEFAULT_CONNECTION_REQUEST_TIMEOUT}).</li>
+ * </ul>
  */
 public class ClientUtils {
 
+	/** The system property that sets the maximum number of pooled connections. */
+	public static final String MAX_CONNECTIONS_PROPERTY = "kml22.http.maxConnections";
+
+	/**
+	 * The system property that sets the maximum number of pooled connections per host.
+	 */
+	public static final String MAX_PER_ROUTE_PROPERTY = "kml22.http.maxPerRoute";
+
+	/** The system property that sets the connection timeout (ms). */
+	public static final String CONNECT_TIMEOUT_PROPERTY = "kml22.http.connectTimeout";
+
+	/** The system property that sets the read timeout (ms). */
+	public static final String READ_TIMEOUT_PROPERTY = "kml22.http.readTimeout";
+
+	/**
+	 * The system property that sets the timeout (ms) for obtaining a pooled connection.
+	 */
+	public static final String CONNECTION_REQUEST_TIMEOUT_PROPERTY = "kml22.http.connectionRequestTimeout";
+
+	/** The default maximum number of pooled connections. */
+	public static final int DEFAULT_MAX_CONNECTIONS = 32;
+
+	/** The default maximum number of pooled connections per host. */
+	public static final int DEFAULT_MAX_PER_ROUTE = 8;
+
+	/** The default connection timeout (ms). */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	/** The default read timeout (ms). */
+	public static final int DEFAULT_READ_TIMEOUT = 60000;
+
+	/** The default timeout (ms) for obtaining a pooled connection. */
+	public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 30000;
+
 	private static final Logger LOGGER = Logger.getLogger(ClientUtils.class.getName());
 
+	private static Client sharedClient;
+
+	private static int sharedClientUsers;
+
 	/**
 	 * Builds a client component for interacting with HTTP endpoints. The client will
 	 * automatically redirect to the URI declared in 3xx responses. The connection timeout
@@ -51,6 +112,84 @@ public class ClientUtils {
 		return client;
 	}
 
+	/**
+	 * Returns the client component shared by all tests in this JVM, building it if
+	 * necessary. It uses the Apache HTTP client with a pool of persistent connections,
+	 * and is otherwise configured like a client built by {@link #buildClient()}. The
+	 * client is thread-safe; it must not be closed by the caller.
+	 *
+	 * <p>
+	 * The client is closed when its last registered user releases it (see
+	 * {@link #acquireSharedClient()}). A caller that is not part of a test run may use it
+	 * without acquiring it, but should acquire it if the client must stay open for a
+	 * while.
+	 * </p>
+	 * @return The shared Client component.
+	 */
+	public static synchronized Client getSharedClient() {
+		if (null == sharedClient) {
+			sharedClient = buildPooledClient();
+		}
+		return sharedClient;
+	}
+
+	/**
+	 * Registers a user of the shared client (usually a test run) and returns the client.
+	 * Each call must be matched by a call to {@link #releaseSharedClient()}.
+	 * @return The shared Client component.
+	 */
+	public static synchronized Client acquireSharedClient() {
+		sharedClientUsers++;
+		return getSharedClient();
+	}
+
+	/**
+	 * Deregisters a user of the shared client. When the last user is gone the client is
+	 * closed, along with any pooled connections; a new one will be built if it is needed
+	 * again. A client that was built on demand while no user was registered is also
+	 * closed.
+	 */
+	public static synchronized void releaseSharedClient() {
+		if (sharedClientUsers > 0) {
+			sharedClientUsers--;
+		}
+		if (sharedClientUsers == 0 && null != sharedClient) {
+			sharedClient.close();
+			sharedClient = null;
+		}
+	}
+
+	/**
+	 * Builds a client component that keeps connections alive in a pool (see
+	 * {@link #getSharedClient()}). The pool settings are read from system properties.
+	 * @return A new Client component.
+	 */
+	static Client buildPooledClient() {
+		PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager();
+		connManager.setMaxTotal(Math.max(1, Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS)));
+		connManager
+			.setDefaultMaxPerRoute(Math.max(1, Integer.getInteger(MAX_PER_ROUTE_PROPERTY, DEFAULT_MAX_PER_ROUTE)));
+		// check connections that were idle for a while before reusing them
+		connManager.setValidateAfterInactivity(2000);
+		ClientConfig config = new ClientConfig();
+		config.connectorProvider(new ApacheConnectorProvider());
+		config.property(ApacheClientProperties.CONNECTION_MANAGER, connManager);
+		// don't wait indefinitely for a connection if the pool is exhausted
+		config.property(ApacheClientProperties.REQUEST_CONFIG,
+				RequestConfig.custom()
+					.setConnectionRequestTimeout(
+							Integer.getInteger(CONNECTION_REQUEST_TIMEOUT_PROPERTY, DEFAULT_CONNECTION_REQUEST_TIMEOUT))
+					.build());
+		config.property(ClientProperties.FOLLOW_REDIRECTS, true);
+		config.property(ClientProperties.CONNECT_TIMEOUT,
+				Integer.getInteger(CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT));
+		config.property(ClientProperties.READ_TIMEOUT, Integer.getInteger(READ_TIMEOUT_PROPERTY, DEFAULT_READ_TIMEOUT));
+		config.register(new LoggingFeature(LOGGER, Level.ALL, LoggingFeature.Verbosity.PAYLOAD_ANY, 5000));
+		Client client = ClientBuilder.newClient(config);
+		client.register(new ReusableEntityFilter());
+		return client;
+	}
+
 	/**
 	 * Constructs a client component that uses a specified web proxy. Proxy authentication
 	 * is not supported. Configuring the client to use an intercepting proxy can be useful
@@ -75,7 +214,8 @@ public class ClientUtils {
 	}
 
 	/**
-	 * Builds an HTTP request message that uses the GET method.
+	 * Builds an HTTP request message that uses the GET method. The request is submitted
+	 * using the shared client (see {@link #getSharedClient()}).
 	 * @param endpoint A URI indicating the target resource.
 	 * @param qryParams A Map containing query parameters (may be null);
 	 * @param mediaTypes A list of acceptable media types; if not specified, the Accept
@@ -90,7 +230,7 @@ public class ClientUtils {
 			}
 		}
 		URI uri = uriBuilder.build();
-		WebTarget target = buildClient().target(uri);
+		WebTarget target = getSharedClient().target(uri);
 		Builder reqBuilder = target.request();
 		if (null != mediaTypes && mediaTypes.length > 0) {
 			reqBuilder = reqBuilder.accept(mediaTypes);
@@ -0,0 +1,298 @@
+package org.opengis.cite.kml22.util;
+
+import java.util.Arrays;
+
+/**
+ * Reads the content of a kml:coordinates element: a list of coordinate tuples
+ * (lon,lat[,alt]) separated by white space (SP, HT, CR, LF). The text is scanned one
+ * character at a time; no substrings or boxed values are created, and the arrays that
+ * hold the results are reused if the scanner is used again.
+ *
+ * <p>
+ * The results are consistent with splitting the (trimmed) content on white space and then
+ * splitting each tuple on commas using {@link String#split(String)}. In particular, empty
+ * content yields a single empty tuple, and trailing empty values in a tuple are ignored
+ * ("1,2," is a 2D tuple). Ordinate values are stored in a packed array with three values
+ * per tuple; the altitude of a 2D tuple is {@link Double#NaN}.
+ * </p>
+ *
+ * <p>
+ * An instance is not thread-safe.
+ * </p>
+ */
+public class CoordinateScanner {
+
+	/** The number of ordinate values stored for each tuple. */
+	public static final int STRIDE = 3;
+
+	/** Powers of ten that are exactly representable as doubles. */
+	private static final double[] POWERS_OF_TEN = new double[23];
+
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+		}
+	}
+
+	private CharSequence text;
+
+	private int tupleCount;
+
+	private int[] tupleStart = new int[16];
+
+	private int[] tupleEnd = new int[16];
+
+	private int[] dimensions = new int[16];
+
+	private boolean[] numeric = new boolean[16];
+
+	private double[] ordinates = new double[16 * STRIDE];
+
+	/** Indicates whether or not the last value was parsed successfully. */
+	private boolean parsed;
+
+	/**
+	 * Scans the given text (usually the content of a kml:coordinates element). Any
+	 * results from a previous scan are discarded.
+	 * @param coordinates A sequence of coordinate tuples.
+	 * @return The number of tuples found.
+	 */
+	public int scan(CharSequence coordinates) {
+		this.text = coordinates;
+		this.tupleCount = 0;
+		int length = coordinates.length();
+		int pos = 0;
+		while (pos < length) {
+			while (pos < length && isSpace(coordinates.charAt(pos))) {
+				pos++;
+			}
+			if (pos == length) {
+				break;
+			}
+			int start = pos;
+			while (pos < length && !isSpace(coordinates.charAt(pos))) {
+				pos++;
+			}
+			addTuple(start, pos);
+		}
+		if (tupleCount == 0) {
+			addTuple(0, 0);
+		}
+		return tupleCount;
+	}
+
+	/**
+	 * Returns the number of tuples found by the last scan.
+	 * @return The tuple count (at least 1).
+	 */
+	public int getTupleCount() {
+		return tupleCount;
+	}
+
+	/**
+	 * Returns the number of comma-separated values in a tuple (trailing empty values are
+	 * not counted).
+	 * @param tuple The (0-based) index of a tuple.
+	 * @return The tuple dimension; a valid tuple has 2 or 3 values.
+	 */
+	public int getDimension(int tuple) {
+		checkIndex(tuple);
+		return dimensions[tuple];
+	}
+
+	/**
+	 * Indicates whether a tuple is a valid 2D or 3D tuple containing only numeric values.
+	 * @param tuple The (0-based) index of a tuple.
+	 * @return {@code true} if all values could be parsed as numbers; {@code false} if the
+	 * tuple dimension is invalid or some value is not a number.
+	 */
+	public boolean isNumeric(int tuple) {
+		checkIndex(tuple);
+		return numeric[tuple];
+	}
+
+	/**
+	 * Returns an ordinate value of a numeric tuple.
+	 * @param tuple The (0-based) index of a tuple.
+	 * @param ordinate The ordinate (0: longitude, 1: latitude, 2: altitude).
+	 * @return The ordinate value; this is {@link Double#NaN} if it is missing or the
+	 * tuple is not numeric.
+	 */
+	public double getOrdinate(int tuple, int ordinate) {
+		checkIndex(tuple);
+		if (ordinate < 0 || ordinate >= STRIDE) {
+			throw new IndexOutOfBoundsException("Invalid ordinate: " + ordinate);
+		}
+		return ordinates[tuple * STRIDE + ordinate];
+	}
+
+	/**
+	 * Returns a copy of the ordinate values of all tuples, packed in a single array with
+	 * {@value #STRIDE} values per tuple.
+	 * @return An array of length {@code STRIDE * getTupleCount()}.
+	 */
+	public double[] getOrdinates() {
+		return Arrays.copyOf(ordinates, tupleCount * STRIDE);
+	}
+
+	/**
+	 * Returns the text of a tuple (intended for error messages).
+	 * @param tuple The (0-based) index of a tuple.
+	 * @return The tuple as it appears in the scanned text.
+	 */
+	public String getTuple(int tuple) {
+		checkIndex(tuple);
+		return text.subSequence(tupleStart[tuple], tupleEnd[tuple]).toString();
+	}
+
+	/**
+	 * Determines whether two tuples have the same comma-separated values, compared as
+	 * text (trailing empty values are ignored).
+	 * @param tuple1 The index of a tuple.
+	 * @param tuple2 The index of another tuple.
+	 * @return {@code true} if the tuples are textually identical; {@code false}
+	 * otherwise.
+	 */
+	public boolean isSameTuple(int tuple1, int tuple2) {
+		checkIndex(tuple1);
+		checkIndex(tuple2);
+		int end1 = trimTrailingCommas(tupleStart[tuple1], tupleEnd[tuple1]);
+		int end2 = trimTrailingCommas(tupleStart[tuple2], tupleEnd[tuple2]);
+		int length = end1 - tupleStart[tuple1];
+		if (length != end2 - tupleStart[tuple2]) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(tupleStart[tuple1] + i) != text.charAt(tupleStart[tuple2] + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void addTuple(int start, int end) {
+		if (tupleCount == dimensions.length) {
+			int capacity = tupleCount * 2;
+			tupleStart = Arrays.copyOf(tupleStart, capacity);
+			tupleEnd = Arrays.copyOf(tupleEnd, capacity);
+			dimensions = Arrays.copyOf(dimensions, capacity);
+			numeric = Arrays.copyOf(numeric, capacity);
+			ordinates = Arrays.copyOf(ordinates, capacity * STRIDE);
+		}
+		int index = tupleCount++;
+		tupleStart[index] = start;
+		tupleEnd[index] = end;
+		int offset = index * STRIDE;
+		ordinates[offset] = Double.NaN;
+		ordinates[offset + 1] = Double.NaN;
+		ordinates[offset + 2] = Double.NaN;
+		// count values (as String.split does, ignoring trailing empty values)
+		int trimmedEnd = trimTrailingCommas(start, end);
+		int dim = (trimmedEnd == start) ? 0 : 1;
+		for (int i = start; i < trimmedEnd; i++) {
+			if (text.charAt(i) == ',') {
+				dim++;
+			}
+		}
+		dimensions[index] = dim;
+		numeric[index] = false;
+		if (dim < 2 || dim > STRIDE) {
+			return;
+		}
+		int valueStart = start;
+		for (int n = 0; n < dim; n++) {
+			int valueEnd = valueStart;
+			while (valueEnd < trimmedEnd && text.charAt(valueEnd) != ',') {
+				valueEnd++;
+			}
+			double value = parseDouble(valueStart, valueEnd);
+			if (!parsed) {
+				ordinates[offset] = Double.NaN;
+				ordinates[offset + 1] = Double.NaN;
+				ordinates[offset + 2] = Double.NaN;
+				return;
+			}
+			ordinates[offset + n] = value;
+			valueStart = valueEnd + 1;
+		}
+		numeric[index] = true;
+	}
+
+	/**
+	 * Parses a decimal number. Simple decimal values (at most 15 significant digits and
+	 * no exponent) are converted directly; anything else is handed over to
+	 * {@link Double#parseDouble(String)}.
+	 * @return The numeric value ({@link #parsed} is false if the text is not a number).
+	 */
+	private double parseDouble(int start, int end) {
+		parsed = true;
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+			negative = text.charAt(pos) == '-';
+			pos++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean point = false;
+		boolean anyDigit = false;
+		boolean simple = true;
+		for (; pos < end; pos++) {
+			char c = text.charAt(pos);
+			if (c >= '0' && c <= '9') {
+				anyDigit = true;
+				if (mantissa == 0 && c == '0' && !point) {
+					continue; // leading zero
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (point) {
+					fractionDigits++;
+				}
+				if (digits > 15) {
+					simple = false;
+					break;
+				}
+			}
+			else if (c == '.' && !point) {
+				point = true;
+			}
+			else {
+				simple = false;
+				break;
+			}
+		}
+		if (simple && anyDigit) {
+			// mantissa and power of ten are exact, so one division is correctly rounded
+			double value = mantissa / POWERS_OF_TEN[fractionDigits];
+			return negative ? -value : value;
+		}
+		try {
+			return Double.parseDouble(text.subSequence(start, end).toString());
+		}
+		catch (NumberFormatException e) {
+			parsed = false;
+			return Double.NaN;
+		}
+	}
+
+	private int trimTrailingCommas(int start, int end) {
+		while (end > start && text.charAt(end - 1) == ',') {
+			end--;
+		}
+		return end;
+	}
+
+	private void checkIndex(int tuple) {
+		if (tuple < 0 || tuple >= tupleCount) {
+			throw new IndexOutOfBoundsException("Invalid tuple index: " + tuple);
+		}
+	}
+
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+}
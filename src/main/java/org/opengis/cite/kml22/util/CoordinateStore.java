@@ -0,0 +1,75 @@
+package org.opengis.cite.kml22.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Holds the parsed content of the kml:coordinates elements in a document. Each element is
+ * parsed only once, when its coordinates are first requested; all test methods that
+ * inspect coordinate tuples share the results (see
+ * {@link org.opengis.cite.kml22.SuiteAttribute#COORDINATE_STORE}).
+ *
+ * <p>
+ * The store is a snapshot: it is not updated if the document is subsequently modified. An
+ * instance is thread-safe.
+ * </p>
+ */
+public class CoordinateStore {
+
+	private final Document document;
+
+	/** Parsed coordinates by element key (see {@link XMLUtils#getNodeKey(Node)}). */
+	private final Map<Object, PackedCoordinates> entries = new HashMap<>();
+
+	private final CoordinateScanner scanner = new CoordinateScanner();
+
+	/**
+	 * Creates an empty store for the coordinates in the given document.
+	 * @param doc A Document node (usually a KML document).
+	 */
+	public CoordinateStore(Document doc) {
+		if (null == doc) {
+			throw new IllegalArgumentException("Document is null.");
+		}
+		this.document = doc;
+	}
+
+	/**
+	 * Returns the document to which the stored coordinates belong.
+	 * @return A Document node.
+	 */
+	public Document getDocument() {
+		return document;
+	}
+
+	/**
+	 * Returns the coordinate tuples contained in a kml:coordinates element. The content
+	 * is parsed on the first request.
+	 * @param coordinates A kml:coordinates element in the document.
+	 * @return The packed coordinate tuples.
+	 */
+	public synchronized PackedCoordinates getCoordinates(Node coordinates) {
+		if (!this.document.isSameNode(coordinates.getOwnerDocument())) {
+			throw new IllegalArgumentException("Node does not belong to this document: " + coordinates.getNodeName());
+		}
+		Object key = XMLUtils.getNodeKey(coordinates);
+		PackedCoordinates tuples = entries.get(key);
+		if (null == tuples) {
+			tuples = PackedCoordinates.parse(coordinates.getTextContent(), scanner);
+			entries.put(key, tuples);
+		}
+		return tuples;
+	}
+
+	/**
+	 * Returns the number of kml:coordinates elements parsed so far.
+	 * @return The number of stored entries.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+}
@@ -0,0 +1,569 @@
+package org.opengis.cite.kml22.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import org.opengis.cite.kml22.ReusableEntityFilter;
+
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Invocation.Builder;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Stores the resources retrieved from HTTP endpoints in a local directory, so that a
+ * resource is downloaded again only if it has changed. This matters on long-lived hosts
+ * where the same documents (e.g. a large KMZ archive) are tested repeatedly.
+ *
+ * <ul>
+ * <li>Files are named by the SHA-256 digest of their content, so identical content
+ * retrieved from different URIs (or by different test runs) is stored only once.</li>
+ * <li>For each URI the validators in the last response (ETag, Last-Modified) are
+ * remembered; a later retrieval is a conditional GET request, and the stored file is
+ * reused if the server responds with status 304 (Not Modified).</li>
+ * <li>The total size of the stored files is bounded; the least recently used files are
+ * deleted when it is exceeded. A file is never deleted while it is in use: it is pinned
+ * when it is returned by {@link #fetch(URI, Client, String...) fetch}, until the caller
+ * {@link Download#release() releases} it.</li>
+ * </ul>
+ *
+ * <p>
+ * The directory and size limit of the shared instance can be set using the system
+ * properties {@value #DIRECTORY_PROPERTY} (default: "ets-kml22-downloads" in the default
+ * temporary file directory) and {@value #MAX_SIZE_PROPERTY} (default:
+ * {@value #DEFAULT_MAX_SIZE} bytes). Files left by a previous process are taken into
+ * account, but their URIs are not known. The directory may be shared by several
+ * processes: a partial download ({@value #PART_SUFFIX} file) is only deleted once it is
+ * at least a day old. An instance is thread-safe.
+ * </p>
+ */
+public class DownloadCache {
+
+	/** The system property that sets the directory of the shared cache. */
+	public static final String DIRECTORY_PROPERTY = "kml22.downloads.dir";
+
+	/** The system property that sets the maximum size (bytes) of the shared cache. */
+	public static final String MAX_SIZE_PROPERTY = "kml22.downloads.maxSize";
+
+	/** The default maximum size (bytes) of the shared cache. */
+	public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+	private static final String PART_SUFFIX = ".part";
+
+	/** The maximum number of URIs for which validators are remembered. */
+	private static final int MAX_VALIDATORS = 10000;
+
+	/**
+	 * The age (ms) after which a partial download is assumed to be abandoned, since
+	 * another process may still be writing a more recent one.
+	 */
+	private static final long STALE_PART_AGE = 24L * 60 * 60 * 1000;
+
+	private static DownloadCache sharedCache;
+
+	private final Path directory;
+
+	private final long maxSize;
+
+	/** The stored files (name, size) in access order. Guarded by this. */
+	private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long totalSize;
+
+	/** The number of users of each pinned file. Guarded by this. */
+	private final Map<String, Integer> pins = new HashMap<>();
+
+	/** The validators of the stored resources, in access order. Guarded by this. */
+	private final LinkedHashMap<URI, Validators> validators = new LinkedHashMap<URI, Validators>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<URI, Validators> eldest) {
+			return size() > MAX_VALIDATORS;
+		}
+	};
+
+	/** The retrievals in progress, by URI. */
+	private final ConcurrentMap<URI, CompletableFuture<Download>> retrievals = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a cache that stores files in the given directory. Any files already there
+	 * (from an earlier process) are included in the total size.
+	 * @param directory A directory; it is created if it does not exist.
+	 * @param maxSize The maximum total size of the stored files (bytes). The most
+	 * recently used file is kept even if it is larger.
+	 * @throws IOException If the directory cannot be created or read.
+	 */
+	public DownloadCache(Path directory, long maxSize) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.maxSize = maxSize;
+		long staleTime = System.currentTimeMillis() - STALE_PART_AGE;
+		List<Path> existing = new ArrayList<>();
+		try (DirectoryStream<Path> dir = Files.newDirectoryStream(directory)) {
+			for (Path file : dir) {
+				if (!Files.isRegularFile(file)) {
+					continue;
+				}
+				if (file.getFileName().toString().endsWith(PART_SUFFIX)) {
+					// incomplete download, unless another process is still writing it
+					if (getLastModifiedTime(file).toMillis() < staleTime) {
+						Files.deleteIfExists(file);
+					}
+					continue;
+				}
+				existing.add(file);
+			}
+		}
+		existing.sort((f1, f2) -> getLastModifiedTime(f1).compareTo(getLastModifiedTime(f2)));
+		synchronized (this) {
+			for (Path file : existing) {
+				addFile(file.getFileName().toString(), file.toFile().length());
+			}
+			evict();
+		}
+	}
+
+	/**
+	 * Returns the cache shared by all test runs in this JVM, creating it if necessary.
+	 * @return The shared DownloadCache.
+	 * @throws IOException If the cache directory cannot be created or read.
+	 */
+	public static synchronized DownloadCache getSharedCache() throws IOException {
+		if (null == sharedCache) {
+			String dir = System.getProperty(DIRECTORY_PROPERTY);
+			Path directory = (null != dir) ? Paths.get(dir)
+					: Paths.get(System.getProperty("java.io.tmpdir"), "ets-kml22-downloads");
+			long maxSize = Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+			sharedCache = new DownloadCache(directory, maxSize);
+		}
+		return sharedCache;
+	}
+
+	/**
+	 * Retrieves a resource using the shared HTTP client (see
+	 * {@link ClientUtils#acquireSharedClient()}), which is held until the response has
+	 * been read.
+	 * @param uri An absolute 'http' or 'https' URI.
+	 * @param mediaTypes The acceptable media types (if none are given, the Accept header
+	 * is omitted).
+	 * @return The outcome of the retrieval.
+	 * @throws IOException If the content cannot be stored.
+	 * @see #fetch(URI, Client, String...)
+	 */
+	public Download fetch(URI uri, String... mediaTypes) throws IOException {
+		Client client = ClientUtils.acquireSharedClient();
+		try {
+			return fetch(uri, client, mediaTypes);
+		}
+		finally {
+			ClientUtils.releaseSharedClient();
+		}
+	}
+
+	/**
+	 * Retrieves a resource, unless the stored copy is still current. Concurrent requests
+	 * for the same URI share one retrieval, so the resource is downloaded only once;
+	 * requests for other URIs proceed independently.
+	 *
+	 * <p>
+	 * The local file is pinned: it is not deleted to make room for other content until
+	 * the result is {@link Download#release() released}. The caller must release it when
+	 * the file is no longer needed (e.g. at the end of a test run).
+	 * </p>
+	 * @param uri An absolute 'http' or 'https' URI.
+	 * @param client The HTTP client component to use.
+	 * @param mediaTypes The acceptable media types (if none are given, the Accept header
+	 * is omitted).
+	 * @return The outcome of the retrieval; if the status is not 200 (OK) there is no
+	 * local file.
+	 * @throws IOException If the content cannot be stored.
+	 */
+	public Download fetch(URI uri, Client client, String... mediaTypes) throws IOException {
+		while (true) {
+			CompletableFuture<Download> retrieval = new CompletableFuture<>();
+			CompletableFuture<Download> current = this.retrievals.putIfAbsent(uri, retrieval);
+			if (null == current) {
+				try {
+					Download download = retrieve(uri, client, mediaTypes);
+					retrieval.complete(download);
+					return download;
+				}
+				catch (IOException | RuntimeException | Error e) {
+					retrieval.completeExceptionally(e);
+					throw e;
+				}
+				finally {
+					this.retrievals.remove(uri, retrieval);
+				}
+			}
+			Download shared;
+			try {
+				shared = current.join();
+			}
+			catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw new IOException(cause.getMessage(), cause);
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw e;
+			}
+			if (null == shared.fileName) {
+				return new Download(this, uri, shared.status, shared.contentType, null, null);
+			}
+			if (pin(shared.fileName)) {
+				return new Download(this, uri, shared.status, shared.contentType, shared.fileName, shared.file);
+			}
+			// evicted in the meantime: retrieve it again
+		}
+	}
+
+	/**
+	 * Submits a (conditional) request for a resource and stores the content. The stored
+	 * file is pinned.
+	 */
+	private Download retrieve(URI uri, Client client, String... mediaTypes) throws IOException {
+		Validators previous = getValidators(uri);
+		// the stored copy must not be evicted while it is being revalidated
+		boolean conditional = null != previous && pin(previous.fileName);
+		boolean keepPin = false;
+		// the entity is streamed into the cache directory, so it must not be spooled
+		// first
+		Builder reqBuilder = client.target(uri).request().property(ReusableEntityFilter.READ_ONCE_PROPERTY, true);
+		if (null != mediaTypes && mediaTypes.length > 0) {
+			reqBuilder.accept(mediaTypes);
+		}
+		if (conditional) {
+			if (null != previous.entityTag) {
+				reqBuilder.header(HttpHeaders.IF_NONE_MATCH, previous.entityTag);
+			}
+			if (null != previous.lastModified) {
+				reqBuilder.header(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified);
+			}
+		}
+		Response rsp = null;
+		try {
+			rsp = reqBuilder.get();
+			if (conditional && rsp.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+				touch(previous.fileName);
+				TestSuiteLogger.log(Level.FINE, "Resource not modified: " + uri);
+				keepPin = true;
+				return new Download(this, uri, Response.Status.OK.getStatusCode(), previous.contentType,
+						previous.fileName, this.directory.resolve(previous.fileName).toFile());
+			}
+			if (rsp.getStatus() != Response.Status.OK.getStatusCode()) {
+				MediaType contentType = rsp.getMediaType();
+				return new Download(this, uri, rsp.getStatus(), (null != contentType) ? contentType.toString() : null,
+						null, null);
+			}
+			return store(uri, rsp);
+		}
+		finally {
+			if (null != rsp) {
+				rsp.close();
+			}
+			if (conditional && !keepPin) {
+				unpin(previous.fileName);
+			}
+		}
+	}
+
+	/**
+	 * Returns the total size of the stored files.
+	 * @return The size in bytes.
+	 */
+	public synchronized long getTotalSize() {
+		return this.totalSize;
+	}
+
+	/**
+	 * Returns the directory where the files are stored.
+	 * @return A Path denoting a directory.
+	 */
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * Writes the response entity to a temporary file while computing its digest, then
+	 * moves it into place (or discards it if the same content is already stored). The
+	 * stored file is pinned.
+	 */
+	private Download store(URI uri, Response rsp) throws IOException {
+		MediaType contentType = rsp.getMediaType();
+		String suffix = (null != contentType && contentType.getSubtype().endsWith("xml")) ? ".xml" : "";
+		MessageDigest digest = newDigest();
+		Path partFile = Files.createTempFile(this.directory, "download-", PART_SUFFIX);
+		try {
+			if (rsp.hasEntity()) {
+				try (InputStream entity = new DigestInputStream(rsp.readEntity(InputStream.class), digest)) {
+					Files.copy(entity, partFile, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			String fileName = toHex(digest.digest()) + suffix;
+			Path file = this.directory.resolve(fileName);
+			synchronized (this) {
+				if (this.files.containsKey(fileName) && Files.isRegularFile(file)) {
+					Files.delete(partFile);
+					touch(fileName);
+					pin(fileName);
+				}
+				else {
+					Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					addFile(fileName, Files.size(file));
+					pin(fileName);
+					evict();
+				}
+				Validators current = new Validators(rsp.getHeaderString(HttpHeaders.ETAG),
+						rsp.getHeaderString(HttpHeaders.LAST_MODIFIED),
+						(null != contentType) ? contentType.toString() : null, fileName);
+				if (null != current.entityTag || null != current.lastModified) {
+					this.validators.put(uri, current);
+				}
+				else {
+					this.validators.remove(uri);
+				}
+			}
+			TestSuiteLogger.log(Level.FINE, "Stored resource retrieved from " + uri + " at " + file);
+			return new Download(this, uri, rsp.getStatus(), (null != contentType) ? contentType.toString() : null,
+					fileName, file.toFile());
+		}
+		finally {
+			Files.deleteIfExists(partFile);
+		}
+	}
+
+	/**
+	 * Marks a stored file as used. The file time is updated too, so the order of use is
+	 * known to a later process.
+	 */
+	private synchronized void touch(String fileName) {
+		this.files.get(fileName); // access updates LRU order
+		try {
+			Files.setLastModifiedTime(this.directory.resolve(fileName),
+					FileTime.fromMillis(System.currentTimeMillis()));
+		}
+		catch (IOException e) { // not essential
+		}
+	}
+
+	/**
+	 * Returns the validators of the stored copy of a resource.
+	 * @return The validators, or {@code null} if there is no stored copy or it cannot be
+	 * revalidated.
+	 */
+	private synchronized Validators getValidators(URI uri) {
+		Validators previous = this.validators.get(uri);
+		if (null != previous && !this.files.containsKey(previous.fileName)) {
+			this.validators.remove(uri);
+			return null;
+		}
+		return previous;
+	}
+
+	/**
+	 * Pins a stored file, so that it is not evicted.
+	 * @return {@code true} if the file is stored; {@code false} otherwise.
+	 */
+	private synchronized boolean pin(String fileName) {
+		if (!this.files.containsKey(fileName) || !Files.isRegularFile(this.directory.resolve(fileName))) {
+			return false;
+		}
+		this.pins.merge(fileName, 1, Integer::sum);
+		return true;
+	}
+
+	/** Unpins a stored file; it may be evicted once no one else is using it. */
+	private synchronized void unpin(String fileName) {
+		if (null == this.pins.computeIfPresent(fileName, (name, count) -> (count > 1) ? count - 1 : null)) {
+			evict();
+		}
+	}
+
+	/** Must hold the lock on this. */
+	private void addFile(String fileName, long size) {
+		Long previousSize = this.files.put(fileName, size);
+		this.totalSize += size - ((null != previousSize) ? previousSize : 0);
+	}
+
+	/**
+	 * Deletes the least recently used files that are not pinned until the size limit is
+	 * met. Must hold the lock on this.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> itr = this.files.entrySet().iterator();
+		while (this.totalSize > this.maxSize && this.files.size() > 1 && itr.hasNext()) {
+			Map.Entry<String, Long> eldest = itr.next();
+			String fileName = eldest.getKey();
+			if (this.pins.containsKey(fileName)) {
+				continue;
+			}
+			try {
+				Files.deleteIfExists(this.directory.resolve(fileName));
+			}
+			catch (IOException e) {
+				TestSuiteLogger.log(Level.WARNING, "Failed to delete cached file " + fileName, e);
+				continue;
+			}
+			this.totalSize -= eldest.getValue();
+			itr.remove();
+			this.validators.values().removeIf(stored -> fileName.equals(stored.fileName));
+		}
+	}
+
+	private static FileTime getLastModifiedTime(Path file) {
+		try {
+			return Files.getLastModifiedTime(file);
+		}
+		catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // required in every Java platform
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * The validators (ETag, Last-Modified) of a stored resource.
+	 */
+	private static final class Validators {
+
+		final String entityTag;
+
+		final String lastModified;
+
+		final String contentType;
+
+		final String fileName;
+
+		Validators(String entityTag, String lastModified, String contentType, String fileName) {
+			this.entityTag = entityTag;
+			this.lastModified = lastModified;
+			this.contentType = contentType;
+			this.fileName = fileName;
+		}
+
+	}
+
+	/**
+	 * The outcome of retrieving a resource. The local file (if any) is pinned until
+	 * {@link #release()} is called.
+	 */
+	public static final class Download {
+
+		private final DownloadCache cache;
+
+		private final URI uri;
+
+		private final int status;
+
+		private final String contentType;
+
+		private final String fileName;
+
+		private final File file;
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		Download(DownloadCache cache, URI uri, int status, String contentType, String fileName, File file) {
+			this.cache = cache;
+			this.uri = uri;
+			this.status = status;
+			this.contentType = contentType;
+			this.fileName = fileName;
+			this.file = file;
+		}
+
+		/**
+		 * Returns the URI of the resource.
+		 * @return An absolute URI.
+		 */
+		public URI getURI() {
+			return uri;
+		}
+
+		/**
+		 * Returns the status code of the response that delivered the content (200 if the
+		 * stored copy was still current).
+		 * @return An HTTP status code.
+		 */
+		public int getStatus() {
+			return status;
+		}
+
+		/**
+		 * Returns the media type of the content.
+		 * @return The value of the Content-Type header, or {@code null} if there is none.
+		 */
+		public String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * Returns the local file holding the content. It is kept until this download is
+		 * released; it may be deleted afterwards when other content is stored.
+		 * @return A File, or {@code null} if the resource was not retrieved.
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * Releases the local file, so that it may be evicted from the cache. Subsequent
+		 * calls have no effect.
+		 */
+		public void release() {
+			if (null != fileName && released.compareAndSet(false, true)) {
+				cache.unpin(fileName);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Download [uri=" + uri + ", status=" + status + ", contentType=" + contentType + ", file=" + file
+					+ "]";
+		}
+
+	}
+
+}
@@ -0,0 +1,97 @@
+package org.opengis.cite.kml22.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An enumerated type defining the kinds of input from which a KML document can be read.
+ * The format is detected by inspecting the first few bytes of the content, so that the
+ * input can be passed directly to a suitable reader.
+ */
+public enum InputFormat {
+
+	/** A ZIP archive (KMZ file); it begins with a local file header signature. */
+	ZIP,
+	/** A gzip-compressed stream (e.g. a <em>.kml.gz</em> file). */
+	GZIP,
+	/**
+	 * An XML document; it begins with a byte order mark, an XML declaration, or markup
+	 * (possibly preceded by white space).
+	 */
+	XML,
+	/** Content of some other kind (or no content). */
+	UNKNOWN;
+
+	/** The number of bytes needed to detect the format. */
+	static final int HEADER_LENGTH = 4;
+
+	/**
+	 * Detects the format of the content of the given file.
+	 * @param file A File object.
+	 * @return The input format.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static InputFormat detect(File file) throws IOException {
+		try (InputStream input = new FileInputStream(file)) {
+			return detect(input.readNBytes(HEADER_LENGTH));
+		}
+	}
+
+	/**
+	 * Detects the format of the content read from the given stream. The stream must
+	 * support mark/reset; it is reset to its initial position.
+	 * @param input An InputStream that supports marking.
+	 * @return The input format.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	public static InputFormat detect(InputStream input) throws IOException {
+		if (!input.markSupported()) {
+			throw new IllegalArgumentException("InputStream does not support mark/reset.");
+		}
+		input.mark(HEADER_LENGTH);
+		try {
+			return detect(input.readNBytes(HEADER_LENGTH));
+		}
+		finally {
+			input.reset();
+		}
+	}
+
+	/**
+	 * Detects the format of some content given its leading bytes.
+	 * @param header The first bytes of the content (at most {@value #HEADER_LENGTH} are
+	 * inspected).
+	 * @return The input format.
+	 */
+	public static InputFormat detect(byte[] header) {
+		if (header.length >= 4 && header[0] == 'P' && header[1] == 'K' && header[2] == 3 && header[3] == 4) {
+			return ZIP;
+		}
+		if (header.length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b) {
+			return GZIP;
+		}
+		if (header.length >= 3 && (header[0] & 0xff) == 0xef && (header[1] & 0xff) == 0xbb
+				&& (header[2] & 0xff) == 0xbf) {
+			return XML; // UTF-8 BOM
+		}
+		if (header.length >= 2 && (((header[0] & 0xff) == 0xfe && (header[1] & 0xff) == 0xff)
+				|| ((header[0] & 0xff) == 0xff && (header[1] & 0xff) == 0xfe))) {
+			return XML; // UTF-16 BOM
+		}
+		if (header.length >= 2 && ((header[0] == 0 && header[1] == '<') || (header[0] == '<' && header[1] == 0))) {
+			return XML; // UTF-16 without BOM
+		}
+		for (byte b : header) {
+			if (b == '<') {
+				return XML;
+			}
+			if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+				break;
+			}
+		}
+		return UNKNOWN;
+	}
+
+}
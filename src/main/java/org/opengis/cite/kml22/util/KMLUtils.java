@@ -1,30 +1,154 @@
 package org.opengis.cite.kml22.util;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.Enumeration;
 import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-import org.apache.commons.io.IOUtils;
+import javax.xml.validation.Schema;
+
 import org.w3c.dom.Document;
+import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 
+import net.sf.saxon.s9api.XdmNode;
+
 /**
  *
  * Provides various utility methods for reading or manipulating KML and KMZ resources.
  */
 public class KMLUtils {
 
+	/** The URI scheme used to refer to an entry in a ZIP archive. */
+	private static final String ARCHIVE_SCHEME = "jar";
+
+	/** Separates the archive URI from the entry name. */
+	private static final String ENTRY_SEPARATOR = "!/";
+
+	/**
+	 * Parses the KML document in the given file, validating it against the given schema
+	 * while it is being parsed. The content is inspected first (see
+	 * {@link InputFormat#detect(File)}) so that it is read only once, by the appropriate
+	 * reader:
+	 * <ul>
+	 * <li>a KMZ file is read as for
+	 * {@link #extractKMLFromArchive(File, Schema, ErrorHandler)};</li>
+	 * <li>gzip-compressed content is decompressed while it is parsed;</li>
+	 * <li>anything else is parsed as an XML document.</li>
+	 * </ul>
+	 * @param file A File containing a KML document or a KMZ archive.
+	 * @param schema The Schema to validate against (may be null).
+	 * @param errHandler The handler that receives validation errors (may be null).
+	 * @return A KML document, or {@code null} if a KMZ archive does not contain one.
+	 * @throws java.io.IOException If the file cannot be read.
+	 * @throws org.xml.sax.SAXException If the document is not well-formed.
+	 */
+	public static Document parseKML(File file, Schema schema, ErrorHandler errHandler)
+			throws IOException, SAXException {
+		InputFormat format = InputFormat.detect(file);
+		if (TestSuiteLogger.isLoggable(Level.FINER)) {
+			TestSuiteLogger.log(Level.FINER, String.format("Detected %s content in %s", format, file));
+		}
+		switch (format) {
+			case ZIP:
+				return extractKMLFromArchive(file, schema, errHandler);
+			case GZIP:
+				try (InputStream input = new GZIPInputStream(new FileInputStream(file))) {
+					return URIUtils.parse(input, file.toURI(), schema, errHandler);
+				}
+			default:
+				return URIUtils.parseURI(file.toURI(), schema, errHandler);
+		}
+	}
+
 	/**
-	 * Extracts the contents of the given ZIP archive and parses the first root-level KML
-	 * document found within it. The main KML document is conventionally named
-	 * <em>doc.kml</em> but this is not required; the {@code .kml} extension is expected,
-	 * however.
+	 * Parses the KML document at the given location. The content is handled as for
+	 * {@link #parseKML(File, Schema, ErrorHandler)}, so it may be a KMZ archive or
+	 * gzip-compressed. An HTTP resource is retrieved using the shared
+	 * {@link DownloadCache}; an entry in a KMZ archive is read directly.
+	 * @param uri An absolute URI.
+	 * @return A KML document, or {@code null} if a KMZ archive does not contain one.
+	 * @throws java.io.IOException If the resource cannot be retrieved or read.
+	 * @throws org.xml.sax.SAXException If the document is not well-formed.
+	 */
+	public static Document parseKML(URI uri) throws IOException, SAXException {
+		if (isArchiveEntryURI(uri)) {
+			return URIUtils.parseURI(uri);
+		}
+		if ("file".equalsIgnoreCase(uri.getScheme())) {
+			return parseKML(new File(uri), null, null);
+		}
+		DownloadCache.Download download = DownloadCache.getSharedCache().fetch(uri);
+		try {
+			if (null == download.getFile()) {
+				throw new IOException(
+						String.format("No content available at %s (status %d)", uri, download.getStatus()));
+			}
+			return parseKML(download.getFile(), null, null);
+		}
+		finally {
+			download.release();
+		}
+	}
+
+	/**
+	 * Reads the KML document in the given file into a compact, immutable tree (see
+	 * {@link XMLUtils#buildXdmNode(InputStream, URI, Schema, ErrorHandler)}), validating
+	 * it against the given schema while it is being read. The content is handled as for
+	 * {@link #parseKML(File, Schema, ErrorHandler)}.
+	 * @param file A File containing a KML document or a KMZ archive.
+	 * @param schema The Schema to validate against (may be null).
+	 * @param errHandler The handler that receives validation errors (may be null).
+	 * @return An XdmNode representing the document node, or {@code null} if a KMZ archive
+	 * does not contain a KML document.
+	 * @throws java.io.IOException If the file cannot be read.
+	 * @throws org.xml.sax.SAXException If the document is not well-formed.
+	 */
+	public static XdmNode buildKML(File file, Schema schema, ErrorHandler errHandler) throws IOException, SAXException {
+		switch (InputFormat.detect(file)) {
+			case ZIP:
+				ZipEntry kmlEntry;
+				try (ZipFile zipFile = new ZipFile(file)) {
+					kmlEntry = findKMLEntry(zipFile);
+				}
+				if (null == kmlEntry) {
+					return null;
+				}
+				URI entryURI = getArchiveEntryURI(file, kmlEntry.getName());
+				try (InputStream input = openArchiveEntry(entryURI)) {
+					return XMLUtils.buildXdmNode(input, entryURI, schema, errHandler);
+				}
+			case GZIP:
+				try (InputStream input = new GZIPInputStream(new FileInputStream(file))) {
+					return XMLUtils.buildXdmNode(input, file.toURI(), schema, errHandler);
+				}
+			default:
+				try (InputStream input = new FileInputStream(file)) {
+					return XMLUtils.buildXdmNode(input, file.toURI(), schema, errHandler);
+				}
+		}
+	}
+
+	/**
+	 * Parses the first root-level KML document found within the given ZIP archive. The
+	 * main KML document is conventionally named <em>doc.kml</em> but this is not
+	 * required; the {@code .kml} extension is expected, however.
+	 *
+	 * <p>
+	 * The archive is not extracted. The document URI refers to the entry within the
+	 * archive (see {@link #getArchiveEntryURI(File, String)}), so relative references to
+	 * other resources in the archive (icons, models, and so on) resolve to entries that
+	 * are read on demand.
+	 * </p>
 	 * @param file A File object that presumably represents a KMZ file (ZIP archive).
 	 * @return A KML document, or {@code null} if a root-level KML file could not be found
 	 * in the archive.
@@ -36,34 +160,204 @@ public class KMLUtils {
 	 * a KMZ File?</a>
 	 */
 	public static Document extractKMLFromArchive(File file) throws IOException, SAXException {
+		return extractKMLFromArchive(file, null, null);
+	}
+
+	/**
+	 * Parses the first root-level KML document found within the given ZIP archive,
+	 * validating it against the given schema while it is being parsed (see
+	 * {@link URIUtils#parseURI(java.net.URI, Schema, ErrorHandler)}). The archive is not
+	 * extracted.
+	 * @param file A File object that presumably represents a KMZ file (ZIP archive).
+	 * @param schema The Schema to validate against (may be null).
+	 * @param errHandler The handler that receives validation errors (may be null).
+	 * @return A KML document, or {@code null} if a root-level KML file could not be found
+	 * in the archive.
+	 * @throws java.io.IOException The file was not a valid ZIP archive or some other I/O
+	 * error occurred.
+	 * @throws org.xml.sax.SAXException If a KML document was found but it is not
+	 * well-formed.
+	 */
+	public static Document extractKMLFromArchive(File file, Schema schema, ErrorHandler errHandler)
+			throws IOException, SAXException {
 		if (!file.exists()) {
 			throw new IllegalArgumentException("File does not exist: " + file.getAbsolutePath());
 		}
-		Document mainDoc = null;
+		ZipEntry kmlEntry;
 		try (ZipFile zipFile = new ZipFile(file)) {
-			Enumeration<? extends ZipEntry> entries = zipFile.entries();
-			while (entries.hasMoreElements()) {
-				ZipEntry entry = entries.nextElement();
-				File destFile = new File(file.getParent(), entry.getName());
-				if (entry.isDirectory()) {
-					destFile.mkdirs();
-					continue;
-				}
-				InputStream input = zipFile.getInputStream(entry);
-				OutputStream output = new FileOutputStream(destFile);
-				int nBytes = IOUtils.copy(input, output);
-				IOUtils.closeQuietly(input);
-				IOUtils.closeQuietly(output);
-				if ((null == mainDoc) && destFile.getName().endsWith(".kml")) {
-					mainDoc = URIUtils.parseURI(destFile.toURI());
+			kmlEntry = findKMLEntry(zipFile);
+		}
+		if (null == kmlEntry) {
+			return null;
+		}
+		URI entryURI = getArchiveEntryURI(file, kmlEntry.getName());
+		if (TestSuiteLogger.isLoggable(Level.FINER)) {
+			TestSuiteLogger.log(Level.FINER, String.format("Reading %d bytes from %s", kmlEntry.getSize(), entryURI));
+		}
+		return URIUtils.parseURI(entryURI, schema, errHandler);
+	}
+
+	/**
+	 * Constructs a URI that refers to an entry in a ZIP archive. It has the form
+	 * <code>jar:<em>{archive-uri}</em>!/<em>{entry-name}</em></code> (as for a
+	 * {@link java.net.JarURLConnection}).
+	 * @param archive A File representing a ZIP archive.
+	 * @param entryName The name of an entry in the archive.
+	 * @return An absolute (opaque) URI.
+	 */
+	public static URI getArchiveEntryURI(File archive, String entryName) {
+		// encode the name as a path so that a colon is not taken to be a scheme delimiter
+		String entryPath = toURIPath(entryName).getRawPath().substring(1);
+		return URI.create(ARCHIVE_SCHEME + ":" + archive.toURI() + ENTRY_SEPARATOR + entryPath);
+	}
+
+	/**
+	 * Determines whether or not the given URI refers to an entry in a ZIP archive.
+	 * @param uri A URI.
+	 * @return {@code true} if it is a 'jar' URI with an entry name; {@code false}
+	 * otherwise.
+	 */
+	public static boolean isArchiveEntryURI(URI uri) {
+		return null != uri && ARCHIVE_SCHEME.equalsIgnoreCase(uri.getScheme())
+				&& uri.getRawSchemeSpecificPart().contains(ENTRY_SEPARATOR);
+	}
+
+	/**
+	 * Resolves a URI reference against the URI of an entry in a ZIP archive. A relative
+	 * path is resolved within the archive, the root of which corresponds to the directory
+	 * containing the archive: a path that leads out of the archive (e.g.
+	 * <code>../other.kml</code> from a root-level entry) is resolved against the location
+	 * of the archive itself.
+	 * @param baseURI The URI of an archive entry.
+	 * @param uriRef A URI reference; if it is absolute it is returned as is.
+	 * @return An absolute URI.
+	 */
+	public static URI resolveArchiveEntryURI(URI baseURI, String uriRef) {
+		URI ref = URI.create(uriRef);
+		if (ref.isAbsolute()) {
+			return ref;
+		}
+		String ssp = baseURI.getRawSchemeSpecificPart();
+		int sep = ssp.indexOf(ENTRY_SEPARATOR);
+		URI archiveURI = URI.create(ssp.substring(0, sep));
+		URI entryPath = URI.create("/" + ssp.substring(sep + ENTRY_SEPARATOR.length()));
+		URI resolved = entryPath.resolve(ref).normalize();
+		String path = resolved.getRawPath();
+		if (path.startsWith("/../")) {
+			return archiveURI.resolve(resolved.toString().substring(4));
+		}
+		StringBuilder uri = new StringBuilder(ARCHIVE_SCHEME).append(':');
+		uri.append(archiveURI).append(ENTRY_SEPARATOR).append(path.substring(1));
+		if (null != resolved.getRawFragment()) {
+			uri.append('#').append(resolved.getRawFragment());
+		}
+		return URI.create(uri.toString());
+	}
+
+	/**
+	 * Returns the size of the archive entry identified by the given URI.
+	 * @param entryURI The URI of an archive entry.
+	 * @return The uncompressed size of the entry (bytes), or -1 if the archive does not
+	 * contain a (non-directory) entry with that name.
+	 * @throws java.io.IOException If the archive cannot be read.
+	 */
+	public static long getArchiveEntrySize(URI entryURI) throws IOException {
+		File archive = getArchiveFile(entryURI);
+		if (!archive.isFile()) {
+			return -1;
+		}
+		try (ZipFile zipFile = new ZipFile(archive)) {
+			ZipEntry entry = zipFile.getEntry(getEntryName(entryURI));
+			return (null != entry && !entry.isDirectory()) ? entry.getSize() : -1;
+		}
+	}
+
+	/**
+	 * Opens a stream to read the content of the archive entry identified by the given
+	 * URI. The archive is closed when the stream is closed.
+	 * @param entryURI The URI of an archive entry.
+	 * @return An InputStream that reads the (uncompressed) entry.
+	 * @throws java.io.FileNotFoundException If the archive or the entry does not exist.
+	 * @throws java.io.IOException If the archive cannot be read.
+	 */
+	public static InputStream openArchiveEntry(URI entryURI) throws IOException {
+		File archive = getArchiveFile(entryURI);
+		if (!archive.isFile()) {
+			throw new FileNotFoundException("Archive not found: " + archive);
+		}
+		ZipFile zipFile = new ZipFile(archive);
+		String entryName = getEntryName(entryURI);
+		ZipEntry entry = zipFile.getEntry(entryName);
+		if (null == entry || entry.isDirectory()) {
+			zipFile.close();
+			throw new FileNotFoundException("Entry not found in " + archive + ": " + entryName);
+		}
+		return new FilterInputStream(zipFile.getInputStream(entry)) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
 				}
-				if (TestSuiteLogger.isLoggable(Level.FINER)) {
-					TestSuiteLogger.log(Level.FINER,
-							String.format("Extracted %d bytes to %s", nBytes, destFile.toURI()));
+				finally {
+					zipFile.close();
 				}
 			}
+		};
+	}
+
+	private static File getArchiveFile(URI entryURI) {
+		String ssp = entryURI.getRawSchemeSpecificPart();
+		URI archiveURI = URI.create(ssp.substring(0, ssp.indexOf(ENTRY_SEPARATOR)));
+		if (!"file".equalsIgnoreCase(archiveURI.getScheme())) {
+			throw new IllegalArgumentException("Not a local archive: " + archiveURI);
+		}
+		return new File(archiveURI);
+	}
+
+	private static String getEntryName(URI entryURI) {
+		String ssp = entryURI.getRawSchemeSpecificPart();
+		return URI.create("/" + ssp.substring(ssp.indexOf(ENTRY_SEPARATOR) + ENTRY_SEPARATOR.length()))
+			.getPath()
+			.substring(1);
+	}
+
+	private static URI toURIPath(String entryName) {
+		try {
+			return new URI(null, null, "/" + entryName, null);
+		}
+		catch (URISyntaxException e) {
+			throw new IllegalArgumentException("Invalid entry name: " + entryName, e);
+		}
+	}
+
+	/**
+	 * Determines whether or not the given file is a ZIP archive (such as a KMZ file) by
+	 * checking for the local file header signature at the start of the file.
+	 * @param file A File object.
+	 * @return {@code true} if the file begins with the ZIP signature; {@code false}
+	 * otherwise.
+	 * @throws java.io.IOException If the file cannot be read.
+	 */
+	public static boolean isZipArchive(File file) throws IOException {
+		return InputFormat.detect(file) == InputFormat.ZIP;
+	}
+
+	/**
+	 * Finds the entry for the main KML document in the given ZIP archive: this is the
+	 * first entry with the {@code .kml} extension, as for
+	 * {@link #extractKMLFromArchive(File)}.
+	 * @param zipFile A ZipFile that presumably represents a KMZ file.
+	 * @return The ZipEntry for the main KML document, or {@code null} if none is found.
+	 */
+	public static ZipEntry findKMLEntry(ZipFile zipFile) {
+		Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+			if (!entry.isDirectory() && entry.getName().endsWith(".kml")) {
+				return entry;
+			}
 		}
-		return mainDoc;
+		return null;
 	}
 
 }
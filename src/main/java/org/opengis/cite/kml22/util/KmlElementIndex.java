@@ -0,0 +1,431 @@
+package org.opengis.cite.kml22.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.opengis.cite.kml22.KML22;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import net.sf.saxon.dom.NodeOverNodeInfo;
+import net.sf.saxon.om.NamePool;
+import net.sf.saxon.tinytree.TinyDocumentImpl;
+import net.sf.saxon.tinytree.TinyNodeImpl;
+import net.sf.saxon.tinytree.TinyTree;
+import net.sf.saxon.type.Type;
+
+/**
+ * An index of the elements in a KML document, built in a single traversal of the document
+ * tree. Elements are grouped by qualified name and listed in document order. For each
+ * element the index also records whether or not it occurs within the scope of a
+ * kml:Update element (that is, whether the expression <code>ancestor::kml:Update</code>
+ * would select anything), since most constraints do not apply to update fragments.
+ *
+ * <p>
+ * The index is a snapshot of the document at the time it was built; it is not updated if
+ * the document is subsequently modified.
+ * </p>
+ *
+ * <p>
+ * If the document is a read-only view of a TinyTree (see
+ * {@link XMLUtils#isImmutable(Node)}), only the node numbers of the elements are kept; a
+ * DOM view of an element is created whenever it is retrieved. Such views must be compared
+ * using {@link Node#isSameNode(Node)} rather than by identity.
+ * </p>
+ */
+public class KmlElementIndex {
+
+	private final Document document;
+
+	/** The tree underlying a read-only document, or {@code null} for a DOM document. */
+	private final TinyTree tree;
+
+	private final Map<QName, Entry> entries = new LinkedHashMap<>();
+
+	/**
+	 * Keys of the elements in update fragments (see {@link XMLUtils#getNodeKey(Node)}),
+	 * if the document is not backed by a TinyTree.
+	 */
+	private final Set<Object> elementsInUpdate = new HashSet<>();
+
+	/**
+	 * Node numbers of the elements in update fragments, if the document is a TinyTree.
+	 */
+	private final BitSet nodesInUpdate = new BitSet();
+
+	private int elementCount;
+
+	/**
+	 * Builds an index of all elements in the given document.
+	 * @param doc A Document node (usually a KML document).
+	 */
+	public KmlElementIndex(Document doc) {
+		if (null == doc) {
+			throw new IllegalArgumentException("Document is null.");
+		}
+		this.document = doc;
+		Object docInfo = XMLUtils.getNodeKey(doc);
+		if (docInfo instanceof TinyDocumentImpl) {
+			this.tree = ((TinyDocumentImpl) docInfo).getTree();
+			buildIndex(this.tree, ((TinyDocumentImpl) docInfo).getNodeNumber());
+		}
+		else {
+			this.tree = null;
+			buildIndex(doc.getDocumentElement());
+		}
+	}
+
+	/**
+	 * Returns the document for which this index was built.
+	 * @return The indexed Document node.
+	 */
+	public Document getDocument() {
+		return document;
+	}
+
+	/**
+	 * Returns the total number of elements in the document.
+	 * @return The number of indexed elements.
+	 */
+	public int getElementCount() {
+		return elementCount;
+	}
+
+	/**
+	 * Returns the names of all elements that occur in the document. The names are listed
+	 * in order of first occurrence.
+	 * @return An immutable set of element names.
+	 */
+	public Set<QName> getElementNames() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * Returns all elements with the given name, including those that appear within a
+	 * kml:Update element. This is equivalent to
+	 * {@link Document#getElementsByTagNameNS(String, String)}.
+	 * @param namespaceURI The namespace name.
+	 * @param localName The local name.
+	 * @return An immutable list of elements in document order (may be empty).
+	 */
+	public List<Element> getElementsNS(String namespaceURI, String localName) {
+		Entry entry = entries.get(new QName(namespaceURI, localName));
+		return (null != entry) ? entry.elements() : Collections.<Element>emptyList();
+	}
+
+	/**
+	 * Returns all KML elements with any of the given local names, including those that
+	 * appear within a kml:Update element. If more than one name is specified the result
+	 * is equivalent to a union expression such as <code>//kml:Link | //kml:Icon</code>.
+	 * @param localNames A list of local names in the KML namespace.
+	 * @return An immutable list of elements in document order (may be empty).
+	 */
+	public List<Element> getElements(String... localNames) {
+		return select(false, localNames);
+	}
+
+	/**
+	 * Returns all KML elements with any of the given local names that do
+	 * <strong>not</strong> appear within a kml:Update element. This is equivalent to an
+	 * expression such as <code>//kml:Link[not(ancestor::kml:Update)]</code>.
+	 * @param localNames A list of local names in the KML namespace.
+	 * @return An immutable list of elements in document order (may be empty).
+	 */
+	public List<Element> getElementsNotInUpdate(String... localNames) {
+		return select(true, localNames);
+	}
+
+	/**
+	 * Returns all KML elements with the given local name that are children of a KML
+	 * element with the given parent name. This is equivalent to an expression such as
+	 * <code>//kml:Point/kml:coordinates</code>.
+	 * @param parentName The local name of the parent element.
+	 * @param localName The local name of the child element.
+	 * @return A list of elements in document order (may be empty).
+	 */
+	public List<Element> getChildElements(String parentName, String localName) {
+		List<Element> elements = getElements(localName);
+		List<Element> result = new ArrayList<>();
+		for (Element elem : elements) {
+			Node parent = elem.getParentNode();
+			if (parentName.equals(parent.getLocalName()) && KML22.NS_NAME.equals(parent.getNamespaceURI())) {
+				result.add(elem);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Indicates whether or not the given element occurs within the scope of a kml:Update
+	 * element.
+	 * @param elem An element in the indexed document.
+	 * @return {@code true} if the element has a kml:Update ancestor; {@code false}
+	 * otherwise.
+	 */
+	public boolean isInUpdate(Element elem) {
+		Object key = XMLUtils.getNodeKey(elem);
+		if (null != tree) {
+			return (key instanceof TinyNodeImpl) && ((TinyNodeImpl) key).getDocumentNumber() == tree.getDocumentNumber()
+					&& nodesInUpdate.get(((TinyNodeImpl) key).getNodeNumber());
+		}
+		return elementsInUpdate.contains(key);
+	}
+
+	private List<Element> select(boolean excludeUpdates, String... localNames) {
+		if (localNames.length == 1) {
+			Entry entry = entries.get(new QName(KML22.NS_NAME, localNames[0]));
+			if (null == entry) {
+				return Collections.emptyList();
+			}
+			return excludeUpdates ? entry.elementsNotInUpdate() : entry.elements();
+		}
+		List<Entry> selected = new ArrayList<>(localNames.length);
+		int size = 0;
+		for (String localName : localNames) {
+			Entry entry = entries.get(new QName(KML22.NS_NAME, localName));
+			if (null != entry) {
+				selected.add(entry);
+				size += entry.size;
+			}
+		}
+		if (selected.isEmpty()) {
+			return Collections.emptyList();
+		}
+		// merge by document position
+		PriorityQueue<int[]> queue = new PriorityQueue<>(selected.size(), (c1, c2) -> Integer
+			.compare(selected.get(c1[0]).positions[c1[1]], selected.get(c2[0]).positions[c2[1]]));
+		for (int i = 0; i < selected.size(); i++) {
+			queue.add(new int[] { i, 0 });
+		}
+		List<Element> result = new ArrayList<>(size);
+		while (!queue.isEmpty()) {
+			int[] cursor = queue.poll();
+			Entry entry = selected.get(cursor[0]);
+			if (!excludeUpdates || !entry.isInUpdate(cursor[1])) {
+				result.add(entry.get(cursor[1]));
+			}
+			if (++cursor[1] < entry.size) {
+				queue.add(cursor);
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Visits all elements in document order (without recursion, so deeply nested
+	 * documents cannot exhaust the stack).
+	 * @param root The document element.
+	 */
+	private void buildIndex(Element root) {
+		int updateDepth = 0;
+		Node node = root;
+		while (null != node) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				addElement((Element) node, updateDepth > 0);
+				Node child = node.getFirstChild();
+				if (null != child) {
+					if (isUpdate(node)) {
+						updateDepth++;
+					}
+					node = child;
+					continue;
+				}
+			}
+			// nodes are compared with isSameNode since a read-only view may create a new
+			// object each time a node is visited
+			while (!node.isSameNode(root) && null == node.getNextSibling()) {
+				node = node.getParentNode();
+				if (isUpdate(node)) {
+					updateDepth--;
+				}
+			}
+			node = node.isSameNode(root) ? null : node.getNextSibling();
+		}
+	}
+
+	/**
+	 * Visits all elements of a document in a TinyTree. The nodes of the document are
+	 * numbered consecutively in document order, so this is a scan of the node arrays.
+	 * @param tree The tree containing the document.
+	 * @param docNr The node number of the document node.
+	 */
+	private void buildIndex(TinyTree tree, int docNr) {
+		byte[] kinds = tree.getNodeKindArray();
+		short[] depths = tree.getNodeDepthArray();
+		int[] nameCodes = tree.getNameCodeArray();
+		NamePool namePool = tree.getNamePool();
+		Map<Integer, Entry> entriesByFingerprint = new HashMap<>();
+		// the depth of the outermost kml:Update element in scope, or -1 if there is none
+		int updateDepth = -1;
+		int nodeCount = tree.getNumberOfNodes();
+		for (int nr = docNr + 1; nr < nodeCount && depths[nr] > depths[docNr]; nr++) {
+			if (kinds[nr] != Type.ELEMENT) {
+				continue;
+			}
+			if (updateDepth >= 0 && depths[nr] <= updateDepth) {
+				updateDepth = -1;
+			}
+			int fingerprint = nameCodes[nr] & NamePool.FP_MASK;
+			Entry entry = entriesByFingerprint.get(fingerprint);
+			if (null == entry) {
+				entry = new Entry(false);
+				entriesByFingerprint.put(fingerprint, entry);
+				entries.put(new QName(namePool.getURI(fingerprint), namePool.getLocalName(fingerprint)), entry);
+			}
+			entry.add(null, nr);
+			elementCount++;
+			if (updateDepth >= 0) {
+				nodesInUpdate.set(nr);
+				entry.hasUpdates = true;
+			}
+			else if (KML22.UPDATE.equals(namePool.getLocalName(fingerprint))
+					&& KML22.NS_NAME.equals(namePool.getURI(fingerprint))) {
+				updateDepth = depths[nr];
+			}
+		}
+	}
+
+	private void addElement(Element elem, boolean inUpdate) {
+		QName qName = new QName(elem.getNamespaceURI(), elem.getLocalName());
+		Entry entry = entries.get(qName);
+		if (null == entry) {
+			entry = new Entry(true);
+			entries.put(qName, entry);
+		}
+		entry.add(elem, elementCount++);
+		if (inUpdate) {
+			elementsInUpdate.add(XMLUtils.getNodeKey(elem));
+			entry.hasUpdates = true;
+		}
+	}
+
+	private static boolean isUpdate(Node node) {
+		return KML22.UPDATE.equals(node.getLocalName()) && KML22.NS_NAME.equals(node.getNamespaceURI());
+	}
+
+	/**
+	 * The elements having the same name. Their positions in document order are recorded;
+	 * for a TinyTree these are the node numbers, from which the elements are obtained.
+	 */
+	private class Entry {
+
+		/** The elements (if the document is not a TinyTree). */
+		final List<Element> elements;
+
+		int[] positions = new int[4];
+
+		int size;
+
+		boolean hasUpdates;
+
+		private List<Element> notInUpdate;
+
+		Entry(boolean keepElements) {
+			this.elements = keepElements ? new ArrayList<>() : null;
+		}
+
+		void add(Element elem, int position) {
+			if (size == positions.length) {
+				positions = Arrays.copyOf(positions, positions.length * 2);
+			}
+			positions[size++] = position;
+			if (null != elements) {
+				elements.add(elem);
+			}
+		}
+
+		Element get(int index) {
+			if (null != elements) {
+				return elements.get(index);
+			}
+			return (Element) NodeOverNodeInfo.wrap(tree.getNode(positions[index]));
+		}
+
+		boolean isInUpdate(int index) {
+			if (null != elements) {
+				return elementsInUpdate.contains(XMLUtils.getNodeKey(elements.get(index)));
+			}
+			return nodesInUpdate.get(positions[index]);
+		}
+
+		List<Element> elements() {
+			if (null != elements) {
+				return Collections.unmodifiableList(elements);
+			}
+			return new TreeElementList(positions, size);
+		}
+
+		synchronized List<Element> elementsNotInUpdate() {
+			if (!hasUpdates) {
+				return elements();
+			}
+			if (null == notInUpdate) {
+				if (null != elements) {
+					List<Element> list = new ArrayList<>(size);
+					for (int i = 0; i < size; i++) {
+						if (!isInUpdate(i)) {
+							list.add(elements.get(i));
+						}
+					}
+					notInUpdate = Collections.unmodifiableList(list);
+				}
+				else {
+					int[] numbers = new int[size];
+					int count = 0;
+					for (int i = 0; i < size; i++) {
+						if (!nodesInUpdate.get(positions[i])) {
+							numbers[count++] = positions[i];
+						}
+					}
+					notInUpdate = new TreeElementList(Arrays.copyOf(numbers, count), count);
+				}
+			}
+			return notInUpdate;
+		}
+
+	}
+
+	/**
+	 * An immutable list of elements in a TinyTree, given by their node numbers.
+	 */
+	private class TreeElementList extends AbstractList<Element> implements RandomAccess {
+
+		private final int[] nodeNumbers;
+
+		private final int size;
+
+		TreeElementList(int[] nodeNumbers, int size) {
+			this.nodeNumbers = nodeNumbers;
+			this.size = size;
+		}
+
+		@Override
+		public Element get(int index) {
+			if (index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return (Element) NodeOverNodeInfo.wrap(tree.getNode(nodeNumbers[index]));
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+	}
+
+}
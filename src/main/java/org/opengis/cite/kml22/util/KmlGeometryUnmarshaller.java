@@ -4,7 +4,7 @@ import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.GeometryFactory;
@@ -12,7 +12,6 @@ import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.LinearRing;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygon;
-import org.locationtech.jts.geom.impl.CoordinateArraySequence;
 import org.opengis.cite.kml22.Namespaces;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -32,6 +31,8 @@ public class KmlGeometryUnmarshaller {
 
 	private GeometryFactory geoFactory;
 
+	private CoordinateStore coordStore;
+
 	/**
 	 * Creates an unmarshaller for KML 2.2 geometry elements.
 	 */
@@ -48,6 +49,17 @@ public class KmlGeometryUnmarshaller {
 		this.geoFactory = new GeometryFactory();
 	}
 
+	/**
+	 * Creates an unmarshaller for KML 2.2 geometry elements that obtains coordinate
+	 * tuples from the given store (if they belong to the same document).
+	 * @param coordStore A store containing the parsed content of kml:coordinates
+	 * elements.
+	 */
+	public KmlGeometryUnmarshaller(CoordinateStore coordStore) {
+		this(Namespaces.KML22);
+		this.coordStore = coordStore;
+	}
+
 	/**
 	 * Creates a JTS geometry object from a KML 2.x geometry representation. The provided
 	 * node must be either an Element or a Document node; if the latter, the geometry must
@@ -104,8 +116,8 @@ public class KmlGeometryUnmarshaller {
 
 		assert geoElem.getLocalName().equals("Point") : "Expected Point element as input";
 		Node coords = geoElem.getElementsByTagNameNS(this.namespaceURI, "coordinates").item(0);
-		CoordinateArraySequence cas = buildCoordinateArraySequence(coords);
-		Point pt = geoFactory.createPoint(cas);
+		CoordinateSequence seq = buildCoordinateSequence(coords);
+		Point pt = geoFactory.createPoint(seq);
 		return pt;
 	}
 
@@ -118,8 +130,8 @@ public class KmlGeometryUnmarshaller {
 	LineString unmarshalLineString(Element geoElem) {
 		assert geoElem.getLocalName().startsWith("LineString") : "Expected LineString as input";
 		Node coords = geoElem.getElementsByTagNameNS(this.namespaceURI, "coordinates").item(0);
-		CoordinateArraySequence cas = buildCoordinateArraySequence(coords);
-		LineString line = geoFactory.createLineString(cas);
+		CoordinateSequence seq = buildCoordinateSequence(coords);
+		LineString line = geoFactory.createLineString(seq);
 		return line;
 	}
 
@@ -133,11 +145,23 @@ public class KmlGeometryUnmarshaller {
 		assert geoElem.getLocalName().equals("LinearRing") : "Expected LinearRing element as input";
 		LinearRing ring = null;
 		Node coords = geoElem.getElementsByTagNameNS(this.namespaceURI, "coordinates").item(0);
-		CoordinateArraySequence cas = buildCoordinateArraySequence(coords);
-		ring = geoFactory.createLinearRing(cas);
+		CoordinateSequence seq = buildCoordinateSequence(coords);
+		ring = geoFactory.createLinearRing(seq);
 		return ring;
 	}
 
+	/**
+	 * Creates a LinearRing geometry object from coordinate tuples that have already been
+	 * parsed. This method does not access the DOM, so it may be invoked concurrently.
+	 * @param tuples The content of the kml:coordinates element of a kml:LinearRing.
+	 * @return the corresponding JTS LinearRing object
+	 * @throws IllegalArgumentException If a tuple is not 2D or 3D, or the ring is not
+	 * closed or has too few points.
+	 */
+	public LinearRing createLinearRing(PackedCoordinates tuples) {
+		return geoFactory.createLinearRing(tuples.toCoordinateSequence());
+	}
+
 	/**
 	 * Creates a Polygon geometry object from a source KML2 Polygon representation. The ID
 	 * of the spatial reference system is set to 0 (undefined).
@@ -183,38 +207,21 @@ public class KmlGeometryUnmarshaller {
 	 * element. According to the KML reference, coordinates must be specified as a
 	 * space-separated list of 2D or 3D tuples: lon,lat[,alt]. An
 	 * <code>IllegalArgumentException</code> is thrown if a coordinate tuple is is not 2D
-	 * or 3D.
+	 * or 3D. If a coordinate store is available the tuples are obtained from it.
 	 * @param coords a DOM Node representing a kml:coordinates element
-	 * @return a CoordinateArraySequence that can be used to create primitive geometry
-	 * objects
+	 * @return a CoordinateSequence that can be used to create primitive geometry objects
 	 */
-	CoordinateArraySequence buildCoordinateArraySequence(Node coords) {
+	CoordinateSequence buildCoordinateSequence(Node coords) {
 		assert coords.getLocalName().equals("coordinates") : "Expected coordinates element as input";
-		String[] tuples = coords.getTextContent().trim().split("\\s+");
-		int nTuples = tuples.length;
+		// a Saxon node returns a new Document wrapper on each call, so compare the
+		// underlying nodes
+		PackedCoordinates tuples = (null != this.coordStore
+				&& coordStore.getDocument().isSameNode(coords.getOwnerDocument())) ? coordStore.getCoordinates(coords)
+						: PackedCoordinates.parse(coords.getTextContent());
 		if (LOGR.isLoggable(Level.FINER)) {
-			LOGR.finer("nTuples: " + nTuples);
-		}
-		ArrayList<Coordinate> coordinates = new ArrayList<Coordinate>(nTuples);
-		for (int i = 0; i < nTuples; i++) {
-			Coordinate coord = null;
-			String[] values = tuples[i].split(",");
-			int crsDim = values.length;
-			if (crsDim < 2 || crsDim > 3) {
-				throw new IllegalArgumentException("Not a 2D or 3D coordinate tuple: " + tuples[i]);
-			}
-			if (crsDim == 2) {
-				coord = new Coordinate(Double.parseDouble(values[0]), Double.parseDouble(values[1]));
-			}
-			else {
-				coord = new Coordinate(Double.parseDouble(values[0]), Double.parseDouble(values[1]),
-						Double.parseDouble(values[2]));
-			}
-			coordinates.add(coord);
+			LOGR.finer("nTuples: " + tuples.getTupleCount());
 		}
-		Coordinate[] tupleArray = coordinates.toArray(new Coordinate[nTuples]);
-		CoordinateArraySequence cas = new CoordinateArraySequence(tupleArray);
-		return cas;
+		return tuples.toCoordinateSequence();
 	}
 
 }
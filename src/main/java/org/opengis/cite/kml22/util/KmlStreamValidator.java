@@ -0,0 +1,711 @@
+package org.opengis.cite.kml22.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+import org.opengis.cite.kml22.ErrorMessage;
+import org.opengis.cite.kml22.KML22;
+import org.opengis.cite.kml22.Namespaces;
+import org.opengis.cite.validation.ErrorLocator;
+import org.opengis.cite.validation.ErrorSeverity;
+import org.opengis.cite.validation.ValidationErrorHandler;
+
+/**
+ * Checks a KML document in a single forward-only pass over the XML stream, without
+ * building a document tree. Only those conformance level 1 constraints that can be
+ * evaluated using the content of a single element (and its descendants) are checked;
+ * memory consumption is bounded by the nesting depth of the document rather than its
+ * size, so very large documents can be processed.
+ *
+ * <p>
+ * Errors are collected separately for each {@link Check} and are reported using the same
+ * messages as the corresponding DOM-based tests. An error locator includes the line and
+ * column numbers of the relevant start-tag as well as an XPointer that is equivalent to
+ * the one produced by {@link XMLUtils#getXPointer(org.w3c.dom.Node)}.
+ * </p>
+ */
+public class KmlStreamValidator {
+
+	/**
+	 * The maximum number of characters retained for a simple element value or a single
+	 * coordinate tuple; any excess is discarded (so the value is presumably invalid).
+	 */
+	static final int MAX_VALUE_LENGTH = 1024;
+
+	private static final Pattern PHONE_NUMBER = Pattern
+		.compile("tel:(\\+)?(\\d*([-.()])?)+(\\d{3}?[-.()])?(\\d{3}[-.()])?(\\d{4,10})?([;].*)?");
+
+	/**
+	 * The descendant elements whose (first) values must be captured in order to check a
+	 * context element, keyed by the local name of the context element.
+	 */
+	private static final Map<String, String[]> CONTEXT_FIELDS = new HashMap<>();
+
+	static {
+		CONTEXT_FIELDS.put("LatLonBox", new String[] { "north", "south", "east", "west" });
+		CONTEXT_FIELDS.put("LatLonAltBox",
+				new String[] { "north", "south", "east", "west", "minAltitude", "maxAltitude", "altitudeMode" });
+		CONTEXT_FIELDS.put("TimeSpan", new String[] { "begin", "end" });
+		CONTEXT_FIELDS.put("TimeStamp", new String[] { "when" });
+		CONTEXT_FIELDS.put("LookAt",
+				new String[] { "longitude", "latitude", "range", "altitude", "altitudeMode", "tilt" });
+		CONTEXT_FIELDS.put("Lod", new String[] { "minLodPixels", "maxLodPixels" });
+		CONTEXT_FIELDS.put("Link", new String[] { "refreshInterval", "viewRefreshTime", "viewBoundScale" });
+		CONTEXT_FIELDS.put("Icon", new String[] { "refreshInterval", "viewRefreshTime", "viewBoundScale" });
+		CONTEXT_FIELDS.put("phoneNumber", new String[0]);
+	}
+
+	/**
+	 * The constraints that are checked while reading the document.
+	 */
+	public enum Check {
+
+		/** ATC 3: Geometry coordinates */
+		GEOMETRY_COORDINATES,
+		/** ATC 4: TimeSpan */
+		TIME_SPAN,
+		/** ATC 5: TimeStamp */
+		TIME_STAMP,
+		/** ATC 8: Region - LatLonAltBox */
+		LAT_LON_ALT_BOX,
+		/** ATC 9: Link elements (kml:refreshInterval) */
+		LINK_REFRESH_INTERVAL,
+		/** ATC 9: Link elements (kml:viewRefreshTime) */
+		LINK_VIEW_REFRESH_TIME,
+		/** ATC 9: Link elements (kml:viewBoundScale) */
+		LINK_VIEW_BOUND_SCALE,
+		/** ATC 11: LatLonBox */
+		LAT_LON_BOX,
+		/** ATC 14: Point */
+		POINT,
+		/** ATC 15: LineString */
+		LINE_STRING,
+		/** ATC 16: LinearRing - control points */
+		LINEAR_RING,
+		/** ATC 24: PhoneNumber */
+		PHONE_NUMBER,
+		/** ATC 38: LookAt */
+		LOOK_AT,
+		/** ATC 39: Lod */
+		LOD
+
+	}
+
+	private final Map<Check, ValidationErrorHandler> errHandlers = new EnumMap<>(Check.class);
+
+	/** Counts the elements having a given name (for constructing XPointers). */
+	private final Map<QName, int[]> elementCounts = new HashMap<>();
+
+	/** The ancestors of the current element. */
+	private final Deque<Frame> frames = new ArrayDeque<>();
+
+	/** The open context elements. */
+	private final Deque<Context> contexts = new ArrayDeque<>();
+
+	private CoordinatesScanner coordinates;
+
+	/** Parses individual coordinate tuples. */
+	private final CoordinateScanner tupleScanner = new CoordinateScanner();
+
+	private QName documentElementName;
+
+	private long elementCount;
+
+	/**
+	 * Creates a new validator; it should be used to read only one document. At most
+	 * {@value BoundedErrorHandler#DEFAULT_MAX_ERRORS} errors are retained for each check.
+	 */
+	public KmlStreamValidator() {
+		this(BoundedErrorHandler.DEFAULT_MAX_ERRORS);
+	}
+
+	/**
+	 * Creates a new validator that retains at most the given number of errors for each
+	 * check; further errors are only counted.
+	 * @param maxErrors The maximum number of retained errors (if less than 1 there is no
+	 * limit).
+	 */
+	public KmlStreamValidator(int maxErrors) {
+		for (Check check : Check.values()) {
+			errHandlers.put(check, new BoundedErrorHandler(maxErrors));
+		}
+	}
+
+	/**
+	 * Reads the KML document in the given file. If the file is a KMZ archive, the first
+	 * KML document found in it is read instead (see
+	 * {@link KMLUtils#findKMLEntry(ZipFile)}); gzip-compressed content is decompressed
+	 * while it is read.
+	 * @param file A File containing a KML document or a KMZ archive.
+	 * @throws IOException If the file cannot be read.
+	 * @throws XMLStreamException If the document is not well-formed.
+	 */
+	public void validate(File file) throws IOException, XMLStreamException {
+		InputFormat format = InputFormat.detect(file);
+		if (format == InputFormat.ZIP) {
+			try (ZipFile zipFile = new ZipFile(file)) {
+				ZipEntry entry = KMLUtils.findKMLEntry(zipFile);
+				if (null == entry) {
+					throw new IOException("No KML document found in archive " + file.getAbsolutePath());
+				}
+				try (InputStream input = zipFile.getInputStream(entry)) {
+					validate(input, file.toURI().toString() + "!/" + entry.getName());
+				}
+			}
+		}
+		else if (format == InputFormat.GZIP) {
+			try (InputStream input = new GZIPInputStream(new FileInputStream(file))) {
+				validate(input, file.toURI().toString());
+			}
+		}
+		else {
+			try (InputStream input = new FileInputStream(file)) {
+				validate(input, file.toURI().toString());
+			}
+		}
+	}
+
+	/**
+	 * Reads a KML document from the given input stream.
+	 * @param input An InputStream supplying a KML document (it is not closed).
+	 * @param systemId The system identifier of the document (may be null).
+	 * @throws XMLStreamException If the document is not well-formed.
+	 */
+	public void validate(InputStream input, String systemId) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		XMLStreamReader reader = factory.createXMLStreamReader(systemId, input);
+		try {
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						startElement(reader);
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						endElement();
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+					case XMLStreamConstants.SPACE:
+						characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+						break;
+					default:
+						break;
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Returns the errors detected for the given check.
+	 * @param check A constraint checked by this validator.
+	 * @return An error handler containing all detected violations of the constraint.
+	 */
+	public ValidationErrorHandler getErrorHandler(Check check) {
+		return errHandlers.get(check);
+	}
+
+	/**
+	 * Returns the name of the document element.
+	 * @return The qualified name of the document element, or {@code null} if no document
+	 * has been read.
+	 */
+	public QName getDocumentElementName() {
+		return documentElementName;
+	}
+
+	/**
+	 * Returns the number of elements read.
+	 * @return The total number of elements in the document.
+	 */
+	public long getElementCount() {
+		return elementCount;
+	}
+
+	private void startElement(XMLStreamReader reader) {
+		elementCount++;
+		QName name = reader.getName();
+		int[] count = elementCounts.get(name);
+		if (null == count) {
+			count = new int[1];
+			elementCounts.put(name, count);
+		}
+		count[0]++;
+		Frame parent = frames.peek();
+		Location location = reader.getLocation();
+		Frame frame = new Frame(name, reader.getPrefix(), count[0], location.getLineNumber(),
+				location.getColumnNumber(), (null != parent) && (parent.inUpdate || parent.isKml(KML22.UPDATE)));
+		frames.push(frame);
+		if (null == parent) {
+			documentElementName = name;
+		}
+		if (!Namespaces.KML22.equals(name.getNamespaceURI())) {
+			return;
+		}
+		String localName = name.getLocalPart();
+		for (Context context : contexts) {
+			context.startField(localName, frames.size());
+		}
+		String[] fields = CONTEXT_FIELDS.get(localName);
+		if (null != fields) {
+			Context context = new Context(frame, fields);
+			if (fields.length == 0) {
+				context.startField(localName, frames.size());
+			}
+			contexts.push(context);
+		}
+		else if (localName.equals("coordinates")) {
+			coordinates = new CoordinatesScanner(frame, parent);
+		}
+	}
+
+	private void endElement() {
+		int depth = frames.size();
+		Frame frame = frames.pop();
+		if (null != coordinates && coordinates.frame == frame) {
+			coordinates.end();
+			coordinates = null;
+		}
+		for (Context context : contexts) {
+			context.endField(depth);
+		}
+		if (!contexts.isEmpty() && contexts.peek().frame == frame) {
+			checkContext(contexts.pop());
+		}
+	}
+
+	private void characters(char[] text, int start, int length) {
+		if (null != coordinates) {
+			coordinates.append(text, start, length);
+		}
+		for (Context context : contexts) {
+			context.append(text, start, length);
+		}
+	}
+
+	private void checkContext(Context context) {
+		Frame frame = context.frame;
+		switch (frame.name.getLocalPart()) {
+			case "LatLonBox":
+				if (!context.has("north", "south", "east", "west")) {
+					addError(Check.LAT_LON_BOX, "level1.LatLonBox.err1", frame);
+					break;
+				}
+				checkBounds(Check.LAT_LON_BOX, context);
+				break;
+			case "LatLonAltBox":
+				checkBounds(Check.LAT_LON_ALT_BOX, context);
+				checkAltitudes(context);
+				break;
+			case "TimeSpan":
+				checkTimeSpan(context);
+				break;
+			case "TimeStamp":
+				if (!context.has("when")) {
+					addError(Check.TIME_STAMP, "level1.TimeStamp.err", frame);
+				}
+				break;
+			case "LookAt":
+				if (!frame.inUpdate) {
+					checkLookAt(context);
+				}
+				break;
+			case "Lod":
+				if (!frame.inUpdate) {
+					checkLod(context);
+				}
+				break;
+			case "Link":
+			case "Icon":
+				checkPositive(context, "refreshInterval", Check.LINK_REFRESH_INTERVAL, "level1.LinkElements.err1",
+						"level1.LinkElements.err2");
+				checkPositive(context, "viewRefreshTime", Check.LINK_VIEW_REFRESH_TIME, "level1.LinkElements.err3",
+						"level1.LinkElements.err4");
+				checkPositive(context, "viewBoundScale", Check.LINK_VIEW_BOUND_SCALE, "level1.LinkElements.err5",
+						"level1.LinkElements.err6");
+				break;
+			case "phoneNumber":
+				if (!PHONE_NUMBER.matcher(context.get("phoneNumber")).matches()) {
+					addError(Check.PHONE_NUMBER, "level1.PhoneNumber.err", frame);
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Checks that east &gt; west and north &gt; south (the defaults are +/-180).
+	 */
+	private void checkBounds(Check check, Context context) {
+		Double east = context.getDouble("east", 180);
+		Double west = context.getDouble("west", -180);
+		if (null == east || null == west) {
+			addError(check, "level1.LatLonAltBox.err1", context.frame);
+		}
+		else if (east <= west) {
+			addError(check, "level1.LatLonAltBox.err2", context.frame);
+		}
+		Double north = context.getDouble("north", 180);
+		Double south = context.getDouble("south", -180);
+		if (null == north || null == south) {
+			addError(check, "level1.LatLonAltBox.err3", context.frame);
+		}
+		else if (north <= south) {
+			addError(check, "level1.LatLonAltBox.err4", context.frame);
+		}
+	}
+
+	private void checkAltitudes(Context context) {
+		if (context.has("minAltitude", "maxAltitude")) {
+			String altitudeMode = context.get("altitudeMode");
+			if (null == altitudeMode) {
+				addError(Check.LAT_LON_ALT_BOX, "level1.LatLonAltBox.err7", context.frame);
+			}
+			else if (altitudeMode.equals("clampToGround")) {
+				addError(Check.LAT_LON_ALT_BOX, "level1.LatLonAltBox.err8", context.frame);
+			}
+		}
+		Double minAltitude = context.getDouble("minAltitude", 0);
+		Double maxAltitude = context.getDouble("maxAltitude", 0);
+		if (null == minAltitude || null == maxAltitude) {
+			addError(Check.LAT_LON_ALT_BOX, "level1.LatLonAltBox.err5", context.frame);
+		}
+		else if (minAltitude > maxAltitude) {
+			addError(Check.LAT_LON_ALT_BOX, "level1.LatLonAltBox.err6", context.frame);
+		}
+	}
+
+	private void checkTimeSpan(Context context) {
+		String begin = context.get("begin");
+		String end = context.get("end");
+		if (null == begin || null == end) {
+			if (null == begin && null == end) {
+				addError(Check.TIME_SPAN, "level1.TimeSpan.err1", context.frame);
+			}
+			return;
+		}
+		DateTime beginDate = parseDateTime(begin);
+		DateTime endDate = parseDateTime(end);
+		if (beginDate == null || endDate == null) {
+			addError(Check.TIME_SPAN, "level1.TimeSpan.err2", context.frame);
+		}
+		else if (beginDate.getMillis() >= endDate.getMillis()) {
+			addError(Check.TIME_SPAN, "level1.TimeSpan.err3", context.frame);
+		}
+	}
+
+	private void checkLookAt(Context context) {
+		if (!context.has("longitude", "latitude", "range")) {
+			addError(Check.LOOK_AT, "level1.LookAt.err1", context.frame);
+		}
+		String altitudeMode = context.get("altitudeMode");
+		if (null != altitudeMode && !altitudeMode.equals("clampToGround") && !context.has("altitude")) {
+			addError(Check.LOOK_AT, "level1.LookAt.err4", context.frame);
+		}
+		if (context.has("tilt")) {
+			Double tilt = context.getDouble("tilt", 0);
+			if (null == tilt) {
+				addError(Check.LOOK_AT, "level1.LookAt.err2", context.frame);
+			}
+			else if (tilt < 0 || tilt > 90) {
+				addError(Check.LOOK_AT, "level1.LookAt.err3", context.frame);
+			}
+		}
+	}
+
+	private void checkLod(Context context) {
+		if (!context.has("minLodPixels")) {
+			addError(Check.LOD, "level1.Lod.err1", context.frame);
+			return;
+		}
+		Double minLodPixels = context.getDouble("minLodPixels", 0);
+		Double maxLodPixels = context.getDouble("maxLodPixels", -1);
+		if (null == minLodPixels || null == maxLodPixels) {
+			addError(Check.LOD, "level1.Lod.err2", context.frame);
+			return;
+		}
+		double max = (maxLodPixels < 0) ? Double.POSITIVE_INFINITY : maxLodPixels;
+		if (minLodPixels >= max) {
+			addError(Check.LOD, "level1.Lod.err3", context.frame);
+		}
+	}
+
+	private void checkPositive(Context context, String field, Check check, String invalidKey, String rangeKey) {
+		if (!context.has(field)) {
+			return;
+		}
+		Double value = context.getDouble(field, 0);
+		if (null == value) {
+			addError(check, invalidKey, context.frame);
+		}
+		else if (value <= 0) {
+			addError(check, rangeKey, context.frame);
+		}
+	}
+
+	private void addError(Check check, String msgKey, Frame frame) {
+		errHandlers.get(check).addError(ErrorSeverity.ERROR, ErrorMessage.format(msgKey), frame.locator());
+	}
+
+	private static DateTime parseDateTime(String str) {
+		try {
+			return ISODateTimeFormat.dateOptionalTimeParser().parseDateTime(str);
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static Double parseDouble(String str) {
+		try {
+			return Double.valueOf(str);
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * An open element.
+	 */
+	private static class Frame {
+
+		final QName name;
+
+		final String prefix;
+
+		final int position;
+
+		final int line;
+
+		final int column;
+
+		final boolean inUpdate;
+
+		Frame(QName name, String prefix, int position, int line, int column, boolean inUpdate) {
+			this.name = name;
+			this.prefix = prefix;
+			this.position = position;
+			this.line = line;
+			this.column = column;
+			this.inUpdate = inUpdate;
+		}
+
+		boolean isKml(String localName) {
+			return localName.equals(name.getLocalPart()) && Namespaces.KML22.equals(name.getNamespaceURI());
+		}
+
+		ErrorLocator locator() {
+			return new ErrorLocator(line, column,
+					XMLUtils.getElementXPointer(name.getNamespaceURI(), prefix, name.getLocalPart(), position));
+		}
+
+	}
+
+	/**
+	 * An open element that is subject to some constraint. The values of the first
+	 * occurrence of each relevant descendant element are captured.
+	 */
+	private static class Context {
+
+		final Frame frame;
+
+		final String[] fields;
+
+		final Map<String, String> values = new HashMap<>();
+
+		private String field;
+
+		private int fieldDepth;
+
+		private StringBuilder text;
+
+		Context(Frame frame, String[] fields) {
+			this.frame = frame;
+			this.fields = fields;
+		}
+
+		void startField(String localName, int depth) {
+			if (null != field || values.containsKey(localName)) {
+				return;
+			}
+			if (fields.length == 0 ? localName.equals(frame.name.getLocalPart())
+					: Arrays.asList(fields).contains(localName)) {
+				field = localName;
+				fieldDepth = depth;
+				text = new StringBuilder();
+			}
+		}
+
+		void append(char[] chars, int start, int length) {
+			if (null != field) {
+				int n = Math.min(length, MAX_VALUE_LENGTH - text.length());
+				if (n > 0) {
+					text.append(chars, start, n);
+				}
+			}
+		}
+
+		void endField(int depth) {
+			if (null != field && depth == fieldDepth) {
+				values.put(field, text.toString());
+				field = null;
+				text = null;
+			}
+		}
+
+		boolean has(String... names) {
+			for (String name : names) {
+				if (!values.containsKey(name)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		String get(String name) {
+			return values.get(name);
+		}
+
+		/**
+		 * Returns the numeric value of a field, the default value if the field is absent,
+		 * or null if the value is not a number.
+		 */
+		Double getDouble(String name, double defaultValue) {
+			String value = values.get(name);
+			return (null == value) ? Double.valueOf(defaultValue) : parseDouble(value.trim());
+		}
+
+	}
+
+	/**
+	 * Reads the content of a kml:coordinates element one tuple at a time.
+	 */
+	private class CoordinatesScanner {
+
+		final Frame frame;
+
+		final Frame parent;
+
+		private final StringBuilder tuple = new StringBuilder();
+
+		private int tupleCount;
+
+		private final boolean isRing;
+
+		private String firstTuple;
+
+		private final StringBuilder lastTuple = new StringBuilder();
+
+		CoordinatesScanner(Frame frame, Frame parent) {
+			this.frame = frame;
+			this.parent = parent;
+			this.isRing = (null != parent) && parent.isKml("LinearRing");
+		}
+
+		void append(char[] chars, int start, int length) {
+			for (int i = start; i < start + length; i++) {
+				char c = chars[i];
+				if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+					if (tuple.length() > 0) {
+						endTuple();
+					}
+				}
+				else if (tuple.length() < MAX_VALUE_LENGTH) {
+					tuple.append(c);
+				}
+			}
+		}
+
+		void end() {
+			if (tuple.length() > 0 || tupleCount == 0) {
+				endTuple();
+			}
+			if (null == parent) {
+				return;
+			}
+			if (parent.isKml("Point") && tupleCount > 1) {
+				addError(Check.POINT, "level1.Point.err", parent);
+			}
+			else if (parent.isKml("LineString") && tupleCount < 2) {
+				addError(Check.LINE_STRING, "level1.LineString.err", parent);
+			}
+			else if (parent.isKml("LinearRing")) {
+				if (tupleCount < 4) {
+					addError(Check.LINEAR_RING, "level1.LinearRingControlPoints.err1", parent);
+				}
+				else if (tupleScanner.scan(firstTuple + ' ' + lastTuple) != 2 || !tupleScanner.isSameTuple(0, 1)) {
+					addError(Check.LINEAR_RING, "level1.LinearRingControlPoints.err2", parent);
+				}
+			}
+		}
+
+		/**
+		 * Applies the checks in {@link ValidationUtils#validateCoordinateTuples} to the
+		 * current tuple.
+		 */
+		private void endTuple() {
+			tupleCount++;
+			if (isRing) {
+				if (tupleCount == 1) {
+					firstTuple = tuple.toString();
+				}
+				lastTuple.setLength(0);
+				lastTuple.append(tuple);
+			}
+			tupleScanner.scan(tuple);
+			tuple.setLength(0);
+			ValidationErrorHandler errHandler = errHandlers.get(Check.GEOMETRY_COORDINATES);
+			int dim = tupleScanner.getDimension(0);
+			if (dim < 2 || dim > 3) {
+				errHandler.addError(ErrorSeverity.ERROR,
+						ErrorMessage.format("level1.GeometryCoordinates.dim", 2, tupleCount), frame.locator());
+				return;
+			}
+			if (!tupleScanner.isNumeric(0)) {
+				errHandler.addError(ErrorSeverity.ERROR,
+						ErrorMessage.format("level1.GeometryCoordinates.float", tupleCount), frame.locator());
+				return;
+			}
+			float lon = (float) tupleScanner.getOrdinate(0, 0);
+			float lat = (float) tupleScanner.getOrdinate(0, 1);
+			if (lon < -180.0 || lon > 180.0) {
+				errHandler.addError(ErrorSeverity.ERROR,
+						ErrorMessage.format("level1.GeometryCoordinates.lon", tupleCount), frame.locator());
+			}
+			if (lat < -90.0 || lat > 90.0) {
+				errHandler.addError(ErrorSeverity.ERROR,
+						ErrorMessage.format("level1.GeometryCoordinates.lat", tupleCount), frame.locator());
+			}
+		}
+
+	}
+
+}
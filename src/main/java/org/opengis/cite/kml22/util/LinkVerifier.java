@@ -0,0 +1,249 @@
+package org.opengis.cite.kml22.util;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Checks the resources referred to by link elements concurrently. The referents are
+ * gathered first (on the thread that owns the DOM document); they are then checked on a
+ * pool of worker threads, and the outcome of each check is returned in the order in which
+ * the referents were submitted so that errors can be reported against the originating
+ * nodes.
+ *
+ * <p>
+ * The number of checks in progress is limited both overall and for each host (URI
+ * authority). The default limits can be set using the system properties
+ * {@value #MAX_CONCURRENCY_PROPERTY} (default: {@value #DEFAULT_MAX_CONCURRENCY}) and
+ * {@value #MAX_PER_HOST_PROPERTY} (default: {@value #DEFAULT_MAX_PER_HOST}).
+ * </p>
+ */
+public class LinkVerifier {
+
+	/** The system property that sets the maximum number of concurrent checks. */
+	public static final String MAX_CONCURRENCY_PROPERTY = "kml22.links.maxConcurrency";
+
+	/** The system property that sets the maximum number of concurrent checks per host. */
+	public static final String MAX_PER_HOST_PROPERTY = "kml22.links.maxPerHost";
+
+	/** The default maximum number of concurrent checks. */
+	public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+	/** The default maximum number of concurrent checks per host. */
+	public static final int DEFAULT_MAX_PER_HOST = 4;
+
+	private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+	private final int maxConcurrency;
+
+	private final int maxPerHost;
+
+	/**
+	 * Checks that a resource is acceptable. A check does not access the DOM.
+	 */
+	@FunctionalInterface
+	public interface ReferentCheck {
+
+		/**
+		 * Checks the given resource.
+		 * @param target The URI of the resource.
+		 * @throws AssertionError If the resource is not available or not acceptable.
+		 */
+		void check(URI target);
+
+	}
+
+	/**
+	 * A resource to be checked.
+	 */
+	public static final class Referent {
+
+		private final URI target;
+
+		private final ReferentCheck check;
+
+		/**
+		 * Creates a referent.
+		 * @param target The URI of the resource. It should be absolute: the per-host
+		 * limit does not apply to a URI without an authority component.
+		 * @param check The check to perform.
+		 */
+		public Referent(URI target, ReferentCheck check) {
+			this.target = target;
+			this.check = check;
+		}
+
+		/**
+		 * Returns the URI of the resource.
+		 * @return A URI reference.
+		 */
+		public URI getTarget() {
+			return target;
+		}
+
+	}
+
+	/**
+	 * Creates a verifier with the default concurrency limits (see the system properties
+	 * {@value #MAX_CONCURRENCY_PROPERTY} and {@value #MAX_PER_HOST_PROPERTY}).
+	 */
+	public LinkVerifier() {
+		this(Integer.getInteger(MAX_CONCURRENCY_PROPERTY, DEFAULT_MAX_CONCURRENCY),
+				Integer.getInteger(MAX_PER_HOST_PROPERTY, DEFAULT_MAX_PER_HOST));
+	}
+
+	/**
+	 * Creates a verifier with the given concurrency limits (values less than 1 are
+	 * treated as 1).
+	 * @param maxConcurrency The maximum number of checks in progress at any time.
+	 * @param maxPerHost The maximum number of checks in progress for any one host.
+	 */
+	public LinkVerifier(int maxConcurrency, int maxPerHost) {
+		this.maxConcurrency = Math.max(1, maxConcurrency);
+		this.maxPerHost = Math.max(1, maxPerHost);
+	}
+
+	/**
+	 * Checks all of the given referents and waits for the results. A check is handed to
+	 * the worker pool only when a permit for its host is available; the other checks for
+	 * that host wait in line, so they do not occupy a worker thread while checks for
+	 * other hosts could proceed.
+	 * @param referents A list of resources to check.
+	 * @return A list containing, for each referent in turn, a description of the problem
+	 * found or {@code null} if the check succeeded.
+	 */
+	public List<String> verify(List<Referent> referents) {
+		if (referents.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Map<String, HostQueue> hosts = new HashMap<>();
+		int poolSize = Math.min(maxConcurrency, referents.size());
+		ExecutorService pool = Executors.newFixedThreadPool(poolSize, newThreadFactory());
+		List<String> results = new ArrayList<>(referents.size());
+		try {
+			List<Future<String>> futures = new ArrayList<>(referents.size());
+			for (Referent referent : referents) {
+				FutureTask<String> task = new FutureTask<>(() -> runCheck(referent));
+				futures.add(task);
+				String authority = referent.target.getAuthority();
+				if (null == authority) {
+					pool.execute(task);
+					continue;
+				}
+				HostQueue host = hosts.computeIfAbsent(authority.toLowerCase(Locale.ROOT), key -> new HostQueue());
+				if (host.offer(task)) {
+					pool.execute(() -> runOnHost(task, host, pool));
+				}
+			}
+			for (Future<String> future : futures) {
+				results.add(future.get());
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while checking link referents.", e);
+		}
+		catch (ExecutionException e) {
+			// runCheck does not throw
+			throw new RuntimeException(e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * Runs a check that holds a permit for its host, then hands the permit to the next
+	 * check waiting for that host (if any).
+	 */
+	private void runOnHost(FutureTask<String> task, HostQueue host, ExecutorService pool) {
+		try {
+			task.run();
+		}
+		finally {
+			FutureTask<String> next = host.next();
+			if (null != next && !pool.isShutdown()) {
+				pool.execute(() -> runOnHost(next, host, pool));
+			}
+		}
+	}
+
+	private String runCheck(Referent referent) {
+		try {
+			referent.check.check(referent.target);
+			return null;
+		}
+		catch (AssertionError e) {
+			return e.getMessage();
+		}
+		catch (RuntimeException e) {
+			TestSuiteLogger.log(Level.FINE, "Failed to check referent at " + referent.target, e);
+			return "Unable to access resource at " + referent.target + ": " + e.getMessage();
+		}
+	}
+
+	private static ThreadFactory newThreadFactory() {
+		String prefix = "kml22-links-" + POOL_NUMBER.incrementAndGet() + "-";
+		AtomicInteger threadNumber = new AtomicInteger();
+		return task -> {
+			Thread thread = new Thread(task, prefix + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * The checks for one host: those in progress (up to the per-host limit) and those
+	 * waiting for a permit.
+	 */
+	private final class HostQueue {
+
+		private final Queue<FutureTask<String>> waiting = new ArrayDeque<>();
+
+		private int active;
+
+		/**
+		 * Adds a check for this host.
+		 * @return {@code true} if the check acquired a permit and may run now;
+		 * {@code false} if it must wait.
+		 */
+		synchronized boolean offer(FutureTask<String> task) {
+			if (active < maxPerHost) {
+				active++;
+				return true;
+			}
+			waiting.add(task);
+			return false;
+		}
+
+		/**
+		 * Passes the permit of a completed check to the next waiting check.
+		 * @return The next check to run, or {@code null} if none is waiting (the permit
+		 * is then released).
+		 */
+		synchronized FutureTask<String> next() {
+			FutureTask<String> task = waiting.poll();
+			if (null == task) {
+				active--;
+			}
+			return task;
+		}
+
+	}
+
+}
@@ -0,0 +1,49 @@
+package org.opengis.cite.kml22.util;
+
+import org.opengis.cite.validation.ErrorLocator;
+import org.w3c.dom.Node;
+
+/**
+ * Locates an error by reference to a DOM node. The XPointer that identifies the node (see
+ * {@link XMLUtils#getXPointer(Node)}) is only produced when it is first requested,
+ * usually when the error report is written; no pointer is ever produced for errors that
+ * are not reported. Since the DOM is not thread-safe, the pointer should be requested on
+ * the thread that owns the document.
+ */
+public class NodeErrorLocator extends ErrorLocator {
+
+	private final Node node;
+
+	private String pointer;
+
+	/**
+	 * Creates a locator for the given node.
+	 * @param node The node where the error was detected.
+	 */
+	public NodeErrorLocator(Node node) {
+		super(-1, -1, null);
+		this.node = node;
+	}
+
+	/**
+	 * Returns the node where the error was detected.
+	 * @return A DOM Node.
+	 */
+	public Node getNode() {
+		return node;
+	}
+
+	/**
+	 * Returns a scheme-based XPointer that identifies the node, creating it on the first
+	 * call.
+	 * @return A String containing a scheme-based pointer, or null if there is no node.
+	 */
+	@Override
+	public String getPointer() {
+		if (null == pointer && null != node) {
+			pointer = XMLUtils.getXPointer(node);
+		}
+		return pointer;
+	}
+
+}
@@ -0,0 +1,133 @@
+package org.opengis.cite.kml22.util;
+
+import java.util.Arrays;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+/**
+ * The parsed content of a kml:coordinates element. Ordinate values are held in a single
+ * array of primitive values with {@value CoordinateScanner#STRIDE} values per tuple (the
+ * altitude of a 2D tuple is {@link Double#NaN}); the dimension of each tuple and whether
+ * or not it is numeric are recorded as well, so that all constraints on the tuples can be
+ * checked without reading the text again. An instance is immutable.
+ *
+ * @see CoordinateScanner
+ */
+public class PackedCoordinates {
+
+	private final double[] ordinates;
+
+	private final byte[] dimensions;
+
+	private final boolean[] numeric;
+
+	private final boolean closed;
+
+	private PackedCoordinates(CoordinateScanner scanner) {
+		int nTuples = scanner.getTupleCount();
+		this.ordinates = scanner.getOrdinates();
+		this.dimensions = new byte[nTuples];
+		this.numeric = new boolean[nTuples];
+		for (int i = 0; i < nTuples; i++) {
+			// a tuple may have any number of values
+			this.dimensions[i] = (byte) Math.min(scanner.getDimension(i), Byte.MAX_VALUE);
+			this.numeric[i] = scanner.isNumeric(i);
+		}
+		this.closed = nTuples > 1 && scanner.isSameTuple(0, nTuples - 1);
+	}
+
+	/**
+	 * Parses a list of coordinate tuples using the given scanner.
+	 * @param coordinates A sequence of coordinate tuples (the content of a
+	 * kml:coordinates element).
+	 * @param scanner The scanner to use (its previous results are discarded).
+	 * @return The packed coordinates.
+	 */
+	static PackedCoordinates parse(CharSequence coordinates, CoordinateScanner scanner) {
+		scanner.scan(coordinates);
+		return new PackedCoordinates(scanner);
+	}
+
+	/**
+	 * Parses a list of coordinate tuples.
+	 * @param coordinates A sequence of coordinate tuples (the content of a
+	 * kml:coordinates element).
+	 * @return The packed coordinates.
+	 */
+	public static PackedCoordinates parse(CharSequence coordinates) {
+		return parse(coordinates, new CoordinateScanner());
+	}
+
+	/**
+	 * Returns the number of coordinate tuples.
+	 * @return The tuple count (at least 1; empty content yields a single empty tuple).
+	 */
+	public int getTupleCount() {
+		return dimensions.length;
+	}
+
+	/**
+	 * Returns the number of values in a tuple.
+	 * @param tuple The (0-based) index of a tuple.
+	 * @return The tuple dimension; a valid tuple has 2 or 3 values.
+	 * @see CoordinateScanner#getDimension(int)
+	 */
+	public int getDimension(int tuple) {
+		return dimensions[tuple];
+	}
+
+	/**
+	 * Indicates whether a tuple is a valid 2D or 3D tuple containing only numeric values.
+	 * @param tuple The (0-based) index of a tuple.
+	 * @return {@code true} if all values are numbers; {@code false} otherwise.
+	 */
+	public boolean isNumeric(int tuple) {
+		return numeric[tuple];
+	}
+
+	/**
+	 * Returns an ordinate value of a tuple.
+	 * @param tuple The (0-based) index of a tuple.
+	 * @param ordinate The ordinate (0: longitude, 1: latitude, 2: altitude).
+	 * @return The ordinate value; this is {@link Double#NaN} if it is missing or the
+	 * tuple is not numeric.
+	 */
+	public double getOrdinate(int tuple, int ordinate) {
+		if (ordinate < 0 || ordinate >= CoordinateScanner.STRIDE) {
+			throw new IndexOutOfBoundsException("Invalid ordinate: " + ordinate);
+		}
+		return ordinates[tuple * CoordinateScanner.STRIDE + ordinate];
+	}
+
+	/**
+	 * Indicates whether the first and last tuples are identical. As in ATC 16, the tuples
+	 * are compared as text.
+	 * @return {@code true} if there are at least two tuples and the last one repeats the
+	 * first; {@code false} otherwise.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Creates a JTS coordinate sequence (x: longitude, y: latitude, z: altitude) from
+	 * these tuples. The sequence is backed by a copy of the ordinate values.
+	 * @return A coordinate sequence containing all tuples.
+	 * @throws IllegalArgumentException If some tuple is not 2D or 3D.
+	 * @throws NumberFormatException If some tuple contains a value that is not a number.
+	 */
+	public CoordinateSequence toCoordinateSequence() {
+		for (int i = 0; i < dimensions.length; i++) {
+			if (dimensions[i] < 2 || dimensions[i] > 3) {
+				throw new IllegalArgumentException("Not a 2D or 3D coordinate tuple at position " + (i + 1));
+			}
+			if (!numeric[i]) {
+				throw new NumberFormatException("Not a numeric coordinate tuple at position " + (i + 1));
+			}
+		}
+		return new PackedCoordinateSequence.Double(Arrays.copyOf(ordinates, ordinates.length), CoordinateScanner.STRIDE,
+				0);
+	}
+
+}
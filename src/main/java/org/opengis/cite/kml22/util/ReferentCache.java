@@ -0,0 +1,428 @@
+package org.opengis.cite.kml22.util;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+import javax.imageio.ImageIO;
+
+import org.opengis.cite.kml22.ReusableEntityFilter;
+import org.opengis.cite.kml22.util.DownloadCache.Download;
+
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Invocation;
+import jakarta.ws.rs.client.Invocation.Builder;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Remembers what was found when dereferencing the URI references that occur in a KML
+ * document, so that each referent is retrieved at most once per test run. The same
+ * resource is frequently referenced many times (e.g. an icon used by every placemark) and
+ * by several tests.
+ *
+ * <p>
+ * Results are keyed by the absolute URI and the acceptable media types. Existence checks
+ * ({@link #getReferent(URI, String...)}) and content retrievals
+ * ({@link #getContent(URI, String...)}) are cached separately, since an existence check
+ * does not fetch the content (see
+ * {@link org.opengis.cite.kml22.ETSAssert#assertReferentExists(URI, String, ReferentCache, String...)}).
+ * If several threads ask for the same referent at the same time, only one of them submits
+ * a request; the others wait for its result. A failed retrieval (e.g. the host is
+ * unreachable or the request timed out) is also remembered: the same exception is thrown
+ * again for later requests until the cache is cleared.
+ * </p>
+ *
+ * <p>
+ * An instance is thread-safe.
+ * </p>
+ */
+public class ReferentCache {
+
+	private final Map<Key, CompletableFuture<Entry>> referents = new ConcurrentHashMap<>();
+
+	/** The retrieved content, which is kept in the download cache until cleared. */
+	private final Queue<Download> downloads = new ConcurrentLinkedQueue<>();
+
+	private Client client;
+
+	/**
+	 * Creates a cache that retrieves referents using the shared HTTP client (see
+	 * {@link ClientUtils#getSharedClient()}).
+	 */
+	public ReferentCache() {
+	}
+
+	/**
+	 * Creates a cache that retrieves referents using the given HTTP client.
+	 * @param client An HTTP client component; if {@code null}, the shared client is used.
+	 */
+	public ReferentCache(Client client) {
+		this.client = client;
+	}
+
+	/**
+	 * Checks whether the given resource exists. The content of an HTTP resource is not
+	 * retrieved: a HEAD request is submitted first; if the server does not support the
+	 * HEAD method (status 405 or 501), a GET request for the first byte only
+	 * (<code>Range: bytes=0-0</code>) is submitted instead. A full GET request is
+	 * submitted only if the range cannot be satisfied (status 416). A 'file' URI refers
+	 * to an existing resource if the file is not empty.
+	 * @param uri An absolute URI.
+	 * @param mediaTypes The acceptable media types.
+	 * @return The (cached) result of the check.
+	 */
+	public Entry getReferent(URI uri, String... mediaTypes) {
+		return get(new Key(uri, mediaTypes, false));
+	}
+
+	/**
+	 * Retrieves the content of the given resource and stores it in a local file. The
+	 * content of an HTTP resource is kept in the shared {@link DownloadCache} (see
+	 * {@link DownloadCache#getSharedCache()}).
+	 * @param uri An absolute URI.
+	 * @param mediaTypes The acceptable media types.
+	 * @return The (cached) result of the retrieval; {@link Entry#getFile()} returns the
+	 * local file if the resource exists.
+	 */
+	public Entry getContent(URI uri, String... mediaTypes) {
+		return get(new Key(uri, mediaTypes, true));
+	}
+
+	/**
+	 * Returns the number of referents in the cache.
+	 * @return The number of distinct (URI, media types, content) combinations requested
+	 * so far.
+	 */
+	public int size() {
+		return this.referents.size();
+	}
+
+	/**
+	 * Discards all cached results. Retrieved content remains in the
+	 * {@link DownloadCache}, but it is released (so it may be evicted).
+	 */
+	public void clear() {
+		this.referents.clear();
+		Download download;
+		while (null != (download = this.downloads.poll())) {
+			download.release();
+		}
+	}
+
+	private Entry get(Key key) {
+		if (!key.uri.isAbsolute()) {
+			throw new IllegalArgumentException("Absolute URI is required, but received " + key.uri);
+		}
+		CompletableFuture<Entry> result = this.referents.get(key);
+		if (null == result) {
+			CompletableFuture<Entry> newResult = new CompletableFuture<>();
+			result = this.referents.putIfAbsent(key, newResult);
+			if (null == result) {
+				// this thread retrieves the referent; any others wait for it
+				result = newResult;
+				try {
+					newResult.complete(load(key));
+				}
+				catch (RuntimeException e) {
+					// remember the failure so an unreachable referent is not retried
+					newResult.completeExceptionally(e);
+					throw e;
+				}
+				catch (Error e) {
+					this.referents.remove(key, newResult);
+					newResult.completeExceptionally(e);
+					throw e;
+				}
+			}
+		}
+		try {
+			return result.join();
+		}
+		catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw e;
+		}
+	}
+
+	private Entry load(Key key) {
+		if (key.uri.getScheme().equalsIgnoreCase("file")) {
+			File file = new File(key.uri);
+			long length = file.isFile() ? file.length() : -1;
+			int status = (length > 0) ? Response.Status.OK.getStatusCode() : Response.Status.NOT_FOUND.getStatusCode();
+			return new Entry(key.uri, status, null, length, file);
+		}
+		if (KMLUtils.isArchiveEntryURI(key.uri)) {
+			long length;
+			try {
+				length = KMLUtils.getArchiveEntrySize(key.uri);
+			}
+			catch (IOException | IllegalArgumentException e) {
+				TestSuiteLogger.log(Level.FINE, "Failed to read archive entry " + key.uri, e);
+				length = -1;
+			}
+			int status = (length > 0) ? Response.Status.OK.getStatusCode() : Response.Status.NOT_FOUND.getStatusCode();
+			return new Entry(key.uri, status, null, length, null);
+		}
+		// the shared client must not be closed while the referent is being retrieved
+		boolean shared = null == this.client;
+		Client httpClient = shared ? ClientUtils.acquireSharedClient() : this.client;
+		try {
+			return key.content ? fetch(key, httpClient) : probe(key, httpClient);
+		}
+		finally {
+			if (shared) {
+				ClientUtils.releaseSharedClient();
+			}
+		}
+	}
+
+	private Entry probe(Key key, Client httpClient) {
+		Entry referent = request(httpClient, key.uri, HttpMethod.HEAD, null, key.mediaTypes);
+		if (referent.status == Response.Status.METHOD_NOT_ALLOWED.getStatusCode()
+				|| referent.status == Response.Status.NOT_IMPLEMENTED.getStatusCode()) {
+			referent = request(httpClient, key.uri, HttpMethod.GET, "bytes=0-0", key.mediaTypes);
+		}
+		if (referent.status == Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode()) {
+			referent = request(httpClient, key.uri, HttpMethod.GET, null, key.mediaTypes);
+		}
+		return referent;
+	}
+
+	private Entry fetch(Key key, Client httpClient) {
+		Download download = null;
+		try {
+			download = DownloadCache.getSharedCache().fetch(key.uri, httpClient, key.mediaTypes);
+			this.downloads.add(download);
+		}
+		catch (IOException iox) {
+			TestSuiteLogger.log(Level.WARNING, "Failed to store content retrieved from " + key.uri, iox);
+			throw new IllegalStateException("Unable to access resource at " + key.uri, iox);
+		}
+		File file = download.getFile();
+		return new Entry(key.uri, download.getStatus(), download.getContentType(), (null != file) ? file.length() : -1,
+				file);
+	}
+
+	/**
+	 * Submits a request and summarizes the response. A redirection is followed once (the
+	 * client won't automatically redirect from HTTP to HTTPS).
+	 */
+	private Entry request(Client httpClient, URI uri, String method, String range, String[] mediaTypes) {
+		Response rsp = buildRequest(httpClient, uri, method, range, mediaTypes).invoke();
+		try {
+			if (rsp.getStatusInfo().getFamily() == Response.Status.Family.REDIRECTION && null != rsp.getLocation()) {
+				uri = rsp.getLocation();
+				rsp.close();
+				rsp = buildRequest(httpClient, uri, method, range, mediaTypes).invoke();
+			}
+			int status = rsp.getStatus();
+			MediaType contentType = rsp.getMediaType();
+			long length = getResourceLength(rsp);
+			return new Entry(uri, status, (null != contentType) ? contentType.toString() : null, length, null);
+		}
+		finally {
+			rsp.close();
+		}
+	}
+
+	private Invocation buildRequest(Client httpClient, URI uri, String method, String range, String[] mediaTypes) {
+		// the entity is never read, even if a server ignores the Range header
+		Builder reqBuilder = httpClient.target(uri).request().property(ReusableEntityFilter.READ_ONCE_PROPERTY, true);
+		reqBuilder.accept(mediaTypes);
+		if (null != range) {
+			reqBuilder.header("Range", range);
+		}
+		return reqBuilder.build(method);
+	}
+
+	/**
+	 * Determines the length of the resource; for a partial response it is given by the
+	 * Content-Range header (e.g. "bytes 0-0/1024").
+	 */
+	private static long getResourceLength(Response rsp) {
+		if (rsp.getStatus() == Response.Status.PARTIAL_CONTENT.getStatusCode()) {
+			String contentRange = rsp.getHeaderString("Content-Range");
+			int slash = (null != contentRange) ? contentRange.lastIndexOf('/') : -1;
+			if (slash > -1) {
+				try {
+					return Long.parseLong(contentRange.substring(slash + 1).trim());
+				}
+				catch (NumberFormatException e) { // "*" (unknown length)
+				}
+			}
+			return -1;
+		}
+		return rsp.getLength();
+	}
+
+	/**
+	 * The outcome of dereferencing a URI.
+	 */
+	public static final class Entry {
+
+		private final URI uri;
+
+		private final int status;
+
+		private final String contentType;
+
+		private final long length;
+
+		private final File file;
+
+		private Boolean image;
+
+		Entry(URI uri, int status, String contentType, long length, File file) {
+			this.uri = uri;
+			this.status = status;
+			this.contentType = contentType;
+			this.length = length;
+			this.file = file;
+		}
+
+		/**
+		 * Returns the URI of the referent (after a redirection, if any).
+		 * @return An absolute URI.
+		 */
+		public URI getURI() {
+			return uri;
+		}
+
+		/**
+		 * Indicates whether an acceptable representation of the resource exists.
+		 * @return {@code true} if the final response had status 200 (OK) or 206 (Partial
+		 * Content), or the file is not empty; {@code false} otherwise.
+		 */
+		public boolean exists() {
+			return status == Response.Status.OK.getStatusCode()
+					|| status == Response.Status.PARTIAL_CONTENT.getStatusCode();
+		}
+
+		/**
+		 * Returns the status code of the final response (200 or 404 for a 'file' URI).
+		 * @return An HTTP status code.
+		 */
+		public int getStatus() {
+			return status;
+		}
+
+		/**
+		 * Returns the media type declared in the response.
+		 * @return The value of the Content-Type header, or {@code null} if there is none.
+		 */
+		public String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * Returns the length of the resource representation.
+		 * @return The length in bytes, or -1 if it is not known.
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * Returns the local file holding the content of the resource.
+		 * @return A File, or {@code null} if the content was not retrieved or the
+		 * resource does not exist.
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * Opens a stream to read the content of the resource. The content of an entry in
+		 * a KMZ archive is read directly from the archive.
+		 * @return An InputStream, or {@code null} if the content was not retrieved or the
+		 * resource does not exist.
+		 * @throws IOException If the content cannot be read.
+		 */
+		public InputStream openStream() throws IOException {
+			if (null != file) {
+				return file.isFile() ? new FileInputStream(file) : null;
+			}
+			if (KMLUtils.isArchiveEntryURI(uri) && exists()) {
+				return KMLUtils.openArchiveEntry(uri);
+			}
+			return null;
+		}
+
+		/**
+		 * Determines whether the retrieved content is an image that can be read by some
+		 * {@link javax.imageio.ImageReader ImageReader}. The image is read only once.
+		 * @return {@code true} if the content was read as an image; {@code false}
+		 * otherwise.
+		 * @throws IOException If an error occurs while reading the image data.
+		 */
+		public synchronized boolean isImage() throws IOException {
+			if (null == image) {
+				BufferedImage img = null;
+				try (InputStream input = openStream()) {
+					if (null != input) {
+						img = ImageIO.read(input);
+					}
+				}
+				image = null != img;
+			}
+			return image;
+		}
+
+		@Override
+		public String toString() {
+			return "Entry [uri=" + uri + ", status=" + status + ", contentType=" + contentType + ", length=" + length
+					+ ", file=" + file + "]";
+		}
+
+	}
+
+	/**
+	 * Identifies a cached result.
+	 */
+	private static final class Key {
+
+		final URI uri;
+
+		final String[] mediaTypes;
+
+		final boolean content;
+
+		Key(URI uri, String[] mediaTypes, boolean content) {
+			this.uri = uri;
+			this.mediaTypes = (null != mediaTypes) ? mediaTypes.clone() : new String[0];
+			this.content = content;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return content == other.content && uri.equals(other.uri) && Arrays.equals(mediaTypes, other.mediaTypes);
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * uri.hashCode() + Arrays.hashCode(mediaTypes)) * 2 + (content ? 1 : 0);
+		}
+
+	}
+
+}
@@ -0,0 +1,161 @@
+package org.opengis.cite.kml22.util;
+
+import java.io.StringReader;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.opengis.cite.validation.SchematronValidator;
+
+/**
+ * A JVM-wide pool of Schematron validators, keyed by schema location and phase. Creating
+ * a SchematronValidator entails compiling the schema to an XSLT stylesheet by means of
+ * the ISO Schematron skeleton, which is expensive; a pooled validator retains its
+ * compiled stylesheet and can be reused by any subsequent test run.
+ *
+ * <p>
+ * A SchematronValidator is not thread-safe (it keeps a count of rule violations), so each
+ * one is leased for exclusive use and then returned to the pool:
+ * </p>
+ *
+ * <pre>
+ * try (SchematronValidatorPool.Lease lease = SchematronValidatorPool.acquire(schemaURI, phase)) {
+ *     SchematronValidator validator = lease.getValidator();
+ *     // ...
+ * }
+ * </pre>
+ */
+public class SchematronValidatorPool {
+
+	/** The maximum number of idle validators retained for each schema and phase. */
+	static final int MAX_IDLE = 8;
+
+	private static final ConcurrentMap<String, IdleValidators> POOL = new ConcurrentHashMap<>();
+
+	/**
+	 * A minimal document that a pooled validator processes after its last use, in place
+	 * of the (possibly large) test subject.
+	 */
+	private static final String EMPTY_DOCUMENT = "<empty/>";
+
+	private SchematronValidatorPool() {
+	}
+
+	/**
+	 * Leases a validator for the given schema and phase. An idle pooled validator is
+	 * reused if one is available; otherwise a new one is created.
+	 * @param schemaURI An absolute URI that specifies the location of a Schematron
+	 * schema.
+	 * @param phase The name of the phase to invoke ("#ALL" selects all patterns).
+	 * @return A Lease that provides exclusive use of a validator until it is closed.
+	 * @throws Exception If the schema cannot be read or compiled.
+	 */
+	public static Lease acquire(String schemaURI, String phase) throws Exception {
+		String key = schemaURI + '#' + phase;
+		IdleValidators idle = POOL.computeIfAbsent(key, k -> new IdleValidators());
+		SchematronValidator validator = idle.validators.pollFirst();
+		if (null != validator) {
+			idle.count.decrementAndGet();
+		}
+		else {
+			TestSuiteLogger.log(Level.FINE, "Compiling Schematron schema " + key);
+			validator = new SchematronValidator(new StreamSource(schemaURI), phase);
+		}
+		return new Lease(idle, validator);
+	}
+
+	/**
+	 * Releases the documents retained by a validator after its last use. The validator
+	 * keeps a reference to the source tree and to the SVRL result, either of which may be
+	 * large; an idle pooled validator must not keep them reachable. SchematronValidator
+	 * has no method to release them, so a tiny document is validated in their place
+	 * (which also resets the count of rule violations).
+	 * @param validator A SchematronValidator that is no longer in use.
+	 * @return {@code true} if the state was cleared; {@code false} if it could not be
+	 * (the validator should then be discarded).
+	 */
+	static boolean clearState(SchematronValidator validator) {
+		try {
+			validator.validate(new StreamSource(new StringReader(EMPTY_DOCUMENT)));
+			return true;
+		}
+		catch (RuntimeException e) {
+			TestSuiteLogger.log(Level.FINE, "Failed to clear Schematron validator state", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Discards all idle validators.
+	 */
+	public static void clear() {
+		POOL.clear();
+	}
+
+	/**
+	 * The idle validators for some schema and phase.
+	 */
+	private static class IdleValidators {
+
+		final Deque<SchematronValidator> validators = new ConcurrentLinkedDeque<>();
+
+		final AtomicInteger count = new AtomicInteger();
+
+	}
+
+	/**
+	 * Provides exclusive use of a pooled validator. Closing the lease returns the
+	 * validator to the pool.
+	 */
+	public static class Lease implements AutoCloseable {
+
+		private final IdleValidators idle;
+
+		private SchematronValidator validator;
+
+		Lease(IdleValidators idle, SchematronValidator validator) {
+			this.idle = idle;
+			this.validator = validator;
+		}
+
+		/**
+		 * Returns the leased validator.
+		 * @return A SchematronValidator for the requested schema and phase.
+		 */
+		public SchematronValidator getValidator() {
+			if (null == validator) {
+				throw new IllegalStateException("Lease has been closed.");
+			}
+			return validator;
+		}
+
+		/**
+		 * Returns the validator to the pool (unless enough idle validators are already
+		 * available). The documents it last processed are released first.
+		 */
+		@Override
+		public void close() {
+			if (null == validator) {
+				return;
+			}
+			if (!clearState(validator)) {
+				validator = null;
+				return;
+			}
+			if (idle.count.incrementAndGet() <= MAX_IDLE) {
+				idle.validators.offerFirst(validator);
+			}
+			else {
+				idle.count.decrementAndGet();
+			}
+			validator = null;
+		}
+
+	}
+
+}
@@ -31,13 +31,13 @@ public class TestSuiteLogger {
 	}
 
 	/**
-	 * Logs a message at the specified logging level with the given Exception object that
+	 * Logs a message at the specified logging level with the given Throwable object that
 	 * represents a noteworthy error condition.
 	 * @param level The logging {@link Level level}.
 	 * @param message A String representing the content of the log message.
 	 * @param except An object that indicates an exceptional situation.
 	 */
-	public static void log(Level level, String message, Exception except) {
+	public static void log(Level level, String message, Throwable except) {
 		if (LOGR.isLoggable(level)) {
 			LOGR.log(level, message, except);
 		}
@@ -1,26 +1,24 @@
 package org.opengis.cite.kml22.util;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.logging.Level;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.validation.Schema;
 
 import org.w3c.dom.Document;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
-import jakarta.ws.rs.client.Client;
-import jakarta.ws.rs.client.Invocation.Builder;
-import jakarta.ws.rs.client.WebTarget;
-import jakarta.ws.rs.core.HttpHeaders;
-import jakarta.ws.rs.core.Response;
-
 /**
  * Provides a collection of utility methods for manipulating or resolving URI references.
  */
@@ -28,6 +26,12 @@ public class URIUtils {
 
 	private static final String FIXUP_BASE_URI = "http://apache.org/xml/features/xinclude/fixup-base-uris";
 
+	private static final String ELEMENT_DEFAULT = "http://apache.org/xml/features/validation/schema/element-default";
+
+	private static final String NORMALIZED_VALUE = "http://apache.org/xml/features/validation/schema/normalized-value";
+
+	private static final String DEFER_NODE_EXPANSION = "http://apache.org/xml/features/dom/defer-node-expansion";
+
 	/**
 	 * Parses the content of the given URI as an XML document and returns a new DOM
 	 * Document object. Entity reference nodes will not be expanded. XML inclusions
@@ -38,9 +42,59 @@ public class URIUtils {
 	 * @throws java.io.IOException If the resource is not accessible.
 	 */
 	public static Document parseURI(URI uriRef) throws SAXException, IOException {
+		return parseURI(uriRef, null, null);
+	}
+
+	/**
+	 * Parses the content of the given URI as an XML document and validates it against the
+	 * given schema at the same time (in a single pass). Validation errors are reported to
+	 * the supplied error handler; they do not interrupt parsing. The resulting Document
+	 * is not augmented with information from the schema (such as default values). Entity
+	 * reference nodes will not be expanded. XML inclusions (xi:include elements) will be
+	 * processed if present.
+	 * @param uriRef An absolute URI specifying the location of an XML resource.
+	 * @param schema The Schema to validate against (if null the document is not
+	 * validated).
+	 * @param errHandler The handler that receives validation errors (if null the default
+	 * handler is used).
+	 * @return A DOM Document node representing an XML resource.
+	 * @throws org.xml.sax.SAXException If the resource cannot be parsed.
+	 * @throws java.io.IOException If the resource is not accessible.
+	 */
+	public static Document parseURI(URI uriRef, Schema schema, ErrorHandler errHandler)
+			throws SAXException, IOException {
 		if ((null == uriRef) || !uriRef.isAbsolute()) {
 			throw new IllegalArgumentException("Absolute URI is required, but received " + uriRef);
 		}
+		if (KMLUtils.isArchiveEntryURI(uriRef)) {
+			try (InputStream input = KMLUtils.openArchiveEntry(uriRef)) {
+				return parse(input, uriRef, schema, errHandler);
+			}
+		}
+		return parse(new InputSource(uriRef.toString()), schema, errHandler);
+	}
+
+	/**
+	 * Parses an XML document read from the given input stream, as for
+	 * {@link #parseURI(URI, Schema, ErrorHandler)}.
+	 * @param input An InputStream supplying an XML document (it is not closed).
+	 * @param systemId The absolute URI of the document; relative references are resolved
+	 * against it.
+	 * @param schema The Schema to validate against (may be null).
+	 * @param errHandler The handler that receives validation errors (may be null).
+	 * @return A DOM Document node representing an XML resource.
+	 * @throws org.xml.sax.SAXException If the resource cannot be parsed.
+	 * @throws java.io.IOException If the stream cannot be read.
+	 */
+	static Document parse(InputStream input, URI systemId, Schema schema, ErrorHandler errHandler)
+			throws SAXException, IOException {
+		InputSource source = new InputSource(input);
+		source.setSystemId(systemId.toString());
+		return parse(source, schema, errHandler);
+	}
+
+	private static Document parse(InputSource source, Schema schema, ErrorHandler errHandler)
+			throws SAXException, IOException {
 		DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
 		docFactory.setNamespaceAware(true);
 		docFactory.setExpandEntityReferences(false);
@@ -49,25 +103,41 @@ public class URIUtils {
 		try {
 			// XInclude processor will not add xml:base attributes
 			docFactory.setFeature(FIXUP_BASE_URI, false);
+			// build all nodes now, so that reading the document never modifies it
+			docFactory.setFeature(DEFER_NODE_EXPANSION, false);
+			if (null != schema) {
+				docFactory.setSchema(schema);
+				// do not add default values or normalize content
+				docFactory.setFeature(ELEMENT_DEFAULT, false);
+				docFactory.setFeature(NORMALIZED_VALUE, false);
+			}
 			DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-			doc = docBuilder.parse(uriRef.toString());
+			if (null != errHandler) {
+				docBuilder.setErrorHandler(errHandler);
+			}
+			doc = docBuilder.parse(source);
 		}
 		catch (ParserConfigurationException x) {
 			TestSuiteLogger.log(Level.WARNING, "Failed to create DocumentBuilder." + x);
 		}
 		if (null != doc) {
-			doc.setDocumentURI(uriRef.toString());
+			doc.setDocumentURI(source.getSystemId());
 		}
 		return doc;
 	}
 
 	/**
-	 * Dereferences the given URI and stores the resulting resource representation in a
-	 * local file. The file will be located in the default temporary file directory.
-	 * @param uriRef An absolute URI specifying the location of some resource.
-	 * @return A File containing the content of the resource; it may be empty if
-	 * resolution failed for any reason.
-	 * @throws java.io.IOException If an IO error occurred.
+	 * Dereferences the given URI and returns a local file containing the resulting
+	 * resource representation. The content of an HTTP resource is retrieved using the
+	 * shared {@link DownloadCache}, so it is not retrieved again unless it has changed;
+	 * it is copied to a new file in the default temporary file directory (which the
+	 * caller may delete), since an unpinned cache entry may be evicted at any time. Use
+	 * {@link DownloadCache#fetch(URI, String...)} to read the cached file without copying
+	 * it. An entry in a KMZ archive is not a file: see
+	 * {@link KMLUtils#openArchiveEntry(URI)}.
+	 * @param uriRef An absolute 'file', 'http' or 'https' URI.
+	 * @return A File containing the content of the resource.
+	 * @throws java.io.IOException If the resource could not be retrieved or stored.
 	 */
 	public static File dereferenceURI(URI uriRef) throws IOException {
 		if ((null == uriRef) || !uriRef.isAbsolute()) {
@@ -76,38 +146,31 @@ public class URIUtils {
 		if (uriRef.getScheme().equalsIgnoreCase("file")) {
 			return new File(uriRef);
 		}
-		Client client = ClientUtils.buildClient();
-		WebTarget target = client.target(uriRef);
-		Builder builder = target.request();
-		Response rsp = builder.buildGet().invoke();
-		String suffix = null;
-		if (rsp.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE).toString().endsWith("xml")) {
-			suffix = ".xml";
+		if (KMLUtils.isArchiveEntryURI(uriRef)) {
+			throw new IllegalArgumentException("Archive entry cannot be dereferenced as a file: " + uriRef);
 		}
-		File destFile = File.createTempFile("entity-", suffix);
-		if (rsp.hasEntity()) {
-			Object entity = rsp.getEntity();
-			if (!(entity instanceof InputStream)) {
-				return null;
-			}
-			InputStream is = (InputStream) entity;
-			OutputStream os = new FileOutputStream(destFile);
-			byte[] buffer = new byte[8 * 1024];
-			int bytesRead;
-			while ((bytesRead = is.read(buffer)) != -1) {
-				os.write(buffer, 0, bytesRead);
+		DownloadCache.Download download = DownloadCache.getSharedCache().fetch(uriRef);
+		try {
+			if (null == download.getFile()) {
+				throw new FileNotFoundException(
+						"Failed to retrieve " + uriRef + " (status " + download.getStatus() + ")");
 			}
-			is.close();
-			os.flush();
-			os.close();
+			// copy the content while the entry is pinned
+			File destFile = File.createTempFile("entity-", null);
+			Files.copy(download.getFile().toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			TestSuiteLogger.log(Level.FINE,
+					"Wrote " + destFile.length() + " bytes to file at " + destFile.getAbsolutePath());
+			return destFile;
+		}
+		finally {
+			download.release();
 		}
-		TestSuiteLogger.log(Level.FINE,
-				"Wrote " + destFile.length() + " bytes to file at " + destFile.getAbsolutePath());
-		return destFile;
 	}
 
 	/**
-	 * Constructs an absolute URI from the given URI reference and a base URI.
+	 * Constructs an absolute URI from the given URI reference and a base URI. A reference
+	 * relative to an entry in a KMZ archive is resolved within the archive (see
+	 * {@link KMLUtils#resolveArchiveEntryURI(URI, String)}).
 	 *
 	 * @see <a href="http://tools.ietf.org/html/rfc3986#section-5.2">RFC 3986, 5.2</a>
 	 * @param baseURI The base URI; if present, it must be an absolute URI.
@@ -119,6 +182,9 @@ public class URIUtils {
 		if (null != baseURI && null == uri.getScheme()) {
 			throw new IllegalArgumentException("Base URI has no scheme component: " + baseURI);
 		}
+		if (KMLUtils.isArchiveEntryURI(uri)) {
+			return KMLUtils.resolveArchiveEntryURI(uri, uriRef);
+		}
 		return uri.resolve(uriRef);
 	}
 
@@ -4,6 +4,16 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 import javax.xml.XMLConstants;
@@ -18,11 +28,18 @@ import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 
 import org.apache.xerces.util.XMLCatalogResolver;
+import org.apache.xerces.xs.XSConstants;
+import org.apache.xerces.xs.XSElementDeclaration;
+import org.apache.xerces.xs.XSModel;
+import org.apache.xerces.xs.XSNamedMap;
 import org.opengis.cite.kml22.ErrorMessage;
+import org.opengis.cite.kml22.KML22;
+import org.opengis.cite.kml22.Namespaces;
 import org.opengis.cite.validation.ErrorLocator;
 import org.opengis.cite.validation.ErrorSeverity;
 import org.opengis.cite.validation.SchematronValidator;
 import org.opengis.cite.validation.ValidationErrorHandler;
+import org.opengis.cite.validation.XSModelBuilder;
 import org.opengis.cite.validation.XmlSchemaCompiler;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
@@ -36,6 +53,24 @@ public class ValidationUtils {
 
 	private static final XMLCatalogResolver SCH_RESOLVER = initCatalogResolver();
 
+	/**
+	 * Compiles the KML schema at most once per JVM; whichever thread runs it first does
+	 * the work while any others wait for the result. The task is replaced if it fails, so
+	 * that a later caller tries again.
+	 */
+	private static final AtomicReference<FutureTask<Schema>> KML_SCHEMA = new AtomicReference<>(
+			new FutureTask<>(ValidationUtils::createKMLSchema));
+
+	/** Set while a warm-up thread is compiling the KML schema. */
+	private static final AtomicBoolean KML_SCHEMA_WARM_UP = new AtomicBoolean();
+
+	/**
+	 * The names of the elements that can substitute for kml:AbstractObjectGroup, keyed by
+	 * the Schema from which they were derived.
+	 */
+	private static final Map<Schema, Set<QName>> OBJECT_SUBSTITUTES = Collections
+		.synchronizedMap(new WeakHashMap<Schema, Set<QName>>());
+
 	private static XMLCatalogResolver initCatalogResolver() {
 		URL catalogURL = ValidationUtils.class.getResource("/org/opengis/cite/kml22/schematron-catalog.xml");
 		XMLCatalogResolver resolver = new XMLCatalogResolver();
@@ -55,19 +90,7 @@ public class ValidationUtils {
 	 * constructed (e.g. invalid schema reference or phase name).
 	 */
 	public static SchematronValidator buildSchematronValidator(String schemaRef, String phase) {
-		Source source = null;
-		try {
-			String catalogRef = SCH_RESOLVER.resolveSystem(schemaRef.toString());
-			if (null != catalogRef) {
-				source = new StreamSource(URI.create(catalogRef).toString());
-			}
-			else {
-				source = new StreamSource(schemaRef);
-			}
-		}
-		catch (IOException x) {
-			TestSuiteLogger.log(Level.WARNING, "Error reading Schematron schema catalog.", x);
-		}
+		Source source = new StreamSource(resolveSchematronReference(schemaRef));
 		SchematronValidator validator = null;
 		try {
 			validator = new SchematronValidator(source, phase);
@@ -78,6 +101,49 @@ public class ValidationUtils {
 		return validator;
 	}
 
+	/**
+	 * Obtains a SchematronValidator from the JVM-wide pool of validators, so that the
+	 * schema is compiled only once rather than for every test run. The schema reference
+	 * is resolved as described for {@link #buildSchematronValidator(String, String)}. The
+	 * lease must be closed when the validator is no longer needed.
+	 * @param schemaRef A reference to a Schematron schema.
+	 * @param phase The name of the phase to invoke.
+	 * @return A lease on a SchematronValidator instance.
+	 * @throws AssertionError If the validator cannot be constructed (e.g. invalid schema
+	 * reference or phase name).
+	 */
+	public static SchematronValidatorPool.Lease acquireSchematronValidator(String schemaRef, String phase) {
+		String location = resolveSchematronReference(schemaRef);
+		try {
+			return SchematronValidatorPool.acquire(location, phase);
+		}
+		catch (Exception e) {
+			TestSuiteLogger.log(Level.WARNING, "Error creating Schematron validator.", e);
+			throw new AssertionError(String.format("Failed to process Schematron schema at %s (phase '%s')\n%s",
+					location, phase, e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Resolves a Schematron schema reference using the entity catalog.
+	 * @param schemaRef A reference to a Schematron schema.
+	 * @return The resolved location, or the reference as given if it is not listed in the
+	 * catalog.
+	 */
+	private static String resolveSchematronReference(String schemaRef) {
+		String location = schemaRef;
+		try {
+			String catalogRef = SCH_RESOLVER.resolveSystem(schemaRef);
+			if (null != catalogRef) {
+				location = URI.create(catalogRef).toString();
+			}
+		}
+		catch (IOException x) {
+			TestSuiteLogger.log(Level.WARNING, "Error reading Schematron schema catalog.", x);
+		}
+		return location;
+	}
+
 	/**
 	 * Extracts an XML Schema reference from a source XML document. The resulting URI
 	 * value refers to the schema whose target namespace matches the namespace of the
@@ -150,6 +216,122 @@ public class ValidationUtils {
 		return kmlSchema;
 	}
 
+	/**
+	 * Returns the Schema object representing the complete set of XML Schema constraints
+	 * that apply to KML 2.2 documents (see {@link #createKMLSchema()}). The schema is
+	 * compiled only once and shared by all test runs in the JVM (a Schema object is
+	 * immutable and thread-safe). If compilation is already under way (see
+	 * {@link #warmUpKMLSchema()}) the caller waits for it to finish. If compilation
+	 * fails, the next caller tries again.
+	 * @return An immutable Schema object, or <code>null</code> if one cannot be
+	 * constructed.
+	 */
+	public static Schema getKMLSchema() {
+		return getOrRetry(KML_SCHEMA, ValidationUtils::createKMLSchema, "KML Schema object");
+	}
+
+	/**
+	 * Runs the task held by the given reference (unless it has already been started) and
+	 * waits for its result. If the task fails or produces no result, it is replaced by a
+	 * new one so that the next caller tries again.
+	 * @param taskRef A reference to a shared task.
+	 * @param callable The computation performed by a replacement task.
+	 * @param description A description of the result, used in log messages.
+	 * @return The result of the task, or {@code null} if it failed.
+	 */
+	static <T> T getOrRetry(AtomicReference<FutureTask<T>> taskRef, Callable<T> callable, String description) {
+		FutureTask<T> task = taskRef.get();
+		task.run(); // no-op if already started
+		T result = null;
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					result = task.get();
+					break;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+				catch (ExecutionException e) {
+					TestSuiteLogger.log(Level.WARNING, "Failed to create " + description + ": " + e.getCause());
+					break;
+				}
+			}
+		}
+		finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (null == result) {
+			taskRef.compareAndSet(task, new FutureTask<>(callable));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the names of all global element declarations in the given schema that
+	 * (directly or transitively) belong to the substitution group headed by
+	 * kml:AbstractObjectGroup; that is, the elements that represent KML objects. The head
+	 * element itself is not included. The set is derived from the schema model only once
+	 * for each Schema object.
+	 * @param kmlSchema A Schema object representing the KML 2.2 schema (see
+	 * {@link #getKMLSchema()}).
+	 * @return An immutable set of element names (empty if the schema is
+	 * <code>null</code>).
+	 */
+	public static Set<QName> getAbstractObjectSubstitutes(Schema kmlSchema) {
+		if (null == kmlSchema) {
+			return Collections.emptySet();
+		}
+		return OBJECT_SUBSTITUTES.computeIfAbsent(kmlSchema, ValidationUtils::findAbstractObjectSubstitutes);
+	}
+
+	private static Set<QName> findAbstractObjectSubstitutes(Schema kmlSchema) {
+		XSModel xsdModel = XSModelBuilder.buildXMLSchemaModel(kmlSchema, Namespaces.KML22);
+		XSNamedMap elemDecls = xsdModel.getComponents(XSConstants.ELEMENT_DECLARATION);
+		Set<QName> substitutes = new HashSet<>();
+		for (int i = 0; i < elemDecls.getLength(); i++) {
+			XSElementDeclaration decl = (XSElementDeclaration) elemDecls.item(i);
+			XSElementDeclaration head = decl.getSubstitutionGroupAffiliation();
+			if (null == head) {
+				continue;
+			}
+			while (null != head.getSubstitutionGroupAffiliation()) {
+				head = head.getSubstitutionGroupAffiliation();
+			}
+			if (head.getName().equals(KML22.ABSTRACT_OBJECT_GROUP) && Namespaces.KML22.equals(head.getNamespace())) {
+				substitutes.add(new QName(decl.getNamespace(), decl.getName()));
+			}
+		}
+		return Collections.unmodifiableSet(substitutes);
+	}
+
+	/**
+	 * Starts compiling the shared KML schema on a background (daemon) thread, so that it
+	 * is likely to be available by the time the first test run needs it. This method
+	 * returns immediately and has no effect if compilation has already finished or a
+	 * warm-up thread is still running.
+	 * @return {@code true} if a warm-up thread was started; {@code false} otherwise.
+	 */
+	public static boolean warmUpKMLSchema() {
+		if (KML_SCHEMA.get().isDone() || !KML_SCHEMA_WARM_UP.compareAndSet(false, true)) {
+			return false;
+		}
+		Thread warmUp = new Thread(() -> {
+			try {
+				getKMLSchema();
+			}
+			finally {
+				KML_SCHEMA_WARM_UP.set(false);
+			}
+		}, "kml22-schema-warm-up");
+		warmUp.setDaemon(true);
+		warmUp.start();
+		return true;
+	}
+
 	/**
 	 * Validates coordinate tuples by checking for (1) the occurrence of non-float values,
 	 * (2) inconsistent tuple dimension, and (3) coordinates lying outside the valid
@@ -165,39 +347,49 @@ public class ValidationUtils {
 	public static void validateCoordinateTuples(Node coordinates, int minDim, ValidationErrorHandler errHandler) {
 		if (!coordinates.getLocalName().equals("coordinates"))
 			return;
+		validateCoordinateTuples(coordinates, PackedCoordinates.parse(coordinates.getTextContent()), minDim,
+				errHandler);
+	}
+
+	/**
+	 * Validates coordinate tuples that have already been parsed (see
+	 * {@link CoordinateStore}). The same checks are performed as in
+	 * {@link #validateCoordinateTuples(Node, int, ValidationErrorHandler)}.
+	 * @param coordinates The kml:coordinates element that contains the tuples (used to
+	 * locate detected errors).
+	 * @param tuples The parsed content of the element.
+	 * @param minDim The expected minimum tuple dimension (2 or 3).
+	 * @param errHandler An error handler to collect any detected constraint violations.
+	 */
+	public static void validateCoordinateTuples(Node coordinates, PackedCoordinates tuples, int minDim,
+			ValidationErrorHandler errHandler) {
 		int minTupleDim = (minDim < 2 || minDim > 3) ? 2 : minDim;
-		// use XPointer to locate detected errors
-		String xpointer = XMLUtils.getXPointer(coordinates);
-		String coords = coordinates.getTextContent();
-		String[] tuples = coords.trim().split("[ \\t\\n\\r]{1,}");
-		for (int i = 0; i < tuples.length; i++) {
-			String[] tuple = tuples[i].trim().split(",");
-			if (tuple.length < minTupleDim || tuple.length > 3) {
+		// the XPointer is only produced if some error is reported
+		ErrorLocator locator = new NodeErrorLocator(coordinates);
+		int nTuples = tuples.getTupleCount();
+		for (int i = 0; i < nTuples; i++) {
+			int dim = tuples.getDimension(i);
+			if (dim < minTupleDim || dim > 3) {
 				errHandler.addError(ErrorSeverity.ERROR,
-						ErrorMessage.format("level1.GeometryCoordinates.dim", minTupleDim, i + 1),
-						new ErrorLocator(-1, -1, xpointer));
+						ErrorMessage.format("level1.GeometryCoordinates.dim", minTupleDim, i + 1), locator);
 				continue;
 			}
-			try {
-				Float.valueOf(tuple[0]);
-				Float.valueOf(tuple[1]);
-				if (tuple.length == 3) {
-					Float.valueOf(tuple[2]);
-				}
-			}
-			catch (NumberFormatException e) {
+			if (!tuples.isNumeric(i)) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.GeometryCoordinates.float", i + 1),
-						new ErrorLocator(-1, -1, xpointer));
+						locator);
 				// Skip range checks if non-numeric value
 				continue;
 			}
-			if ((Float.valueOf(tuple[0]) < -180.0 || Float.valueOf(tuple[0]) > 180.0)) {
+			// compare single-precision values (as before)
+			float lon = (float) tuples.getOrdinate(i, 0);
+			float lat = (float) tuples.getOrdinate(i, 1);
+			if (lon < -180.0 || lon > 180.0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.GeometryCoordinates.lon", i + 1),
-						new ErrorLocator(-1, -1, xpointer));
+						locator);
 			}
-			if ((Float.valueOf(tuple[1]) < -90.0 || Float.valueOf(tuple[1]) > 90.0)) {
+			if (lat < -90.0 || lat > 90.0) {
 				errHandler.addError(ErrorSeverity.ERROR, ErrorMessage.format("level1.GeometryCoordinates.lat", i + 1),
-						new ErrorLocator(-1, -1, xpointer));
+						locator);
 			}
 		}
 	}
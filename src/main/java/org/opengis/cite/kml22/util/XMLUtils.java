@@ -1,25 +1,38 @@
 package org.opengis.cite.kml22.util;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
+import javax.xml.validation.Schema;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
@@ -27,24 +40,79 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
+import net.sf.saxon.dom.NodeOverNodeInfo;
+import net.sf.saxon.om.DocumentInfo;
+import net.sf.saxon.om.NodeInfo;
 import net.sf.saxon.s9api.DOMDestination;
-import net.sf.saxon.s9api.DocumentBuilder;
 import net.sf.saxon.s9api.Processor;
 import net.sf.saxon.s9api.SaxonApiException;
 import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathExecutable;
 import net.sf.saxon.s9api.XPathSelector;
+import net.sf.saxon.s9api.XdmItem;
 import net.sf.saxon.s9api.XdmNode;
 import net.sf.saxon.s9api.XdmValue;
 import net.sf.saxon.s9api.XsltCompiler;
 import net.sf.saxon.s9api.XsltExecutable;
 import net.sf.saxon.s9api.XsltTransformer;
+import net.sf.saxon.tinytree.TinyNodeImpl;
+import net.sf.saxon.xpath.XPathEvaluator;
+import net.sf.saxon.trans.XPathException;
 
 /**
  * Provides various utility methods for accessing or manipulating XML representations.
  */
 public class XMLUtils {
 
+	/** The maximum number of compiled XPath expressions retained by each thread. */
+	private static final int XPATH_CACHE_SIZE = 256;
+
+	private static final ThreadLocal<XPathCache> XPATH_CACHE = ThreadLocal
+		.withInitial(() -> new XPathCache(XPathFactory.newInstance().newXPath(), XPATH_CACHE_SIZE));
+
+	/**
+	 * XPath 1.0 expressions for read-only documents (see {@link #isImmutable(Node)}),
+	 * which are evaluated by Saxon in backwards compatible mode.
+	 */
+	private static final ThreadLocal<XPathCache> XDM_XPATH_CACHE = ThreadLocal.withInitial(() -> {
+		XPathEvaluator xpath = new XPathEvaluator(XMLUtils.PROCESSOR.getUnderlyingConfiguration());
+		xpath.setBackwardsCompatible(true);
+		return new XPathCache(xpath, XPATH_CACHE_SIZE);
+	});
+
+	/** The user data key for the element positions used in XPointers. */
+	private static final String ELEMENT_POSITIONS = XMLUtils.class.getName() + ".elementPositions";
+
+	/**
+	 * The node numbers of the elements in a TinyTree document, by name and in document
+	 * order. The values do not refer to the tree, so an entry is dropped when the
+	 * document is no longer used.
+	 */
+	private static final Map<DocumentInfo, Map<QName, int[]>> TREE_ELEMENT_NUMBERS = Collections
+		.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * A Saxon processor shared by all XPath 2.0 and XSLT operations; it is thread-safe
+	 * and relatively expensive to create.
+	 */
+	private static final Processor PROCESSOR = new Processor(false);
+
+	/** Compiled XPath 2.0 expressions (XPathExecutable objects are thread-safe). */
+	private static final Map<XPathKey, XPathExecutable> XPATH2_CACHE = new LinkedHashMap<XPathKey, XPathExecutable>(64,
+			0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<XPathKey, XPathExecutable> eldest) {
+			return size() > XPATH_CACHE_SIZE;
+		}
+	};
+
 	/**
 	 * Writes the content of a DOM Node to a String. The XML declaration is always
 	 * omitted.
@@ -128,11 +196,60 @@ public class XMLUtils {
 	 */
 	public static Object evaluateXPath(Node context, String expr, Map<String, String> namespaceBindings,
 			QName returnType) throws XPathExpressionException {
-		NamespaceBindings bindings = NamespaceBindings.withStandardBindings();
-		bindings.addAllBindings(namespaceBindings);
-		XPath xpath = XPathFactory.newInstance().newXPath();
-		xpath.setNamespaceContext(bindings);
-		return xpath.evaluate(expr, context, returnType);
+		if (isImmutable(context)) {
+			Object result = XDM_XPATH_CACHE.get().compile(expr, namespaceBindings).evaluate(context, returnType);
+			return asDOMResult(result);
+		}
+		return compileXPath(expr, namespaceBindings).evaluate(context, returnType);
+	}
+
+	/**
+	 * Converts a result obtained from the Saxon XPath engine, where nodes are represented
+	 * as NodeInfo objects, to the form returned by the standard (DOM) implementation.
+	 * @param result The result of evaluating an expression.
+	 * @return The result with nodes wrapped as DOM nodes; a sequence of nodes is returned
+	 * as a NodeList.
+	 */
+	private static Object asDOMResult(Object result) {
+		if (result instanceof NodeInfo) {
+			return NodeOverNodeInfo.wrap((NodeInfo) result);
+		}
+		if (result instanceof List) {
+			List<Node> nodes = new ArrayList<>();
+			for (Object item : (List<?>) result) {
+				nodes.add(NodeOverNodeInfo.wrap((NodeInfo) item));
+			}
+			return new NodeList() {
+				@Override
+				public Node item(int index) {
+					return (index >= 0 && index < nodes.size()) ? nodes.get(index) : null;
+				}
+
+				@Override
+				public int getLength() {
+					return nodes.size();
+				}
+			};
+		}
+		return result;
+	}
+
+	/**
+	 * Compiles an XPath 1.0 expression. Compiled expressions are cached for reuse by the
+	 * calling thread, since neither XPath nor XPathExpression objects are thread-safe;
+	 * the result must not be shared with other threads.
+	 * @param expr An XPath expression.
+	 * @param namespaceBindings A collection of namespace bindings for the XPath
+	 * expression, where each entry maps a namespace URI (key) to a prefix (value). It may
+	 * be {@code null}. Standard bindings do not need to be declared (see
+	 * {@link org.opengis.cite.kml22.util.NamespaceBindings#withStandardBindings()}.
+	 * @return A compiled XPathExpression.
+	 * @throws javax.xml.xpath.XPathExpressionException If the expression cannot be
+	 * compiled.
+	 */
+	public static XPathExpression compileXPath(String expr, Map<String, String> namespaceBindings)
+			throws XPathExpressionException {
+		return XPATH_CACHE.get().compile(expr, namespaceBindings);
 	}
 
 	/**
@@ -150,27 +267,160 @@ public class XMLUtils {
 	 */
 	public static XdmValue evaluateXPath2(Source xmlSource, String expr, Map<String, String> nsBindings)
 			throws SaxonApiException {
-		Processor proc = new Processor(false);
-		XPathCompiler compiler = proc.newXPathCompiler();
-		if (null != nsBindings) {
-			for (String nsURI : nsBindings.keySet()) {
-				compiler.declareNamespace(nsBindings.get(nsURI), nsURI);
-			}
-		}
-		XPathSelector xpath = compiler.compile(expr).load();
-		DocumentBuilder builder = proc.newDocumentBuilder();
 		XdmNode node = null;
 		if (DOMSource.class.isInstance(xmlSource)) {
 			DOMSource domSource = (DOMSource) xmlSource;
-			node = builder.wrap(domSource.getNode());
+			node = wrapNode(domSource.getNode());
 		}
 		else {
-			node = builder.build(xmlSource);
+			node = PROCESSOR.newDocumentBuilder().build(xmlSource);
 		}
-		xpath.setContextItem(node);
+		return evaluateXPath2(node, expr, nsBindings);
+	}
+
+	/**
+	 * Evaluates an XPath 2.0 expression against a node in the XDM data model. Compiled
+	 * expressions are cached and reused.
+	 * @param context The context item.
+	 * @param expr The XPath expression to be evaluated.
+	 * @param nsBindings A collection of namespace bindings required to evaluate the XPath
+	 * expression, where each entry maps a namespace URI (key) to a prefix (value); this
+	 * may be {@code null} if not needed.
+	 * @return An XdmValue object representing a value in the XDM data model; this is a
+	 * sequence of zero or more items, where each item is either an atomic value or a
+	 * node.
+	 * @throws net.sf.saxon.s9api.SaxonApiException If an error occurs while evaluating
+	 * the expression; this always wraps some other underlying exception.
+	 */
+	public static XdmValue evaluateXPath2(XdmItem context, String expr, Map<String, String> nsBindings)
+			throws SaxonApiException {
+		XPathSelector xpath = compileXPath2(expr, nsBindings).load();
+		xpath.setContextItem(context);
 		return xpath.evaluate();
 	}
 
+	/**
+	 * Wraps a DOM node so that it can be used in the XDM data model. The result can be
+	 * reused for any number of XPath 2.0 evaluations as long as the DOM node is not
+	 * modified. If the node is a DOM view of an XDM node (see
+	 * {@link #asDocument(XdmNode)}) the underlying node is returned instead.
+	 * @param node A DOM Node (usually a Document).
+	 * @return An XdmNode that wraps the given node.
+	 */
+	public static XdmNode wrapNode(Node node) {
+		if (node instanceof NodeOverNodeInfo) {
+			// DocumentBuilder.wrap does not accept a NodeInfo, and build would copy it
+			return new XdmNode(((NodeOverNodeInfo) node).getUnderlyingNodeInfo()) {
+			};
+		}
+		return PROCESSOR.newDocumentBuilder().wrap(node);
+	}
+
+	/**
+	 * Builds a compact, immutable representation of an XML document (a Saxon
+	 * <em>TinyTree</em>) from the given input stream. The document is validated against
+	 * the given schema while it is being read, as for
+	 * {@link URIUtils#parseURI(java.net.URI, Schema, ErrorHandler)}. A TinyTree requires
+	 * much less memory than a DOM document and it is thread-safe.
+	 * @param input An InputStream supplying an XML document (it is not closed).
+	 * @param systemId The absolute URI of the document.
+	 * @param schema The Schema to validate against (may be null).
+	 * @param errHandler The handler that receives validation errors (may be null).
+	 * @return An XdmNode representing the document node.
+	 * @throws SAXException If the document is not well-formed.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	public static XdmNode buildXdmNode(InputStream input, URI systemId, Schema schema, ErrorHandler errHandler)
+			throws SAXException, IOException {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		factory.setXIncludeAware(true);
+		XMLReader reader;
+		try {
+			if (null != schema) {
+				factory.setSchema(schema);
+			}
+			reader = factory.newSAXParser().getXMLReader();
+		}
+		catch (ParserConfigurationException e) {
+			throw new SAXException("Failed to create XMLReader.", e);
+		}
+		if (null != errHandler) {
+			reader.setErrorHandler(errHandler);
+		}
+		InputSource source = new InputSource(input);
+		source.setSystemId(systemId.toString());
+		try {
+			return PROCESSOR.newDocumentBuilder().build(new SAXSource(reader, source));
+		}
+		catch (SaxonApiException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof XPathException && ((XPathException) cause).getException() instanceof IOException) {
+				throw (IOException) ((XPathException) cause).getException();
+			}
+			throw new SAXException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Presents a document node in the XDM data model as a read-only DOM Document. Any
+	 * attempt to modify it raises a DOMException. Note that distinct DOM objects may
+	 * represent the same node, so nodes must not be compared by identity (see
+	 * {@link #getNodeKey(Node)}).
+	 * @param docNode An XdmNode representing a document node.
+	 * @return A Document that provides a view of the node.
+	 */
+	public static Document asDocument(XdmNode docNode) {
+		return (Document) NodeOverNodeInfo.wrap(docNode.getUnderlyingNode());
+	}
+
+	/**
+	 * Determines whether or not the given node belongs to an immutable document that can
+	 * be read by multiple threads concurrently (a DOM view of an XDM node).
+	 * @param node A DOM Node.
+	 * @return {@code true} if the document cannot be modified; {@code false} otherwise.
+	 */
+	public static boolean isImmutable(Node node) {
+		return node instanceof NodeOverNodeInfo;
+	}
+
+	/**
+	 * Returns an object that identifies the given node. For an ordinary DOM node this is
+	 * the node itself; for a DOM view of an XDM node (see {@link #asDocument(XdmNode)})
+	 * it is the underlying node, which is equal to that obtained from any other view of
+	 * the same node.
+	 * @param node A DOM Node.
+	 * @return An object suitable for use as a key in a hash-based collection.
+	 */
+	public static Object getNodeKey(Node node) {
+		return (node instanceof NodeOverNodeInfo) ? ((NodeOverNodeInfo) node).getUnderlyingNodeInfo() : node;
+	}
+
+	/**
+	 * Compiles an XPath 2.0 expression, or retrieves it from the cache of previously
+	 * compiled expressions. An XPathExecutable is immutable and may be shared by multiple
+	 * threads.
+	 * @param expr The XPath expression.
+	 * @param nsBindings A collection of namespace bindings (may be {@code null}).
+	 * @return A compiled XPath expression.
+	 * @throws SaxonApiException If the expression cannot be compiled.
+	 */
+	static XPathExecutable compileXPath2(String expr, Map<String, String> nsBindings) throws SaxonApiException {
+		Map<String, String> bindings = (null != nsBindings) ? nsBindings : Collections.<String, String>emptyMap();
+		synchronized (XPATH2_CACHE) {
+			XPathExecutable executable = XPATH2_CACHE.get(new XPathKey(expr, bindings));
+			if (null == executable) {
+				XPathCompiler compiler = PROCESSOR.newXPathCompiler();
+				for (Map.Entry<String, String> binding : bindings.entrySet()) {
+					compiler.declareNamespace(binding.getValue(), binding.getKey());
+				}
+				executable = compiler.compile(expr);
+				XPATH2_CACHE.put(new XPathKey(expr, new HashMap<>(bindings)), executable);
+			}
+			return executable;
+		}
+	}
+
 	/**
 	 * Creates a new Element having the specified qualified name. The element must be
 	 * {@link org.w3c.dom.Document#adoptNode(Node) adopted} when inserted into another
@@ -211,6 +461,77 @@ public class XMLUtils {
 		return list;
 	}
 
+	/**
+	 * Returns the child elements of the given node that have the specified name. This is
+	 * equivalent to a relative path expression such as <code>kml:Data</code>, but it does
+	 * not require an XPath evaluation.
+	 * @param node The parent node.
+	 * @param namespaceURI The namespace name of the child elements.
+	 * @param localName The local name of the child elements.
+	 * @return A List containing the matching child elements in document order (may be
+	 * empty).
+	 */
+	public static List<Element> getChildElements(Node node, String namespaceURI, String localName) {
+		List<Element> list = new ArrayList<Element>();
+		for (Node child = node.getFirstChild(); null != child; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE && localName.equals(child.getLocalName())
+					&& namespaceURI.equals(child.getNamespaceURI())) {
+				list.add((Element) child);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Indexes the elements in a document by the value of their (unqualified) 'id'
+	 * attribute, in a single traversal of the document tree. If several elements have the
+	 * same id, the first one in document order is kept; that is, a lookup is equivalent
+	 * to the expression <code>(//*[@id='...'])[1]</code>.
+	 * @param doc A Document node.
+	 * @return A map of elements keyed by 'id' value (may be empty).
+	 */
+	public static Map<String, Element> getElementsById(Document doc) {
+		Map<String, Element> elementsById = new HashMap<String, Element>();
+		Node root = doc.getDocumentElement();
+		Node node = root;
+		while (null != node) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				Element elem = (Element) node;
+				if (elem.hasAttribute("id")) {
+					elementsById.putIfAbsent(elem.getAttribute("id"), elem);
+				}
+				if (null != node.getFirstChild()) {
+					node = node.getFirstChild();
+					continue;
+				}
+			}
+			while (null != node && node != root && null == node.getNextSibling()) {
+				node = node.getParentNode();
+			}
+			node = (null == node || node == root) ? null : node.getNextSibling();
+		}
+		return elementsById;
+	}
+
+	/**
+	 * Indicates whether or not the given node has an ancestor element with the specified
+	 * name. This is equivalent to the expression <code>ancestor::kml:Polygon</code>.
+	 * @param node The node to start from.
+	 * @param namespaceURI The namespace name of the ancestor element.
+	 * @param localName The local name of the ancestor element.
+	 * @return {@code true} if a matching ancestor element exists; {@code false}
+	 * otherwise.
+	 */
+	public static boolean hasAncestor(Node node, String namespaceURI, String localName) {
+		for (Node parent = node.getParentNode(); null != parent; parent = parent.getParentNode()) {
+			if (parent.getNodeType() == Node.ELEMENT_NODE && localName.equals(parent.getLocalName())
+					&& namespaceURI.equals(parent.getNamespaceURI())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Transforms the content of a DOM Node using a specified XSLT stylesheet.
 	 * @param xslt A Source object representing a stylesheet (XSLT 1.0 or 2.0).
@@ -234,8 +555,7 @@ public class XMLUtils {
 		catch (ParserConfigurationException pce) {
 			throw new RuntimeException(pce);
 		}
-		Processor processor = new Processor(false);
-		XsltCompiler compiler = processor.newXsltCompiler();
+		XsltCompiler compiler = PROCESSOR.newXsltCompiler();
 		try {
 			XsltExecutable exec = compiler.compile(xslt);
 			XsltTransformer transformer = exec.load();
@@ -267,35 +587,18 @@ public class XMLUtils {
 	 */
 	public static String getXPointer(Node node) {
 		assert null != node : "Input node is null. Log it!";
-		StringBuffer xpointer = new StringBuffer();
 		String nsURI = node.getNamespaceURI();
-		String nsPrefix = node.getPrefix();
-		if (null == nsPrefix)
-			nsPrefix = "tns";
-		// WARNING: Escaping rules are currently ignored.
-		xpointer.append("xmlns(").append(nsPrefix).append("=").append(nsURI).append(")");
-		xpointer.append("xpointer((");
 		switch (node.getNodeType()) {
 			case Node.ELEMENT_NODE:
-				// Find the element in the list of all similarly named descendants
-				// of the document root.
-				NodeList elementsByName = node.getOwnerDocument().getElementsByTagNameNS(nsURI, node.getLocalName());
-				for (int i = 0; i < elementsByName.getLength(); i++) {
-					if (elementsByName.item(i).isSameNode(node)) {
-						xpointer.append("//");
-						xpointer.append(nsPrefix)
-							.append(':')
-							.append(node.getLocalName())
-							.append(")[")
-							.append(i + 1)
-							.append("])");
-						break;
-					}
+				// Find the position of the element among all similarly named
+				// descendants of the document root.
+				int position = getElementPosition((Element) node);
+				if (position > 0) {
+					return getElementXPointer(nsURI, node.getPrefix(), node.getLocalName(), position);
 				}
-				break;
+				return getElementXPointer(nsURI, node.getPrefix(), null, 0);
 			case Node.DOCUMENT_NODE:
-				xpointer.append("/");
-				break;
+				return getElementXPointer(nsURI, node.getPrefix(), null, 0) + "/";
 			case Node.ATTRIBUTE_NODE:
 				System.out.println("getXPointer() doesn't handle attribute nodes yet.");
 				break;
@@ -303,8 +606,183 @@ public class XMLUtils {
 				System.out.println("Unsupported DOM node type.");
 				break;
 		}
+		return getElementXPointer(nsURI, node.getPrefix(), null, 0);
+	}
+
+	/**
+	 * Returns the position of an element among all elements in the document that have the
+	 * same name. The positions of all elements with a given name are determined in a
+	 * single traversal when first needed, and are kept with the document (as user data);
+	 * they are recomputed if the element is not found, as when it was added to the
+	 * document later on. The cached positions are not updated if existing elements are
+	 * moved or removed. Positions in a read-only document (see
+	 * {@link #isImmutable(Node)}) are found by a binary search of the node numbers of all
+	 * elements with the same name, which are likewise determined once per tree.
+	 * @param elem An Element node.
+	 * @return The (1-based) position of the element in document order, or 0 if it does
+	 * not belong to the document tree.
+	 */
+	static int getElementPosition(Element elem) {
+		String localName = elem.getLocalName();
+		Document doc = elem.getOwnerDocument();
+		if (null == localName || null == doc) {
+			return 0;
+		}
+		if (isImmutable(doc)) {
+			Object nodeInfo = getNodeKey(elem);
+			if ((nodeInfo instanceof TinyNodeImpl) && null != ((TinyNodeImpl) nodeInfo).getDocumentRoot()) {
+				return findElementPosition((TinyNodeImpl) nodeInfo, doc);
+			}
+			return findElementPosition(elem, doc);
+		}
+		@SuppressWarnings("unchecked")
+		Map<QName, Map<Node, Integer>> positionsByName = (Map<QName, Map<Node, Integer>>) doc
+			.getUserData(ELEMENT_POSITIONS);
+		if (null == positionsByName) {
+			positionsByName = new HashMap<>();
+			doc.setUserData(ELEMENT_POSITIONS, positionsByName, null);
+		}
+		synchronized (positionsByName) {
+			String nsURI = elem.getNamespaceURI();
+			QName name = new QName(nsURI, localName);
+			Map<Node, Integer> positions = positionsByName.get(name);
+			Integer position = (null != positions) ? positions.get(elem) : null;
+			if (null == position) {
+				positions = new IdentityHashMap<>();
+				NodeList elementsByName = doc.getElementsByTagNameNS(nsURI, localName);
+				for (int i = 0; i < elementsByName.getLength(); i++) {
+					positions.put(elementsByName.item(i), i + 1);
+				}
+				positionsByName.put(name, positions);
+				position = positions.get(elem);
+			}
+			return (null != position) ? position : 0;
+		}
+	}
 
+	private static int findElementPosition(TinyNodeImpl elem, Document doc) {
+		QName name = new QName(elem.getURI(), elem.getLocalPart());
+		Map<QName, int[]> numbersByName = TREE_ELEMENT_NUMBERS.computeIfAbsent(elem.getDocumentRoot(),
+				root -> new HashMap<>());
+		int[] numbers;
+		synchronized (numbersByName) {
+			numbers = numbersByName.get(name);
+			if (null == numbers) {
+				NodeList elementsByName = doc.getElementsByTagNameNS(name.getNamespaceURI(), name.getLocalPart());
+				numbers = new int[elementsByName.getLength()];
+				for (int i = 0; i < numbers.length; i++) {
+					numbers[i] = ((TinyNodeImpl) getNodeKey(elementsByName.item(i))).getNodeNumber();
+				}
+				numbersByName.put(name, numbers);
+			}
+		}
+		int index = Arrays.binarySearch(numbers, elem.getNodeNumber());
+		return (index >= 0) ? index + 1 : 0;
+	}
+
+	private static int findElementPosition(Element elem, Document doc) {
+		NodeList elementsByName = doc.getElementsByTagNameNS(elem.getNamespaceURI(), elem.getLocalName());
+		for (int i = 0; i < elementsByName.getLength(); i++) {
+			if (elem.isSameNode(elementsByName.item(i))) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Builds a scheme-based XPointer that locates an element by its position among all
+	 * elements in the document having the same name (see {@link #getXPointer(Node)}).
+	 * This does not require a DOM representation of the document, so it is also suitable
+	 * for reporting errors detected while reading an XML stream.
+	 * @param nsURI The namespace name of the element.
+	 * @param nsPrefix The namespace prefix used in the document (may be null or empty).
+	 * @param localName The local name of the element; if null only the leading parts of
+	 * the pointer are produced.
+	 * @param position The (1-based) position of the element among all elements with the
+	 * same name, in document order.
+	 * @return A String containing a scheme-based pointer.
+	 */
+	public static String getElementXPointer(String nsURI, String nsPrefix, String localName, int position) {
+		if (null == nsPrefix || nsPrefix.isEmpty())
+			nsPrefix = "tns";
+		StringBuilder xpointer = new StringBuilder();
+		// WARNING: Escaping rules are currently ignored.
+		xpointer.append("xmlns(").append(nsPrefix).append("=").append(nsURI).append(")");
+		xpointer.append("xpointer((");
+		if (null != localName) {
+			xpointer.append("//");
+			xpointer.append(nsPrefix).append(':').append(localName).append(")[").append(position).append("])");
+		}
 		return xpointer.toString();
 	}
 
+	/**
+	 * A bounded (LRU) cache of compiled XPath expressions, keyed by expression and
+	 * namespace bindings. An instance must be confined to a single thread.
+	 */
+	private static class XPathCache {
+
+		private final XPath xpath;
+
+		private final Map<XPathKey, XPathExpression> expressions;
+
+		XPathCache(XPath xpath, final int maxSize) {
+			this.xpath = xpath;
+			this.expressions = new LinkedHashMap<XPathKey, XPathExpression>(64, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<XPathKey, XPathExpression> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+
+		XPathExpression compile(String expr, Map<String, String> namespaceBindings) throws XPathExpressionException {
+			Map<String, String> nsBindings = (null != namespaceBindings) ? namespaceBindings
+					: Collections.<String, String>emptyMap();
+			XPathExpression xpathExpr = expressions.get(new XPathKey(expr, nsBindings));
+			if (null == xpathExpr) {
+				NamespaceBindings bindings = NamespaceBindings.withStandardBindings();
+				bindings.addAllBindings(nsBindings);
+				xpath.setNamespaceContext(bindings);
+				xpathExpr = xpath.compile(expr);
+				expressions.put(new XPathKey(expr, new HashMap<>(nsBindings)), xpathExpr);
+			}
+			return xpathExpr;
+		}
+
+	}
+
+	/**
+	 * A cache key consisting of an XPath expression and its namespace bindings.
+	 */
+	private static class XPathKey {
+
+		private final String expr;
+
+		private final Map<String, String> nsBindings;
+
+		XPathKey(String expr, Map<String, String> nsBindings) {
+			this.expr = expr;
+			this.nsBindings = nsBindings;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof XPathKey)) {
+				return false;
+			}
+			XPathKey other = (XPathKey) obj;
+			return expr.equals(other.expr) && nsBindings.equals(other.nsBindings);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * expr.hashCode() + nsBindings.hashCode();
+		}
+
+	}
+
 }
@@ -0,0 +1,129 @@
+package org.opengis.cite.kml22;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.cite.kml22.BatchTestRunner.Result;
+import org.opengis.cite.kml22.BatchTestRunner.Summary;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+/**
+ * Verifies the behavior of the BatchTestRunner class.
+ */
+public class VerifyBatchTestRunner {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	public VerifyBatchTestRunner() {
+	}
+
+	@Test
+	public void findFilesInDirectory() throws IOException {
+		Path dir = createFiles("b.kmz", "a.kml", "tiles/c.KML", "tiles/d.kml.gz", "readme.txt");
+		List<URI> testSubjects = BatchTestRunner.findTestSubjects(dir.toString());
+		assertEquals(List.of(uri(dir, "a.kml"), uri(dir, "b.kmz"), uri(dir, "tiles/c.KML"), uri(dir, "tiles/d.kml.gz")),
+				testSubjects);
+	}
+
+	@Test
+	public void findFilesMatchingGlob() throws IOException {
+		Path dir = createFiles("a.kml", "tiles/1/b.kmz", "tiles/2/c.kmz", "tiles/2/d.kml");
+		List<URI> testSubjects = BatchTestRunner.findTestSubjects(dir.resolve("tiles/**.kmz").toString());
+		assertEquals(List.of(uri(dir, "tiles/1/b.kmz"), uri(dir, "tiles/2/c.kmz")), testSubjects);
+	}
+
+	@Test
+	public void readManifest() throws IOException {
+		Path dir = createFiles("a.kml", "tiles/b.kmz");
+		Path manifest = dir.resolve("manifest.txt");
+		Files.writeString(manifest, "# tiles\na.kml\n\n  tiles/b.kmz\nhttp://example.org/c.kml\n");
+		List<URI> testSubjects = BatchTestRunner.findTestSubjects("@" + manifest);
+		assertEquals(List.of(uri(dir, "a.kml"), uri(dir, "tiles/b.kmz"), URI.create("http://example.org/c.kml")),
+				testSubjects);
+	}
+
+	@Test
+	public void runBatch() throws URISyntaxException, IOException, InterruptedException {
+		File outputDir = tempFolder.newFolder("results");
+		BatchTestRunner iut = new BatchTestRunner(outputDir, new Properties(), 2);
+		URI missing = tempFolder.getRoot().toPath().resolve("missing.kml").toUri();
+		Summary summary = iut.run(List.of(getClass().getResource("/kml/Document-places.kml").toURI(),
+				getClass().getResource("/kml/LinearRingWithInvalidLat.kml").toURI(), missing));
+		assertEquals(3, summary.getCount());
+		assertEquals(1, summary.getPassed());
+		assertEquals(1, summary.getFailed());
+		assertEquals(1, summary.getErrors());
+		List<String> rows = Files.readAllLines(new File(outputDir, BatchTestRunner.RESULTS_FILE).toPath(),
+				StandardCharsets.UTF_8);
+		assertEquals(4, rows.size());
+		assertTrue("Expected a row for " + missing, rows.stream().anyMatch(row -> row.startsWith(missing + ",ERROR,")));
+		Properties totals = new Properties();
+		try (InputStream input = new FileInputStream(new File(outputDir, BatchTestRunner.SUMMARY_FILE))) {
+			totals.loadFromXML(input);
+		}
+		assertEquals("3", totals.getProperty("count"));
+	}
+
+	@Test
+	public void readTestNGResultsWhenEarlIsRequested() throws URISyntaxException, IOException, InterruptedException {
+		File outputDir = tempFolder.newFolder("results");
+		Properties testRunArgs = new Properties();
+		testRunArgs.setProperty("acceptMediaType", "application/rdf+xml");
+		BatchTestRunner iut = new BatchTestRunner(outputDir, testRunArgs, 1);
+		Result result = iut.runTests(getClass().getResource("/kml/LinearRingWithInvalidLat.kml").toURI());
+		assertEquals(BatchTestRunner.TESTNG_RESULTS_FILE, result.resultsFile.getName());
+		assertTrue("Expected tests to be run.", result.total > 0);
+		assertEquals("FAIL", result.getVerdict());
+		try (Stream<Path> files = Files.walk(result.resultsFile.getParentFile().toPath())) {
+			assertTrue("Expected suite parameters file.",
+					files.anyMatch(file -> file.getFileName().toString().equals(SuiteFixtureListener.PARAMETERS_FILE)));
+		}
+	}
+
+	@Test
+	public void dropAcceptMediaType() throws ParserConfigurationException {
+		Properties testRunArgs = new Properties();
+		testRunArgs.setProperty("acceptMediaType", "application/rdf+xml");
+		testRunArgs.setProperty("iut", "http://example.org/ignored.kml");
+		BatchTestRunner iut = new BatchTestRunner(tempFolder.getRoot(), testRunArgs, 1);
+		Document args = iut.buildTestRunArgs(URI.create("http://example.org/a.kml"));
+		NodeList entries = args.getElementsByTagName("entry");
+		assertEquals(1, entries.getLength());
+		assertEquals("http://example.org/a.kml", entries.item(0).getTextContent());
+	}
+
+	private Path createFiles(String... paths) throws IOException {
+		Path dir = tempFolder.getRoot().toPath();
+		for (String path : paths) {
+			Path file = dir.resolve(path);
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, "<kml xmlns='http://www.opengis.net/kml/2.2'/>");
+		}
+		return dir;
+	}
+
+	private static URI uri(Path dir, String path) {
+		return dir.resolve(path).toUri();
+	}
+
+}
@@ -1,9 +1,15 @@
 package org.opengis.cite.kml22;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
@@ -14,13 +20,22 @@ import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 
+import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.opengis.cite.kml22.util.ClientUtils;
+import org.opengis.cite.kml22.util.LocalHttpServer;
+import org.opengis.cite.kml22.util.ReferentCache;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import jakarta.ws.rs.client.Client;
+
+import com.sun.net.httpserver.HttpExchange;
+
 public class VerifyETSAssert {
 
 	private static final String WADL_NS = "http://wadl.dev.java.net/2009/02";
@@ -29,6 +44,44 @@ public class VerifyETSAssert {
 
 	private static SchemaFactory factory;
 
+	/** The requests received by the server ("METHOD path [range]"). */
+	private static final List<String> requests = new CopyOnWriteArrayList<>();
+
+	@ClassRule
+	public static final LocalHttpServer server = new LocalHttpServer()
+		// supports HEAD
+		.handle("/head/", exchange -> {
+			recordRequest(exchange);
+			byte[] body = "<kml xmlns='http://www.opengis.net/kml/2.2'/>".getBytes("UTF-8");
+			boolean head = exchange.getRequestMethod().equals("HEAD");
+			exchange.sendResponseHeaders(200, head ? -1 : body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				if (!head) {
+					out.write(body);
+				}
+			}
+		})
+		// rejects HEAD, supports range requests
+		.handle("/nohead/", exchange -> {
+			recordRequest(exchange);
+			if (exchange.getRequestMethod().equals("HEAD")) {
+				exchange.sendResponseHeaders(405, -1);
+				exchange.close();
+				return;
+			}
+			boolean range = null != exchange.getRequestHeaders().getFirst("Range");
+			exchange.getResponseHeaders().add("Content-Range", "bytes 0-0/1000");
+			exchange.sendResponseHeaders(range ? 206 : 200, range ? 1 : 1000);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(new byte[range ? 1 : 1000]);
+			}
+		})
+		.handle("/missing/", exchange -> {
+			recordRequest(exchange);
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+		});
+
 	@Rule
 	public ExpectedException thrown = ExpectedException.none();
 
@@ -43,6 +96,46 @@ public class VerifyETSAssert {
 		docBuilder = dbf.newDocumentBuilder();
 	}
 
+	@Before
+	public void clearRequests() {
+		requests.clear();
+	}
+
+	private static void recordRequest(HttpExchange exchange) {
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath()
+				+ ((null != range) ? " " + range : ""));
+	}
+
+	@Test
+	public void referentExistsUsingHead() {
+		ReferentCache referentCache = new ReferentCache();
+		ETSAssert.assertReferentExists(server.uri("/head/doc.kml"), null, referentCache, KML22.KML_MEDIA_TYPE);
+		ETSAssert.assertReferentExists(URI.create("doc.kml"), server.uri("/head/").toString(), referentCache,
+				KML22.KML_MEDIA_TYPE);
+		assertEquals("Unexpected requests.", List.of("HEAD /head/doc.kml"), requests);
+	}
+
+	@Test
+	public void referentExistsUsingRangeRequest() {
+		Client client = ClientUtils.buildClient();
+		try {
+			ETSAssert.assertReferentExists(server.uri("/nohead/image.png"), null, client, "image/png");
+		}
+		finally {
+			client.close();
+		}
+		assertEquals("Unexpected requests.", List.of("HEAD /nohead/image.png", "GET /nohead/image.png bytes=0-0"),
+				requests);
+	}
+
+	@Test
+	public void referentDoesNotExist() {
+		thrown.expect(AssertionError.class);
+		thrown.expectMessage("No acceptable resource available");
+		ETSAssert.assertReferentExists(server.uri("/missing/doc.kml"), null, new ReferentCache(), KML22.KML_MEDIA_TYPE);
+	}
+
 	@Test
 	public void validateUsingSchemaHints_expect2Errors() throws SAXException {
 		thrown.expect(AssertionError.class);
@@ -53,6 +146,17 @@ public class VerifyETSAssert {
 		ETSAssert.assertSchemaValid(validator, new StreamSource(url.toString()));
 	}
 
+	@Test
+	public void validateUsingSchemaHints_reportFirstError() throws SAXException {
+		thrown.expect(AssertionError.class);
+		thrown.expectMessage("2 schema validation error(s) detected");
+		thrown.expectMessage("...and 1 more error(s)");
+		URL url = this.getClass().getResource("/Gamma.xml");
+		Schema schema = factory.newSchema();
+		Validator validator = schema.newValidator();
+		ETSAssert.assertSchemaValid(validator, new StreamSource(url.toString()), 1);
+	}
+
 	@Test
 	public void assertXPathWithNamespaceBindings() throws SAXException, IOException {
 		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/capabilities-simple.xml"));
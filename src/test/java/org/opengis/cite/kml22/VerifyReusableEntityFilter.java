@@ -0,0 +1,141 @@
+package org.opengis.cite.kml22;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.opengis.cite.kml22.ReusableEntityFilter.SpooledEntityStream;
+import org.opengis.cite.kml22.util.LocalHttpServer;
+
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.ClientResponseFilter;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Verifies the behavior of the ReusableEntityFilter class. Entities of various sizes are
+ * served by a local HTTP server, with or without a Content-Length header.
+ */
+public class VerifyReusableEntityFilter {
+
+	private static final int THRESHOLD = 1024;
+
+	private static final byte[] LARGE_ENTITY = new byte[100 * THRESHOLD];
+
+	private static Client client;
+
+	/** The entity stream of the last response, after all filters were applied. */
+	private static volatile InputStream entityStream;
+
+	@ClassRule
+	public static final LocalHttpServer server = new LocalHttpServer().handle("/", exchange -> {
+		String path = exchange.getRequestURI().getPath();
+		byte[] body = path.contains("large") ? LARGE_ENTITY : "<kml/>".getBytes("UTF-8");
+		// a chunked response has no Content-Length header
+		exchange.sendResponseHeaders(200, path.contains("chunked") ? 0 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	});
+
+	public VerifyReusableEntityFilter() {
+	}
+
+	@BeforeClass
+	public static void createClient() {
+		new Random(7).nextBytes(LARGE_ENTITY);
+		client = ClientBuilder.newClient();
+		client.register(new ReusableEntityFilter(THRESHOLD));
+		// response filters run in descending order of priority, so this one runs last
+		client.register((ClientResponseFilter) (req, rsp) -> entityStream = rsp.getEntityStream(), 1);
+	}
+
+	@AfterClass
+	public static void closeClient() {
+		client.close();
+	}
+
+	@Test
+	public void bufferSmallEntity() {
+		Response rsp = client.target(server.uri("/small-chunked.kml")).request().get();
+		assertEquals("<kml/>", rsp.readEntity(String.class));
+		assertEquals("Entity could not be read again.", "<kml/>", rsp.readEntity(String.class));
+		rsp.close();
+	}
+
+	@Test
+	public void spoolLargeEntity() throws IOException {
+		for (String path : new String[] { "/large.kmz", "/large-chunked.kmz" }) {
+			Response rsp = client.target(server.uri(path)).request().get();
+			assertTrue("Entity was not spooled: " + path, entityStream instanceof SpooledEntityStream);
+			SpooledEntityStream spooled = (SpooledEntityStream) entityStream;
+			InputStream entity = rsp.readEntity(InputStream.class);
+			assertArrayEquals(LARGE_ENTITY, entity.readAllBytes());
+			entity.reset();
+			assertEquals(LARGE_ENTITY[0] & 0xff, entity.read());
+			assertEquals(10, entity.skip(10));
+			entity.mark(0);
+			assertEquals(LARGE_ENTITY[11] & 0xff, entity.read());
+			entity.reset();
+			assertEquals("Unexpected content after reset.", LARGE_ENTITY[11] & 0xff, entity.read());
+			rsp.close();
+			assertFalse("Spool file was not deleted.", spooled.getFile().exists());
+		}
+	}
+
+	@Test
+	public void leaveEntityReadOnce() throws IOException {
+		Response rsp = client.target(server.uri("/large.kmz"))
+			.request()
+			.property(ReusableEntityFilter.READ_ONCE_PROPERTY, true)
+			.get();
+		assertFalse("Entity should not be spooled.", entityStream instanceof SpooledEntityStream);
+		assertArrayEquals(LARGE_ENTITY, rsp.readEntity(InputStream.class).readAllBytes());
+		rsp.close();
+	}
+
+	@Test
+	public void deleteSpoolFileWhenClientIsClosed() {
+		Client client2 = ClientBuilder.newClient();
+		client2.register(new ReusableEntityFilter(THRESHOLD));
+		client2.register((ClientResponseFilter) (req, rsp) -> entityStream = rsp.getEntityStream(), 1);
+		SpooledEntityStream spooled;
+		try {
+			// the response is never closed
+			client2.target(server.uri("/large.kmz")).request().get();
+			assertTrue("Entity was not spooled.", entityStream instanceof SpooledEntityStream);
+			spooled = (SpooledEntityStream) entityStream;
+			assertTrue(spooled.getFile().exists());
+		}
+		finally {
+			client2.close();
+		}
+		assertFalse("Spool file was not deleted.", spooled.getFile().exists());
+	}
+
+	@Test
+	public void bufferChunkedEntityWithMaximumThreshold() {
+		Client client2 = ClientBuilder.newClient();
+		client2.register(new ReusableEntityFilter(Integer.MAX_VALUE));
+		try {
+			Response rsp = client2.target(server.uri("/small-chunked.kml")).request().get();
+			assertEquals("<kml/>", rsp.readEntity(String.class));
+			assertEquals("Entity could not be read again.", "<kml/>", rsp.readEntity(String.class));
+			rsp.close();
+		}
+		finally {
+			client2.close();
+		}
+	}
+
+}
@@ -1,27 +1,59 @@
 package org.opengis.cite.kml22;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.validation.Schema;
 
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentMatchers;
+import org.opengis.cite.kml22.level1.KmlDocumentTests;
+import org.opengis.cite.kml22.level1.StreamingTests;
+import org.opengis.cite.kml22.util.XMLUtils;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.IMethodInstance;
 import org.testng.ISuite;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+import org.testng.TestNG;
 import org.testng.xml.XmlSuite;
+import org.w3c.dom.Document;
+
+import com.occamlab.te.spi.executors.testng.AlterSuiteParametersListener;
+
+import net.sf.saxon.s9api.XdmNode;
 
 public class VerifySuiteFixtureListener {
 
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
 	private static XmlSuite xmlSuite;
 
 	private static ISuite suite;
@@ -60,4 +92,113 @@ public class VerifySuiteFixtureListener {
 				ArgumentMatchers.isA(Schema.class));
 	}
 
+	@Test
+	public void alterSetsParallelMode() {
+		XmlSuite parallelSuite = new XmlSuite();
+		parallelSuite.setParameters(Map.of(TestRunArg.PARALLEL.toString(), TestRunArg.PARALLEL_CLASSES));
+		XmlSuite serialSuite = new XmlSuite();
+		SuiteFixtureListener iut = new SuiteFixtureListener();
+		iut.alter(List.of(parallelSuite, serialSuite));
+		assertEquals(XmlSuite.ParallelMode.CLASSES, parallelSuite.getParallel());
+		assertTrue(parallelSuite.getThreadCount() > 1);
+		assertFalse(serialSuite.getParallel().isParallel());
+	}
+
+	@Test
+	public void runTestClassesInParallel() throws Exception {
+		Properties testRunArgs = new Properties();
+		testRunArgs.setProperty(TestRunArg.IUT.toString(),
+				getClass().getResource("/kml/Document-clean.kml").toURI().toString());
+		testRunArgs.setProperty(TestRunArg.ICS.toString(), "1");
+		testRunArgs.setProperty(TestRunArg.PARALLEL.toString(), TestRunArg.PARALLEL_CLASSES);
+		ByteArrayOutputStream args = new ByteArrayOutputStream();
+		testRunArgs.storeToXML(args, null);
+		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+		dbf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		Document argsDoc = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(args.toByteArray()));
+		// set up like the test executor: the run arguments are added by a listener
+		AlterSuiteParametersListener paramsListener = new AlterSuiteParametersListener();
+		paramsListener.setTestRunArgs(argsDoc);
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		TestNG testng = new TestNG();
+		testng.setTestSuites(
+				List.of(new File(TestNGController.class.getResource("testng.xml").toURI()).getAbsolutePath()));
+		testng.setUseDefaultListeners(false);
+		testng.setOutputDirectory(tempFolder.getRoot().getAbsolutePath());
+		testng.addListener(paramsListener);
+		testng.addListener(new IInvokedMethodListener() {
+			@Override
+			public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+				if (method.isTestMethod()) {
+					threads.add(Thread.currentThread().getName());
+				}
+			}
+		});
+		testng.run();
+		assertTrue("Test classes ran on threads " + threads, threads.size() > 1);
+	}
+
+	@Test
+	public void onStartInCompactMode() throws URISyntaxException {
+		URL url = this.getClass().getResource("/kml/Document-clean.kml");
+		Map<String, String> params = new HashMap<String, String>();
+		params.put(TestRunArg.IUT.toString(), url.toURI().toString());
+		params.put(TestRunArg.MODE.toString(), TestRunArg.COMPACT_MODE);
+		XmlSuite compactSuite = mock(XmlSuite.class);
+		ISuite suite = mock(ISuite.class);
+		when(suite.getXmlSuite()).thenReturn(compactSuite);
+		when(compactSuite.getParameters()).thenReturn(params);
+		SuiteFixtureListener iut = new SuiteFixtureListener();
+		iut.onStart(suite);
+		verify(suite).setAttribute(ArgumentMatchers.eq(SuiteAttribute.TEST_SUBJECT.getName()),
+				ArgumentMatchers.argThat(doc -> doc instanceof Document && XMLUtils.isImmutable((Document) doc)));
+		verify(suite).setAttribute(ArgumentMatchers.eq(SuiteAttribute.XDM_TEST_SUBJECT.getName()),
+				ArgumentMatchers.isA(XdmNode.class));
+	}
+
+	@Test
+	public void onFinishReportsSuiteParameters() {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put(TestRunArg.IUT.toString(), "http://example.org/doc.kml");
+		XmlSuite finishedSuite = mock(XmlSuite.class);
+		ISuite suite = mock(ISuite.class);
+		when(suite.getXmlSuite()).thenReturn(finishedSuite);
+		when(finishedSuite.getAllParameters()).thenReturn(params);
+		ITestResult lastResult = mock(ITestResult.class);
+		when(lastResult.id()).thenReturn("lastResult");
+		Reporter.clear();
+		Reporter.setCurrentTestResult(lastResult);
+		try {
+			SuiteFixtureListener iut = new SuiteFixtureListener();
+			iut.onFinish(suite);
+		}
+		finally {
+			Reporter.setCurrentTestResult(null);
+		}
+		List<String> output = Reporter.getOutput(lastResult);
+		assertEquals(List.of("Test suite parameters:", params.toString()), output);
+	}
+
+	@Test
+	public void interceptStreamingTestsUnlessStreaming() {
+		IMethodInstance streamingTest = mockMethodInstance(StreamingTests.class);
+		IMethodInstance domTest = mockMethodInstance(KmlDocumentTests.class);
+		List<IMethodInstance> methods = List.of(streamingTest, domTest);
+		ISuite suite = mock(ISuite.class);
+		ITestContext testContext = mock(ITestContext.class);
+		when(testContext.getSuite()).thenReturn(suite);
+		SuiteFixtureListener iut = new SuiteFixtureListener();
+		assertEquals(List.of(domTest), iut.intercept(methods, testContext));
+		when(suite.getParameter(TestRunArg.MODE.toString())).thenReturn(TestRunArg.STREAMING_MODE);
+		assertEquals(methods, iut.intercept(methods, testContext));
+	}
+
+	private static IMethodInstance mockMethodInstance(Class<?> testClass) {
+		ITestNGMethod method = mock(ITestNGMethod.class);
+		when(method.getRealClass()).thenReturn(testClass);
+		IMethodInstance methodInstance = mock(IMethodInstance.class);
+		when(methodInstance.getMethod()).thenReturn(method);
+		return methodInstance;
+	}
+
 }
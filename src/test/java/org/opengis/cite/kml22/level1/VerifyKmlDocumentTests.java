@@ -3,7 +3,10 @@ package org.opengis.cite.kml22.level1;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -15,9 +18,17 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.opengis.cite.kml22.SuiteAttribute;
+import org.opengis.cite.kml22.util.KMLUtils;
+import org.opengis.cite.kml22.util.NodeErrorLocator;
+import org.opengis.cite.kml22.util.URIUtils;
 import org.opengis.cite.kml22.util.ValidationUtils;
+import org.opengis.cite.kml22.util.XMLUtils;
+import org.opengis.cite.validation.ErrorSeverity;
+import org.opengis.cite.validation.ValidationErrorHandler;
 import org.testng.ISuite;
 import org.testng.ITestContext;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
@@ -87,6 +98,44 @@ public class VerifyKmlDocumentTests {
 		iut.verifyXmlSchemaConstraints(testContext);
 	}
 
+	@Test
+	public void reportSchemaErrorsFromParsing() throws SAXException, IOException, URISyntaxException {
+		thrown.expect(AssertionError.class);
+		thrown.expectMessage("schema validation error(s) detected");
+		URL url = this.getClass().getResource("/atom-feed.xml");
+		ValidationErrorHandler schemaErrors = new ValidationErrorHandler();
+		Document doc = URIUtils.parseURI(url.toURI(), kmlSchema, schemaErrors);
+		when(suite.getAttribute(SUBJ)).thenReturn(doc);
+		when(suite.getAttribute(SuiteAttribute.SCHEMA_ERRORS.getName())).thenReturn(schemaErrors);
+		KmlDocumentTests iut = new KmlDocumentTests();
+		iut.obtainTestSubject(testContext);
+		iut.verifyXmlSchemaConstraints(testContext);
+	}
+
+	@Test
+	public void reportSchemaErrorsFromParsingWhenRunInParallel() throws SAXException, IOException, URISyntaxException {
+		thrown.expect(AssertionError.class);
+		thrown.expectMessage("Reported while parsing");
+		URL url = this.getClass().getResource("/kml/Document-clean.kml");
+		Document doc = XMLUtils.asDocument(KMLUtils.buildKML(new File(url.toURI()), null, null));
+		// a valid document, so the error can only come from the handler
+		ValidationErrorHandler schemaErrors = new ValidationErrorHandler();
+		schemaErrors.addError(ErrorSeverity.ERROR, "Reported while parsing",
+				new NodeErrorLocator(doc.getDocumentElement()));
+		ISuite parallelSuite = mock(ISuite.class);
+		when(parallelSuite.getAttribute(SUBJ)).thenReturn(doc);
+		when(parallelSuite.getAttribute(SuiteAttribute.SCHEMA_ERRORS.getName())).thenReturn(schemaErrors);
+		when(parallelSuite.getAttribute(SuiteAttribute.KML_SCHEMA.getName())).thenReturn(kmlSchema);
+		XmlTest xmlTest = new XmlTest(new XmlSuite());
+		xmlTest.setParallel(XmlSuite.ParallelMode.CLASSES);
+		ITestContext parallelContext = mock(ITestContext.class);
+		when(parallelContext.getSuite()).thenReturn(parallelSuite);
+		when(parallelContext.getCurrentXmlTest()).thenReturn(xmlTest);
+		KmlDocumentTests iut = new KmlDocumentTests();
+		iut.obtainTestSubject(parallelContext);
+		iut.verifyXmlSchemaConstraints(parallelContext);
+	}
+
 	@Test
 	public void emptyObjectWithoutIdShouldFail() throws SAXException, IOException {
 		thrown.expect(AssertionError.class);
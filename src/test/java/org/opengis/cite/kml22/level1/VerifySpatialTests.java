@@ -1,11 +1,13 @@
 package org.opengis.cite.kml22.level1;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.URL;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -17,6 +19,7 @@ import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.opengis.cite.kml22.ErrorMessage;
 import org.opengis.cite.kml22.Namespaces;
 import org.opengis.cite.kml22.SuiteAttribute;
 import org.opengis.cite.validation.ValidationErrorHandler;
@@ -24,6 +27,7 @@ import org.testng.ISuite;
 import org.testng.ITestContext;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -103,6 +107,79 @@ public class VerifySpatialTests {
 		iut.verifyPolygonBoundary();
 	}
 
+	@Test
+	public void polygonWithOverlappingHoles() throws SAXException, IOException {
+		Document doc = docBuilder
+			.parse(this.getClass().getResourceAsStream("/kml/spatial/Polygon-OverlappingHoles.xml"));
+		SpatialTests iut = new SpatialTests();
+		iut.setTestSubject(doc);
+		Element polygon = (Element) doc.getElementsByTagNameNS(Namespaces.KML22, "Polygon").item(0);
+		iut.checkInnerBoundaries(polygon, this.errHandler);
+		assertEquals("Unexpected number of errors.", 1, this.errHandler.getErrorCount());
+		assertTrue(this.errHandler.toString().contains(ErrorMessage.format("level1.PolygonBoundary.err3", 2)));
+	}
+
+	@Test(timeout = 60000)
+	public void polygonWithManyHoles() throws SAXException, IOException {
+		int gridSize = 150;
+		StringBuilder kml = new StringBuilder("<Polygon xmlns='http://www.opengis.net/kml/2.2'><outerBoundaryIs>");
+		kml.append("<LinearRing><coordinates>0,0 0,").append(gridSize).append(' ').append(gridSize).append(',');
+		kml.append(gridSize).append(' ').append(gridSize).append(",0 0,0</coordinates></LinearRing></outerBoundaryIs>");
+		for (int x = 0; x < gridSize; x++) {
+			for (int y = 0; y < gridSize; y++) {
+				// adjacent holes share an edge: touching is allowed
+				double x1 = x + ((x == 0) ? 0.5 : 0.0);
+				double y1 = y + 0.25;
+				double x2 = x + ((x == gridSize - 1) ? 0.5 : 1.0);
+				double y2 = y + 0.75;
+				kml.append("<innerBoundaryIs><LinearRing><coordinates>");
+				kml.append(x1).append(',').append(y1).append(' ').append(x2).append(',').append(y1).append(' ');
+				kml.append(x2).append(',').append(y2).append(' ').append(x1).append(',').append(y2).append(' ');
+				kml.append(x1).append(',').append(y1).append("</coordinates></LinearRing></innerBoundaryIs>");
+			}
+		}
+		kml.append("</Polygon>");
+		Document doc = docBuilder.parse(new InputSource(new StringReader(kml.toString())));
+		SpatialTests iut = new SpatialTests();
+		iut.setTestSubject(doc);
+		iut.checkInnerBoundaries(doc.getDocumentElement(), this.errHandler);
+		assertFalse(this.errHandler.toString(), this.errHandler.errorsDetected());
+	}
+
+	@Test
+	public void verifyPolygonBoundaryInParallel() throws SAXException, IOException {
+		StringBuilder kml = new StringBuilder("<Folder xmlns='http://www.opengis.net/kml/2.2'>");
+		for (int i = 0; i < 40; i++) {
+			kml.append("<Placemark><Polygon>");
+			if (i % 10 != 3) {
+				kml.append("<outerBoundaryIs><LinearRing><coordinates>0,0 0,10 10,10 10,0 0,0</coordinates>");
+				kml.append("</LinearRing></outerBoundaryIs>");
+			}
+			// every 7th polygon has a hole that extends beyond the outer boundary
+			double maxX = (i % 7 == 0) ? 12.0 : 5.0;
+			kml.append("<innerBoundaryIs><LinearRing><coordinates>1,1 1,5 ").append(maxX).append(",5 ");
+			kml.append(maxX).append(",1 1,1</coordinates></LinearRing></innerBoundaryIs>");
+			kml.append("</Polygon></Placemark>");
+		}
+		kml.append("</Folder>");
+		Document doc = docBuilder.parse(new InputSource(new StringReader(kml.toString())));
+		SpatialTests iut = new SpatialTests();
+		iut.setTestSubject(doc);
+		String sequentialReport = null;
+		try {
+			iut.verifyPolygonBoundary();
+		}
+		catch (AssertionError e) {
+			sequentialReport = e.getMessage();
+		}
+		assertTrue(sequentialReport.contains(ErrorMessage.format("level1.PolygonBoundary.err1")));
+		assertTrue(sequentialReport.contains(ErrorMessage.format("level1.PolygonBoundary.err2")));
+		iut.setParallelism(4);
+		thrown.expect(AssertionError.class);
+		thrown.expectMessage(sequentialReport);
+		iut.verifyPolygonBoundary();
+	}
+
 	@Test
 	public void resourceMapIsValid() throws SAXException, IOException {
 		URL url = this.getClass().getResource("/kml/models/Model-ResourceMap.xml");
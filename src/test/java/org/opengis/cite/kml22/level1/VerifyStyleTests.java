@@ -2,11 +2,20 @@ package org.opengis.cite.kml22.level1;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -18,13 +27,16 @@ import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.opengis.cite.kml22.Namespaces;
 import org.opengis.cite.kml22.SuiteAttribute;
 import org.opengis.cite.validation.ValidationErrorHandler;
 import org.testng.ISuite;
 import org.testng.ITestContext;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 /**
@@ -46,6 +58,9 @@ public class VerifyStyleTests {
 	@Rule
 	public ExpectedException thrown = ExpectedException.none();
 
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
 	public VerifyStyleTests() {
 	}
 
@@ -104,6 +119,41 @@ public class VerifyStyleTests {
 		assertEquals("Unexpected number of errors.", 1, errHandler.getErrorCount());
 	}
 
+	@Test
+	public void checkStyleTargetsInSameFileReadOnce() throws SAXException, IOException {
+		URL url = this.getClass().getResource("/kml/styles/styleUrl-fileRef.xml");
+		Document doc = docBuilder.parse(url.toString());
+		StyleTests iut = new StyleTests();
+		iut.setTestSubject(doc);
+		Map<String, Map<String, Element>> targets = new HashMap<String, Map<String, Element>>();
+		NodeList styleUrls = doc.getDocumentElement().getElementsByTagNameNS(Namespaces.KML22, "styleUrl");
+		iut.checkStyleTarget(styleUrls.item(0), this.errHandler, targets);
+		Map<String, Element> elementsById = targets.values().iterator().next();
+		iut.checkStyleTarget(styleUrls.item(1), this.errHandler, targets);
+		assertEquals("Unexpected number of indexed documents.", 1, targets.size());
+		assertSame(elementsById, targets.values().iterator().next());
+		assertEquals("Unexpected number of errors.", 1, errHandler.getErrorCount());
+	}
+
+	@Test
+	public void checkStyleTargetInArchive_NoErrors() throws Exception {
+		File kmz = tempFolder.newFile("styles.kmz");
+		try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(kmz))) {
+			zip.putNextEntry(new ZipEntry("doc.kml"));
+			zip.write(Files.readAllBytes(Paths.get(getClass().getResource("/kml/styles/styles.xml").toURI())));
+			zip.closeEntry();
+		}
+		File kml = tempFolder.newFile("doc.kml");
+		Files.writeString(kml.toPath(), "<kml xmlns='http://www.opengis.net/kml/2.2'><Placemark>"
+				+ "<styleUrl>styles.kmz#style-01</styleUrl></Placemark></kml>");
+		Document doc = docBuilder.parse(kml);
+		StyleTests iut = new StyleTests();
+		iut.setTestSubject(doc);
+		Node styleUrl = doc.getDocumentElement().getElementsByTagNameNS(Namespaces.KML22, "styleUrl").item(0);
+		iut.checkStyleTarget(styleUrl, this.errHandler);
+		assertEquals(errHandler.toString(), 0, errHandler.getErrorCount());
+	}
+
 	@Test
 	public void styleMapOk() throws SAXException, IOException {
 		URL url = this.getClass().getResource("/kml/styles/StyleMap-Ok.xml");
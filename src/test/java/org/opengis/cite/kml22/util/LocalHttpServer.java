@@ -0,0 +1,78 @@
+package org.opengis.cite.kml22.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.rules.ExternalResource;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs a local HTTP server for the duration of a test class. The server listens on an
+ * ephemeral port and handles each request on its own thread. Usage:
+ *
+ * <pre>
+ * &#64;ClassRule
+ * public static final LocalHttpServer server = new LocalHttpServer().handle("/", VerifyFoo::serve);
+ * </pre>
+ */
+public class LocalHttpServer extends ExternalResource {
+
+	private final Map<String, HttpHandler> handlers = new LinkedHashMap<>();
+
+	private HttpServer server;
+
+	private ExecutorService executor;
+
+	/**
+	 * Adds a handler for requests whose path starts with the given prefix.
+	 * @param path A path prefix.
+	 * @param handler The handler for matching requests.
+	 * @return This server.
+	 */
+	public LocalHttpServer handle(String path, HttpHandler handler) {
+		this.handlers.put(path, handler);
+		return this;
+	}
+
+	/**
+	 * Returns the URI of a resource on this server.
+	 * @param path An absolute path.
+	 * @return An 'http' URI.
+	 */
+	public URI uri(String path) {
+		return URI.create("http://localhost:" + getPort() + path);
+	}
+
+	/**
+	 * Returns the port the server is listening on.
+	 * @return A port number.
+	 */
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	@Override
+	protected void before() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		for (Map.Entry<String, HttpHandler> handler : this.handlers.entrySet()) {
+			this.server.createContext(handler.getKey(), handler.getValue());
+		}
+		this.executor = Executors.newCachedThreadPool();
+		this.server.setExecutor(this.executor);
+		this.server.start();
+	}
+
+	@Override
+	protected void after() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,58 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.opengis.cite.kml22.ErrorMessage;
+import org.opengis.cite.validation.ErrorLocator;
+import org.opengis.cite.validation.ErrorSeverity;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Verifies the behavior of the BoundedErrorHandler class.
+ */
+public class VerifyBoundedErrorHandler {
+
+	public VerifyBoundedErrorHandler() {
+	}
+
+	@Test
+	public void omitErrorsBeyondLimit() {
+		BoundedErrorHandler iut = new BoundedErrorHandler(3);
+		for (int i = 0; i < 2003; i++) {
+			iut.addError(ErrorSeverity.ERROR, "Error " + i, new ErrorLocator(-1, -1, null));
+		}
+		assertEquals("Unexpected error count.", 2003, iut.getErrorCount());
+		assertEquals("Unexpected number of retained errors.", 3, iut.getErrors().size());
+		assertEquals(2000, iut.getOmittedErrorCount());
+		String report = iut.toString();
+		assertTrue(report.contains("Error 2"));
+		assertFalse(report.contains("Error 3"));
+		assertTrue(report, report.endsWith(ErrorMessage.format("ErrorsOmitted", "2,000", "3")));
+	}
+
+	@Test
+	public void countSaxErrors() {
+		BoundedErrorHandler iut = new BoundedErrorHandler(1);
+		iut.error(new SAXParseException("First", null));
+		iut.fatalError(new SAXParseException("Second", null));
+		assertEquals(2, iut.getErrorCount());
+		assertEquals(1, iut.getOmittedErrorCount());
+		iut.reset();
+		assertFalse(iut.errorsDetected());
+		assertEquals(0, iut.getErrorCount());
+	}
+
+	@Test
+	public void noLimit() {
+		BoundedErrorHandler iut = new BoundedErrorHandler(0);
+		for (int i = 0; i < 1000; i++) {
+			iut.addError(ErrorSeverity.ERROR, "Error " + i, new ErrorLocator(-1, -1, null));
+		}
+		assertEquals(1000, iut.getErrors().size());
+		assertEquals(0, iut.getOmittedErrorCount());
+	}
+
+}
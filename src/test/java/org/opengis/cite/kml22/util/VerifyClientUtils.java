@@ -0,0 +1,143 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Verifies the behavior of the ClientUtils class.
+ */
+public class VerifyClientUtils {
+
+	/** The client ports from which requests were received. */
+	private static final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+	/** Holds back responses to requests for the "/slow" path. */
+	private static final CountDownLatch slowResponse = new CountDownLatch(1);
+
+	@ClassRule
+	public static final LocalHttpServer server = new LocalHttpServer().handle("/", exchange -> {
+		clientPorts.add(exchange.getRemoteAddress().getPort());
+		byte[] body = "<kml xmlns='http://www.opengis.net/kml/2.2'/>".getBytes("UTF-8");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}).handle("/slow", exchange -> {
+		try {
+			slowResponse.await(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		exchange.sendResponseHeaders(204, -1);
+		exchange.close();
+	});
+
+	public VerifyClientUtils() {
+	}
+
+	@Test
+	public void reuseConnectionsOfPooledClient() {
+		clientPorts.clear();
+		Client client = ClientUtils.buildPooledClient();
+		try {
+			URI uri = server.uri("/doc.kml");
+			for (int i = 0; i < 10; i++) {
+				Response rsp = client.target(uri).request().get();
+				assertEquals(200, rsp.getStatus());
+				rsp.close();
+			}
+			assertEquals("Expected one persistent connection.", 1, clientPorts.size());
+		}
+		finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void closeSharedClientWhenReleased() {
+		Client client = ClientUtils.acquireSharedClient();
+		assertSame(client, ClientUtils.getSharedClient());
+		Client client2 = ClientUtils.acquireSharedClient();
+		assertSame(client, client2);
+		ClientUtils.releaseSharedClient();
+		assertSame("Client released too early.", client, ClientUtils.getSharedClient());
+		ClientUtils.releaseSharedClient();
+		try {
+			assertNotSame("Client was not released.", client, ClientUtils.acquireSharedClient());
+		}
+		finally {
+			ClientUtils.releaseSharedClient();
+		}
+	}
+
+	@Test
+	public void getSharedClientWithoutAcquiringIt() {
+		try {
+			Response rsp = ClientUtils.buildGetRequest(server.uri("/doc.kml"), null);
+			assertEquals(200, rsp.getStatus());
+			rsp.close();
+			assertSame("Expected the client to be built once.", ClientUtils.getSharedClient(),
+					ClientUtils.getSharedClient());
+		}
+		finally {
+			// closes the client built on demand
+			ClientUtils.releaseSharedClient();
+		}
+	}
+
+	@Test
+	public void timeOutWhenPoolIsExhausted() throws InterruptedException {
+		System.setProperty(ClientUtils.MAX_PER_ROUTE_PROPERTY, "1");
+		System.setProperty(ClientUtils.CONNECTION_REQUEST_TIMEOUT_PROPERTY, "200");
+		Client client;
+		try {
+			client = ClientUtils.buildPooledClient();
+		}
+		finally {
+			System.clearProperty(ClientUtils.MAX_PER_ROUTE_PROPERTY);
+			System.clearProperty(ClientUtils.CONNECTION_REQUEST_TIMEOUT_PROPERTY);
+		}
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+
+			// keep the only connection to the host busy
+			executor.submit(() -> client.target(server.uri("/slow")).request().get().close());
+			Thread.sleep(200);
+			long start = System.nanoTime();
+			try {
+				client.target(server.uri("/doc.kml")).request().get().close();
+				fail("Expected timeout while waiting for a pooled connection.");
+			}
+			catch (ProcessingException e) {
+				assertTrue("Waited too long for a pooled connection.",
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+			}
+		}
+		finally {
+			slowResponse.countDown();
+			executor.shutdown();
+			client.close();
+		}
+	}
+
+}
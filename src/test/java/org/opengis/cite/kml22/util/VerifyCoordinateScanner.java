@@ -0,0 +1,83 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Verifies the behavior of the CoordinateScanner class.
+ */
+public class VerifyCoordinateScanner {
+
+	public VerifyCoordinateScanner() {
+	}
+
+	@Test
+	public void scanMixedTuples() {
+		CoordinateScanner iut = new CoordinateScanner();
+		int nTuples = iut.scan("\n  -122.5,37.25,0 \t-122.0,38  1,,2\r\n,  a,b 5,6,");
+		assertEquals("Unexpected number of tuples.", 6, nTuples);
+		assertEquals(3, iut.getDimension(0));
+		assertTrue(iut.isNumeric(0));
+		assertEquals(-122.5, iut.getOrdinate(0, 0), 0.0);
+		assertEquals(37.25, iut.getOrdinate(0, 1), 0.0);
+		assertEquals(2, iut.getDimension(1));
+		assertTrue("Expected NaN altitude.", Double.isNaN(iut.getOrdinate(1, 2)));
+		assertEquals(3, iut.getDimension(2));
+		assertFalse("Empty value is not numeric.", iut.isNumeric(2));
+		assertEquals(0, iut.getDimension(3));
+		assertFalse(iut.isNumeric(4));
+		assertEquals("Trailing empty value should be ignored.", 2, iut.getDimension(5));
+		assertTrue(iut.isNumeric(5));
+		assertEquals("a,b", iut.getTuple(4));
+	}
+
+	@Test
+	public void scanEmptyContent() {
+		CoordinateScanner iut = new CoordinateScanner();
+		assertEquals("Expected one empty tuple.", 1, iut.scan(" \n "));
+		assertEquals(0, iut.getDimension(0));
+	}
+
+	@Test
+	public void parseLikeDouble() {
+		CoordinateScanner iut = new CoordinateScanner();
+		String[] values = { "0", "-0.0", "+1.5", "1.", ".5", "180.000000000000001", "1e3", "0x1p3", "2f", "NaN",
+				"123456789.123456789", "0.000000000000000000000123" };
+		for (String value : values) {
+			iut.scan(value + ",0");
+			assertTrue(value, iut.isNumeric(0));
+			assertEquals(value, Double.parseDouble(value), iut.getOrdinate(0, 0), 0.0);
+		}
+		Random random = new Random(42);
+		StringBuilder coords = new StringBuilder();
+		double[] expected = new double[1000];
+		for (int i = 0; i < expected.length; i++) {
+			String lon = String.format(Locale.ROOT, "%.7f", random.nextDouble() * 360 - 180);
+			expected[i] = Double.parseDouble(lon);
+			coords.append(lon).append(",0 ");
+		}
+		iut.scan(coords);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], iut.getOrdinate(i, 0), 0.0);
+		}
+	}
+
+	@Test
+	public void compareTuplesAsText() {
+		CoordinateScanner iut = new CoordinateScanner();
+		iut.scan("1,2,3 4,5 1,2,3, 1.0,2,3");
+		assertTrue(iut.isSameTuple(0, 2));
+		assertFalse(iut.isSameTuple(0, 1));
+		assertFalse("Values are compared as text.", iut.isSameTuple(0, 3));
+		double[] ordinates = iut.getOrdinates();
+		assertEquals(4 * CoordinateScanner.STRIDE, ordinates.length);
+		assertEquals(5.0, ordinates[4], 0.0);
+	}
+
+}
@@ -0,0 +1,106 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.opengis.cite.kml22.KML22;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Verifies the behavior of the CoordinateStore class.
+ */
+public class VerifyCoordinateStore {
+
+	private static DocumentBuilder docBuilder;
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	public VerifyCoordinateStore() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+		dbf.setNamespaceAware(true);
+		docBuilder = dbf.newDocumentBuilder();
+	}
+
+	@Test
+	public void parseCoordinatesOnce() throws Exception {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/kml/KML_Samples.kml"));
+		CoordinateStore iut = new CoordinateStore(doc);
+		NodeList coordList = doc.getElementsByTagNameNS(KML22.NS_NAME, "coordinates");
+		for (int i = 0; i < coordList.getLength(); i++) {
+			Node coords = coordList.item(i);
+			PackedCoordinates tuples = iut.getCoordinates(coords);
+			assertSame("Expected stored coordinates.", tuples, iut.getCoordinates(coords));
+		}
+		assertEquals("Unexpected number of entries.", coordList.getLength(), iut.size());
+	}
+
+	@Test
+	public void closedRing() throws Exception {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/kml/LinearRingWithInvalidLat.kml"));
+		CoordinateStore iut = new CoordinateStore(doc);
+		Node coords = doc.getElementsByTagNameNS(KML22.NS_NAME, "coordinates").item(0);
+		PackedCoordinates tuples = iut.getCoordinates(coords);
+		assertTrue("Expected closed ring.", tuples.isClosed());
+		assertTrue(tuples.isNumeric(3));
+		assertEquals(92.0, tuples.getOrdinate(3, 1), 0.0);
+	}
+
+	@Test
+	public void unmarshalFromStoreForReadOnlyDocument() throws Exception {
+		File file = new File(this.getClass().getResource("/kml/KML_Samples.kml").toURI());
+		Document doc = XMLUtils.asDocument(KMLUtils.buildKML(file, null, null));
+		CoordinateStore store = new CoordinateStore(doc);
+		KmlGeometryUnmarshaller iut = new KmlGeometryUnmarshaller(store);
+		NodeList coordList = doc.getElementsByTagNameNS(KML22.NS_NAME, "coordinates");
+		for (int i = 0; i < coordList.getLength(); i++) {
+			iut.buildCoordinateSequence(coordList.item(i));
+		}
+		assertEquals("Coordinates were not taken from the store.", coordList.getLength(), store.size());
+	}
+
+	@Test
+	public void nodeInOtherDocument() throws Exception {
+		thrown.expect(IllegalArgumentException.class);
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/kml/KML_Samples.kml"));
+		CoordinateStore iut = new CoordinateStore(docBuilder.newDocument());
+		iut.getCoordinates(doc.getElementsByTagNameNS(KML22.NS_NAME, "coordinates").item(0));
+	}
+
+	@Test
+	public void createCoordinateSequence() {
+		PackedCoordinates tuples = PackedCoordinates.parse("-122.5,37.25,10 -122.0,38 -122.5,37.25,10");
+		assertEquals(3, tuples.getTupleCount());
+		assertEquals(2, tuples.getDimension(1));
+		assertTrue(tuples.isClosed());
+		CoordinateSequence seq = tuples.toCoordinateSequence();
+		assertEquals(3, seq.size());
+		assertEquals(37.25, seq.getY(0), 0.0);
+		assertEquals(10.0, seq.getOrdinate(0, CoordinateSequence.Z), 0.0);
+		assertTrue("Expected NaN altitude.", Double.isNaN(seq.getOrdinate(1, CoordinateSequence.Z)));
+	}
+
+	@Test
+	public void createCoordinateSequenceWithInvalidTuple() {
+		thrown.expect(IllegalArgumentException.class);
+		PackedCoordinates.parse("1,2 3").toCoordinateSequence();
+	}
+
+}
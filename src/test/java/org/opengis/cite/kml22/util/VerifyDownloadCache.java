@@ -0,0 +1,198 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.cite.kml22.util.DownloadCache.Download;
+
+/**
+ * Verifies the behavior of the DownloadCache class. Resources are served by a local HTTP
+ * server; those with "etag" in the path support conditional requests.
+ */
+public class VerifyDownloadCache {
+
+	/** The requests received by the server ("path status"). */
+	private static final List<String> requests = new CopyOnWriteArrayList<>();
+
+	@ClassRule
+	public static final LocalHttpServer server = new LocalHttpServer().handle("/", exchange -> {
+		String path = exchange.getRequestURI().getPath();
+		if (path.contains("slow")) {
+			try {
+				Thread.sleep(300);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (path.contains("missing")) {
+			requests.add(path + " 404");
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+			return;
+		}
+		// content depends on the last path segment only
+		byte[] body = path.substring(path.lastIndexOf('/')).repeat(100).getBytes("UTF-8");
+		if (path.contains("etag")) {
+			String etag = "\"" + Integer.toHexString(path.hashCode()) + "\"";
+			exchange.getResponseHeaders().add("ETag", etag);
+			if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				requests.add(path + " 304");
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+		}
+		requests.add(path + " 200");
+		exchange.getResponseHeaders().add("Content-Type", "application/vnd.google-earth.kml+xml");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	});
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	public VerifyDownloadCache() {
+	}
+
+	@Before
+	public void clearRequests() {
+		requests.clear();
+	}
+
+	@Test
+	public void reuseUnmodifiedResource() throws IOException {
+		DownloadCache iut = new DownloadCache(tempFolder.getRoot().toPath(), 1024 * 1024);
+		URI uri = server.uri("/etag/doc.kml");
+		Download first = iut.fetch(uri);
+		Download second = iut.fetch(uri);
+		assertEquals(List.of("/etag/doc.kml 200", "/etag/doc.kml 304"), requests);
+		assertEquals(first.getFile(), second.getFile());
+		assertEquals(200, second.getStatus());
+		assertEquals("/doc.kml".repeat(100), Files.readString(second.getFile().toPath()));
+		assertTrue("Expected .xml suffix.", first.getFile().getName().endsWith(".xml"));
+	}
+
+	@Test
+	public void storeIdenticalContentOnce() throws IOException {
+		DownloadCache iut = new DownloadCache(tempFolder.getRoot().toPath(), 1024 * 1024);
+		File file1 = iut.fetch(server.uri("/a/doc.kml")).getFile();
+		File file2 = iut.fetch(server.uri("/b/doc.kml")).getFile();
+		assertEquals("Identical content should be stored once.", file1, file2);
+		assertEquals(file1.length(), iut.getTotalSize());
+		assertEquals(1, tempFolder.getRoot().list().length);
+	}
+
+	@Test
+	public void evictLeastRecentlyUsedFiles() throws IOException {
+		long size = "/doc-0.kml".length() * 100;
+		DownloadCache iut = new DownloadCache(tempFolder.getRoot().toPath(), 3 * size);
+		File[] files = new File[4];
+		for (int i = 0; i < files.length; i++) {
+			Download download = iut.fetch(server.uri("/doc-" + i + ".kml"));
+			files[i] = download.getFile();
+			download.release();
+			if (i == 2) {
+				iut.fetch(server.uri("/etag/doc-0.kml")).release(); // same content as
+																	// doc-0
+			}
+		}
+		assertEquals(3 * size, iut.getTotalSize());
+		assertTrue("Recently used file was evicted.", files[0].exists());
+		assertFalse("Least recently used file was not evicted.", files[1].exists());
+		assertTrue(files[2].exists());
+		assertTrue(files[3].exists());
+		// file times may be too coarse to tell the order of the downloads
+		Files.setLastModifiedTime(files[3].toPath(), FileTime.fromMillis(System.currentTimeMillis() + 60000));
+		DownloadCache reopened = new DownloadCache(tempFolder.getRoot().toPath(), size);
+		assertEquals("Existing files should be counted.", size, reopened.getTotalSize());
+		assertArrayEquals("Most recent file should be kept.", new String[] { files[3].getName() },
+				tempFolder.getRoot().list());
+	}
+
+	@Test
+	public void keepPinnedFiles() throws IOException {
+		long size = "/doc-0.kml".length() * 100;
+		DownloadCache iut = new DownloadCache(tempFolder.getRoot().toPath(), size);
+		Download pinned = iut.fetch(server.uri("/doc-0.kml"));
+		iut.fetch(server.uri("/doc-1.kml")).release();
+		Download last = iut.fetch(server.uri("/doc-2.kml"));
+		assertTrue("Pinned file was evicted.", pinned.getFile().exists());
+		assertTrue(last.getFile().exists());
+		assertEquals(2 * size, iut.getTotalSize());
+		pinned.release();
+		pinned.release(); // no effect
+		assertFalse("Released file was not evicted.", pinned.getFile().exists());
+		assertTrue(last.getFile().exists());
+		assertEquals(size, iut.getTotalSize());
+	}
+
+	@Test
+	public void shareConcurrentRetrieval() throws Exception {
+		DownloadCache iut = new DownloadCache(tempFolder.getRoot().toPath(), 1024 * 1024);
+		URI uri = server.uri("/slow/doc.kml");
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Download>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> iut.fetch(uri)));
+			}
+			File file = results.get(0).get().getFile();
+			for (Future<Download> result : results) {
+				assertEquals(file, result.get().getFile());
+			}
+			assertEquals("Expected one request.", List.of("/slow/doc.kml 200"), requests);
+			for (Future<Download> result : results) {
+				result.get().release();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void deleteStalePartFilesOnly() throws IOException {
+		Path dir = tempFolder.getRoot().toPath();
+		Path stale = Files.createFile(dir.resolve("download-1.part"));
+		Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 2 * 24 * 3600 * 1000L));
+		Path active = Files.createFile(dir.resolve("download-2.part"));
+		new DownloadCache(dir, 1024);
+		assertFalse("Stale part file was not deleted.", Files.exists(stale));
+		assertTrue("Part file of another process was deleted.", Files.exists(active));
+	}
+
+	@Test
+	public void resourceNotFound() throws IOException {
+		DownloadCache iut = new DownloadCache(tempFolder.getRoot().toPath(), 1024);
+		Download download = iut.fetch(server.uri("/missing.kml"));
+		assertEquals(404, download.getStatus());
+		assertNull(download.getFile());
+		assertEquals(0, tempFolder.getRoot().list().length);
+	}
+
+}
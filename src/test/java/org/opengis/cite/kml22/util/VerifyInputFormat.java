@@ -0,0 +1,62 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Verifies the behavior of the InputFormat enumeration.
+ */
+public class VerifyInputFormat {
+
+	public VerifyInputFormat() {
+	}
+
+	@Test
+	public void detectKMZFile() throws URISyntaxException, IOException {
+		File file = new File(this.getClass().getResource("/kmz/archive-1.kmz").toURI());
+		assertEquals(InputFormat.ZIP, InputFormat.detect(file));
+	}
+
+	@Test
+	public void detectKMLFile() throws URISyntaxException, IOException {
+		File file = new File(this.getClass().getResource("/kml/Document-clean.kml").toURI());
+		assertEquals(InputFormat.XML, InputFormat.detect(file));
+	}
+
+	@Test
+	public void detectGzipContent() {
+		assertEquals(InputFormat.GZIP, InputFormat.detect(new byte[] { 0x1f, (byte) 0x8b, 8, 0 }));
+	}
+
+	@Test
+	public void detectXMLWithByteOrderMark() {
+		assertEquals(InputFormat.XML, InputFormat.detect(new byte[] { (byte) 0xef, (byte) 0xbb, (byte) 0xbf, '<' }));
+		assertEquals(InputFormat.XML, InputFormat.detect("<kml".getBytes(StandardCharsets.UTF_16)));
+		assertEquals(InputFormat.XML, InputFormat.detect("<kml".getBytes(StandardCharsets.UTF_16LE)));
+		assertEquals(InputFormat.XML, InputFormat.detect("\n <k".getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	@Test
+	public void detectUnknownContent() {
+		assertEquals(InputFormat.UNKNOWN, InputFormat.detect("{\"a\"".getBytes(StandardCharsets.US_ASCII)));
+		assertEquals(InputFormat.UNKNOWN, InputFormat.detect(new byte[0]));
+	}
+
+	@Test
+	public void detectAndResetStream() throws IOException {
+		InputStream input = new BufferedInputStream(
+				new ByteArrayInputStream("<?xml version='1.0'?>".getBytes(StandardCharsets.US_ASCII)));
+		assertEquals(InputFormat.XML, InputFormat.detect(input));
+		assertEquals('<', input.read());
+	}
+
+}
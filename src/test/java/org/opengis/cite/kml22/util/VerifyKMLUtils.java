@@ -1,23 +1,39 @@
 package org.opengis.cite.kml22.util;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import net.sf.saxon.s9api.XdmNode;
+
 /**
  * Verifies the behavior of the KMLUtils class.
  */
 public class VerifyKMLUtils {
 
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
 	public VerifyKMLUtils() {
 	}
 
@@ -31,4 +47,76 @@ public class VerifyKMLUtils {
 		assertTrue("Expected document URI ending with 'doc.kml'.", kmlDoc.getDocumentURI().endsWith("doc.kml"));
 	}
 
+	@Test
+	public void readKMLInArchiveWithoutExtracting() throws URISyntaxException, IOException, SAXException {
+		File kmzFile = tempFolder.newFile("small world.kmz");
+		Files.copy(this.getClass().getResourceAsStream("/kmz/small_world.kmz"), kmzFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		Document kmlDoc = KMLUtils.extractKMLFromArchive(kmzFile);
+		assertEquals(KMLUtils.getArchiveEntryURI(kmzFile, "doc.kml").toString(), kmlDoc.getDocumentURI());
+		assertArrayEquals("Archive was extracted.", new String[] { kmzFile.getName() }, tempFolder.getRoot().list());
+		URI linkURI = URIUtils.resolveRelativeURI(kmlDoc.getDocumentURI(), "0/0/0.kml");
+		assertEquals("jar:" + kmzFile.toURI() + "!/0/0/0.kml", linkURI.toString());
+		Document linkedDoc = URIUtils.parseURI(linkURI);
+		assertEquals("kml", linkedDoc.getDocumentElement().getLocalName());
+	}
+
+	@Test
+	public void parseKMLInArchive() throws URISyntaxException, IOException, SAXException {
+		File kmzFile = new File(this.getClass().getResource("/kmz/archive-1.kmz").toURI());
+		Document kmlDoc = KMLUtils.parseKML(kmzFile, null, null);
+		assertEquals(KMLUtils.getArchiveEntryURI(kmzFile, "doc.kml").toString(), kmlDoc.getDocumentURI());
+	}
+
+	@Test
+	public void parseCompressedKML() throws URISyntaxException, IOException, SAXException {
+		File gzFile = tempFolder.newFile("doc.kml.gz");
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gzFile))) {
+			Files.copy(new File(this.getClass().getResource("/kml/Document-clean.kml").toURI()).toPath(), out);
+		}
+		Document kmlDoc = KMLUtils.parseKML(gzFile, null, null);
+		assertEquals("kml", kmlDoc.getDocumentElement().getLocalName());
+		assertEquals(gzFile.toURI().toString(), kmlDoc.getDocumentURI());
+	}
+
+	@Test
+	public void buildKMLInArchive() throws URISyntaxException, IOException, SAXException {
+		File kmzFile = new File(this.getClass().getResource("/kmz/archive-1.kmz").toURI());
+		XdmNode kmlDoc = KMLUtils.buildKML(kmzFile, null, null);
+		assertEquals(KMLUtils.getArchiveEntryURI(kmzFile, "doc.kml").toString(),
+				XMLUtils.asDocument(kmlDoc).getDocumentURI());
+		assertEquals("kml", XMLUtils.asDocument(kmlDoc).getDocumentElement().getLocalName());
+	}
+
+	@Test
+	public void resolveArchiveEntryURI() {
+		File kmzFile = new File("/data/archive-1.kmz");
+		URI baseURI = KMLUtils.getArchiveEntryURI(kmzFile, "models/un.kml");
+		assertEquals(KMLUtils.getArchiveEntryURI(kmzFile, "images/_01.jpg"),
+				KMLUtils.resolveArchiveEntryURI(baseURI, "../images/_01.jpg"));
+		assertEquals(URI.create(KMLUtils.getArchiveEntryURI(kmzFile, "doc.kml") + "#style-1"),
+				KMLUtils.resolveArchiveEntryURI(baseURI, "/doc.kml#style-1"));
+		assertEquals("Expected reference to resource next to archive.", new File("/data/other.kml").toURI(),
+				KMLUtils.resolveArchiveEntryURI(baseURI, "../../other.kml"));
+		assertEquals(URI.create("http://example.org/doc.kml"),
+				KMLUtils.resolveArchiveEntryURI(baseURI, "http://example.org/doc.kml"));
+	}
+
+	@Test
+	public void readArchiveEntry() throws URISyntaxException, IOException {
+		File kmzFile = new File(this.getClass().getResource("/kmz/archive-1.kmz").toURI());
+		URI entryURI = KMLUtils.getArchiveEntryURI(kmzFile, "textures.txt");
+		assertEquals(320, KMLUtils.getArchiveEntrySize(entryURI));
+		try (InputStream input = KMLUtils.openArchiveEntry(entryURI)) {
+			assertEquals(320, input.readAllBytes().length);
+		}
+		assertEquals(-1, KMLUtils.getArchiveEntrySize(KMLUtils.getArchiveEntryURI(kmzFile, "images")));
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void openMissingArchiveEntry() throws URISyntaxException, IOException {
+		File kmzFile = new File(this.getClass().getResource("/kmz/archive-1.kmz").toURI());
+		KMLUtils.openArchiveEntry(KMLUtils.getArchiveEntryURI(kmzFile, "doc-2.kml")).close();
+	}
+
 }
@@ -0,0 +1,136 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opengis.cite.kml22.KML22;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Verifies the behavior of the KmlElementIndex class.
+ */
+public class VerifyKmlElementIndex {
+
+	private static final Map<String, String> NS_MAP = Collections.singletonMap(KML22.NS_NAME, "kml");
+
+	private static DocumentBuilder docBuilder;
+
+	public VerifyKmlElementIndex() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+		dbf.setNamespaceAware(true);
+		docBuilder = dbf.newDocumentBuilder();
+	}
+
+	@Test
+	public void elementsInDocumentOrder() throws SAXException, IOException, XPathExpressionException {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/kml/KML_Samples.kml"));
+		KmlElementIndex index = new KmlElementIndex(doc);
+		assertSameNodes(XMLUtils.evaluateXPath(doc, "//kml:Placemark", NS_MAP), index.getElements("Placemark"));
+		assertSameNodes(doc.getElementsByTagNameNS(KML22.NS_NAME, "coordinates"),
+				index.getElementsNS(KML22.NS_NAME, "coordinates"));
+		assertEquals("Unexpected element count.", doc.getElementsByTagName("*").getLength(), index.getElementCount());
+	}
+
+	@Test
+	public void unionInDocumentOrder() throws SAXException, IOException, XPathExpressionException {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/kml/KML_Samples.kml"));
+		KmlElementIndex index = new KmlElementIndex(doc);
+		assertSameNodes(XMLUtils.evaluateXPath(doc, "//kml:Point | //kml:Polygon | //kml:LineString", NS_MAP),
+				index.getElements("Point", "Polygon", "LineString"));
+	}
+
+	@Test
+	public void childElements() throws SAXException, IOException, XPathExpressionException {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/kml/KML_Samples.kml"));
+		KmlElementIndex index = new KmlElementIndex(doc);
+		assertSameNodes(XMLUtils.evaluateXPath(doc, "//kml:LinearRing/kml:coordinates", NS_MAP),
+				index.getChildElements("LinearRing", "coordinates"));
+	}
+
+	@Test
+	public void elementsNotInUpdate() throws SAXException, IOException, XPathExpressionException {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/kml/links/Update-Placemark.xml"));
+		KmlElementIndex index = new KmlElementIndex(doc);
+		List<Element> placemarks = index.getElements("Placemark");
+		assertEquals("Unexpected number of kml:Placemark elements.", 1, placemarks.size());
+		assertTrue("Expected kml:Placemark in kml:Update.", index.isInUpdate(placemarks.get(0)));
+		assertTrue("Expected no kml:Placemark outside kml:Update.",
+				index.getElementsNotInUpdate("Placemark").isEmpty());
+		Element update = index.getElements(KML22.UPDATE).get(0);
+		assertFalse("kml:Update is not within kml:Update.", index.isInUpdate(update));
+		assertSameNodes(XMLUtils.evaluateXPath(doc, "//kml:*[not(ancestor::kml:Update)]", NS_MAP),
+				index.getElementsNotInUpdate("kml", "NetworkLinkControl", "Update", "targetHref", "Change"));
+	}
+
+	@Test
+	public void elementsInReadOnlyDocument() throws SAXException, IOException, XPathExpressionException {
+		Document doc = readOnlyDocument("/kml/KML_Samples.kml");
+		KmlElementIndex index = new KmlElementIndex(doc);
+		KmlElementIndex domIndex = new KmlElementIndex(
+				docBuilder.parse(this.getClass().getResourceAsStream("/kml/KML_Samples.kml")));
+		assertEquals(domIndex.getElementNames(), index.getElementNames());
+		assertEquals(domIndex.getElementCount(), index.getElementCount());
+		assertEquivalentNodes(XMLUtils.evaluateXPath(doc, "//kml:Point | //kml:Polygon | //kml:LineString", NS_MAP),
+				index.getElements("Point", "Polygon", "LineString"));
+		assertEquivalentNodes(doc.getElementsByTagNameNS(KML22.NS_NAME, "coordinates"),
+				index.getElementsNS(KML22.NS_NAME, "coordinates"));
+	}
+
+	@Test
+	public void elementsNotInUpdateInReadOnlyDocument() throws SAXException, IOException, XPathExpressionException {
+		Document doc = readOnlyDocument("/kml/links/Update-Placemark.xml");
+		KmlElementIndex index = new KmlElementIndex(doc);
+		List<Element> placemarks = index.getElements("Placemark");
+		assertEquals("Unexpected number of kml:Placemark elements.", 1, placemarks.size());
+		assertTrue("Expected kml:Placemark in kml:Update.", index.isInUpdate(placemarks.get(0)));
+		assertTrue("Expected no kml:Placemark outside kml:Update.",
+				index.getElementsNotInUpdate("Placemark").isEmpty());
+		assertFalse("kml:Update is not within kml:Update.", index.isInUpdate(index.getElements(KML22.UPDATE).get(0)));
+		assertEquivalentNodes(XMLUtils.evaluateXPath(doc, "//kml:*[not(ancestor::kml:Update)]", NS_MAP),
+				index.getElementsNotInUpdate("kml", "NetworkLinkControl", "Update", "targetHref", "Change"));
+	}
+
+	private Document readOnlyDocument(String resource) throws SAXException, IOException {
+		try (InputStream input = this.getClass().getResourceAsStream(resource)) {
+			return XMLUtils
+				.asDocument(XMLUtils.buildXdmNode(input, URI.create("http://example.org" + resource), null, null));
+		}
+	}
+
+	private static void assertEquivalentNodes(NodeList expected, List<Element> actual) {
+		assertEquals("Unexpected number of elements.", expected.getLength(), actual.size());
+		for (int i = 0; i < expected.getLength(); i++) {
+			assertTrue("Unexpected element at position " + i, expected.item(i).isSameNode(actual.get(i)));
+		}
+	}
+
+	private static void assertSameNodes(NodeList expected, List<Element> actual) {
+		assertEquals("Unexpected number of elements.", expected.getLength(), actual.size());
+		for (int i = 0; i < expected.getLength(); i++) {
+			assertSame("Unexpected element at position " + i, expected.item(i), actual.get(i));
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opengis.cite.kml22.ErrorMessage;
+import org.opengis.cite.kml22.Namespaces;
+import org.opengis.cite.kml22.util.KmlStreamValidator.Check;
+import org.opengis.cite.validation.ValidationError;
+import org.opengis.cite.validation.ValidationErrorHandler;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Verifies the behavior of the KmlStreamValidator class.
+ */
+public class VerifyKmlStreamValidator {
+
+	private static DocumentBuilder docBuilder;
+
+	public VerifyKmlStreamValidator() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+		dbf.setNamespaceAware(true);
+		docBuilder = dbf.newDocumentBuilder();
+	}
+
+	@Test
+	public void validSamples() throws Exception {
+		URL url = this.getClass().getResource("/kml/KML_Samples.kml");
+		KmlStreamValidator iut = new KmlStreamValidator();
+		iut.validate(new File(url.toURI()));
+		Document doc = docBuilder.parse(url.toString());
+		assertEquals("Unexpected element count.", doc.getElementsByTagName("*").getLength(), iut.getElementCount());
+		assertEquals("Unexpected document element.", Namespaces.KML22, iut.getDocumentElementName().getNamespaceURI());
+		for (Check check : new Check[] { Check.GEOMETRY_COORDINATES, Check.POINT, Check.LINE_STRING, Check.LOOK_AT }) {
+			ValidationErrorHandler errHandler = iut.getErrorHandler(check);
+			assertFalse(check + ": " + errHandler.toString(), errHandler.errorsDetected());
+		}
+	}
+
+	@Test
+	public void coordinatesWithInvalidLatitude() throws Exception {
+		URL url = this.getClass().getResource("/kml/LinearRingWithInvalidLat.kml");
+		KmlStreamValidator iut = new KmlStreamValidator();
+		iut.validate(new File(url.toURI()));
+		ValidationErrorHandler errHandler = iut.getErrorHandler(Check.GEOMETRY_COORDINATES);
+		assertEquals("Unexpected number of errors.", 1, errHandler.getErrorCount());
+		ValidationError error = errHandler.iterator().next();
+		assertEquals(ErrorMessage.format("level1.GeometryCoordinates.lat", 4), error.getMessage());
+		Document doc = docBuilder.parse(url.toString());
+		Node coords = doc.getElementsByTagNameNS(Namespaces.KML22, "coordinates").item(0);
+		assertEquals("Unexpected pointer.", XMLUtils.getXPointer(coords), error.getPointer());
+		assertEquals("Unexpected line number.", 4, error.getLineNumber());
+	}
+
+	@Test
+	public void latLonAltBoxSouthGreaterThanNorth() throws Exception {
+		URL url = this.getClass().getResource("/kml/spatial/LatLonAltBox-SgtN.xml");
+		KmlStreamValidator iut = new KmlStreamValidator();
+		iut.validate(new File(url.toURI()));
+		ValidationErrorHandler errHandler = iut.getErrorHandler(Check.LAT_LON_ALT_BOX);
+		assertEquals("Unexpected number of errors.", 1, errHandler.getErrorCount());
+		assertTrue(errHandler.toString().contains(ErrorMessage.format("level1.LatLonAltBox.err4")));
+	}
+
+	@Test
+	public void lookAtIsMissingAltitude() throws Exception {
+		URL url = this.getClass().getResource("/kml/views/LookAt-Error.xml");
+		KmlStreamValidator iut = new KmlStreamValidator();
+		iut.validate(new File(url.toURI()));
+		ValidationErrorHandler errHandler = iut.getErrorHandler(Check.LOOK_AT);
+		assertEquals("Unexpected number of errors.", 1, errHandler.getErrorCount());
+		assertTrue(errHandler.toString().contains(ErrorMessage.format("level1.LookAt.err4")));
+	}
+
+	@Test
+	public void longLineStringWithInvalidLastTuple() throws XMLStreamException {
+		int nTuples = 100000;
+		StringBuilder kml = new StringBuilder("<kml xmlns='http://www.opengis.net/kml/2.2'><LineString><coordinates>");
+		for (int i = 1; i < nTuples; i++) {
+			kml.append(i % 180).append(".25,").append(i % 90).append(".5,0\n");
+		}
+		kml.append("10.0,95.0</coordinates></LineString></kml>");
+		InputStream input = new ByteArrayInputStream(kml.toString().getBytes(StandardCharsets.UTF_8));
+		KmlStreamValidator iut = new KmlStreamValidator();
+		iut.validate(input, null);
+		ValidationErrorHandler errHandler = iut.getErrorHandler(Check.GEOMETRY_COORDINATES);
+		assertEquals("Unexpected number of errors.", 1, errHandler.getErrorCount());
+		assertEquals(ErrorMessage.format("level1.GeometryCoordinates.lat", nTuples),
+				errHandler.iterator().next().getMessage());
+		assertFalse(iut.getErrorHandler(Check.LINE_STRING).errorsDetected());
+	}
+
+}
@@ -0,0 +1,149 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.opengis.cite.kml22.util.LinkVerifier.Referent;
+import org.opengis.cite.kml22.util.LinkVerifier.ReferentCheck;
+
+/**
+ * Verifies the behavior of the LinkVerifier class. The referents are served by a local
+ * HTTP server that delays every response.
+ */
+public class VerifyLinkVerifier {
+
+	private static final long LATENCY_MILLIS = 200;
+
+	private static final AtomicInteger activeRequests = new AtomicInteger();
+
+	private static final AtomicInteger maxActiveRequests = new AtomicInteger();
+
+	@ClassRule
+	public static final LocalHttpServer server = new LocalHttpServer().handle("/", exchange -> {
+		try {
+			Thread.sleep(LATENCY_MILLIS);
+			boolean found = !exchange.getRequestURI().getPath().contains("missing");
+			byte[] body = "<kml xmlns='http://www.opengis.net/kml/2.2'/>".getBytes("UTF-8");
+			exchange.sendResponseHeaders(found ? 200 : 404, found ? body.length : -1);
+			if (found) {
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			exchange.close();
+		}
+	});
+
+	public VerifyLinkVerifier() {
+	}
+
+	@Test
+	public void checkConcurrentlyWithinHostLimit() {
+		maxActiveRequests.set(0);
+		int nLinks = 24;
+		List<Referent> referents = new ArrayList<>();
+		for (int i = 0; i < nLinks; i++) {
+			String path = (i % 5 == 0) ? "/missing-" + i + ".kml" : "/doc-" + i + ".kml";
+			referents.add(new Referent(server.uri(path), VerifyLinkVerifier::assertFound));
+		}
+		LinkVerifier iut = new LinkVerifier(16, 4);
+		long start = System.nanoTime();
+		List<String> failures = iut.verify(referents);
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+		assertEquals(nLinks, failures.size());
+		for (int i = 0; i < nLinks; i++) {
+			if (i % 5 == 0) {
+				assertTrue("Expected failure for link " + i, failures.get(i).contains("missing-" + i));
+			}
+			else {
+				assertNull("Unexpected failure for link " + i, failures.get(i));
+			}
+		}
+		assertTrue("Per-host limit exceeded: " + maxActiveRequests.get(), maxActiveRequests.get() <= 4);
+		assertTrue("Checks were not concurrent (" + elapsedMillis + " ms).",
+				elapsedMillis < nLinks * LATENCY_MILLIS / 2);
+	}
+
+	@Test
+	public void reportUnexpectedException() {
+		ReferentCheck check = target -> {
+			throw new IllegalStateException("Connection refused");
+		};
+		List<Referent> referents = new ArrayList<>();
+		referents.add(new Referent(server.uri("/doc.kml"), VerifyLinkVerifier::assertFound));
+		referents.add(new Referent(URI.create("http://example.invalid/doc.kml"), check));
+		List<String> failures = new LinkVerifier(1, 1).verify(referents);
+		assertNull(failures.get(0));
+		assertTrue(failures.get(1), failures.get(1).contains("Connection refused"));
+	}
+
+	@Test
+	public void checkOtherHostWhileHostIsBusy() {
+		CountDownLatch otherHostChecked = new CountDownLatch(1);
+		ReferentCheck awaitOtherHost = target -> {
+			try {
+				if (!otherHostChecked.await(5, TimeUnit.SECONDS)) {
+					throw new AssertionError("Check of other host was stalled by " + target);
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		List<Referent> referents = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			referents.add(new Referent(URI.create("http://a.example.org/doc-" + i + ".kml"), awaitOtherHost));
+		}
+		referents.add(new Referent(URI.create("http://b.example.org/doc.kml"), target -> otherHostChecked.countDown()));
+		// a waiting check for host a must not occupy the second worker thread
+		List<String> failures = new LinkVerifier(2, 1).verify(referents);
+		for (String failure : failures) {
+			assertNull(failure);
+		}
+	}
+
+	/**
+	 * Checks that the target exists. The number of active checks is counted here (not by
+	 * the server) since the per-host permit is released as soon as the check returns.
+	 */
+	private static void assertFound(URI target) {
+		maxActiveRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+		try {
+			HttpURLConnection conn = (HttpURLConnection) new URL(target.toString()).openConnection();
+			try {
+				if (conn.getResponseCode() != 200) {
+					throw new AssertionError("No acceptable resource available at " + target);
+				}
+			}
+			finally {
+				conn.disconnect();
+			}
+		}
+		catch (IOException e) {
+			throw new AssertionError(e.getMessage());
+		}
+		finally {
+			activeRequests.decrementAndGet();
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opengis.cite.kml22.KML22;
+import org.opengis.cite.validation.ErrorSeverity;
+import org.opengis.cite.validation.ValidationError;
+import org.opengis.cite.validation.ValidationErrorHandler;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Verifies the behavior of the NodeErrorLocator class.
+ */
+public class VerifyNodeErrorLocator {
+
+	private static DocumentBuilder docBuilder;
+
+	public VerifyNodeErrorLocator() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+		dbf.setNamespaceAware(true);
+		docBuilder = dbf.newDocumentBuilder();
+	}
+
+	@Test
+	public void pointerToCoordinates() throws Exception {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/kml/KML_Samples.kml"));
+		Node coords = doc.getElementsByTagNameNS(KML22.NS_NAME, "coordinates").item(2);
+		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		errHandler.addError(ErrorSeverity.ERROR, "Invalid coordinates", new NodeErrorLocator(coords));
+		ValidationError error = errHandler.iterator().next();
+		assertEquals(XMLUtils.getXPointer(coords), error.getPointer());
+		assertTrue(errHandler.toString().contains("pointer=" + XMLUtils.getXPointer(coords)));
+		assertEquals(-1, error.getLineNumber());
+	}
+
+	@Test
+	public void noNode() {
+		assertNull(new NodeErrorLocator(null).getPointer());
+	}
+
+}
@@ -0,0 +1,177 @@
+package org.opengis.cite.kml22.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.opengis.cite.kml22.util.ReferentCache.Entry;
+
+/**
+ * Verifies the behavior of the ReferentCache class. The referents are served by a local
+ * HTTP server that delays every response.
+ */
+public class VerifyReferentCache {
+
+	private static final byte[] CONTENT = "<kml xmlns='http://www.opengis.net/kml/2.2'/>".getBytes();
+
+	private static final AtomicInteger requestCount = new AtomicInteger();
+
+	@ClassRule
+	public static final LocalHttpServer server = new LocalHttpServer().handle("/", exchange -> {
+		requestCount.incrementAndGet();
+		try {
+			Thread.sleep(100);
+			if (exchange.getRequestURI().getPath().contains("missing")) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			exchange.getResponseHeaders().add("Content-Type", "application/vnd.google-earth.kml+xml");
+			if (exchange.getRequestMethod().equals("HEAD")) {
+				exchange.getResponseHeaders().add("Content-Length", Integer.toString(CONTENT.length));
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+			exchange.sendResponseHeaders(200, CONTENT.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(CONTENT);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			exchange.close();
+		}
+	});
+
+	public VerifyReferentCache() {
+	}
+
+	@Before
+	public void resetRequestCount() {
+		requestCount.set(0);
+	}
+
+	@Test
+	public void checkExistenceOnce() {
+		ReferentCache iut = new ReferentCache();
+		URI uri = server.uri("/doc.kml");
+		Entry referent = iut.getReferent(uri, "application/vnd.google-earth.kml+xml");
+		assertTrue(referent.exists());
+		assertEquals(CONTENT.length, referent.getLength());
+		assertEquals("application/vnd.google-earth.kml+xml", referent.getContentType());
+		assertNull("Content should not be retrieved.", referent.getFile());
+		assertSame(referent, iut.getReferent(uri, "application/vnd.google-earth.kml+xml"));
+		assertEquals("Unexpected number of requests.", 1, requestCount.get());
+		iut.getReferent(uri, "application/xml");
+		assertEquals("Media types are part of the key.", 2, requestCount.get());
+	}
+
+	@Test
+	public void fetchContentOnceForConcurrentRequests() throws Exception {
+		ReferentCache iut = new ReferentCache();
+		URI uri = server.uri("/icon.kml");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<Entry>> results = new ArrayList<>();
+		try {
+			for (int i = 0; i < 32; i++) {
+				results.add(executor.submit(() -> iut.getContent(uri)));
+			}
+			Entry first = results.get(0).get();
+			for (Future<Entry> result : results) {
+				assertSame("Expected a shared result.", first, result.get());
+			}
+			File file = first.getFile();
+			assertNotNull(file);
+			assertEquals(new String(CONTENT), new String(Files.readAllBytes(file.toPath())));
+			assertEquals("Unexpected number of requests.", 1, requestCount.get());
+			iut.clear();
+			assertEquals(0, iut.size());
+			assertTrue("Content should remain in the download cache.", file.exists());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void referentNotFound() {
+		ReferentCache iut = new ReferentCache();
+		Entry referent = iut.getReferent(server.uri("/missing.kml"));
+		assertFalse(referent.exists());
+		assertEquals(404, referent.getStatus());
+		assertNull(iut.getContent(server.uri("/missing.kml")).getFile());
+	}
+
+	@Test
+	public void rememberFailedRetrieval() throws IOException {
+		URI uri;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			uri = URI.create("http://localhost:" + socket.getLocalPort() + "/doc.kml");
+		}
+		ReferentCache iut = new ReferentCache();
+		RuntimeException failure = null;
+		try {
+			iut.getReferent(uri);
+			fail("Expected the request to fail.");
+		}
+		catch (RuntimeException e) {
+			failure = e;
+		}
+		try {
+			iut.getReferent(uri);
+			fail("Expected the cached failure.");
+		}
+		catch (RuntimeException e) {
+			assertSame("Expected the cached failure.", failure, e);
+		}
+		assertEquals(1, iut.size());
+		iut.clear();
+		assertEquals(0, iut.size());
+	}
+
+	@Test
+	public void readImageFromFile() throws Exception {
+		URL url = this.getClass().getResource("/img/photo-1.jpg");
+		ReferentCache iut = new ReferentCache();
+		Entry referent = iut.getContent(url.toURI());
+		assertTrue(referent.exists());
+		assertTrue(referent.isImage());
+		iut.clear();
+		assertTrue("Local file was deleted.", new File(url.toURI()).isFile());
+	}
+
+	@Test
+	public void readImageFromArchive() throws Exception {
+		File kmzFile = new File(this.getClass().getResource("/kmz/archive-1.kmz").toURI());
+		ReferentCache iut = new ReferentCache();
+		Entry referent = iut.getContent(KMLUtils.getArchiveEntryURI(kmzFile, "images/_01.jpg"));
+		assertTrue(referent.exists());
+		assertEquals(41704, referent.getLength());
+		assertNull("Entry should not be extracted.", referent.getFile());
+		assertTrue(referent.isImage());
+		assertFalse(iut.getReferent(KMLUtils.getArchiveEntryURI(kmzFile, "images/_03.jpg")).exists());
+	}
+
+}
@@ -1,19 +1,25 @@
 package org.opengis.cite.kml22.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import org.junit.BeforeClass;
+import org.junit.ClassRule;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.opengis.cite.validation.ValidationErrorHandler;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
@@ -23,6 +29,18 @@ import org.xml.sax.SAXException;
  */
 public class VerifyURIUtils {
 
+	private static final String NOTE = "<note>Reminder</note>";
+
+	@ClassRule
+	public static final LocalHttpServer server = new LocalHttpServer().handle("/", exchange -> {
+		byte[] body = NOTE.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/xml");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	});
+
 	public VerifyURIUtils() {
 	}
 
@@ -50,6 +68,19 @@ public class VerifyURIUtils {
 		assertTrue("File should not be empty", file.length() > 0);
 	}
 
+	@Test
+	public void dereferenceHttpUriAsCopy() throws IOException {
+		File file = URIUtils.dereferenceURI(server.uri("/note.xml"));
+		try {
+			assertEquals(NOTE, Files.readString(file.toPath()));
+			assertFalse("Expected a copy of the cached file.",
+					file.toPath().startsWith(DownloadCache.getSharedCache().getDirectory()));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
 	@Test
 	public void resolveClasspathResource() throws SAXException, IOException, URISyntaxException {
 		URL url = this.getClass().getResource("/atom-feed.xml");
@@ -58,6 +89,25 @@ public class VerifyURIUtils {
 		assertEquals("Document element has unexpected [local name].", "feed", doc.getDocumentElement().getLocalName());
 	}
 
+	@Test
+	public void parseAndValidateValidDocument() throws SAXException, IOException, URISyntaxException {
+		URI uri = this.getClass().getResource("/kml/KML_Samples.kml").toURI();
+		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		Document doc = URIUtils.parseURI(uri, ValidationUtils.getKMLSchema(), errHandler);
+		assertFalse(errHandler.toString(), errHandler.errorsDetected());
+		assertTrue("Validation should not augment the document.", doc.isEqualNode(URIUtils.parseURI(uri)));
+	}
+
+	@Test
+	public void parseAndValidateInvalidDocument() throws SAXException, IOException, URISyntaxException {
+		URL url = this.getClass().getResource("/atom-feed.xml");
+		ValidationErrorHandler errHandler = new ValidationErrorHandler();
+		Document doc = URIUtils.parseURI(url.toURI(), ValidationUtils.getKMLSchema(), errHandler);
+		assertNotNull(doc);
+		assertTrue("Expected schema errors.", errHandler.errorsDetected());
+		assertTrue("Expected line number.", errHandler.iterator().next().getLineNumber() > 0);
+	}
+
 	@Test
 	public void resolveFileRefWithXInclude() throws SAXException, IOException, URISyntaxException {
 		File file = new File("src/test/resources/Alpha-xinclude.xml");
@@ -3,8 +3,21 @@ package org.opengis.cite.kml22.util;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.stream.XMLStreamException;
@@ -48,6 +61,53 @@ public class VerifyValidationUtils {
 		Assert.assertNotNull(result);
 	}
 
+	@Test
+	public void acquirePooledSchematronValidator() {
+		SchematronValidator validator;
+		try (SchematronValidatorPool.Lease lease = ValidationUtils.acquireSchematronValidator("kml-2.2.sch",
+				"Deprecated")) {
+			Assert.assertNotNull(lease);
+			validator = lease.getValidator();
+		}
+		try (SchematronValidatorPool.Lease lease = ValidationUtils.acquireSchematronValidator("kml-2.2.sch",
+				"Deprecated")) {
+			Assert.assertSame("Expected pooled validator to be reused.", validator, lease.getValidator());
+		}
+	}
+
+	@Test
+	public void reusePooledSchematronValidatorAfterClearingState() {
+		String deprecated = "<kml xmlns='http://www.opengis.net/kml/2.2'><Document><Snippet>x</Snippet></Document></kml>";
+		String clean = "<kml xmlns='http://www.opengis.net/kml/2.2'><Document><name>x</name></Document></kml>";
+		SchematronValidator validator;
+		try (SchematronValidatorPool.Lease lease = ValidationUtils.acquireSchematronValidator("kml-2.2.sch",
+				"Deprecated")) {
+			validator = lease.getValidator();
+			validator.validate(new StreamSource(new StringReader(deprecated)));
+			Assert.assertTrue("Expected rule violation.", validator.ruleViolationsDetected());
+			Assert.assertTrue("Expected state to be cleared.", SchematronValidatorPool.clearState(validator));
+			Assert.assertEquals("Unexpected rule violations.", 0, validator.getRuleViolationCount());
+		}
+		try (SchematronValidatorPool.Lease lease = ValidationUtils.acquireSchematronValidator("kml-2.2.sch",
+				"Deprecated")) {
+			Assert.assertSame(validator, lease.getValidator());
+			validator.validate(new StreamSource(new StringReader(clean)));
+			Assert.assertFalse("Unexpected rule violation.", validator.ruleViolationsDetected());
+		}
+	}
+
+	@Test
+	public void acquireMissingSchematronSchema() {
+		try {
+			ValidationUtils.acquireSchematronValidator("file:/no/such/schema.sch", "#ALL").close();
+		}
+		catch (AssertionError e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Failed to process Schematron schema"));
+			return;
+		}
+		Assert.fail("Expected AssertionError for a missing schema.");
+	}
+
 	@Test
 	public void extractRelativeSchemaReference() throws FileNotFoundException, XMLStreamException {
 		File xmlFile = new File("src/test/resources/Alpha-1.xml");
@@ -55,6 +115,63 @@ public class VerifyValidationUtils {
 		Assert.assertTrue("Expected schema reference */xsd/alpha.xsd", xsdRef.toString().endsWith("/xsd/alpha.xsd"));
 	}
 
+	@Test
+	public void getAbstractObjectSubstitutes() {
+		Schema kmlSchema = ValidationUtils.getKMLSchema();
+		Set<QName> names = ValidationUtils.getAbstractObjectSubstitutes(kmlSchema);
+		Assert.assertTrue(names.contains(new QName(Namespaces.KML22, "Placemark")));
+		Assert.assertTrue(names.contains(new QName(Namespaces.KML22, "LatLonBox")));
+		Assert.assertFalse(names.contains(new QName(Namespaces.KML22, "AbstractObjectGroup")));
+		Assert.assertFalse(names.contains(new QName(Namespaces.KML22, "name")));
+		Assert.assertSame("Expected cached set.", names, ValidationUtils.getAbstractObjectSubstitutes(kmlSchema));
+	}
+
+	@Test
+	public void retrySharedTaskAfterFailure() {
+		AtomicInteger attempts = new AtomicInteger();
+		Callable<String> task = () -> {
+			if (attempts.incrementAndGet() == 1) {
+				throw new IllegalStateException("First attempt fails.");
+			}
+			return "schema";
+		};
+		AtomicReference<FutureTask<String>> taskRef = new AtomicReference<>(new FutureTask<>(task));
+		Assert.assertNull(ValidationUtils.getOrRetry(taskRef, task, "schema"));
+		Assert.assertEquals("schema", ValidationUtils.getOrRetry(taskRef, task, "schema"));
+		Assert.assertEquals("schema", ValidationUtils.getOrRetry(taskRef, task, "schema"));
+		Assert.assertEquals("Unexpected number of attempts.", 2, attempts.get());
+	}
+
+	@Test
+	public void startOneWarmUpThread() throws Exception {
+		int nCallers = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService callers = Executors.newFixedThreadPool(nCallers);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for (int i = 0; i < nCallers; i++) {
+			results.add(callers.submit(() -> {
+				start.await();
+				return ValidationUtils.warmUpKMLSchema();
+			}));
+		}
+		start.countDown();
+		int started = 0;
+		for (Future<Boolean> result : results) {
+			started += result.get() ? 1 : 0;
+		}
+		callers.shutdown();
+		Assert.assertTrue("Started " + started + " warm-up threads.", started <= 1);
+		Assert.assertNotNull(ValidationUtils.getKMLSchema());
+	}
+
+	@Test
+	public void getSharedKMLSchema() {
+		ValidationUtils.warmUpKMLSchema();
+		Schema kmlSchema = ValidationUtils.getKMLSchema();
+		Assert.assertNotNull(kmlSchema);
+		Assert.assertSame("Expected shared Schema object.", kmlSchema, ValidationUtils.getKMLSchema());
+	}
+
 	@Test
 	public void testCompileKMLSchema() {
 		Schema kmlSchema = ValidationUtils.createKMLSchema();
@@ -1,29 +1,43 @@
 package org.opengis.cite.kml22.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.opengis.cite.kml22.KML22;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmNode;
 import net.sf.saxon.s9api.XdmValue;
 import net.sf.saxon.trans.XPathException;
 
@@ -55,6 +69,38 @@ public class VerifyXMLUtils {
 		assertTrue("String should start with '<feed'", content.startsWith("<feed"));
 	}
 
+	@Test
+	public void buildXdmNodeAsDocument() throws SAXException, IOException, XPathExpressionException {
+		XdmNode xdmDoc;
+		try (InputStream input = this.getClass().getResourceAsStream("/atom-feed.xml")) {
+			xdmDoc = XMLUtils.buildXdmNode(input, URI.create("http://example.org/feed.xml"), null, null);
+		}
+		Document doc = XMLUtils.asDocument(xdmDoc);
+		assertTrue(XMLUtils.isImmutable(doc));
+		assertEquals("http://example.org/feed.xml", doc.getDocumentURI());
+		Map<String, String> nsBindings = new HashMap<String, String>();
+		nsBindings.put(ATOM_NS, "tns");
+		NodeList entries = XMLUtils.evaluateXPath(doc, "//tns:entry", nsBindings);
+		assertEquals(1, entries.getLength());
+		Node entry = doc.getElementsByTagNameNS(ATOM_NS, "entry").item(0);
+		assertEquals("Views of the same node should have equal keys.", XMLUtils.getNodeKey(entry),
+				XMLUtils.getNodeKey(entries.item(0)));
+		assertEquals("xmlns(tns=" + ATOM_NS + ")xpointer((//tns:entry)[1])", XMLUtils.getXPointer(entry));
+		assertSame(xdmDoc.getUnderlyingNode(), XMLUtils.wrapNode(doc).getUnderlyingNode());
+	}
+
+	@Test
+	public void buildXdmNodeNotWellFormed() throws IOException {
+		InputStream input = new ByteArrayInputStream("<feed><title></feed>".getBytes(StandardCharsets.UTF_8));
+		try {
+			XMLUtils.buildXdmNode(input, URI.create("urn:test"), null, null);
+			fail("Expected SAXException.");
+		}
+		catch (SAXException e) {
+			assertNotNull(e.getMessage());
+		}
+	}
+
 	@Test
 	public void evaluateXPathExpression_match() throws XPathExpressionException, SAXException, IOException {
 		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/atom-feed.xml"));
@@ -88,6 +134,18 @@ public class VerifyXMLUtils {
 		assertNull(results);
 	}
 
+	@Test
+	public void compileXPathExpression_reused() throws XPathExpressionException {
+		Map<String, String> nsBindings = new HashMap<String, String>();
+		nsBindings.put(ATOM_NS, "tns");
+		XPathExpression expr1 = XMLUtils.compileXPath("//tns:entry", nsBindings);
+		nsBindings.put(EX_NS, "ns1");
+		XPathExpression expr2 = XMLUtils.compileXPath("//tns:entry", nsBindings);
+		assertNotSame("Expected distinct expressions for different bindings.", expr1, expr2);
+		assertSame("Expected cached expression.", expr2,
+				XMLUtils.compileXPath("//tns:entry", new HashMap<String, String>(nsBindings)));
+	}
+
 	@Test
 	public void createElement_Alpha() {
 		QName qName = new QName("http://example.org", "Alpha");
@@ -122,6 +180,19 @@ public class VerifyXMLUtils {
 		assertEquals("Result has unexpected string value.", "true", result.getUnderlyingValue().getStringValue());
 	}
 
+	@Test
+	public void evaluateXPath2ExpressionAgainstWrappedDocument()
+			throws SAXException, IOException, SaxonApiException, XPathException {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/atom-feed.xml"));
+		XdmNode node = XMLUtils.wrapNode(doc);
+		Map<String, String> nsBindings = new HashMap<String, String>();
+		nsBindings.put(ATOM_NS, "tns");
+		XdmValue result = XMLUtils.evaluateXPath2(node, "//tns:entry/tns:title", nsBindings);
+		assertEquals("Unexpected number of titles.", 1, result.size());
+		result = XMLUtils.evaluateXPath2(node, "count(//tns:entry)", nsBindings);
+		assertEquals("Result has unexpected string value.", "1", result.getUnderlyingValue().getStringValue());
+	}
+
 	@Test
 	public void getXPointerToEntryId() throws SAXException, IOException {
 		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/atom-feed.xml"));
@@ -132,4 +203,78 @@ public class VerifyXMLUtils {
 		assertTrue("Expected pointer to contain 'xpointer((//tns:id)[2])'.", xptr.contains("xpointer((//tns:id)[2])"));
 	}
 
+	@Test
+	public void getXPointerToManyElements() throws SAXException, IOException {
+		int nPlacemarks = 20000;
+		StringBuilder kml = new StringBuilder("<kml:Document xmlns:kml='http://www.opengis.net/kml/2.2'>");
+		for (int i = 0; i < nPlacemarks; i++) {
+			kml.append("<kml:Placemark/>");
+		}
+		kml.append("</kml:Document>");
+		Document doc = docBuilder.parse(new InputSource(new StringReader(kml.toString())));
+		NodeList placemarks = doc.getElementsByTagNameNS(KML22.NS_NAME, "Placemark");
+		for (int i = 0; i < nPlacemarks; i++) {
+			assertTrue(XMLUtils.getXPointer(placemarks.item(i)).endsWith("(//kml:Placemark)[" + (i + 1) + "])"));
+		}
+	}
+
+	@Test
+	public void getXPointerToManyElementsInReadOnlyDocument() throws SAXException, IOException {
+		int nPlacemarks = 20000;
+		StringBuilder kml = new StringBuilder("<kml:Document xmlns:kml='http://www.opengis.net/kml/2.2'>");
+		for (int i = 0; i < nPlacemarks; i++) {
+			kml.append("<kml:Placemark><kml:Point/></kml:Placemark>");
+		}
+		kml.append("</kml:Document>");
+		Document doc = XMLUtils
+			.asDocument(XMLUtils.buildXdmNode(new ByteArrayInputStream(kml.toString().getBytes(StandardCharsets.UTF_8)),
+					URI.create("http://example.org/doc.kml"), null, null));
+		NodeList points = doc.getElementsByTagNameNS(KML22.NS_NAME, "Point");
+		for (int i = 0; i < nPlacemarks; i++) {
+			assertTrue(XMLUtils.getXPointer(points.item(i)).endsWith("(//kml:Point)[" + (i + 1) + "])"));
+		}
+	}
+
+	@Test
+	public void getXPointerToAddedElement() throws SAXException, IOException {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/atom-feed.xml"));
+		Element entry = (Element) doc.getElementsByTagNameNS(ATOM_NS, "entry").item(0);
+		assertTrue(XMLUtils.getXPointer(entry).contains("xpointer((//tns:entry)[1])"));
+		Element newEntry = doc.createElementNS(ATOM_NS, "entry");
+		doc.getDocumentElement().appendChild(newEntry);
+		int nEntries = doc.getElementsByTagNameNS(ATOM_NS, "entry").getLength();
+		assertTrue(XMLUtils.getXPointer(newEntry).contains("xpointer((//tns:entry)[" + nEntries + "])"));
+		assertTrue("Detached element has no position.",
+				XMLUtils.getXPointer(doc.createElementNS(ATOM_NS, "entry")).endsWith("xpointer(("));
+	}
+
+	@Test
+	public void getChildElementsByName() throws SAXException, IOException {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/atom-feed.xml"));
+		List<Element> links = XMLUtils.getChildElements(doc.getDocumentElement(), ATOM_NS, "link");
+		assertEquals("Unexpected number of feed links.", 2, links.size());
+		assertEquals("http://example.org/", links.get(1).getAttribute("href"));
+		assertTrue(XMLUtils.getChildElements(doc.getDocumentElement(), ATOM_NS, "phone").isEmpty());
+	}
+
+	@Test
+	public void hasAncestorElement() throws SAXException, IOException {
+		Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/atom-feed.xml"));
+		NodeList links = doc.getElementsByTagNameNS(ATOM_NS, "link");
+		assertTrue(XMLUtils.hasAncestor(links.item(0), ATOM_NS, "feed"));
+		assertFalse(XMLUtils.hasAncestor(links.item(0), ATOM_NS, "entry"));
+		assertTrue(XMLUtils.hasAncestor(links.item(2), ATOM_NS, "entry"));
+	}
+
+	@Test
+	public void getFirstElementsById() throws SAXException, IOException {
+		Document doc = docBuilder.parse(new InputSource(new StringReader(
+				"<a id='1'><b id='2'><c id='3'/></b><b id='3'/>text<d><!-- comment --></d><e id='4'/></a>")));
+		Map<String, Element> elementsById = XMLUtils.getElementsById(doc);
+		assertEquals(4, elementsById.size());
+		assertEquals("a", elementsById.get("1").getLocalName());
+		assertEquals("c", elementsById.get("3").getLocalName());
+		assertEquals("e", elementsById.get("4").getLocalName());
+	}
+
 }